@@ -37,7 +37,7 @@ public class Main {
         final ServiceConfig serviceConfig = new ServiceConfig(propertyProvider);
 
         bridgeJULToSLF4J();
-        configureAccessLogs();
+        configureAccessLogs(serviceConfig);
         configureLogLevel(serviceConfig);
 
         final IntegrationService integrationService = ServiceFactory.createIntegrationService(propertyProvider, serviceConfig);
@@ -52,11 +52,12 @@ public class Main {
         }
     }
 
-    static void configureAccessLogs() {
+    static void configureAccessLogs(ServiceConfig serviceConfig) {
         final RequestLogImpl requestLog = new RequestLogImpl();
         requestLog.setFileName(Main.class.getResource("/logback-access.xml").getPath());
         requestLog.start();
-        final JettyServerWithRequestLogFactory serverFactory = new JettyServerWithRequestLogFactory(requestLog);
+        final JettyServerWithRequestLogFactory serverFactory = new JettyServerWithRequestLogFactory(requestLog,
+            serviceConfig.isVirtualThreads());
         final EmbeddedServerFactory embeddedServerFactory = new EmbeddedJettyFactory(serverFactory);
         EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, embeddedServerFactory);
     }
@@ -3,31 +3,66 @@ package com.commercetools.pspadapter.payone;
 import com.commercetools.pspadapter.payone.config.PayoneConfig;
 import com.commercetools.pspadapter.payone.config.PropertyProvider;
 import com.commercetools.pspadapter.payone.config.ServiceConfig;
+import com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter;
+import com.commercetools.pspadapter.payone.domain.payone.PayoneConnectionPool;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
-import com.commercetools.pspadapter.payone.notification.NotificationDispatcher;
+import com.commercetools.pspadapter.payone.message.MessageCursorCheckpoint;
+import com.commercetools.pspadapter.payone.message.PaymentMessageConsumer;
+import com.commercetools.pspadapter.payone.notification.NotificationWorkerPool;
+import com.commercetools.pspadapter.payone.notification.journal.JournalCheckpoint;
+import com.commercetools.pspadapter.payone.notification.journal.NotificationJournal;
+import com.commercetools.pspadapter.payone.notification.journal.NotificationJournalConsumer;
 import com.commercetools.pspadapter.tenant.TenantConfig;
 import com.commercetools.pspadapter.tenant.TenantFactory;
+import com.commercetools.pspadapter.tenant.TenantHandle;
 import com.commercetools.pspadapter.tenant.TenantPropertyProvider;
+import com.commercetools.util.SphereClientConfigurationUtil;
+import com.commercetools.util.spark.AsyncRoutes;
+import io.sphere.sdk.http.HttpClient;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.entity.ContentType;
+import org.asynchttpclient.AsyncHttpClient;
 import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import spark.HaltException;
+import spark.Request;
 import spark.Spark;
 import spark.utils.CollectionUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.executeBlocking;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 import static com.commercetools.pspadapter.payone.util.PayoneConstants.PAYONE;
 import static com.commercetools.util.CorrelationIdUtil.attachFromRequestOrGenerateNew;
 import static io.sphere.sdk.json.SphereJsonUtils.toJsonString;
 import static io.sphere.sdk.json.SphereJsonUtils.toPrettyJsonString;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
+import static spark.Spark.halt;
 
 /**
  * @author fhaertig
@@ -42,8 +77,59 @@ public class IntegrationService {
 
 
     private static final String HEROKU_ASSIGNED_PORT = "PORT";
+
+    /**
+     * Max number of tenants which are initialized at the same time.
+     */
+    static final int TENANT_INIT_PARALLELISM = 8;
+
+    /**
+     * Path parameter of the tenant name, if {@link ServiceConfig#isTenantRouteDispatch()}.
+     */
+    private static final String TENANT_PARAM = "tenant";
+
+    static final String PAYONE_CONNECTION_POOL_METRICS_URL = "/payone/connection-pools/metrics";
+
+    static final String COMMERCETOOLS_CONCURRENCY_METRICS_URL = "/commercetools/concurrency-limits/metrics";
+
+    /**
+     * Max period of checking whether lazily activated tenants are idle.
+     */
+    private static final long MAX_TENANT_RELEASE_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
     private List<TenantFactory> tenantFactories = null;
     private ServiceConfig serviceConfig = null;
+    private final List<NotificationJournal> notificationJournals = new ArrayList<>();
+    private final List<NotificationJournalConsumer> notificationJournalConsumers = new ArrayList<>();
+    private final List<PaymentMessageConsumer> paymentMessageConsumers = new ArrayList<>();
+
+    /**
+     * Milliseconds spent to initialize each tenant (factory and custom types), by tenant name.
+     */
+    private final Map<String, Long> tenantInitMillis = new ConcurrentHashMap<>();
+
+    /**
+     * HTTP client of the commercetools clients of all the tenants, if {@link ServiceConfig#isCtSharedHttpClient()}.
+     */
+    @Nullable
+    private AsyncHttpClient sharedCtpAsyncHttpClient = null;
+
+    /**
+     * Tenants which are activated on the first request, if {@link ServiceConfig#isLazyTenantActivation()}.
+     * Otherwise the tenants are created in the constructor, see {@link #tenantFactories}.
+     */
+    private final List<TenantHandle> lazyTenants = new ArrayList<>();
+
+    @Nullable
+    private ScheduledExecutorService tenantReleaseExecutor = null;
+
+    /**
+     * Configs of all the tenants, also of the lazily activated ones, to warm up their Payone connection pools.
+     */
+    private final List<TenantConfig> tenantConfigs = Collections.synchronizedList(new ArrayList<>());
+
+    @Nullable
+    private ScheduledExecutorService payoneConnectionKeeper = null;
 
     /**
      * This constructor is only used for testing proposes
@@ -57,50 +143,150 @@ public class IntegrationService {
     public IntegrationService(@Nonnull final ServiceConfig config,
                               @Nonnull final PropertyProvider propertyProvider) {
         this.serviceConfig = config;
-        this.tenantFactories = serviceConfig.getTenants().stream()
-                .map(tenantName -> new TenantPropertyProvider(tenantName, propertyProvider))
-                .map(tenantPropertyProvider -> new TenantConfig(tenantPropertyProvider,
-                        new PayoneConfig(tenantPropertyProvider)))
-                .map(tenantConfig -> new TenantFactory(PAYONE, tenantConfig))
-                .collect(toList());
+        final HttpClient sharedCtpHttpClient = createSharedCtpHttpClient(config);
+        if (serviceConfig.isLazyTenantActivation()) {
+            // the tenant configs are still validated at startup
+            final long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(serviceConfig.getTenantIdleTimeoutMinutes());
+            this.tenantFactories = Collections.emptyList();
+            serviceConfig.getTenants().stream()
+                    .map(tenantName -> createTenantConfig(tenantName, propertyProvider))
+                    .forEach(tenantConfig -> {
+                        tenantConfigs.add(tenantConfig);
+                        lazyTenants.add(TenantHandle.lazy(tenantConfig.getName(),
+                                () -> createActivatedTenantFactory(tenantConfig, sharedCtpHttpClient),
+                                idleTimeoutMillis));
+                    });
+        } else {
+            this.tenantFactories = runForEachTenant(serviceConfig.getTenants(), tenantName -> {
+                final long startMillis = System.currentTimeMillis();
+                final TenantConfig tenantConfig = createTenantConfig(tenantName, propertyProvider);
+                tenantConfigs.add(tenantConfig);
+                final TenantFactory tenantFactory = new TenantFactory(PAYONE, tenantConfig, sharedCtpHttpClient);
+                tenantInitMillis.merge(tenantName, System.currentTimeMillis() - startMillis, Long::sum);
+                return tenantFactory;
+            });
+        }
 
-        if (CollectionUtils.isEmpty(this.tenantFactories)) {
+        if (CollectionUtils.isEmpty(this.tenantFactories) && lazyTenants.isEmpty()) {
             throw new IllegalArgumentException("Tenants list must be non-empty");
         }
 
     }
 
-    private static void initTenantServiceResources(final TenantFactory tenantFactory) {
+    private static TenantConfig createTenantConfig(@Nonnull final String tenantName,
+                                                   @Nonnull final PropertyProvider propertyProvider) {
+        final TenantPropertyProvider tenantPropertyProvider = new TenantPropertyProvider(tenantName, propertyProvider);
+        return new TenantConfig(tenantPropertyProvider, new PayoneConfig(tenantPropertyProvider));
+    }
 
-        // create custom types
+    /**
+     * Creates the factory of a lazily activated tenant including its custom types.
+     */
+    private static TenantFactory createActivatedTenantFactory(@Nonnull final TenantConfig tenantConfig,
+                                                              @Nullable final HttpClient sharedCtpHttpClient) {
+        final TenantFactory tenantFactory = new TenantFactory(PAYONE, tenantConfig, sharedCtpHttpClient);
         if (tenantFactory.getCustomTypeBuilder() != null) {
             tenantFactory.getCustomTypeBuilder().run();
         }
-        PaymentHandler paymentHandler = tenantFactory.getPaymentHandler();
-        NotificationDispatcher notificationDispatcher = tenantFactory.getNotificationDispatcher();
+        return tenantFactory;
+    }
+
+    @Nullable
+    private HttpClient createSharedCtpHttpClient(@Nonnull final ServiceConfig config) {
+        if (!config.isCtSharedHttpClient()) {
+            return null;
+        }
+
+        LOG.info("Use one commercetools HTTP client for all the tenants, max connections per host: {}",
+                config.getCtMaxConnectionsPerHost().map(String::valueOf).orElse("unlimited"));
+        sharedCtpAsyncHttpClient = SphereClientConfigurationUtil.createSharedAsyncHttpClient(
+                config.getCtMaxConnectionsPerHost().orElse(null));
+        return SphereClientConfigurationUtil.createSharedHttpClient(sharedCtpAsyncHttpClient);
+    }
+
+    /**
+     * Registers the routes of one tenant.
+     */
+    private static void initTenantServiceResources(@Nonnull final TenantEndpoint endpoint,
+                                                   final boolean asyncPaymentHandling) {
+        final TenantHandle tenant = endpoint.tenant;
+        initTenantServiceResources(tenant.getPaymentHandlerUrl(), tenant.getPayoneStartSessionUrl(),
+                tenant.getPayoneNotificationUrl(),
+                endpoint.workerPool != null ? tenant.getPayoneNotificationMetricsUrl() : null,
+                tenantName -> endpoint, asyncPaymentHandling);
+    }
+
+    /**
+     * Registers the routes of all the tenants at once with the tenant name as a path parameter, so the cost of
+     * matching a route doesn't grow with the number of tenants: the tenant is looked up in a hash map.
+     */
+    private static void initTenantDispatchServiceResources(@Nonnull final List<TenantEndpoint> endpoints,
+                                                           final boolean asyncPaymentHandling) {
+        final Map<String, TenantEndpoint> endpointsByTenantName = new HashMap<>(endpoints.size() * 2);
+        endpoints.forEach(endpoint -> endpointsByTenantName.put(endpoint.tenant.getTenantName(), endpoint));
+
+        final String tenantParam = ":" + TENANT_PARAM;
+        final boolean hasWorkerPools = endpoints.stream().anyMatch(endpoint -> endpoint.workerPool != null);
+        initTenantServiceResources(TenantFactory.paymentHandlerUrlOf(tenantParam),
+                TenantFactory.payoneStartSessionUrlOf(tenantParam),
+                TenantFactory.payoneNotificationUrlOf(tenantParam),
+                hasWorkerPools ? TenantFactory.payoneNotificationMetricsUrlOf(tenantParam) : null,
+                Collections.unmodifiableMap(endpointsByTenantName)::get, asyncPaymentHandling);
+    }
+
+    /**
+     * @param endpointResolver resolves the tenant by the value of the {@link #TENANT_PARAM} path parameter
+     *                         (<b>null</b> if the URLs are of one tenant)
+     */
+    private static void initTenantServiceResources(@Nullable final String paymentHandlerUrl,
+                                                   @Nullable final String startSessionUrl,
+                                                   @Nullable final String payoneNotificationUrl,
+                                                   @Nullable final String notificationMetricsUrl,
+                                                   @Nonnull final Function<String, TenantEndpoint> endpointResolver,
+                                                   final boolean asyncPaymentHandling) {
 
         // register payment handler URL
-        String paymentHandlerUrl = tenantFactory.getPaymentHandlerUrl();
         if (StringUtils.isNotEmpty(paymentHandlerUrl)) {
             LOG.info("Register payment handler URL {}", paymentHandlerUrl);
-            Spark.get(paymentHandlerUrl, (req, res) -> {
-                    final PayoneResult payoneResult = paymentHandler.handlePayment(req.params("id"));
-                    if (!payoneResult.body().isEmpty()) {
-                        LOG.debug("--> Result body of ${getTenantName()}/commercetools/handle/payments/{}: {}",
-                            req.params("id"), payoneResult.body());
+            if (asyncPaymentHandling) {
+                AsyncRoutes.get(paymentHandlerUrl, (params, response) -> {
+                    final TenantEndpoint endpoint = endpointResolver.apply(params.get(TENANT_PARAM));
+                    if (endpoint == null) {
+                        response.setStatus(HttpStatus.NOT_FOUND_404);
+                        return CompletableFuture.completedFuture(null);
                     }
-                    res.status(payoneResult.statusCode());
-                    return res;
-                },
-                new HandlePaymentResponseTransformer());
+                    return endpoint.tenant.callAsync(tenantFactory ->
+                            tenantFactory.getPaymentHandler().handlePaymentAsync(params.get("id")))
+                        .thenAccept(payoneResult -> {
+                            if (!payoneResult.body().isEmpty()) {
+                                LOG.debug("--> Result body of ${getTenantName()}/commercetools/handle/payments/{}: {}",
+                                    params.get("id"), payoneResult.body());
+                            }
+                            response.setStatus(payoneResult.statusCode());
+                        });
+                });
+            } else {
+                Spark.get(paymentHandlerUrl, (req, res) -> {
+                        final TenantHandle tenant = resolveTenantEndpoint(endpointResolver, req).tenant;
+                        final PayoneResult payoneResult = tenant.call(tenantFactory ->
+                            tenantFactory.getPaymentHandler().handlePayment(req.params("id")));
+                        if (!payoneResult.body().isEmpty()) {
+                            LOG.debug("--> Result body of ${getTenantName()}/commercetools/handle/payments/{}: {}",
+                                req.params("id"), payoneResult.body());
+                        }
+                        res.status(payoneResult.statusCode());
+                        return res;
+                    },
+                    new HandlePaymentResponseTransformer());
+            }
         }
         // register start Session URL
-        String startSessionUrl = tenantFactory.getPayoneStartSessionUrl();
         if (StringUtils.isNotEmpty(startSessionUrl)) {
             LOG.info("Register start session URL {}", startSessionUrl);
-            KlarnaStartSessionHandler klarnaStartSessionHandler = tenantFactory.getSessionHandler();
             Spark.get(startSessionUrl, (req, res) -> {
-                        final PayoneResult payoneResult = klarnaStartSessionHandler.startSession(req.params("id"));
+                        final TenantHandle tenant = resolveTenantEndpoint(endpointResolver, req).tenant;
+                        final PayoneResult payoneResult = tenant.call(tenantFactory ->
+                                tenantFactory.getSessionHandler().startSession(req.params("id")));
                         if (!payoneResult.body().isEmpty()) {
                             LOG.debug("--> Result body of ${getTenantName()}/commercetools/start/session/{}: {}",
                                     req.params("id"), payoneResult.body());
@@ -113,22 +299,37 @@ public class IntegrationService {
         }
 
         // register Payone notifications URL
-        String payoneNotificationUrl = tenantFactory.getPayoneNotificationUrl();
         if (StringUtils.isNotEmpty(payoneNotificationUrl)) {
             LOG.info("Register payone notification URL {}", payoneNotificationUrl);
             Spark.post(payoneNotificationUrl, (req, res) -> {
-                LOG.debug("<- Received POST from Payone: {}", req.body());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("<- Received POST from Payone: {}", req.body());
+                }
+                final TenantEndpoint endpoint = resolveTenantEndpoint(endpointResolver, req);
+                final TenantHandle tenant = endpoint.tenant;
+                final NotificationJournal notificationJournal = endpoint.notificationJournal;
                 try {
-                    final Notification notification = Notification.fromKeyValueString(req.body(), "\r?\n?&");
-                    notificationDispatcher.dispatchNotification(notification);
+                    final byte[] body = req.bodyAsBytes();
+                    final Charset charset = getBodyCharset(req);
+                    final Notification notification = Notification.fromKeyValueBytes(body, charset);
+                    if (notificationJournal != null) {
+                        // acknowledge as soon as the notification is durable, it is dispatched by the journal consumer
+                        tenant.run(tenantFactory ->
+                                tenantFactory.getNotificationDispatcher().validateSecrets(notification));
+                        notificationJournal.append(UTF_8.equals(charset) ? body : req.body().getBytes(UTF_8));
+                    } else {
+                        tenant.run(tenantFactory ->
+                                tenantFactory.getNotificationDispatcher().dispatchNotification(notification));
+                    }
                 } catch (Exception e) {
                     // Potential issues for this exception are:
-                    // 1. req.body is mal-formed hence can't by parsed by Notification.fromKeyValueString
+                    // 1. req.body is mal-formed hence can't by parsed by Notification.fromKeyValueBytes
                     // 2. Invalid access secret values in the request (account id, key, portal id etc)
                     // 3. ConcurrentModificationException in case the respective payment could not be updated
                     //    after two attempts due to concurrent modifications; a later retry might be successful
                     // 4. Execution timeout, if sphere client has not responded in time
                     // 5. unknown notification type
+                    // 6. the notification journal can't be written
                     // Any other unexpected error.
                     LOG.error("Payone notification handling error. Request body: {}", req.body(), e);
                     res.status(400);
@@ -138,10 +339,51 @@ public class IntegrationService {
                 return "TSOK";
             });
         }
+
+        // register the URL of the queue depth and reorder wait time metrics of the notification workers
+        if (StringUtils.isNotEmpty(notificationMetricsUrl)) {
+            LOG.info("Register notification worker metrics URL {}", notificationMetricsUrl);
+            Spark.get(notificationMetricsUrl, (req, res) -> {
+                final NotificationWorkerPool workerPool = resolveTenantEndpoint(endpointResolver, req).workerPool;
+                if (workerPool == null) {
+                    throw halt(HttpStatus.NOT_FOUND_404);
+                }
+                res.status(SUCCESS_STATUS);
+                res.type(ContentType.APPLICATION_JSON.getMimeType());
+                return toJsonString(workerPool.getMetrics());
+            });
+        }
+    }
+
+    /**
+     * @throws HaltException responding <i>404 Not Found</i> if the tenant is unknown
+     */
+    @Nonnull
+    private static TenantEndpoint resolveTenantEndpoint(
+            @Nonnull final Function<String, TenantEndpoint> endpointResolver, @Nonnull final Request request) {
+        final TenantEndpoint endpoint = endpointResolver.apply(request.params(TENANT_PARAM));
+        if (endpoint == null) {
+            throw halt(HttpStatus.NOT_FOUND_404, "Unknown tenant");
+        }
+        return endpoint;
     }
 
     /**
-     * @return Unmodifiable view of tenant factories list which are used for the service run.
+     * @return charset of the request, or the platform default charset like {@link Request#body()} if the request
+     * doesn't specify a supported one
+     */
+    @Nonnull
+    private static Charset getBodyCharset(@Nonnull final Request request) {
+        final String encoding = request.raw().getCharacterEncoding();
+        if (encoding != null && Charset.isSupported(encoding)) {
+            return Charset.forName(encoding);
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * @return Unmodifiable view of tenant factories list which are used for the service run. Empty if the tenants are
+     * activated on the first request, see {@link ServiceConfig#isLazyTenantActivation()}.
      */
     public List<TenantFactory> getTenantFactories() {
         return Collections.unmodifiableList(tenantFactories);
@@ -150,11 +392,250 @@ public class IntegrationService {
     public void start() {
         initSparkService();
 
-        for (TenantFactory tenantFactory : tenantFactories) {
-            initTenantServiceResources(tenantFactory);
+        // create custom types once per commercetools project, the tenants of a project share them
+        runForEachTenant(getFirstTenantFactoryOfEachProject(), tenantFactory -> {
+            if (tenantFactory.getCustomTypeBuilder() != null) {
+                final long startMillis = System.currentTimeMillis();
+                tenantFactory.getCustomTypeBuilder().run();
+                tenantInitMillis.merge(tenantFactory.getTenantName(), System.currentTimeMillis() - startMillis,
+                        Long::sum);
+            }
+            return tenantFactory;
+        });
+
+        // before the tenant routes are registered, so no request of a tenant opens the connections
+        warmUpConnections();
+
+        final List<TenantHandle> tenants = lazyTenants.isEmpty()
+                ? tenantFactories.stream().map(TenantHandle::of).collect(toList())
+                : lazyTenants;
+        final List<TenantEndpoint> endpoints = tenants.stream()
+                .map(this::createTenantEndpoint)
+                .collect(toList());
+        if (lazyTenants.isEmpty()) {
+            tenants.forEach(this::createPaymentMessageConsumer);
+        } else if (serviceConfig.getPaymentMessagesCheckpointDir().isPresent()) {
+            LOG.warn("The payment messages are not consumed: the tenants are activated lazily and the polling would "
+                    + "keep them active, the payments are handled by the payment handler URL only");
+        }
+        if (serviceConfig.isTenantRouteDispatch()) {
+            initTenantDispatchServiceResources(endpoints, serviceConfig.isAsyncPaymentHandling());
+        } else {
+            endpoints.forEach(endpoint ->
+                    initTenantServiceResources(endpoint, serviceConfig.isAsyncPaymentHandling()));
         }
 
         Spark.awaitInitialization();
+
+        tenantFactories.forEach(tenantFactory -> LOG.info("Tenant [{}] is ready in {} ms",
+                tenantFactory.getTenantName(), tenantInitMillis.getOrDefault(tenantFactory.getTenantName(), 0L)));
+        lazyTenants.forEach(tenant -> LOG.info("Tenant [{}] is activated on the first request",
+                tenant.getTenantName()));
+        scheduleIdleTenantsRelease();
+        schedulePayoneIdleConnectionsKeeping();
+
+        notificationJournalConsumers.forEach(NotificationJournalConsumer::start);
+        paymentMessageConsumers.forEach(PaymentMessageConsumer::start);
+    }
+
+    /**
+     * @return the first of the {@link #tenantFactories} of every commercetools project, in the order of the tenants
+     */
+    private List<TenantFactory> getFirstTenantFactoryOfEachProject() {
+        final Map<String, TenantFactory> tenantFactoriesByProject = new LinkedHashMap<>();
+        tenantFactories.forEach(tenantFactory -> tenantFactoriesByProject.putIfAbsent(
+                tenantFactory.getCtpProjectKey() != null
+                        ? tenantFactory.getCtpProjectKey()
+                        : tenantFactory.getTenantName(),
+                tenantFactory));
+        return new ArrayList<>(tenantFactoriesByProject.values());
+    }
+
+    /**
+     * Periodically releases the lazily activated tenants which are idle for
+     * {@link ServiceConfig#getTenantIdleTimeoutMinutes()}.
+     */
+    private void scheduleIdleTenantsRelease() {
+        final long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(serviceConfig.getTenantIdleTimeoutMinutes());
+        if (lazyTenants.isEmpty() || idleTimeoutMillis <= 0) {
+            return;
+        }
+
+        final long periodMillis = Math.min(idleTimeoutMillis, MAX_TENANT_RELEASE_PERIOD_MILLIS);
+        tenantReleaseExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "tenant-release");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tenantReleaseExecutor.scheduleWithFixedDelay(() -> lazyTenants.forEach(TenantHandle::releaseIfIdle),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens {@link ServiceConfig#getWarmupConnections()} connections per Payone connection pool and per commercetools
+     * client of the tenants which are created at startup (including their access tokens), so the first requests
+     * don't wait for the DNS lookups, handshakes and token requests. It runs before the tenant routes are registered:
+     * Spark serves a route as soon as it is registered. A failed warm-up is only logged, the requests open the
+     * connections then.
+     */
+    private void warmUpConnections() {
+        final int connections = serviceConfig.getWarmupConnections();
+        if (connections <= 0) {
+            return;
+        }
+
+        final long startMillis = System.currentTimeMillis();
+        final List<Runnable> warmUps = new ArrayList<>();
+        getPayoneConnectionPools().forEach((pool, apiUrl) -> warmUps.add(() -> {
+            try {
+                LOG.info("Opened {} connections of the Payone connection pool [{}]",
+                        pool.warmUp(apiUrl, connections), pool.getName());
+            } catch (IOException e) {
+                LOG.warn("Can't warm up the Payone connection pool [{}]", pool.getName(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        tenantFactories.forEach(tenantFactory -> warmUps.add(() -> {
+            try {
+                tenantFactory.warmUpCommercetools(connections);
+            } catch (RuntimeException e) {
+                LOG.warn("Can't warm up the commercetools connections of the tenant [{}]",
+                        tenantFactory.getTenantName(), e);
+            }
+        }));
+        runForEachTenant(warmUps, warmUp -> {
+            warmUp.run();
+            return warmUp;
+        });
+        LOG.info("Connections are warmed up in {} ms", System.currentTimeMillis() - startMillis);
+    }
+
+    /**
+     * Periodically opens new Payone connections, so every pool keeps
+     * {@link ServiceConfig#getPayoneMinIdleConnections()} idle connections instead of dropping to zero when they
+     * expire.
+     */
+    private void schedulePayoneIdleConnectionsKeeping() {
+        final int idleConnections = serviceConfig.getPayoneMinIdleConnections();
+        if (idleConnections <= 0) {
+            return;
+        }
+
+        final Map<PayoneConnectionPool, String> pools = getPayoneConnectionPools();
+        payoneConnectionKeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "payone-connection-keeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        payoneConnectionKeeper.scheduleWithFixedDelay(() -> pools.forEach((pool, apiUrl) -> {
+            try {
+                pool.warmUp(apiUrl, idleConnections);
+            } catch (IOException e) {
+                LOG.debug("Can't open idle connections of the Payone connection pool [{}]", pool.getName(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), 0, PayoneConnectionPool.WARM_UP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the distinct Payone connection pools of the tenants with the API URL of their first tenant
+     */
+    private Map<PayoneConnectionPool, String> getPayoneConnectionPools() {
+        final Map<PayoneConnectionPool, String> pools = new LinkedHashMap<>();
+        synchronized (tenantConfigs) {
+            tenantConfigs.forEach(tenantConfig -> pools.putIfAbsent(
+                    PayoneConnectionPool.of(tenantConfig.getName(), tenantConfig.getPayoneConfig()),
+                    tenantConfig.getPayoneConfig().getApiUrl()));
+        }
+        return pools;
+    }
+
+    /**
+     * Applies {@code task} to every item using up to {@link #TENANT_INIT_PARALLELISM} threads, so the tenants don't
+     * wait for each other's CTP and Payone round trips on startup.
+     *
+     * @return results in the order of {@code items}
+     * @throws RuntimeException the first failure of {@code task}, if any
+     */
+    private static <T, R> List<R> runForEachTenant(@Nonnull final List<T> items, @Nonnull final Function<T, R> task) {
+        if (items.size() <= 1) {
+            return items.stream().map(task).collect(toList());
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(items.size(), TENANT_INIT_PARALLELISM),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "tenant-init-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            final List<CompletableFuture<R>> results = items.stream()
+                    .map(item -> CompletableFuture.supplyAsync(() -> task.apply(item), executor))
+                    .collect(toList());
+            return results.stream()
+                    .map(result -> executeBlocking(result))
+                    .collect(toList());
+        } catch (CompletionException e) {
+            // rethrow the original failure like the sequential initialization did
+            final Throwable cause = unwrapCompletionException(e);
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens the notification journal of the tenant and creates its consumer, if the journal is configured.
+     *
+     * @return the tenant with its journal, without a journal if {@link ServiceConfig#getNotificationJournalDir()} is
+     * not set
+     */
+    private TenantEndpoint createTenantEndpoint(@Nonnull final TenantHandle tenant) {
+        final Optional<String> notificationJournalDir = serviceConfig.getNotificationJournalDir();
+        if (!notificationJournalDir.isPresent()) {
+            return new TenantEndpoint(tenant, null, null);
+        }
+
+        final Path directory = Paths.get(notificationJournalDir.get(), tenant.getTenantName());
+        LOG.info("Use notification journal {}", directory);
+        final NotificationJournal notificationJournal;
+        try {
+            notificationJournal = NotificationJournal.open(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't open notification journal " + directory, e);
+        }
+        final NotificationJournalConsumer notificationJournalConsumer = new NotificationJournalConsumer(
+                tenant.getTenantName(), notificationJournal, new JournalCheckpoint(directory),
+                notification -> tenant.run(tenantFactory ->
+                        tenantFactory.getNotificationDispatcher().dispatchNotification(notification)));
+        notificationJournals.add(notificationJournal);
+        notificationJournalConsumers.add(notificationJournalConsumer);
+
+        return new TenantEndpoint(tenant, notificationJournal, notificationJournalConsumer.getWorkerPool());
+    }
+
+    /**
+     * Creates the consumer of the payment messages of the tenant, if
+     * {@link ServiceConfig#getPaymentMessagesCheckpointDir()} is set. Not used for the lazily activated tenants: every
+     * poll is a request of the tenant, thus it would never be released.
+     */
+    private void createPaymentMessageConsumer(@Nonnull final TenantHandle tenant) {
+        final Optional<String> paymentMessagesCheckpointDir = serviceConfig.getPaymentMessagesCheckpointDir();
+        if (!paymentMessagesCheckpointDir.isPresent()) {
+            return;
+        }
+
+        final Path directory = Paths.get(paymentMessagesCheckpointDir.get(), tenant.getTenantName());
+        LOG.info("Handle the payments of tenant [{}] on their messages, checkpoint {}", tenant.getTenantName(),
+                directory);
+        paymentMessageConsumers.add(new PaymentMessageConsumer(tenant.getTenantName(),
+                cursor -> tenant.call(tenantFactory -> tenantFactory.getCommercetoolsQueryExecutor()
+                        .queryPaymentTransactionAddedMessages(cursor, PaymentMessageConsumer.PAGE_SIZE)),
+                new MessageCursorCheckpoint(directory),
+                paymentId -> tenant.run(tenantFactory -> tenantFactory.getPaymentHandler().handlePayment(paymentId))));
     }
 
     private void initSparkService() {
@@ -177,6 +658,22 @@ public class IntegrationService {
             res.type(ContentType.APPLICATION_JSON.getMimeType());
             return req.queryParams("pretty") != null ? healthRequestPrettyContent : healthRequestContent;
         });
+
+        // leased/pending/available connections and lease wait times of the shared and the isolated Payone pools
+        LOG.info("Register Payone connection pool metrics URL {}", PAYONE_CONNECTION_POOL_METRICS_URL);
+        Spark.get(PAYONE_CONNECTION_POOL_METRICS_URL, (req, res) -> {
+            res.status(SUCCESS_STATUS);
+            res.type(ContentType.APPLICATION_JSON.getMimeType());
+            return toJsonString(PayoneConnectionPool.getAllMetrics());
+        });
+
+        // current limit, in-flight and queued requests and queue wait times of the adaptive commercetools limiters
+        LOG.info("Register commercetools concurrency metrics URL {}", COMMERCETOOLS_CONCURRENCY_METRICS_URL);
+        Spark.get(COMMERCETOOLS_CONCURRENCY_METRICS_URL, (req, res) -> {
+            res.status(SUCCESS_STATUS);
+            res.type(ContentType.APPLICATION_JSON.getMimeType());
+            return toJsonString(CommercetoolsConcurrencyLimiter.getAllMetrics());
+        });
     }
 
     private void injectCorrelationIdIntoContext() {
@@ -185,7 +682,38 @@ public class IntegrationService {
     }
 
     public void stop() {
+        AsyncRoutes.clear();
         Spark.stop();
+
+        if (tenantReleaseExecutor != null) {
+            tenantReleaseExecutor.shutdownNow();
+            tenantReleaseExecutor = null;
+        }
+
+        if (payoneConnectionKeeper != null) {
+            payoneConnectionKeeper.shutdownNow();
+            payoneConnectionKeeper = null;
+        }
+
+        // in parallel, every consumer waits for its payments in progress
+        runForEachTenant(paymentMessageConsumers, consumer -> {
+            consumer.close();
+            return consumer;
+        });
+        paymentMessageConsumers.clear();
+        notificationJournalConsumers.forEach(NotificationJournalConsumer::close);
+        notificationJournalConsumers.clear();
+        notificationJournals.forEach(NotificationJournal::close);
+        notificationJournals.clear();
+
+        if (sharedCtpAsyncHttpClient != null) {
+            try {
+                sharedCtpAsyncHttpClient.close();
+            } catch (IOException e) {
+                LOG.warn("Can't close the shared commercetools HTTP client", e);
+            }
+            sharedCtpAsyncHttpClient = null;
+        }
     }
 
     public int port() {
@@ -209,4 +737,25 @@ public class IntegrationService {
 
         return healthResponse;
     }
+
+    /**
+     * Tenant with the resources its routes use.
+     */
+    private static final class TenantEndpoint {
+        private final TenantHandle tenant;
+
+        @Nullable
+        private final NotificationJournal notificationJournal;
+
+        @Nullable
+        private final NotificationWorkerPool workerPool;
+
+        private TenantEndpoint(@Nonnull final TenantHandle tenant,
+                               @Nullable final NotificationJournal notificationJournal,
+                               @Nullable final NotificationWorkerPool workerPool) {
+            this.tenant = tenant;
+            this.notificationJournal = notificationJournal;
+            this.workerPool = workerPool;
+        }
+    }
 }
@@ -7,6 +7,7 @@ import com.commercetools.pspadapter.payone.domain.payone.PayonePostService;
 import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneException;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.StartSessionRequestWithCart;
 import com.commercetools.pspadapter.payone.mapping.klarna.KlarnaRequestFactory;
+import com.commercetools.pspadapter.payone.util.SingleFlight;
 import com.commercetools.service.PaymentService;
 import io.sphere.sdk.client.ErrorResponseException;
 import io.sphere.sdk.client.NotFoundException;
@@ -50,6 +51,11 @@ public class KlarnaStartSessionHandler {
     private final KlarnaRequestFactory klarnaRequestFactory;
     private final CommercetoolsQueryExecutor commercetoolsQueryExecutor;
 
+    /**
+     * Concurrent start session calls for the same payment join the running one, so only one session is started.
+     */
+    private final SingleFlight<String, PayoneResult> singleFlight = new SingleFlight<>();
+
     private final Logger logger;
     private PayonePostService payonePostService;
 
@@ -76,6 +82,10 @@ public class KlarnaStartSessionHandler {
      * @return the result of handling the payment
      */
     public PayoneResult startSession(@Nonnull final String paymentId) {
+        return singleFlight.execute(paymentId, () -> startSessionForPaymentId(paymentId));
+    }
+
+    private PayoneResult startSessionForPaymentId(@Nonnull final String paymentId) {
         try {
             final PaymentWithCartLike paymentWithCartLike =
                     commercetoolsQueryExecutor.getPaymentWithCartLike(paymentId);
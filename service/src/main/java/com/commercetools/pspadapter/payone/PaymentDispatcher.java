@@ -8,6 +8,11 @@ import io.sphere.sdk.payments.PaymentMethodInfo;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 
 public class PaymentDispatcher {
 
@@ -22,6 +27,42 @@ public class PaymentDispatcher {
     }
 
     public PaymentWithCartLike dispatchPayment(PaymentWithCartLike paymentWithCartLike) {
+        final PaymentMethodDispatcher dispatcher = getMethodDispatcher(paymentWithCartLike);
+        try {
+            return dispatcher.dispatchPayment(paymentWithCartLike);
+        } catch (final ConcurrentModificationException cme) {
+            throw toJavaConcurrentModificationException(cme);
+        }
+    }
+
+    /**
+     * Non-blocking version of {@link #dispatchPayment(PaymentWithCartLike)}. Validation errors and conflicts are
+     * reported the same way, but by completing the stage exceptionally.
+     */
+    public CompletionStage<PaymentWithCartLike> dispatchPaymentAsync(PaymentWithCartLike paymentWithCartLike) {
+        final PaymentMethodDispatcher dispatcher;
+        try {
+            dispatcher = getMethodDispatcher(paymentWithCartLike);
+        } catch (final IllegalArgumentException e) {
+            return failedStage(e);
+        }
+
+        final CompletableFuture<PaymentWithCartLike> result = new CompletableFuture<>();
+        dispatcher.dispatchPaymentAsync(paymentWithCartLike)
+                .whenComplete((dispatched, throwable) -> {
+                    if (throwable == null) {
+                        result.complete(dispatched);
+                    } else {
+                        final Throwable cause = unwrapCompletionException(throwable);
+                        result.completeExceptionally(cause instanceof ConcurrentModificationException
+                                ? toJavaConcurrentModificationException((ConcurrentModificationException) cause)
+                                : cause);
+                    }
+                });
+        return result;
+    }
+
+    private PaymentMethodDispatcher getMethodDispatcher(PaymentWithCartLike paymentWithCartLike) {
         final PaymentMethodInfo paymentMethodInfo = paymentWithCartLike.getPayment().getPaymentMethodInfo();
 
         if (!payoneInterfaceName.equals(paymentMethodInfo.getPaymentInterface())) {
@@ -35,15 +76,13 @@ public class PaymentDispatcher {
 
         return Optional.of(PaymentMethod.fromMethodKey(paymentMethodInfo.getMethod()))
                 .map(methodDispatcher::get)
-                .map(dispatcher -> {
-                    try {
-                        return dispatcher.dispatchPayment(paymentWithCartLike);
-                    } catch (final ConcurrentModificationException cme) {
-                        throw new java.util.ConcurrentModificationException("The payment could not be dispatched: "
-                                + cme.getMessage(), cme);
-                    }
-                })
                 .orElseThrow(() -> new IllegalArgumentException(String.format(
                         "Unsupported payment method '%s'", paymentMethodInfo.getMethod())));
     }
+
+    private static java.util.ConcurrentModificationException toJavaConcurrentModificationException(
+            final ConcurrentModificationException cme) {
+        return new java.util.ConcurrentModificationException("The payment could not be dispatched: "
+                + cme.getMessage(), cme);
+    }
 }
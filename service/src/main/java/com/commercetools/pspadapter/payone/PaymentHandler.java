@@ -3,6 +3,8 @@ package com.commercetools.pspadapter.payone;
 import com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsQueryExecutor;
 import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
 import com.commercetools.pspadapter.payone.domain.ctp.exceptions.NoCartLikeFoundException;
+import com.commercetools.pspadapter.payone.util.PaymentLanes;
+import com.commercetools.pspadapter.payone.util.SingleFlight;
 import io.sphere.sdk.client.ErrorResponseException;
 import io.sphere.sdk.client.NotFoundException;
 import io.sphere.sdk.http.HttpStatusCode;
@@ -13,7 +15,11 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import java.util.ConcurrentModificationException;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.delay;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 import static com.commercetools.pspadapter.tenant.TenantLoggerUtil.createTenantKeyValue;
 import static io.sphere.sdk.http.HttpStatusCode.INTERNAL_SERVER_ERROR_500;
 import static java.lang.String.format;
@@ -32,11 +38,29 @@ public class PaymentHandler {
     private final CommercetoolsQueryExecutor commercetoolsQueryExecutor;
     private final PaymentDispatcher paymentDispatcher;
 
+    /**
+     * Coalesces concurrent handling of the same payment, e.g. on double clicks or client retries: the duplicates
+     * receive the result of the running call instead of racing it into {@link ConcurrentModificationException}s.
+     */
+    private final SingleFlight<String, PayoneResult> singleFlight = new SingleFlight<>();
+
+    /**
+     * Serializes handling of a payment with the other work on the same payment, like Payone notifications.
+     */
+    private final PaymentLanes paymentLanes;
+
     private final Logger logger;
 
     public PaymentHandler(String payoneInterfaceName, String tenantName,
                           CommercetoolsQueryExecutor commercetoolsQueryExecutor, PaymentDispatcher paymentDispatcher) {
+        this(payoneInterfaceName, tenantName, commercetoolsQueryExecutor, paymentDispatcher, new PaymentLanes());
+    }
+
+    public PaymentHandler(String payoneInterfaceName, String tenantName,
+                          CommercetoolsQueryExecutor commercetoolsQueryExecutor, PaymentDispatcher paymentDispatcher,
+                          PaymentLanes paymentLanes) {
         this.payoneInterfaceName = payoneInterfaceName;
+        this.paymentLanes = paymentLanes;
 
         this.commercetoolsQueryExecutor = commercetoolsQueryExecutor;
         this.paymentDispatcher = paymentDispatcher;
@@ -52,6 +76,11 @@ public class PaymentHandler {
      * @return the result of handling the payment
      */
     public PayoneResult handlePayment(@Nonnull final String paymentId) {
+        return singleFlight.execute(paymentId,
+            () -> paymentLanes.execute(paymentId, () -> handlePaymentWithRetries(paymentId)));
+    }
+
+    private PayoneResult handlePaymentWithRetries(@Nonnull final String paymentId) {
         int retryCounter = 0;
         try {
             for (; retryCounter < RETRIES_LIMIT; retryCounter++) {
@@ -78,6 +107,74 @@ public class PaymentHandler {
                 new Exception("Unknown workflow error in PaymentHandler#handlePayment"));
     }
 
+    /**
+     * Non-blocking version of {@link #handlePayment(String)}: the payment is processed with the same retries and
+     * results, but no thread is blocked while waiting for the commercetools platform, Payone or the retry delay.
+     *
+     * @param paymentId identifies the payment to be processed
+     * @return stage which is always completed normally with the result of handling the payment
+     */
+    public CompletionStage<PayoneResult> handlePaymentAsync(@Nonnull final String paymentId) {
+        return singleFlight.executeAsync(paymentId,
+            () -> paymentLanes.executeAsync(paymentId, () -> handlePaymentAsync(paymentId, 0)));
+    }
+
+    private CompletionStage<PayoneResult> handlePaymentAsync(@Nonnull final String paymentId, final int retryCounter) {
+        return processPaymentAsync(paymentId)
+            .handle((payoneResult, throwable) -> retryOrComplete(paymentId, retryCounter, payoneResult, throwable))
+            .thenCompose(payoneResultStage -> payoneResultStage);
+    }
+
+    private CompletionStage<PayoneResult> retryOrComplete(@Nonnull final String paymentId,
+                                                          final int retryCounter,
+                                                          final PayoneResult payoneResult,
+                                                          final Throwable throwable) {
+        if (throwable == null) {
+            return CompletableFuture.completedFuture(payoneResult);
+        }
+
+        final Throwable cause = unwrapCompletionException(throwable);
+        if (cause instanceof ConcurrentModificationException && retryCounter < RETRIES_LIMIT - 1) {
+            return delay(calculateVariableDelay(retryCounter))
+                .thenComposeAsync(ignored -> handlePaymentAsync(paymentId, retryCounter + 1));
+        }
+
+        return CompletableFuture.completedFuture(toPayoneResult(paymentId, retryCounter, cause));
+    }
+
+    private CompletionStage<PayoneResult> processPaymentAsync(@Nonnull final String paymentId) {
+        return commercetoolsQueryExecutor.getPaymentWithCartLikeAsync(paymentId)
+            .thenCompose(paymentWithCartLike -> {
+                final String paymentInterface = paymentWithCartLike
+                    .getPayment()
+                    .getPaymentMethodInfo()
+                    .getPaymentInterface();
+
+                if (!payoneInterfaceName.equals(paymentInterface)) {
+                    final String errorMessage = format("Wrong payment interface name: expected '%s', found '%s' for the "
+                        + "commercetools Payment with id '%s'.", payoneInterfaceName, paymentInterface, paymentId);
+                    return CompletableFuture.completedFuture(new PayoneResult(HttpStatusCode.BAD_REQUEST_400, errorMessage));
+                }
+
+                return paymentDispatcher.dispatchPaymentAsync(paymentWithCartLike)
+                    .thenApply(ignored -> new PayoneResult(HttpStatusCode.OK_200));
+            });
+    }
+
+    /**
+     * Maps the exception of the async processing to the same results, which {@link #handlePayment(String)} returns.
+     */
+    private PayoneResult toPayoneResult(@Nonnull final String paymentId, int retriedCount, @Nonnull final Throwable cause) {
+        if (cause instanceof ConcurrentModificationException) {
+            return handleConcurrentModificationException(paymentId, (ConcurrentModificationException) cause);
+        } else if (cause instanceof NotFoundException || cause instanceof NoCartLikeFoundException) {
+            return handleNotFoundException(paymentId, retriedCount, cause);
+        } else if (cause instanceof ErrorResponseException) {
+            return errorResponseHandler(paymentId, retriedCount, (ErrorResponseException) cause);
+        }
+        return handleException(paymentId, retriedCount, cause);
+    }
+
     private PayoneResult processPayment(@Nonnull final String paymentId)
         throws ConcurrentModificationException {
 
@@ -112,7 +209,7 @@ public class PaymentHandler {
     private PayoneResult handleNotFoundException(
             @Nonnull final String paymentId,
             int retriedCount,
-            @Nonnull final Exception exception) {
+            @Nonnull final Throwable exception) {
 
         final String body = format("Failed to process the commercetools Payment with id [%s], as the payment or the cart could not be found after [%d] retries.",
                 paymentId, retriedCount);
@@ -136,7 +233,7 @@ public class PaymentHandler {
     private PayoneResult handleException(
         @Nonnull final String paymentId,
         int retriedCount,
-        @Nonnull final Exception exception) {
+        @Nonnull final Throwable exception) {
 
         logger.error(tenantNameKeyValue,
             format("Unexpected error occurred when processing commercetools Payment with id [%s] after [%d] retries.",
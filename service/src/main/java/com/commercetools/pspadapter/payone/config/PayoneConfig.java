@@ -2,6 +2,9 @@ package com.commercetools.pspadapter.payone.config;
 
 import com.commercetools.pspadapter.payone.util.PayoneHash;
 import com.commercetools.pspadapter.tenant.TenantPropertyProvider;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Optional;
 
 /**
  * @author fhaertig
@@ -26,6 +29,8 @@ public class PayoneConfig {
     private final String solutionVersion;
     private final String integratorName;
     private final String integratorVersion;
+    private final boolean circuitBreaker;
+    private final Optional<Integer> connectionPoolSize;
 
 
     public PayoneConfig(final TenantPropertyProvider tenantPropertyProvider) {
@@ -37,12 +42,20 @@ public class PayoneConfig {
         solutionVersion = tenantPropertyProvider.getCommonPropertyProvider().getMandatoryNonEmptyProperty(PropertyProvider.PAYONE_SOLUTION_VERSION);
         integratorName = tenantPropertyProvider.getCommonPropertyProvider().getMandatoryNonEmptyProperty(PropertyProvider.PAYONE_INTEGRATOR_NAME);
         integratorVersion = tenantPropertyProvider.getCommonPropertyProvider().getMandatoryNonEmptyProperty(PropertyProvider.PAYONE_INTEGRATOR_VERSION);
+        circuitBreaker = tenantPropertyProvider.getCommonPropertyProvider().getProperty(PropertyProvider.PAYONE_CIRCUIT_BREAKER)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
 
         // read tenant specific properties
         subAccountId = tenantPropertyProvider.getTenantMandatoryNonEmptyProperty(TenantPropertyProvider.PAYONE_SUBACC_ID);
         merchantId = tenantPropertyProvider.getTenantMandatoryNonEmptyProperty(TenantPropertyProvider.PAYONE_MERCHANT_ID);
         portalId = tenantPropertyProvider.getTenantMandatoryNonEmptyProperty(TenantPropertyProvider.PAYONE_PORTAL_ID);
         mode = tenantPropertyProvider.getTenantProperty(TenantPropertyProvider.PAYONE_MODE).orElse(DEFAULT_PAYONE_MODE);
+        connectionPoolSize = tenantPropertyProvider.getTenantProperty(TenantPropertyProvider.PAYONE_CONNECTION_POOL_SIZE)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .map(Integer::valueOf);
         final String plainKey = tenantPropertyProvider.getTenantMandatoryNonEmptyProperty(TenantPropertyProvider.PAYONE_KEY);
         keyAsHash = PayoneHash.calculate(plainKey);
     }
@@ -83,5 +96,17 @@ public class PayoneConfig {
 
     public String getIntegratorVersion() { return integratorVersion; }
 
+    /**
+     * @return <b>true</b> if the Payone requests of the tenant are guarded by a
+     * {@link com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker}
+     */
+    public boolean isCircuitBreaker() { return circuitBreaker; }
+
+    /**
+     * @return max number of connections of the isolated Payone connection pool of the tenant, empty if the tenant
+     * uses the shared pool (see {@link com.commercetools.pspadapter.payone.domain.payone.PayoneConnectionPool})
+     */
+    public Optional<Integer> getConnectionPoolSize() { return connectionPoolSize; }
+
 
 }
@@ -31,6 +31,22 @@ public class PropertyProvider {
 
     public static final String PAYONE_API_URL = "PAYONE_API_URL";
     public static final String HIDE_CUSTOMER_PERSONAL_DATA = "HIDE_CUSTOMER_PERSONAL_DATA";
+    public static final String ASYNC_PAYMENT_HANDLING = "ASYNC_PAYMENT_HANDLING";
+    public static final String VIRTUAL_THREADS = "VIRTUAL_THREADS";
+    public static final String NOTIFICATION_JOURNAL_DIR = "NOTIFICATION_JOURNAL_DIR";
+    public static final String CT_SHARED_HTTP_CLIENT = "CT_SHARED_HTTP_CLIENT";
+    public static final String CT_MAX_CONNECTIONS_PER_HOST = "CT_MAX_CONNECTIONS_PER_HOST";
+    public static final String LAZY_TENANT_ACTIVATION = "LAZY_TENANT_ACTIVATION";
+    public static final String TENANT_IDLE_TIMEOUT_MINUTES = "TENANT_IDLE_TIMEOUT_MINUTES";
+    public static final String TENANT_ROUTE_DISPATCH = "TENANT_ROUTE_DISPATCH";
+    public static final String PAYONE_CIRCUIT_BREAKER = "PAYONE_CIRCUIT_BREAKER";
+    public static final String PAYONE_MAX_CONNECTIONS_PER_ROUTE = "PAYONE_MAX_CONNECTIONS_PER_ROUTE";
+    public static final String WARMUP_CONNECTIONS = "WARMUP_CONNECTIONS";
+    public static final String PAYONE_MIN_IDLE_CONNECTIONS = "PAYONE_MIN_IDLE_CONNECTIONS";
+    public static final String CT_GRAPHQL_PAYMENT_FETCH = "CT_GRAPHQL_PAYMENT_FETCH";
+    public static final String CT_ADAPTIVE_CONCURRENCY = "CT_ADAPTIVE_CONCURRENCY";
+    public static final String PAYMENT_MESSAGES_CHECKPOINT_DIR = "PAYMENT_MESSAGES_CHECKPOINT_DIR";
+    public static final String ARCHIVE_INTERFACE_INTERACTIONS = "ARCHIVE_INTERFACE_INTERACTIONS";
 
     private final Map<String, String> internalProperties;
 
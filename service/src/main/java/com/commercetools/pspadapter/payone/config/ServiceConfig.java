@@ -19,11 +19,23 @@ import static java.util.Arrays.asList;
  */
 public class ServiceConfig {
 
+    static final long DEFAULT_TENANT_IDLE_TIMEOUT_MINUTES = 30;
 
     private final List<String> tenants;
     private final String applicationName;
     private final String applicationVersion;
     private final Optional<String> loglevel;
+    private final boolean asyncPaymentHandling;
+    private final boolean virtualThreads;
+    private final Optional<String> notificationJournalDir;
+    private final boolean ctSharedHttpClient;
+    private final Optional<Integer> ctMaxConnectionsPerHost;
+    private final boolean lazyTenantActivation;
+    private final long tenantIdleTimeoutMinutes;
+    private final boolean tenantRouteDispatch;
+    private final int warmupConnections;
+    private final int payoneMinIdleConnections;
+    private final Optional<String> paymentMessagesCheckpointDir;
     /**
      * Initializes the configuration.
      *
@@ -37,6 +49,51 @@ public class ServiceConfig {
         this.applicationName = propertyProvider.getMandatoryNonEmptyProperty(PAYONE_INTEGRATOR_NAME);
         this.applicationVersion = propertyProvider.getMandatoryNonEmptyProperty(PAYONE_INTEGRATOR_VERSION);
         this.loglevel = propertyProvider.getProperty(LOG_LEVEL);
+        this.asyncPaymentHandling = propertyProvider.getProperty(ASYNC_PAYMENT_HANDLING)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+        this.virtualThreads = propertyProvider.getProperty(VIRTUAL_THREADS)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+        this.notificationJournalDir = propertyProvider.getProperty(NOTIFICATION_JOURNAL_DIR)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty);
+        this.ctSharedHttpClient = propertyProvider.getProperty(CT_SHARED_HTTP_CLIENT)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+        this.ctMaxConnectionsPerHost = propertyProvider.getProperty(CT_MAX_CONNECTIONS_PER_HOST)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .map(Integer::valueOf);
+        this.lazyTenantActivation = propertyProvider.getProperty(LAZY_TENANT_ACTIVATION)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+        this.tenantIdleTimeoutMinutes = propertyProvider.getProperty(TENANT_IDLE_TIMEOUT_MINUTES)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .map(Long::valueOf)
+                .orElse(DEFAULT_TENANT_IDLE_TIMEOUT_MINUTES);
+        this.tenantRouteDispatch = propertyProvider.getProperty(TENANT_ROUTE_DISPATCH)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+        this.warmupConnections = propertyProvider.getProperty(WARMUP_CONNECTIONS)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .map(Integer::valueOf)
+                .orElse(0);
+        this.payoneMinIdleConnections = propertyProvider.getProperty(PAYONE_MIN_IDLE_CONNECTIONS)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .map(Integer::valueOf)
+                .orElse(0);
+        this.paymentMessagesCheckpointDir = propertyProvider.getProperty(PAYMENT_MESSAGES_CHECKPOINT_DIR)
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty);
 
     }
 
@@ -44,6 +101,94 @@ public class ServiceConfig {
         return loglevel;
     }
 
+    /**
+     * @return <b>true</b> if the payment handling requests should be served without blocking a Jetty thread while
+     * the payment is processed, see {@link PropertyProvider#ASYNC_PAYMENT_HANDLING}.
+     */
+    public boolean isAsyncPaymentHandling() {
+        return asyncPaymentHandling;
+    }
+
+    /**
+     * @return <b>true</b> if the Jetty requests should be executed on virtual threads (if supported by the JVM),
+     * see {@link PropertyProvider#VIRTUAL_THREADS}.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return directory of the local notification journals, if Payone notifications should be acknowledged as soon
+     * as they are journaled and be processed in background, see {@link PropertyProvider#NOTIFICATION_JOURNAL_DIR}.
+     */
+    public Optional<String> getNotificationJournalDir() {
+        return notificationJournalDir;
+    }
+
+    /**
+     * @return <b>true</b> if the commercetools clients of all the tenants should share one HTTP client,
+     * see {@link PropertyProvider#CT_SHARED_HTTP_CLIENT}.
+     */
+    public boolean isCtSharedHttpClient() {
+        return ctSharedHttpClient;
+    }
+
+    /**
+     * @return max number of connections of the shared commercetools HTTP client to one host, if limited,
+     * see {@link PropertyProvider#CT_MAX_CONNECTIONS_PER_HOST}.
+     */
+    public Optional<Integer> getCtMaxConnectionsPerHost() {
+        return ctMaxConnectionsPerHost;
+    }
+
+    /**
+     * @return <b>true</b> if the tenants should be created on the first request instead of at startup,
+     * see {@link PropertyProvider#LAZY_TENANT_ACTIVATION}.
+     */
+    public boolean isLazyTenantActivation() {
+        return lazyTenantActivation;
+    }
+
+    /**
+     * @return minutes after which a lazily activated tenant is released if it has not been used, 0 to never release,
+     * see {@link PropertyProvider#TENANT_IDLE_TIMEOUT_MINUTES}.
+     */
+    public long getTenantIdleTimeoutMinutes() {
+        return tenantIdleTimeoutMinutes;
+    }
+
+    /**
+     * @return <b>true</b> if the routes of all the tenants should be registered once with the tenant name as a path
+     * parameter, see {@link PropertyProvider#TENANT_ROUTE_DISPATCH}.
+     */
+    public boolean isTenantRouteDispatch() {
+        return tenantRouteDispatch;
+    }
+
+    /**
+     * @return number of the connections to open to every Payone and commercetools endpoint before the service is
+     * ready, 0 to open them on the first requests, see {@link PropertyProvider#WARMUP_CONNECTIONS}.
+     */
+    public int getWarmupConnections() {
+        return warmupConnections;
+    }
+
+    /**
+     * @return number of the idle connections which are kept open in every Payone connection pool, 0 to let them
+     * expire, see {@link PropertyProvider#PAYONE_MIN_IDLE_CONNECTIONS}.
+     */
+    public int getPayoneMinIdleConnections() {
+        return payoneMinIdleConnections;
+    }
+
+    /**
+     * @return directory of the checkpoints of the commercetools payment messages, if the payments should be handled
+     * on their {@code PaymentTransactionAdded} messages, see {@link PropertyProvider#PAYMENT_MESSAGES_CHECKPOINT_DIR}.
+     */
+    public Optional<String> getPaymentMessagesCheckpointDir() {
+        return paymentMessagesCheckpointDir;
+    }
+
     /**
      * @return Non-empty list of tenant names, specified in {@code TENANTS} configuration property.
      */
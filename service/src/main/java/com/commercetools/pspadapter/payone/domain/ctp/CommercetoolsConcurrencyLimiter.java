@@ -0,0 +1,246 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import io.sphere.sdk.http.HttpClient;
+import io.sphere.sdk.http.HttpRequest;
+import io.sphere.sdk.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of the parallel requests of a tenant to commercetools and adapts the limit to the response
+ * times and the throttling of the platform (AIMD: additive increase, multiplicative decrease):<ul>
+ * <li>a response with status 429 or 503, a response slower than {@link #SLOW_RESPONSE_MILLIS} msec or a failed
+ * request reduce the limit by {@link #BACKOFF_RATIO}, once per overload: the other requests which were already sent
+ * when the limit was reduced don't reduce it again</li>
+ * <li>other responses increase the limit by 1 per {@code limit} responses while at least half of the limit is in
+ * use</li>
+ * </ul>
+ * The limit stays between {@link #MIN_LIMIT} and {@link #MAX_LIMIT}, it starts at {@link #INITIAL_LIMIT}. The
+ * requests above the limit are queued for up to {@link #QUEUE_TIMEOUT_MILLIS} msec, then they fail with
+ * {@link RejectedExecutionException}.
+ * <p>
+ * The limiter of a tenant is created once and kept for the service run, so a lazily activated tenant keeps its limit.
+ */
+public final class CommercetoolsConcurrencyLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommercetoolsConcurrencyLimiter.class);
+
+    static final int INITIAL_LIMIT = 30;
+
+    static final int MIN_LIMIT = 5;
+
+    public static final int MAX_LIMIT = 500;
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    static final long SLOW_RESPONSE_MILLIS = 5000;
+
+    static final long QUEUE_TIMEOUT_MILLIS = 5000;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private static final ConcurrentMap<String, CommercetoolsConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final LongSupplier nanoClock;
+    private final ScheduledExecutorService timer;
+
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private double limit = INITIAL_LIMIT;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    private long requests;
+    private long overloads;
+    private long queueTimeouts;
+    private long queueWaitTotalNanos;
+    private long queueWaitMaxNanos;
+
+    CommercetoolsConcurrencyLimiter(@Nonnull final String name, @Nonnull final LongSupplier nanoClock,
+                                    @Nonnull final ScheduledExecutorService timer) {
+        this.name = name;
+        this.nanoClock = nanoClock;
+        this.timer = timer;
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * @param tenantName name of the tenant
+     * @return limiter of the tenant, which is created on the first call
+     */
+    @Nonnull
+    public static CommercetoolsConcurrencyLimiter of(@Nonnull final String tenantName) {
+        return LIMITERS.computeIfAbsent(tenantName, name -> {
+            LOG.info("Use an adaptive limit of the parallel commercetools requests of the tenant [{}]", name);
+            return new CommercetoolsConcurrencyLimiter(name, System::nanoTime, TimerHolder.TIMER);
+        });
+    }
+
+    /**
+     * @return metrics of the limiters which are created so far
+     */
+    @Nonnull
+    public static List<CommercetoolsConcurrencyLimiterMetrics> getAllMetrics() {
+        final List<CommercetoolsConcurrencyLimiterMetrics> metrics = new ArrayList<>();
+        LIMITERS.values().forEach(limiter -> metrics.add(limiter.getMetrics()));
+        return metrics;
+    }
+
+    /**
+     * @param httpClient HTTP client of the tenant's commercetools client
+     * @param authUrl    URL of the auth service: the token requests are not limited, because the other requests wait
+     *                   for them
+     * @return HTTP client which sends the requests of {@code httpClient} within the limit
+     */
+    @Nonnull
+    public HttpClient limit(@Nonnull final HttpClient httpClient, @Nonnull final String authUrl) {
+        return new HttpClient() {
+            @Override
+            public CompletionStage<HttpResponse> execute(final HttpRequest httpRequest) {
+                if (httpRequest.getUrl().startsWith(authUrl)) {
+                    return httpClient.execute(httpRequest);
+                }
+                return acquire().thenCompose(startNanos -> {
+                    final CompletionStage<HttpResponse> response;
+                    try {
+                        response = httpClient.execute(httpRequest);
+                    } catch (RuntimeException e) {
+                        release(startNanos, null, e);
+                        throw e;
+                    }
+                    return response.whenComplete((httpResponse, throwable) ->
+                            release(startNanos, httpResponse, throwable));
+                });
+            }
+
+            @Override
+            public void close() {
+                httpClient.close();
+            }
+        };
+    }
+
+    /**
+     * @return stage completed with the start time of the request when it may be sent
+     */
+    CompletionStage<Long> acquire() {
+        final Waiter waiter;
+        synchronized (this) {
+            requests++;
+            if (inFlight < currentLimit() && queue.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(nanoClock.getAsLong());
+            }
+            waiter = new Waiter(nanoClock.getAsLong());
+            queue.add(waiter);
+        }
+        timer.schedule(() -> timeOut(waiter), QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return waiter.future;
+    }
+
+    private void timeOut(final Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+            queueTimeouts++;
+            recordQueueWait(nanoClock.getAsLong() - waiter.enqueuedNanos);
+        }
+        waiter.future.completeExceptionally(new RejectedExecutionException(String.format(
+                "The commercetools request of the tenant [%s] waited more than %d msec for the concurrency limit",
+                name, QUEUE_TIMEOUT_MILLIS)));
+    }
+
+    void release(final long startNanos, @Nullable final HttpResponse response, @Nullable final Throwable throwable) {
+        final List<Waiter> admitted = new ArrayList<>();
+        final long now;
+        synchronized (this) {
+            now = nanoClock.getAsLong();
+            inFlight--;
+            if (isOverload(now - startNanos, response, throwable)) {
+                overloads++;
+                if (startNanos - lastDecreaseNanos > 0) {
+                    limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                    lastDecreaseNanos = now;
+                }
+            } else if ((inFlight + 1) * 2 >= limit) {
+                limit = Math.min(MAX_LIMIT, limit + 1 / limit);
+            }
+            while (inFlight < currentLimit() && !queue.isEmpty()) {
+                final Waiter waiter = queue.poll();
+                inFlight++;
+                recordQueueWait(now - waiter.enqueuedNanos);
+                admitted.add(waiter);
+            }
+        }
+        admitted.forEach(waiter -> waiter.future.complete(now));
+    }
+
+    private static boolean isOverload(final long responseNanos, @Nullable final HttpResponse response,
+                                      @Nullable final Throwable throwable) {
+        if (throwable != null || response == null) {
+            return true;
+        }
+        final Integer status = response.getStatusCode();
+        return (status != null && (status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE))
+                || responseNanos > TimeUnit.MILLISECONDS.toNanos(SLOW_RESPONSE_MILLIS);
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private void recordQueueWait(final long waitNanos) {
+        queueWaitTotalNanos += waitNanos;
+        queueWaitMaxNanos = Math.max(queueWaitMaxNanos, waitNanos);
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return current state and the counters since the start
+     */
+    @Nonnull
+    public synchronized CommercetoolsConcurrencyLimiterMetrics getMetrics() {
+        return new CommercetoolsConcurrencyLimiterMetrics(name, currentLimit(), inFlight, queue.size(), requests,
+                overloads, queueTimeouts,
+                requests > 0 ? TimeUnit.NANOSECONDS.toMillis(queueWaitTotalNanos / requests) : 0,
+                TimeUnit.NANOSECONDS.toMillis(queueWaitMaxNanos));
+    }
+
+    private static final class Waiter {
+        private final long enqueuedNanos;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private Waiter(final long enqueuedNanos) {
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private static final class TimerHolder {
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "ctp-concurrency-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
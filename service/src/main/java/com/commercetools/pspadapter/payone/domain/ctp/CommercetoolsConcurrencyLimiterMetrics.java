@@ -0,0 +1,91 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+/**
+ * Snapshot of the metrics of a {@link CommercetoolsConcurrencyLimiter}.
+ */
+public class CommercetoolsConcurrencyLimiterMetrics {
+
+    private final String tenant;
+    private final int limit;
+    private final int inFlight;
+    private final int queued;
+    private final long requests;
+    private final long overloads;
+    private final long queueTimeouts;
+    private final long queueWaitAvgMillis;
+    private final long queueWaitMaxMillis;
+
+    CommercetoolsConcurrencyLimiterMetrics(final String tenant, final int limit, final int inFlight, final int queued,
+                                           final long requests, final long overloads, final long queueTimeouts,
+                                           final long queueWaitAvgMillis, final long queueWaitMaxMillis) {
+        this.tenant = tenant;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.queued = queued;
+        this.requests = requests;
+        this.overloads = overloads;
+        this.queueTimeouts = queueTimeouts;
+        this.queueWaitAvgMillis = queueWaitAvgMillis;
+        this.queueWaitMaxMillis = queueWaitMaxMillis;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * @return current max number of the parallel requests
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return number of the requests which are sent and not answered yet
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return number of the requests which are waiting for the limit at the moment
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return number of the requests since the start, without the token requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return number of the throttled (429 or 503), slow or failed responses since the start
+     */
+    public long getOverloads() {
+        return overloads;
+    }
+
+    /**
+     * @return number of the requests which failed because they waited too long for the limit
+     */
+    public long getQueueTimeouts() {
+        return queueTimeouts;
+    }
+
+    /**
+     * @return average time the requests waited for the limit
+     */
+    public long getQueueWaitAvgMillis() {
+        return queueWaitAvgMillis;
+    }
+
+    /**
+     * @return maximum time a request waited for the limit
+     */
+    public long getQueueWaitMaxMillis() {
+        return queueWaitMaxMillis;
+    }
+}
@@ -2,6 +2,9 @@ package com.commercetools.pspadapter.payone.domain.ctp;
 
 import com.commercetools.pspadapter.payone.domain.ctp.exceptions.NoCartLikeFoundException;
 import io.sphere.sdk.carts.Cart;
+import io.sphere.sdk.carts.CartLike;
+import io.sphere.sdk.carts.CartState;
+import io.sphere.sdk.carts.queries.CartByIdGet;
 import io.sphere.sdk.carts.queries.CartQuery;
 import io.sphere.sdk.client.BlockingSphereClient;
 import io.sphere.sdk.client.correlationid.CorrelationIdRequestDecorator;
@@ -10,6 +13,7 @@ import io.sphere.sdk.messages.MessageDerivateHint;
 import io.sphere.sdk.messages.expansion.MessageExpansionModel;
 import io.sphere.sdk.messages.queries.MessageQuery;
 import io.sphere.sdk.orders.Order;
+import io.sphere.sdk.orders.queries.OrderByIdGet;
 import io.sphere.sdk.orders.queries.OrderQuery;
 import io.sphere.sdk.payments.Payment;
 import io.sphere.sdk.payments.expansion.PaymentExpansionModel;
@@ -18,11 +22,22 @@ import io.sphere.sdk.payments.messages.PaymentTransactionAddedMessage;
 import io.sphere.sdk.payments.queries.PaymentByIdGet;
 import io.sphere.sdk.queries.PagedQueryResult;
 import io.sphere.sdk.queries.Query;
+import io.sphere.sdk.queries.QueryPredicate;
+import io.sphere.sdk.queries.QuerySort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
+import static java.util.Arrays.asList;
 import static com.commercetools.util.CorrelationIdUtil.getFromMDCOrGenerateNew;
 
 /**
@@ -32,30 +47,154 @@ import static com.commercetools.util.CorrelationIdUtil.getFromMDCOrGenerateNew;
 //TODO: refactor class since it has mixed concerns (maybe MessageConsumer only)
 public class CommercetoolsQueryExecutor {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CommercetoolsQueryExecutor.class);
+
+    /**
+     * Maximum page size of the message queries.
+     */
+    public static final int MAX_MESSAGES_LIMIT = 500;
+
+    static final long MESSAGE_VISIBILITY_LAG_MILLIS = 5000;
+
     private BlockingSphereClient client;
 
+    private final boolean graphQLPaymentFetch;
+
+    private final PaymentLookupCache lookupCache;
+
     public CommercetoolsQueryExecutor(final BlockingSphereClient client) {
+        this(client, false, new PaymentLookupCache());
+    }
+
+    /**
+     * @param client              commercetools client
+     * @param graphQLPaymentFetch if <b>true</b> - {@link #getPaymentWithCartLike(String)} and
+     *                            {@link #getPaymentWithCartLikeAsync(String)} fetch the payment, its customer and its
+     *                            order or cart with a single {@link PaymentWithCartLikeGraphQLRequest}
+     * @param lookupCache         ids of the orders and carts of the payments, so they are fetched by id
+     */
+    public CommercetoolsQueryExecutor(final BlockingSphereClient client, final boolean graphQLPaymentFetch,
+                                      final PaymentLookupCache lookupCache) {
         this.client = client;
+        this.graphQLPaymentFetch = graphQLPaymentFetch;
+        this.lookupCache = lookupCache;
     }
 
     public PaymentWithCartLike getPaymentWithCartLike(final String paymentId) {
-        // customer is used to parse some properties,
-        // see com.commercetools.pspadapter.payone.mapping.MappingUtil#mapCustomerToRequest()
-        final PaymentByIdGet getPaymentRequest = PaymentByIdGet
-            .of(paymentId)
-            .plusExpansionPaths(PaymentExpansionModel::customer);
+        return join(getPaymentWithCartLikeAsync(paymentId));
+    }
 
+    public PaymentWithCartLike getPaymentWithCartLike(
+        final String paymentId,
+        final CompletionStage<Payment> paymentFuture)  {
 
+        return join(getPaymentWithCartLikeAsync(paymentId, paymentFuture));
+    }
 
-        final CompletionStage<Payment> paymentStage = client
-            .execute(CorrelationIdRequestDecorator.of(getPaymentRequest, getFromMDCOrGenerateNew()));
+    private static PaymentWithCartLike join(final CompletionStage<PaymentWithCartLike> paymentWithCartLikeFuture) {
+        //TODO: refactor since BlockingClient is available
+        try {
+            return paymentWithCartLikeFuture
+                .toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            final Throwable cause =
+                e.getCause() != null && e instanceof ExecutionException
+                    ? e.getCause()
+                    : e;
+            throw cause instanceof RuntimeException? (RuntimeException) cause : new CompletionException(cause);
+        }
+    }
+
+    /**
+     * Non-blocking version of {@link #getPaymentWithCartLike(String)}: the payment, order and cart are queried in
+     * parallel (or with a single GraphQL request, if enabled) and the returned stage is completed by the sphere client
+     * threads. If the GraphQL request fails, the REST requests are sent.
+     * <p>
+     * The order or cart found by the REST queries is remembered in the {@link PaymentLookupCache}, so the next calls
+     * for the payment fetch it by id. Payment ids which are not found fail fast for a short time.
+     *
+     * @param paymentId id of the payment to fetch
+     * @return stage completed with the payment and its order (or cart, if no order exists yet), or exceptionally with
+     * {@link NoCartLikeFoundException} if neither exists
+     */
+    public CompletionStage<PaymentWithCartLike> getPaymentWithCartLikeAsync(final String paymentId) {
+        if (lookupCache.isUnknownPayment(paymentId)) {
+            return failedStage(new NoCartLikeFoundException());
+        }
+        if (!graphQLPaymentFetch) {
+            return getPaymentWithCartLikeAsync(paymentId, fetchPayment(paymentId));
+        }
 
-        return getPaymentWithCartLike(paymentId, paymentStage);
+        return client.execute(CorrelationIdRequestDecorator.of(PaymentWithCartLikeGraphQLRequest.of(paymentId),
+                getFromMDCOrGenerateNew()))
+            .handle((result, throwable) -> {
+                if (throwable != null) {
+                    LOG.warn("GraphQL fetch of the payment [{}] failed, falling back to the REST requests",
+                        paymentId, throwable);
+                    return getPaymentWithCartLikeAsync(paymentId, fetchPayment(paymentId));
+                }
+                if (result.getPayment() == null) {
+                    // let the REST request fail with the usual "not found" error
+                    return getPaymentWithCartLikeAsync(paymentId, fetchPayment(paymentId));
+                }
+                if (result.getOrder() != null) {
+                    return CompletableFuture.completedFuture(
+                        new PaymentWithCartLike(result.getPayment(), result.getOrder()));
+                }
+                if (result.getCart() != null) {
+                    return CompletableFuture.completedFuture(
+                        new PaymentWithCartLike(result.getPayment(), result.getCart()));
+                }
+                throw new NoCartLikeFoundException();
+            })
+            .thenCompose(Function.identity());
     }
 
-    public PaymentWithCartLike getPaymentWithCartLike(
+    public CompletionStage<PaymentWithCartLike> getPaymentWithCartLikeAsync(
         final String paymentId,
-        final CompletionStage<Payment> paymentFuture)  {
+        final CompletionStage<Payment> paymentFuture) {
+
+        if (lookupCache.isUnknownPayment(paymentId)) {
+            return failedStage(new NoCartLikeFoundException());
+        }
+
+        final String orderId = lookupCache.getOrderId(paymentId);
+        if (orderId != null) {
+            final CompletionStage<Order> orderFuture =
+                client.execute(CorrelationIdRequestDecorator.of(OrderByIdGet.of(orderId), getFromMDCOrGenerateNew()));
+
+            return paymentFuture.thenCompose(payment -> orderFuture.thenCompose(order -> {
+                if (payment != null && order != null && referencesPayment(order, paymentId)) {
+                    return CompletableFuture.completedFuture(new PaymentWithCartLike(payment, order));
+                }
+                lookupCache.invalidateOrderId(paymentId);
+                return queryPaymentWithCartLike(paymentId, CompletableFuture.completedFuture(payment));
+            }));
+        }
+
+        final String cartId = lookupCache.getCartId(paymentId);
+        if (cartId != null) {
+            final CompletionStage<Cart> cartFuture =
+                client.execute(CorrelationIdRequestDecorator.of(CartByIdGet.of(cartId), getFromMDCOrGenerateNew()));
+
+            // an ordered cart means an order references the payment now, which has to be queried
+            return paymentFuture.thenCompose(payment -> cartFuture.thenCompose(cart -> {
+                if (payment != null && cart != null && cart.getCartState() == CartState.ACTIVE
+                    && referencesPayment(cart, paymentId)) {
+                    return CompletableFuture.completedFuture(new PaymentWithCartLike(payment, cart));
+                }
+                lookupCache.invalidateCartId(paymentId);
+                return queryPaymentWithCartLike(paymentId, CompletableFuture.completedFuture(payment));
+            }));
+        }
+
+        return queryPaymentWithCartLike(paymentId, paymentFuture);
+    }
+
+    private CompletionStage<PaymentWithCartLike> queryPaymentWithCartLike(
+        final String paymentId,
+        final CompletionStage<Payment> paymentFuture) {
 
         final CompletionStage<PagedQueryResult<Order>> orderFuture =
                 client.execute(
@@ -67,15 +206,22 @@ public class CommercetoolsQueryExecutor {
                     CorrelationIdRequestDecorator.of(CartQuery.of().withPredicates(m -> m.paymentInfo().payments().id().is(paymentId)),
                         getFromMDCOrGenerateNew()));
 
-        final CompletionStage<PaymentWithCartLike> paymentWithCartLikeFuture = paymentFuture.thenCompose(payment ->
+        return paymentFuture.thenCompose(payment ->
             orderFuture.thenCompose(orderResult -> {
+                if (payment == null) {
+                    lookupCache.putUnknownPayment(paymentId);
+                    throw new NoCartLikeFoundException();
+                }
                 if (orderResult.getTotal() > 0) {
                     final Order order = orderResult.getResults().get(0);
+                    lookupCache.putOrderId(paymentId, order.getId());
                     return CompletableFuture.completedFuture(new PaymentWithCartLike(payment, order));
                 } else {
                     return cartFuture.thenApply(cartResult -> {
                         if (cartResult.getTotal() > 0) {
-                            return new PaymentWithCartLike(payment, cartResult.getResults().get(0));
+                            final Cart cart = cartResult.getResults().get(0);
+                            lookupCache.putCartId(paymentId, cart.getId());
+                            return new PaymentWithCartLike(payment, cart);
                         } else {
                             throw new NoCartLikeFoundException();
                         }
@@ -83,19 +229,22 @@ public class CommercetoolsQueryExecutor {
                 }
             }
         ));
+    }
 
-        //TODO: refactor since BlockingClient is available
-        try {
-            return paymentWithCartLikeFuture
-                .toCompletableFuture()
-                .get(10, TimeUnit.SECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            final Throwable cause =
-                e.getCause() != null && e instanceof ExecutionException
-                    ? e.getCause()
-                    : e;
-            throw cause instanceof RuntimeException? (RuntimeException) cause : new CompletionException(cause);
-        }
+    private static boolean referencesPayment(final CartLike<?> cartLike, final String paymentId) {
+        return cartLike.getPaymentInfo() != null
+            && cartLike.getPaymentInfo().getPayments().stream()
+                .anyMatch(payment -> paymentId.equals(payment.getId()));
+    }
+
+    private CompletionStage<Payment> fetchPayment(final String paymentId) {
+        // customer is used to parse some properties,
+        // see com.commercetools.pspadapter.payone.mapping.MappingUtil#mapCustomerToRequest()
+        final PaymentByIdGet getPaymentRequest = PaymentByIdGet
+            .of(paymentId)
+            .plusExpansionPaths(PaymentExpansionModel::customer);
+
+        return client.execute(CorrelationIdRequestDecorator.of(getPaymentRequest, getFromMDCOrGenerateNew()));
     }
 
     public void consumePaymentCreatedMessages(
@@ -112,37 +261,70 @@ public class CommercetoolsQueryExecutor {
         consumeAllMessages(sinceDate, paymentConsumer, PaymentTransactionAddedMessage.MESSAGE_HINT);
     }
 
+    /**
+     * Queries the next page of the {@link PaymentTransactionAddedMessage}s after {@code cursor}, without the
+     * payments. Only the messages older than {@value #MESSAGE_VISIBILITY_LAG_MILLIS} msec are queried, because the
+     * messages become visible in the queries with a delay, thus a newer message could still be overtaken by an older
+     * one.
+     *
+     * @param cursor position of the last consumed message
+     * @param limit  max number of the messages, up to {@value #MAX_MESSAGES_LIMIT}
+     * @return messages after {@code cursor} in {@link MessageCursor} order, empty if there are no new messages
+     */
+    public List<PaymentTransactionAddedMessage> queryPaymentTransactionAddedMessages(
+        @Nonnull final MessageCursor cursor,
+        final int limit) {
+
+        final ZonedDateTime visibleUntil = ZonedDateTime.now().minus(MESSAGE_VISIBILITY_LAG_MILLIS, ChronoUnit.MILLIS);
+        final Query<PaymentTransactionAddedMessage> query = messagesAfter(cursor, visibleUntil, limit)
+            .forMessageType(PaymentTransactionAddedMessage.MESSAGE_HINT);
+
+        return client.execute(CorrelationIdRequestDecorator.of(query, getFromMDCOrGenerateNew()))
+            .toCompletableFuture().join()
+            .getResults();
+    }
+
     private <T extends GenericMessageImpl<Payment>> void consumeAllMessages(
         final ZonedDateTime sinceDate,
         final Consumer<Payment> paymentConsumer,
         final MessageDerivateHint<T> messageHint) {
 
-        final MessageQuery baseQuery = MessageQuery.of()
-            .withPredicates(m -> m.createdAt().isGreaterThanOrEqualTo(sinceDate))
-            .withSort(m -> m.createdAt().sort().asc())
-            .withExpansionPaths(MessageExpansionModel::resource)
-            .withLimit(500); // Maximum
-
-        long processed = 0;
-        long total = 0;
-
+        MessageCursor cursor = MessageCursor.of(sinceDate, "");
+        List<T> messages;
         do {
-            Query<T> query = baseQuery
-                .withOffset(processed)
+            final Query<T> query = messagesAfter(cursor, null, MAX_MESSAGES_LIMIT)
+                .withExpansionPaths(MessageExpansionModel::resource)
                 .forMessageType(messageHint);
-            final PagedQueryResult<T> result =
-                this.client
-                .execute(CorrelationIdRequestDecorator.of(query, getFromMDCOrGenerateNew()))
-                .toCompletableFuture().join();
+            messages = client.execute(CorrelationIdRequestDecorator.of(query, getFromMDCOrGenerateNew()))
+                .toCompletableFuture().join()
+                .getResults();
 
-            result.getResults()
-                    .stream()
+            messages.stream()
                     .filter(msg -> msg.getResource().getObj() != null)
                     .forEach(msg -> paymentConsumer.accept(msg.getResource().getObj()));
 
-            processed = result.getOffset() + result.getCount();
-            total = result.getTotal();
-        } while (processed < total);
+            if (!messages.isEmpty()) {
+                cursor = MessageCursor.of(messages.get(messages.size() - 1));
+            }
+        } while (messages.size() == MAX_MESSAGES_LIMIT);
+    }
+
+    /**
+     * Pages by the position of the last message instead of an offset: the cost of a page doesn't depend on the
+     * number of the preceding messages and there is no offset limit. The total isn't needed either.
+     */
+    private static MessageQuery messagesAfter(final MessageCursor cursor,
+                                              @Nullable final ZonedDateTime createdBefore,
+                                              final int limit) {
+        final String predicate = createdBefore != null
+            ? String.format("(%s) and createdAt < \"%s\"", cursor.toAfterPredicate(),
+                MessageCursor.formatTimestamp(createdBefore))
+            : cursor.toAfterPredicate();
+        return MessageQuery.of()
+            .withPredicates(QueryPredicate.of(predicate))
+            .withSort(asList(QuerySort.of("createdAt asc"), QuerySort.of("id asc")))
+            .withLimit(Math.min(limit, MAX_MESSAGES_LIMIT))
+            .withFetchTotal(false);
     }
 
 }
@@ -0,0 +1,62 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sphere.sdk.client.SphereClient;
+import io.sphere.sdk.customobjects.CustomObjectDraft;
+import io.sphere.sdk.customobjects.commands.CustomObjectUpsertCommand;
+import io.sphere.sdk.json.SphereJsonUtils;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the interaction fields in commercetools custom objects of the container {@value #CONTAINER}, one per
+ * interaction. The key is {@code <payment id>-<type key>-<interaction id>}, so the interactions of a payment can be
+ * queried with a {@code key} prefix predicate and a retried payment update upserts the same object instead of
+ * leaving an orphan. The characters which commercetools doesn't allow in keys are replaced by {@code _}. The value is
+ * like
+ * <pre>
+ * {"paymentId": "...", "type": "PAYONE_INTERACTION_REQUEST", "interactionId": "...", "fields": {"request": "..."}}
+ * </pre>
+ * The reference is {@code <container>/<key>}.
+ */
+public class CustomObjectInterfaceInteractionArchive implements InterfaceInteractionArchive {
+
+    public static final String CONTAINER = "payone-interface-interactions";
+
+    private static final Pattern INVALID_KEY_CHARACTERS = Pattern.compile("[^-_~.a-zA-Z0-9]");
+
+    private final SphereClient client;
+
+    public CustomObjectInterfaceInteractionArchive(@Nonnull final SphereClient client) {
+        this.client = client;
+    }
+
+    @Override
+    @Nonnull
+    public CompletionStage<String> archive(@Nonnull final String paymentId,
+                                           @Nonnull final String typeKey,
+                                           @Nonnull final String interactionId,
+                                           @Nonnull final Map<String, JsonNode> fields) {
+        final String key = getKey(paymentId, typeKey, interactionId);
+
+        final ObjectNode value = SphereJsonUtils.newObjectNode();
+        value.put("paymentId", paymentId);
+        value.put("type", typeKey);
+        value.put("interactionId", interactionId);
+        value.putObject("fields").setAll(fields);
+
+        return client.execute(CustomObjectUpsertCommand.of(
+                CustomObjectDraft.ofUnversionedUpsert(CONTAINER, key, value, JsonNode.class)))
+                .thenApply(customObject -> CONTAINER + "/" + key);
+    }
+
+    static String getKey(@Nonnull final String paymentId,
+                         @Nonnull final String typeKey,
+                         @Nonnull final String interactionId) {
+        return INVALID_KEY_CHARACTERS.matcher(paymentId + "-" + typeKey + "-" + interactionId).replaceAll("_");
+    }
+}
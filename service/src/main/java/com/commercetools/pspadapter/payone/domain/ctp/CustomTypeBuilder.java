@@ -5,6 +5,12 @@ import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
 import io.sphere.sdk.carts.commands.CartDeleteCommand;
 import io.sphere.sdk.carts.queries.CartQuery;
 import io.sphere.sdk.client.BlockingSphereClient;
+import io.sphere.sdk.client.ErrorResponseException;
+import io.sphere.sdk.customobjects.CustomObject;
+import io.sphere.sdk.customobjects.CustomObjectDraft;
+import io.sphere.sdk.customobjects.commands.CustomObjectUpsertCommand;
+import io.sphere.sdk.customobjects.queries.CustomObjectByKeyGet;
+import io.sphere.sdk.json.SphereJsonUtils;
 import io.sphere.sdk.models.LocalizedString;
 import io.sphere.sdk.models.TextInputHint;
 import io.sphere.sdk.orders.commands.OrderDeleteCommand;
@@ -13,7 +19,6 @@ import io.sphere.sdk.payments.Payment;
 import io.sphere.sdk.payments.commands.PaymentDeleteCommand;
 import io.sphere.sdk.payments.commands.updateactions.AddInterfaceInteraction;
 import io.sphere.sdk.payments.queries.PaymentQuery;
-import io.sphere.sdk.queries.PagedQueryResult;
 import io.sphere.sdk.types.BooleanFieldType;
 import io.sphere.sdk.types.DateFieldType;
 import io.sphere.sdk.types.EnumFieldType;
@@ -21,16 +26,33 @@ import io.sphere.sdk.types.FieldDefinition;
 import io.sphere.sdk.types.FieldType;
 import io.sphere.sdk.types.StringFieldType;
 import io.sphere.sdk.types.Type;
+import io.sphere.sdk.types.TypeDraft;
 import io.sphere.sdk.types.TypeDraftBuilder;
 import io.sphere.sdk.types.commands.TypeCreateCommand;
 import io.sphere.sdk.types.commands.TypeDeleteCommand;
 import io.sphere.sdk.types.queries.TypeQuery;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.executeBlocking;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * @author Jan Wolter
@@ -76,6 +98,19 @@ public class CustomTypeBuilder {
         }
     }
 
+    /**
+     * Custom object which stores the fingerprint of the created type definitions.
+     */
+    static final String FINGERPRINT_CONTAINER = "commercetools-payone-integration";
+    static final String FINGERPRINT_KEY = "custom-types-fingerprint";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CustomTypeBuilder.class);
+
+    /**
+     * Code of the commercetools error on creating a resource with an existing key.
+     */
+    static final String DUPLICATE_FIELD_ERROR_CODE = "DuplicateField";
+
     private final BlockingSphereClient ctpClient;
     private final PermissionToStartFromScratch permissionToStartFromScratch;
 
@@ -84,6 +119,14 @@ public class CustomTypeBuilder {
         this.permissionToStartFromScratch = permissionToErase;
     }
 
+    /**
+     * Creates the custom types which don't exist yet (after erasing everything, if permitted).
+     * <p>
+     * The fingerprint of the type definitions is stored in a custom object after the types are created. If the stored
+     * fingerprint matches the current definitions, the types have been created by a previous run and nothing is
+     * queried or created at all. Thus a type which is deleted manually is re-created only after the fingerprint custom
+     * object is deleted too (or the type definitions change).
+     */
     public void run() {
         switch (permissionToStartFromScratch) {
             case GRANTED:
@@ -94,8 +137,19 @@ public class CustomTypeBuilder {
                 break;
         }
 
-        createPaymentProviderAgnosticTypes();
-        createPayoneSpecificTypes();
+        final List<TypeDraft> typeDrafts = new ArrayList<>();
+        typeDrafts.addAll(createPaymentProviderAgnosticTypes());
+        typeDrafts.addAll(createPayoneSpecificTypes());
+
+        final String fingerprint = calculateFingerprint(typeDrafts);
+        if (permissionToStartFromScratch == PermissionToStartFromScratch.DENIED
+                && fingerprint.equals(fetchStoredFingerprint())) {
+            LOG.info("Custom types are up to date (fingerprint {}), skip creating them", fingerprint);
+            return;
+        }
+
+        createMissingTypes(typeDrafts);
+        storeFingerprint(fingerprint);
     }
 
     public PermissionToStartFromScratch getPermissionToStartFromScratch() {
@@ -120,8 +174,9 @@ public class CustomTypeBuilder {
                 .forEach(type -> ctpClient.executeBlocking(TypeDeleteCommand.of(type)));
     }
 
-    private void createPaymentProviderAgnosticTypes() {
-        createPaymentCustomType(PAYMENT_CREDIT_CARD, Arrays.asList(
+    private List<TypeDraft> createPaymentProviderAgnosticTypes() {
+        return Arrays.asList(
+            createPaymentCustomType(PAYMENT_CREDIT_CARD, Arrays.asList(
                 createSingleLineStringFieldDefinition(CustomFieldKeys.LANGUAGE_CODE_FIELD, FieldClassifier.REQUIRED),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.REFERENCE_FIELD, FieldClassifier.REQUIRED),
                 createMultiLineStringFieldDefinition(CustomFieldKeys.REFERENCE_TEXT_FIELD, FieldClassifier.OPTIONAL),
@@ -135,9 +190,9 @@ public class CustomTypeBuilder {
                 createSingleLineStringFieldDefinition(CustomFieldKeys.CARD_HOLDER_NAME_FIELD, FieldClassifier.OPTIONAL),
                 createFieldDefinition(DateFieldType.of(), CustomFieldKeys.CARD_EXPIRY_DATE_FIELD, null, FieldClassifier.OPTIONAL),
                 createFieldDefinition(EnumFieldType.of(CreditCardNetwork.getValuesAsListOfEnumValue()), CustomFieldKeys.CARD_NETWORK_FIELD, null, FieldClassifier.OPTIONAL)
-        ));
+        )),
 
-        createPaymentCustomType(PAYMENT_WALLET, Arrays.asList(
+            createPaymentCustomType(PAYMENT_WALLET, Arrays.asList(
                 createSingleLineStringFieldDefinition(CustomFieldKeys.LANGUAGE_CODE_FIELD, FieldClassifier.REQUIRED),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.REFERENCE_FIELD, FieldClassifier.REQUIRED),
                 createMultiLineStringFieldDefinition(CustomFieldKeys.REFERENCE_TEXT_FIELD, FieldClassifier.OPTIONAL),
@@ -145,9 +200,9 @@ public class CustomTypeBuilder {
                 createSingleLineStringFieldDefinition(CustomFieldKeys.SUCCESS_URL_FIELD, FieldClassifier.OPTIONAL),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.ERROR_URL_FIELD, FieldClassifier.OPTIONAL),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.CANCEL_URL_FIELD, FieldClassifier.OPTIONAL)
-        ));
+        )),
 
-        createPaymentCustomType(PAYMENT_BANK_TRANSFER, Arrays.asList(
+            createPaymentCustomType(PAYMENT_BANK_TRANSFER, Arrays.asList(
                 createSingleLineStringFieldDefinition(CustomFieldKeys.LANGUAGE_CODE_FIELD, FieldClassifier.REQUIRED),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.REFERENCE_FIELD, FieldClassifier.REQUIRED),
                 createMultiLineStringFieldDefinition(CustomFieldKeys.REFERENCE_TEXT_FIELD, FieldClassifier.OPTIONAL),
@@ -159,9 +214,9 @@ public class CustomTypeBuilder {
                 createSingleLineStringFieldDefinition(CustomFieldKeys.BIC_FIELD, FieldClassifier.OPTIONAL),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.BANK_GROUP_TYPE, FieldClassifier.OPTIONAL),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.BANK_COUNTRY, FieldClassifier.OPTIONAL)
-        ));
+        )),
 
-        createPaymentCustomType(PAYMENT_CASH_ADVANCE, Arrays.asList(
+            createPaymentCustomType(PAYMENT_CASH_ADVANCE, Arrays.asList(
                 createSingleLineStringFieldDefinition(CustomFieldKeys.LANGUAGE_CODE_FIELD, FieldClassifier.REQUIRED),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.REFERENCE_FIELD, FieldClassifier.REQUIRED),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.PAID_FROM_NAME_FIELD, FieldClassifier.OPTIONAL),
@@ -173,9 +228,9 @@ public class CustomTypeBuilder {
                 createSingleLineStringFieldDefinition(CustomFieldKeys.PAY_TO_NAME_FIELD, FieldClassifier.OPTIONAL),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.PAY_TO_IBAN_FIELD, FieldClassifier.OPTIONAL),
                 createSingleLineStringFieldDefinition(CustomFieldKeys.PAY_TO_BIC_FIELD, FieldClassifier.OPTIONAL)
-        ));
+        )),
 
-        createPaymentCustomType(PAYMENT_INVOICE_KLARNA, Arrays.asList(
+            createPaymentCustomType(PAYMENT_INVOICE_KLARNA, Arrays.asList(
             createSingleLineStringFieldDefinition(CustomFieldKeys.LANGUAGE_CODE_FIELD, FieldClassifier.OPTIONAL),
             createSingleLineStringFieldDefinition(CustomFieldKeys.REFERENCE_FIELD, FieldClassifier.OPTIONAL),
             createSingleLineStringFieldDefinition(CustomFieldKeys.GENDER_FIELD, FieldClassifier.OPTIONAL),
@@ -191,43 +246,44 @@ public class CustomTypeBuilder {
             createSingleLineStringFieldDefinition(CustomFieldKeys.ERROR_URL_FIELD, FieldClassifier.OPTIONAL),
             createSingleLineStringFieldDefinition(CustomFieldKeys.BACK_URL_FIELD, FieldClassifier.OPTIONAL),
             createSingleLineStringFieldDefinition(CustomFieldKeys.WORK_ORDER_ID_FIELD, FieldClassifier.OPTIONAL)
-        ));
+        )));
     }
 
-    private void createPayoneSpecificTypes() {
+    private List<TypeDraft> createPayoneSpecificTypes() {
         final FieldDefinition timestampField = createSingleLineStringFieldDefinition(CustomFieldKeys.TIMESTAMP_FIELD, FieldClassifier.REQUIRED);
         final FieldDefinition transactionIdField = createSingleLineStringFieldDefinition(CustomFieldKeys.TRANSACTION_ID_FIELD, FieldClassifier.REQUIRED);
 
-        createInteractionRequest(timestampField, transactionIdField);
-        createInteractionResponse(timestampField, transactionIdField);
-        createInteractionRedirect(timestampField, transactionIdField);
-        createInteractionNotification(timestampField);
-        createInteractionTemporaryError(timestampField, transactionIdField);
-        createPayoneUnsupportedTransaction(timestampField, transactionIdField);
+        return Arrays.asList(
+            createInteractionRequest(timestampField, transactionIdField),
+            createInteractionResponse(timestampField, transactionIdField),
+            createInteractionRedirect(timestampField, transactionIdField),
+            createInteractionNotification(timestampField),
+            createInteractionTemporaryError(timestampField, transactionIdField),
+            createPayoneUnsupportedTransaction(timestampField, transactionIdField));
     }
 
-    private Type createInteractionRequest(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
+    private TypeDraft createInteractionRequest(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
         return createInterfaceInteractionType(PAYONE_INTERACTION_REQUEST, Arrays.asList(timestampField, transactionIdField,
             createMultiLineStringFieldDefinition(CustomFieldKeys.REQUEST_FIELD,  FieldClassifier.REQUIRED)));
     }
 
-    private Type createInteractionResponse(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
+    private TypeDraft createInteractionResponse(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
         return createInterfaceInteractionType(PAYONE_INTERACTION_RESPONSE, Arrays.asList(timestampField, transactionIdField,
             createMultiLineStringFieldDefinition(CustomFieldKeys.RESPONSE_FIELD, FieldClassifier.REQUIRED)));
     }
 
-    private Type createInteractionRedirect(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
+    private TypeDraft createInteractionRedirect(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
         return createInterfaceInteractionType(PAYONE_INTERACTION_REDIRECT,
                 Arrays.asList(timestampField, transactionIdField,
                     createSingleLineStringFieldDefinition(CustomFieldKeys.REDIRECT_URL_FIELD, FieldClassifier.REQUIRED), createMultiLineStringFieldDefinition(CustomFieldKeys.RESPONSE_FIELD, FieldClassifier.REQUIRED)));
     }
 
-    private Type createInteractionTemporaryError(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
+    private TypeDraft createInteractionTemporaryError(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
         return createInterfaceInteractionType(PAYONE_INTERACTION_TEMPORARY_ERROR, Arrays.asList(timestampField,
             transactionIdField, createMultiLineStringFieldDefinition(CustomFieldKeys.RESPONSE_FIELD, FieldClassifier.REQUIRED)));
     }
 
-    private Type createInteractionNotification(final FieldDefinition timestampField) {
+    private TypeDraft createInteractionNotification(final FieldDefinition timestampField) {
         final FieldDefinition sequenceNumberField = createSingleLineStringFieldDefinition(CustomFieldKeys.SEQUENCE_NUMBER_FIELD, FieldClassifier.REQUIRED);
         final FieldDefinition txActionField = createSingleLineStringFieldDefinition(CustomFieldKeys.TX_ACTION_FIELD, FieldClassifier.REQUIRED);
         final FieldDefinition notificationField = createMultiLineStringFieldDefinition(CustomFieldKeys.NOTIFICATION_FIELD, FieldClassifier.REQUIRED);
@@ -237,38 +293,114 @@ public class CustomTypeBuilder {
             txActionField, notificationField));
     }
 
-    private Type createPayoneUnsupportedTransaction(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
+    private TypeDraft createPayoneUnsupportedTransaction(final FieldDefinition timestampField, final FieldDefinition transactionIdField) {
         return createInterfaceInteractionType(PAYONE_UNSUPPORTED_TRANSACTION, Arrays.asList(timestampField,
             transactionIdField,
             createSingleLineStringFieldDefinition(CustomFieldKeys.MESSAGE_FIELD, FieldClassifier.REQUIRED)));
     }
 
-    private Type createInterfaceInteractionType(final String typeKey, final List<FieldDefinition> fieldDefinitions) {
+    private TypeDraft createInterfaceInteractionType(final String typeKey, final List<FieldDefinition> fieldDefinitions) {
         return createType(typeKey, fieldDefinitions, AddInterfaceInteraction.resourceTypeId());
     }
 
-    private Type createPaymentCustomType(final String typeKey, final List<FieldDefinition> fieldDefinitions) {
+    private TypeDraft createPaymentCustomType(final String typeKey, final List<FieldDefinition> fieldDefinitions) {
         return createType(typeKey, fieldDefinitions, Payment.resourceTypeId());
     }
 
-    private Type createType(final String typeKey, final List<FieldDefinition> fieldDefinitions, final String resourceTypeId) {
-        // TODO replace with cache
-        final PagedQueryResult<Type> result = ctpClient.executeBlocking(
-                TypeQuery.of()
-                        .withPredicates(m -> m.key().is(typeKey))
-                        .withLimit(1));
-
-        if (result.getTotal() == 0) {
-            return ctpClient.executeBlocking(TypeCreateCommand.of(TypeDraftBuilder.of(
-                    typeKey,
-                    LocalizedString.ofEnglish(typeKey),
-                    Collections.singleton(resourceTypeId))
-                    .fieldDefinitions(
-                            fieldDefinitions)
-                    .build()));
+    private TypeDraft createType(final String typeKey, final List<FieldDefinition> fieldDefinitions, final String resourceTypeId) {
+        return TypeDraftBuilder.of(
+                typeKey,
+                LocalizedString.ofEnglish(typeKey),
+                Collections.singleton(resourceTypeId))
+                .fieldDefinitions(
+                        fieldDefinitions)
+                .build();
+    }
+
+    /**
+     * Fetches all the required types in one query and creates the missing ones in parallel.
+     * <p>
+     * Another tenant of the same commercetools project (e.g. activated at the same time) might create a type
+     * concurrently, then the create fails with a duplicate key. Such a type counts as created if it is found by a
+     * second query.
+     */
+    private void createMissingTypes(final List<TypeDraft> typeDrafts) {
+        final List<String> typeKeys = typeDrafts.stream().map(TypeDraft::getKey).collect(toList());
+        final Set<String> existingTypeKeys = queryExistingTypeKeys(typeKeys);
+
+        final List<String> concurrentlyCreatedTypeKeys = Collections.synchronizedList(new ArrayList<>());
+        final CompletableFuture<?>[] creates = typeDrafts.stream()
+                .filter(typeDraft -> !existingTypeKeys.contains(typeDraft.getKey()))
+                .peek(typeDraft -> LOG.info("Create custom type {}", typeDraft.getKey()))
+                .map(typeDraft -> ctpClient.execute(TypeCreateCommand.of(typeDraft)).toCompletableFuture()
+                        .exceptionally(throwable -> {
+                            final Throwable cause = unwrapCompletionException(throwable);
+                            if (!isDuplicateKey(cause)) {
+                                throw new CompletionException(cause);
+                            }
+                            LOG.info("Custom type {} is created concurrently", typeDraft.getKey());
+                            concurrentlyCreatedTypeKeys.add(typeDraft.getKey());
+                            return null;
+                        }))
+                .toArray(CompletableFuture[]::new);
+
+        executeBlocking(CompletableFuture.allOf(creates));
+
+        if (!concurrentlyCreatedTypeKeys.isEmpty()) {
+            final Set<String> createdTypeKeys = queryExistingTypeKeys(concurrentlyCreatedTypeKeys);
+            final List<String> missingTypeKeys = concurrentlyCreatedTypeKeys.stream()
+                    .filter(typeKey -> !createdTypeKeys.contains(typeKey))
+                    .collect(toList());
+            if (!missingTypeKeys.isEmpty()) {
+                throw new IllegalStateException(format(
+                        "Custom types %s can't be created: their keys are duplicated, but they are not found",
+                        missingTypeKeys));
+            }
         }
-        else {
-            return result.getResults().get(0);
+    }
+
+    private Set<String> queryExistingTypeKeys(final List<String> typeKeys) {
+        return ctpClient.executeBlocking(
+                TypeQuery.of()
+                        .withPredicates(m -> m.key().isIn(typeKeys))
+                        .withLimit(typeKeys.size()))
+                .getResults().stream()
+                .map(Type::getKey)
+                .collect(toSet());
+    }
+
+    private static boolean isDuplicateKey(final Throwable throwable) {
+        return throwable instanceof ErrorResponseException
+                && ((ErrorResponseException) throwable).getErrors().stream()
+                        .anyMatch(error -> DUPLICATE_FIELD_ERROR_CODE.equals(error.getCode()));
+    }
+
+    @Nullable
+    private String fetchStoredFingerprint() {
+        final CustomObject<String> fingerprint = ctpClient.executeBlocking(
+                CustomObjectByKeyGet.of(FINGERPRINT_CONTAINER, FINGERPRINT_KEY, String.class));
+        return fingerprint != null ? fingerprint.getValue() : null;
+    }
+
+    private void storeFingerprint(final String fingerprint) {
+        ctpClient.executeBlocking(CustomObjectUpsertCommand.of(
+                CustomObjectDraft.ofUnversionedUpsert(FINGERPRINT_CONTAINER, FINGERPRINT_KEY, fingerprint, String.class)));
+    }
+
+    /**
+     * @return hex SHA-256 of the JSON representation of the type drafts
+     */
+    static String calculateFingerprint(final List<TypeDraft> typeDrafts) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(SphereJsonUtils.toJsonString(typeDrafts).getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
         }
     }
 
@@ -0,0 +1,34 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Store of the large fields of the interface interactions, which are replaced on the payment by a reference.
+ *
+ * @see InterfaceInteractionArchivingSphereClient
+ * @see CustomObjectInterfaceInteractionArchive
+ */
+@FunctionalInterface
+public interface InterfaceInteractionArchive {
+
+    /**
+     * Stores the fields of an interface interaction which is added to the payment. Storing the same interaction
+     * again (e.g. when the payment update is retried) must replace the stored fields and return the same reference.
+     *
+     * @param paymentId     id of the payment
+     * @param typeKey       key (or id, if the interaction has no type key) of the interaction type
+     * @param interactionId identifies the interaction among the interactions of the same type of the payment, like
+     *                      the transaction id or the notification sequence number with a hash of the fields
+     * @param fields        fields to store, by name
+     * @return stage completed with the reference of the stored fields
+     */
+    @Nonnull
+    CompletionStage<String> archive(@Nonnull String paymentId,
+                                    @Nonnull String typeKey,
+                                    @Nonnull String interactionId,
+                                    @Nonnull Map<String, JsonNode> fields);
+}
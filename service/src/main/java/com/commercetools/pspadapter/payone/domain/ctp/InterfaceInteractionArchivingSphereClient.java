@@ -0,0 +1,179 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.sphere.sdk.client.SphereClient;
+import io.sphere.sdk.client.SphereClientDecorator;
+import io.sphere.sdk.client.SphereRequest;
+import io.sphere.sdk.commands.UpdateAction;
+import io.sphere.sdk.models.ResourceIdentifier;
+import io.sphere.sdk.payments.Payment;
+import io.sphere.sdk.payments.commands.PaymentUpdateCommand;
+import io.sphere.sdk.payments.commands.updateactions.AddInterfaceInteraction;
+import io.sphere.sdk.types.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link SphereClient} which keeps the payments small: before a {@link PaymentUpdateCommand} is executed, the
+ * {@link CustomFieldKeys#REQUEST_FIELD request}, {@link CustomFieldKeys#RESPONSE_FIELD response} and
+ * {@link CustomFieldKeys#NOTIFICATION_FIELD notification} fields of the added interface interactions, which are
+ * longer than {@value #MAX_INLINE_LENGTH} characters, are stored in an {@link InterfaceInteractionArchive}. The
+ * interaction on the payment gets {@value #ARCHIVED_VALUE_PREFIX} followed by the archive reference instead. The
+ * interaction is identified in the archive by its transaction id, or by the sequence number and the txaction of a
+ * notification, together with a hash of the archived fields: a retried update archives into the same place, but the
+ * notifications which differ only in the transaction status (like {@code appointed} pending and then completed) are
+ * archived separately.
+ * <p>
+ * The other fields of the interactions, like the transaction id, the sequence number and the timestamp, stay on the
+ * payment, thus the executors see exactly the same executed transactions and sequence numbers as without archiving.
+ * <p>
+ * The interactions which are already on a payment are not changed: commercetools can't remove interface
+ * interactions. If the interaction can't be archived, it is added to the payment as it is. If the payment update
+ * fails (e.g. on a concurrent modification), the archived fields remain in the archive without a reference.
+ */
+public class InterfaceInteractionArchivingSphereClient extends SphereClientDecorator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterfaceInteractionArchivingSphereClient.class);
+
+    static final int MAX_INLINE_LENGTH = 256;
+
+    public static final String ARCHIVED_VALUE_PREFIX = "archived:";
+
+    private static final List<String> ARCHIVED_FIELDS = Arrays.asList(
+            CustomFieldKeys.REQUEST_FIELD,
+            CustomFieldKeys.RESPONSE_FIELD,
+            CustomFieldKeys.NOTIFICATION_FIELD);
+
+    private final InterfaceInteractionArchive archive;
+
+    InterfaceInteractionArchivingSphereClient(@Nonnull final SphereClient delegate,
+                                              @Nonnull final InterfaceInteractionArchive archive) {
+        super(delegate);
+        this.archive = archive;
+    }
+
+    /**
+     * @param delegate client which executes the requests
+     * @return client which archives the interactions in custom objects, see
+     * {@link CustomObjectInterfaceInteractionArchive}
+     */
+    public static SphereClient of(@Nonnull final SphereClient delegate) {
+        return new InterfaceInteractionArchivingSphereClient(delegate,
+                new CustomObjectInterfaceInteractionArchive(delegate));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletionStage<T> execute(final SphereRequest<T> sphereRequest) {
+        if (sphereRequest instanceof PaymentUpdateCommand) {
+            return (CompletionStage<T>) archiveInteractions((PaymentUpdateCommand) sphereRequest)
+                    .thenCompose(command -> super.execute(command));
+        }
+        return super.execute(sphereRequest);
+    }
+
+    private CompletionStage<PaymentUpdateCommand> archiveInteractions(@Nonnull final PaymentUpdateCommand command) {
+        final String paymentId = command.getVersioned().getId();
+        boolean archived = false;
+        final List<CompletableFuture<UpdateAction<Payment>>> updateActions = new ArrayList<>();
+        for (final UpdateAction<Payment> updateAction : command.getUpdateActions()) {
+            if (updateAction instanceof AddInterfaceInteraction
+                    && !getFieldsToArchive((AddInterfaceInteraction) updateAction).isEmpty()) {
+                archived = true;
+                updateActions.add(archiveInteraction(paymentId, (AddInterfaceInteraction) updateAction)
+                        .toCompletableFuture());
+            } else {
+                updateActions.add(CompletableFuture.completedFuture(updateAction));
+            }
+        }
+        if (!archived) {
+            return CompletableFuture.completedFuture(command);
+        }
+
+        return CompletableFuture.allOf(updateActions.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> PaymentUpdateCommand.of(command.getVersioned(),
+                        updateActions.stream().map(CompletableFuture::join).collect(toList()))
+                        .withExpansionPaths(command.expansionPaths()));
+    }
+
+    private CompletionStage<UpdateAction<Payment>> archiveInteraction(@Nonnull final String paymentId,
+                                                                      @Nonnull final AddInterfaceInteraction action) {
+        final ResourceIdentifier<Type> type = action.getFields().getType();
+        final String typeKey = type.getKey() != null ? type.getKey() : type.getId();
+        final Map<String, JsonNode> fieldsToArchive = getFieldsToArchive(action);
+
+        return archive.archive(paymentId, typeKey, getInteractionId(action, fieldsToArchive), fieldsToArchive)
+                .<UpdateAction<Payment>>thenApply(reference -> {
+                    final Map<String, JsonNode> fields = new HashMap<>(action.getFields().getFields());
+                    final TextNode archivedValue = TextNode.valueOf(ARCHIVED_VALUE_PREFIX + reference);
+                    fieldsToArchive.keySet().forEach(name -> fields.put(name, archivedValue));
+                    return type.getKey() != null
+                            ? AddInterfaceInteraction.ofTypeKeyAndJson(type.getKey(), fields)
+                            : AddInterfaceInteraction.ofTypeIdAndJson(type.getId(), fields);
+                })
+                .exceptionally(throwable -> {
+                    LOG.warn("Can't archive the [{}] interface interaction of payment [{}], add it unchanged",
+                            typeKey, paymentId, throwable);
+                    return action;
+                });
+    }
+
+    /**
+     * @return the transaction id, or the sequence number and the txaction of a notification, followed by a name based
+     * UUID of the archived fields. Interactions which have none of them are identified by the UUID only.
+     */
+    static String getInteractionId(@Nonnull final AddInterfaceInteraction action,
+                                   @Nonnull final Map<String, JsonNode> fieldsToArchive) {
+        final String contentId = UUID.nameUUIDFromBytes(fieldsToArchive.toString().getBytes(StandardCharsets.UTF_8))
+                .toString();
+        final Map<String, JsonNode> fields = action.getFields().getFields();
+        final String transactionId = getText(fields, CustomFieldKeys.TRANSACTION_ID_FIELD);
+        if (transactionId != null) {
+            return transactionId + "-" + contentId;
+        }
+        final String sequenceNumber = getText(fields, CustomFieldKeys.SEQUENCE_NUMBER_FIELD);
+        if (sequenceNumber != null) {
+            final String txAction = getText(fields, CustomFieldKeys.TX_ACTION_FIELD);
+            return (txAction != null ? sequenceNumber + "-" + txAction : sequenceNumber) + "-" + contentId;
+        }
+        return contentId;
+    }
+
+    @Nullable
+    private static String getText(@Nonnull final Map<String, JsonNode> fields, @Nonnull final String name) {
+        final JsonNode value = fields.get(name);
+        return value != null && value.isValueNode() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+
+    private static Map<String, JsonNode> getFieldsToArchive(@Nonnull final AddInterfaceInteraction action) {
+        final Map<String, JsonNode> fields = action.getFields().getFields();
+        final Map<String, JsonNode> fieldsToArchive = new LinkedHashMap<>();
+        if (fields == null) {
+            return fieldsToArchive;
+        }
+        for (final String name : ARCHIVED_FIELDS) {
+            final JsonNode value = fields.get(name);
+            if (value != null && value.isTextual() && value.textValue().length() > MAX_INLINE_LENGTH) {
+                fieldsToArchive.put(name, value);
+            }
+        }
+        return fieldsToArchive;
+    }
+}
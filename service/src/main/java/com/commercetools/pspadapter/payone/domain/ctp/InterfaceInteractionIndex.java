@@ -0,0 +1,163 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
+import io.sphere.sdk.payments.Payment;
+import io.sphere.sdk.payments.Transaction;
+import io.sphere.sdk.types.CustomFields;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the interface interactions of one payment version, so the transaction executors don't scan all the
+ * interactions of the payment on every check: the interactions are grouped by type id once, the field values which
+ * are looked up are collected into sets on the first lookup of a type.
+ * <p>
+ * Get it from {@link PaymentWithCartLike#getInterfaceInteractionIndex()}, which builds it once per payment version.
+ */
+public final class InterfaceInteractionIndex {
+
+    private final Payment payment;
+    private final Map<String, List<CustomFields>> interactionsByTypeId;
+
+    private final ConcurrentMap<String, Set<String>> transactionIdsByTypeId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> sequenceNumbersByTypeId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OptionalInt> maxNotificationSequenceNumberByTypeId =
+            new ConcurrentHashMap<>();
+    private volatile OptionalInt maxTransactionSequenceNumber;
+
+    InterfaceInteractionIndex(@Nonnull final Payment payment) {
+        this.payment = payment;
+        final Map<String, List<CustomFields>> interactions = new HashMap<>();
+        for (final CustomFields interaction : payment.getInterfaceInteractions()) {
+            interactions.computeIfAbsent(interaction.getType().getId(), typeId -> new ArrayList<>()).add(interaction);
+        }
+        this.interactionsByTypeId = interactions;
+    }
+
+    /**
+     * @param typeId id of the interaction type
+     * @return the interactions of the type in the payment order, empty if there are none
+     */
+    @Nonnull
+    public List<CustomFields> getInteractionsOfType(@Nonnull final String typeId) {
+        return Collections.unmodifiableList(interactionsByTypeId.getOrDefault(typeId, Collections.emptyList()));
+    }
+
+    /**
+     * @param typeId        id of the interaction type, e.g. of the Payone responses
+     * @param transactionId id of the commercetools transaction
+     * @return <b>true</b> if an interaction of the type has the {@link CustomFieldKeys#TRANSACTION_ID_FIELD}
+     */
+    public boolean hasTransactionId(@Nonnull final String typeId, @Nullable final String transactionId) {
+        return transactionIdsByTypeId
+                .computeIfAbsent(typeId, key -> collectFieldValues(key, CustomFieldKeys.TRANSACTION_ID_FIELD))
+                .contains(transactionId);
+    }
+
+    /**
+     * @param typeId         id of the interaction type, e.g. of the Payone notifications
+     * @param sequenceNumber Payone sequence number
+     * @return <b>true</b> if an interaction of the type has the {@link CustomFieldKeys#SEQUENCE_NUMBER_FIELD}
+     */
+    public boolean hasSequenceNumber(@Nonnull final String typeId, @Nullable final String sequenceNumber) {
+        return sequenceNumbersByTypeId
+                .computeIfAbsent(typeId, key -> collectFieldValues(key, CustomFieldKeys.SEQUENCE_NUMBER_FIELD))
+                .contains(sequenceNumber);
+    }
+
+    /**
+     * @return <b>true</b> if the payment has interface interactions
+     */
+    public boolean hasInteractions() {
+        return !interactionsByTypeId.isEmpty();
+    }
+
+    /**
+     * @param notificationTypeId id of the interaction type of the Payone notifications, <b>null</b> to consider the
+     *                           transactions only
+     * @return the highest integer sequence number of the notifications and the interaction ids of the transactions,
+     * empty if there is none
+     */
+    @Nonnull
+    public OptionalInt getMaxSequenceNumber(@Nullable final String notificationTypeId) {
+        OptionalInt transactionMax = maxTransactionSequenceNumber;
+        if (transactionMax == null) {
+            transactionMax = payment.getTransactions().stream()
+                    .map(Transaction::getInteractionId)
+                    .map(StringUtils::trim)
+                    .map(InterfaceInteractionIndex::parseSequenceNumber)
+                    .filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue)
+                    .max();
+            maxTransactionSequenceNumber = transactionMax;
+        }
+        if (notificationTypeId == null) {
+            return transactionMax;
+        }
+
+        final OptionalInt notificationMax = maxNotificationSequenceNumberByTypeId.computeIfAbsent(notificationTypeId,
+                typeId -> getInteractionsOfType(typeId).stream()
+                        .map(notification -> notification.getFieldAsString(CustomFieldKeys.SEQUENCE_NUMBER_FIELD))
+                        .map(InterfaceInteractionIndex::parseSequenceNumber)
+                        .filter(Objects::nonNull)
+                        .mapToInt(Integer::intValue)
+                        .max());
+        if (!notificationMax.isPresent()) {
+            return transactionMax;
+        }
+        if (!transactionMax.isPresent()) {
+            return notificationMax;
+        }
+        return OptionalInt.of(Math.max(transactionMax.getAsInt(), notificationMax.getAsInt()));
+    }
+
+    private Set<String> collectFieldValues(final String typeId, final String fieldName) {
+        final Set<String> values = new HashSet<>();
+        for (final CustomFields interaction : getInteractionsOfType(typeId)) {
+            final String value = interaction.getFieldAsString(fieldName);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the integer value of {@code sequenceNumber}, <b>null</b> if it isn't an integer
+     */
+    @Nullable
+    static Integer parseSequenceNumber(@Nullable final String sequenceNumber) {
+        if (sequenceNumber == null || sequenceNumber.isEmpty()) {
+            return null;
+        }
+        final int start = sequenceNumber.charAt(0) == '-' ? 1 : 0;
+        if (start == sequenceNumber.length()) {
+            return null;
+        }
+        for (int i = start; i < sequenceNumber.length(); i++) {
+            final char c = sequenceNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        try {
+            return Integer.valueOf(sequenceNumber);
+        } catch (NumberFormatException e) {
+            // out of the int range
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import io.sphere.sdk.messages.Message;
+
+import javax.annotation.Nonnull;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Position in the commercetools messages of a project, which are ordered by {@code createdAt} and then by {@code id}.
+ * <p>
+ * The next page of messages is queried after the last message of the previous page, so the query cost doesn't
+ * grow with the number of the messages already read, unlike with an {@code offset}.
+ */
+public final class MessageCursor implements Comparable<MessageCursor> {
+
+    private static final Comparator<MessageCursor> ORDER = Comparator
+            .comparing((MessageCursor cursor) -> cursor.createdAt.toInstant())
+            .thenComparing(cursor -> cursor.id);
+
+    private final ZonedDateTime createdAt;
+    private final String id;
+
+    private MessageCursor(@Nonnull final ZonedDateTime createdAt, @Nonnull final String id) {
+        this.createdAt = createdAt.withZoneSameInstant(ZoneOffset.UTC);
+        this.id = id;
+    }
+
+    /**
+     * @param createdAt creation time of the message
+     * @param id        id of the message, or an empty string for the position before all the messages created at
+     *                  {@code createdAt}
+     */
+    @Nonnull
+    public static MessageCursor of(@Nonnull final ZonedDateTime createdAt, @Nonnull final String id) {
+        return new MessageCursor(createdAt, id);
+    }
+
+    /**
+     * @return position of {@code message}, the messages after it follow it
+     */
+    @Nonnull
+    public static MessageCursor of(@Nonnull final Message message) {
+        return new MessageCursor(message.getCreatedAt(), message.getId());
+    }
+
+    @Nonnull
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    @Nonnull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return query predicate of the messages after this position
+     */
+    @Nonnull
+    String toAfterPredicate() {
+        final String timestamp = formatTimestamp(createdAt);
+        return String.format("createdAt > \"%s\" or (createdAt = \"%s\" and id > \"%s\")", timestamp, timestamp, id);
+    }
+
+    @Nonnull
+    static String formatTimestamp(@Nonnull final ZonedDateTime dateTime) {
+        return DateTimeFormatter.ISO_INSTANT.format(dateTime);
+    }
+
+    @Override
+    public int compareTo(@Nonnull final MessageCursor other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final MessageCursor that = (MessageCursor) o;
+        return createdAt.toInstant().equals(that.createdAt.toInstant()) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(createdAt.toInstant(), id);
+    }
+
+    @Override
+    public String toString() {
+        return formatTimestamp(createdAt) + " " + id;
+    }
+}
@@ -0,0 +1,119 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the results of the predicate queries of a tenant, so the next lookups are requests by id:<ul>
+ * <li>payment id to the id of the order or cart which references the payment</li>
+ * <li>Payone {@code txid} (payment interface id) to the payment id</li>
+ * <li>payment ids which don't exist, for {@link #UNKNOWN_PAYMENT_EXPIRE_SECONDS} seconds only</li>
+ * </ul>
+ * The cached ids are hints: the callers verify the fetched resource still matches and query again otherwise.
+ */
+public class PaymentLookupCache {
+
+    static final long MAXIMUM_SIZE = 10_000;
+
+    static final long CART_LIKE_EXPIRE_MINUTES = 60;
+
+    /**
+     * Payone sends the notifications of a transaction during days, e.g. when a prepayment is paid.
+     */
+    static final long INTERFACE_ID_EXPIRE_MINUTES = 7 * 24 * 60;
+
+    static final long UNKNOWN_PAYMENT_EXPIRE_SECONDS = 30;
+
+    private final Cache<String, String> orderIdsByPaymentId;
+    private final Cache<String, String> cartIdsByPaymentId;
+    private final Cache<String, String> paymentIdsByInterfaceId;
+    private final Cache<String, Boolean> unknownPaymentIds;
+
+    public PaymentLookupCache() {
+        this(Ticker.systemTicker());
+    }
+
+    PaymentLookupCache(@Nonnull final Ticker ticker) {
+        this.orderIdsByPaymentId = newCache(ticker, CART_LIKE_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        this.cartIdsByPaymentId = newCache(ticker, CART_LIKE_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        this.paymentIdsByInterfaceId = newCache(ticker, INTERFACE_ID_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        this.unknownPaymentIds = newCache(ticker, UNKNOWN_PAYMENT_EXPIRE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static <V> Cache<String, V> newCache(final Ticker ticker, final long duration, final TimeUnit unit) {
+        return Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(duration, unit)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Nullable
+    public String getOrderId(@Nonnull final String paymentId) {
+        return orderIdsByPaymentId.getIfPresent(paymentId);
+    }
+
+    /**
+     * Remembers the order of the payment, the cart of the payment is not needed anymore.
+     */
+    public void putOrderId(@Nonnull final String paymentId, @Nonnull final String orderId) {
+        orderIdsByPaymentId.put(paymentId, orderId);
+        cartIdsByPaymentId.invalidate(paymentId);
+    }
+
+    public void invalidateOrderId(@Nonnull final String paymentId) {
+        orderIdsByPaymentId.invalidate(paymentId);
+    }
+
+    @Nullable
+    public String getCartId(@Nonnull final String paymentId) {
+        return cartIdsByPaymentId.getIfPresent(paymentId);
+    }
+
+    public void putCartId(@Nonnull final String paymentId, @Nonnull final String cartId) {
+        cartIdsByPaymentId.put(paymentId, cartId);
+    }
+
+    public void invalidateCartId(@Nonnull final String paymentId) {
+        cartIdsByPaymentId.invalidate(paymentId);
+    }
+
+    @Nullable
+    public String getPaymentId(@Nonnull final String interfaceId) {
+        return paymentIdsByInterfaceId.getIfPresent(interfaceId);
+    }
+
+    public void putPaymentId(@Nonnull final String interfaceId, @Nonnull final String paymentId) {
+        paymentIdsByInterfaceId.put(interfaceId, paymentId);
+    }
+
+    public void invalidatePaymentId(@Nonnull final String interfaceId) {
+        paymentIdsByInterfaceId.invalidate(interfaceId);
+    }
+
+    /**
+     * @return <b>true</b> if the payment was not found within the last {@link #UNKNOWN_PAYMENT_EXPIRE_SECONDS} seconds
+     */
+    public boolean isUnknownPayment(@Nonnull final String paymentId) {
+        return unknownPaymentIds.getIfPresent(paymentId) != null;
+    }
+
+    public void putUnknownPayment(@Nonnull final String paymentId) {
+        unknownPaymentIds.put(paymentId, Boolean.TRUE);
+    }
+
+    /**
+     * Removes all the entries, e.g. when the tenant is released.
+     */
+    public void invalidateAll() {
+        orderIdsByPaymentId.invalidateAll();
+        cartIdsByPaymentId.invalidateAll();
+        paymentIdsByInterfaceId.invalidateAll();
+        unknownPaymentIds.invalidateAll();
+    }
+}
@@ -21,6 +21,11 @@ public class PaymentWithCartLike {
     private final CartLike<?> cartLike;
     private final String reference;
 
+    /**
+     * Built on the first use, the payment doesn't change.
+     */
+    private volatile InterfaceInteractionIndex interfaceInteractionIndex;
+
     /**
      * Creates a wrapper object for a payment and the belonging order/cart.
      *
@@ -51,6 +56,19 @@ public class PaymentWithCartLike {
         return reference;
     }
 
+    /**
+     * @return index of the interface interactions of the payment
+     */
+    public InterfaceInteractionIndex getInterfaceInteractionIndex() {
+        InterfaceInteractionIndex index = interfaceInteractionIndex;
+        if (index == null) {
+            // a concurrent first use might build it twice, which is harmless
+            index = new InterfaceInteractionIndex(payment);
+            interfaceInteractionIndex = index;
+        }
+        return index;
+    }
+
     public PaymentWithCartLike withPayment(final Payment payment) {
         return new PaymentWithCartLike(payment, cartLike);
     }
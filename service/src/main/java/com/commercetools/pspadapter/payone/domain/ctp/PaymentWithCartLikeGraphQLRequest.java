@@ -0,0 +1,276 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sphere.sdk.carts.Cart;
+import io.sphere.sdk.client.HttpRequestIntent;
+import io.sphere.sdk.client.SphereRequest;
+import io.sphere.sdk.http.HttpMethod;
+import io.sphere.sdk.http.HttpResponse;
+import io.sphere.sdk.json.SphereJsonUtils;
+import io.sphere.sdk.orders.Order;
+import io.sphere.sdk.payments.Payment;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fetches a payment with its customer and the order (or cart) which references the payment in a single GraphQL
+ * request, instead of the three REST requests of {@link CommercetoolsQueryExecutor}.
+ * <p>
+ * Only the fields which are read by the {@link com.commercetools.pspadapter.payone.mapping.PayoneRequestFactory}
+ * subclasses, {@link com.commercetools.pspadapter.payone.mapping.MappingUtil} and the handlers are projected. The
+ * GraphQL aliases and {@link #toRestShape(JsonNode)} bring the response into the shape of the REST resources, so the
+ * SDK models are deserialized as usual. The fields which are not projected are <b>null</b>, except the lists, which
+ * are empty.
+ */
+public class PaymentWithCartLikeGraphQLRequest implements SphereRequest<PaymentWithCartLikeGraphQLRequest.Result> {
+
+    private static final String MONEY = "{ type centAmount currencyCode fractionDigits "
+            + "... on HighPrecisionMoney { preciseAmount } }";
+
+    private static final String REFERENCE = "{ typeId id }";
+
+    private static final String LOCALIZED_STRING = "{ locale value }";
+
+    private static final String CUSTOM = "{ type: typeRef " + REFERENCE + " fields: customFieldsRaw { name value } }";
+
+    private static final String TAX_RATE = "{ id name amount includedInPrice country state }";
+
+    private static final String ADDRESS = "{ id key title salutation firstName lastName streetName streetNumber "
+            + "additionalStreetInfo postalCode city region state country company department building apartment "
+            + "pOBox phone mobile email fax additionalAddressInfo externalId }";
+
+    private static final String DISCOUNTED_PRICE = "{ value " + MONEY
+            + " includedDiscounts { discount: discountRef " + REFERENCE + " discountedAmount " + MONEY + " } }";
+
+    private static final String DISCOUNTED_PRICE_PER_QUANTITY = "{ quantity discountedPrice " + DISCOUNTED_PRICE + " }";
+
+    private static final String CART_LIKE_FIELDS = "id version createdAt lastModifiedAt customerId customerEmail "
+            + "anonymousId country locale inventoryMode taxMode taxRoundingMode "
+            + "totalPrice " + MONEY
+            + " taxedPrice { totalNet " + MONEY + " totalGross " + MONEY
+            + " taxPortions { name rate amount " + MONEY + " } }"
+            + " shippingAddress " + ADDRESS
+            + " billingAddress " + ADDRESS
+            + " lineItems { id productId productType: productTypeRef " + REFERENCE
+            + " name: nameAllLocales " + LOCALIZED_STRING
+            + " variant { id sku } quantity price { id value " + MONEY + " }"
+            + " taxRate " + TAX_RATE + " totalPrice " + MONEY
+            + " discountedPricePerQuantity " + DISCOUNTED_PRICE_PER_QUANTITY + " }"
+            + " customLineItems { id slug name: nameAllLocales " + LOCALIZED_STRING
+            + " quantity money " + MONEY + " taxCategory: taxCategoryRef " + REFERENCE
+            + " taxRate " + TAX_RATE + " totalPrice " + MONEY
+            + " discountedPricePerQuantity " + DISCOUNTED_PRICE_PER_QUANTITY + " }"
+            + " shippingInfo { shippingMethodName price " + MONEY
+            + " shippingRate { price " + MONEY + " }"
+            + " shippingMethod: shippingMethodRef " + REFERENCE
+            + " taxCategory: taxCategoryRef " + REFERENCE
+            + " taxRate " + TAX_RATE + " discountedPrice " + DISCOUNTED_PRICE + " }"
+            + " paymentInfo { payments: paymentRefs " + REFERENCE + " }"
+            + " custom " + CUSTOM;
+
+    private static final String PAYMENT_FIELDS = "id version key createdAt lastModifiedAt anonymousId interfaceId "
+            + "customer: customerRef " + REFERENCE
+            + " customerObj: customer { id version createdAt lastModifiedAt email title salutation firstName "
+            + "middleName lastName dateOfBirth customerNumber vatId companyName isEmailVerified custom " + CUSTOM + " }"
+            + " amountPlanned " + MONEY
+            + " paymentMethodInfo { paymentInterface method name: nameAllLocales " + LOCALIZED_STRING + " }"
+            + " paymentStatus { interfaceCode interfaceText state: stateRef " + REFERENCE + " }"
+            + " transactions { id timestamp type amount " + MONEY + " interactionId state }"
+            + " interfaceInteractions: interfaceInteractionsRaw { type: typeRef " + REFERENCE
+            + " fields { name value } }"
+            + " custom " + CUSTOM;
+
+    static final String QUERY = "query PaymentWithCartLike($paymentId: String!, $where: String!) {"
+            + " payment(id: $paymentId) { " + PAYMENT_FIELDS + " }"
+            + " orders(where: $where, limit: 1) { results { " + CART_LIKE_FIELDS
+            + " orderNumber orderState paymentState shipmentState } }"
+            + " carts(where: $where, limit: 1) { results { " + CART_LIKE_FIELDS + " cartState } } }";
+
+    /**
+     * Properties which are {@code LocalizedString} in REST, but are queried as a list of {@link #LOCALIZED_STRING}.
+     */
+    private static final Set<String> LOCALIZED_STRING_FIELDS = new HashSet<>(Arrays.asList("name"));
+
+    /**
+     * Lists which are not projected, but are not nullable in REST.
+     */
+    private static final List<String> CART_LIKE_LISTS = Arrays.asList(
+            "discountCodes", "itemShippingAddresses", "refusedGifts", "returnInfo", "syncInfo");
+    private static final List<String> LINE_ITEM_LISTS = Arrays.asList("state");
+    private static final List<String> VARIANT_LISTS = Arrays.asList("prices", "images", "attributes", "assets");
+    private static final List<String> CUSTOMER_LISTS = Arrays.asList("addresses", "shippingAddressIds",
+            "billingAddressIds", "stores");
+
+    private final String paymentId;
+
+    private PaymentWithCartLikeGraphQLRequest(@Nonnull final String paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public static PaymentWithCartLikeGraphQLRequest of(@Nonnull final String paymentId) {
+        return new PaymentWithCartLikeGraphQLRequest(paymentId);
+    }
+
+    @Override
+    public HttpRequestIntent httpRequestIntent() {
+        final ObjectNode variables = JsonNodeFactory.instance.objectNode()
+                .put("paymentId", paymentId)
+                .put("where", "paymentInfo(payments(id=\"" + escape(paymentId) + "\"))");
+        final ObjectNode body = JsonNodeFactory.instance.objectNode()
+                .put("query", QUERY);
+        body.set("variables", variables);
+        return HttpRequestIntent.of(HttpMethod.POST, "/graphql", SphereJsonUtils.toJsonString(body));
+    }
+
+    /**
+     * @throws IllegalStateException if the response contains GraphQL errors
+     */
+    @Override
+    public Result deserialize(final HttpResponse httpResponse) {
+        final JsonNode response = SphereJsonUtils.parse(httpResponse.getResponseBody());
+        final JsonNode errors = response.path("errors");
+        if (errors.size() > 0) {
+            throw new IllegalStateException("GraphQL request for the payment [" + paymentId + "] failed: " + errors);
+        }
+        final JsonNode data = response.path("data");
+        return new Result(
+                readObject(data.path("payment"), Payment.typeReference()),
+                readObject(data.path("orders").path("results").path(0), Order.typeReference()),
+                readObject(data.path("carts").path("results").path(0), Cart.typeReference()));
+    }
+
+    @Nullable
+    private static <T> T readObject(final JsonNode node, final TypeReference<T> typeReference) {
+        return node.isObject()
+                ? SphereJsonUtils.readObject(toRestShape(node), typeReference)
+                : null;
+    }
+
+    /**
+     * Converts the projected payment, order or cart in place to its REST shape:<ul>
+     * <li>{@code customer} reference and {@code customerObj} are merged into an expanded reference</li>
+     * <li>custom fields, queried as lists of {@code name}/{@code value}, are converted to objects</li>
+     * <li>localized strings, queried as lists of {@code locale}/{@code value}, are converted to objects</li>
+     * <li>the lists which are not projected are set to empty lists</li>
+     * </ul>
+     *
+     * @param resource payment, order or cart from the GraphQL response
+     * @return the same node
+     */
+    static JsonNode toRestShape(@Nonnull final JsonNode resource) {
+        final ObjectNode node = (ObjectNode) resource;
+
+        final JsonNode customer = node.remove("customerObj");
+        if (node.path("customer").isObject() && customer != null && customer.isObject()) {
+            addMissingLists((ObjectNode) customer, CUSTOMER_LISTS);
+            ((ObjectNode) node.get("customer")).set("obj", customer);
+        }
+
+        if (node.has("lineItems")) {
+            addMissingLists(node, CART_LIKE_LISTS);
+            for (final JsonNode lineItem : node.path("lineItems")) {
+                addMissingLists((ObjectNode) lineItem, LINE_ITEM_LISTS);
+                if (lineItem.path("variant").isObject()) {
+                    addMissingLists((ObjectNode) lineItem.get("variant"), VARIANT_LISTS);
+                }
+            }
+            for (final JsonNode customLineItem : node.path("customLineItems")) {
+                addMissingLists((ObjectNode) customLineItem, LINE_ITEM_LISTS);
+            }
+            if (node.path("shippingInfo").isObject() && !node.path("shippingInfo").has("deliveries")) {
+                ((ObjectNode) node.get("shippingInfo")).putArray("deliveries");
+            }
+        }
+
+        convertFields(node);
+        return node;
+    }
+
+    private static void convertFields(final JsonNode node) {
+        if (node.isArray()) {
+            for (final JsonNode element : node) {
+                convertFields(element);
+            }
+            return;
+        }
+        if (!node.isObject()) {
+            return;
+        }
+        final ObjectNode object = (ObjectNode) node;
+        if (object.path("fields").isArray() && object.has("type")) {
+            // custom fields or interface interaction
+            object.set("fields", toObject((ArrayNode) object.get("fields"), "name"));
+        }
+        final List<String> names = new ArrayList<>();
+        object.fieldNames().forEachRemaining(names::add);
+        for (final String name : names) {
+            final JsonNode value = object.get(name);
+            if (LOCALIZED_STRING_FIELDS.contains(name) && value.isArray()) {
+                object.set(name, toObject((ArrayNode) value, "locale"));
+            } else if (!"fields".equals(name)) {
+                convertFields(value);
+            }
+        }
+    }
+
+    private static ObjectNode toObject(final ArrayNode entries, final String keyField) {
+        final ObjectNode object = JsonNodeFactory.instance.objectNode();
+        for (final JsonNode entry : entries) {
+            object.set(entry.path(keyField).asText(), entry.get("value"));
+        }
+        return object;
+    }
+
+    private static void addMissingLists(final ObjectNode node, final List<String> names) {
+        for (final String name : names) {
+            if (!node.hasNonNull(name)) {
+                node.putArray(name);
+            }
+        }
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * The payment and the order and cart which reference it. All of them are <b>null</b> if they don't exist.
+     */
+    public static final class Result {
+
+        private final Payment payment;
+        private final Order order;
+        private final Cart cart;
+
+        Result(@Nullable final Payment payment, @Nullable final Order order, @Nullable final Cart cart) {
+            this.payment = payment;
+            this.order = order;
+            this.cart = cart;
+        }
+
+        @Nullable
+        public Payment getPayment() {
+            return payment;
+        }
+
+        @Nullable
+        public Order getOrder() {
+            return order;
+        }
+
+        @Nullable
+        public Cart getCart() {
+            return cart;
+        }
+    }
+}
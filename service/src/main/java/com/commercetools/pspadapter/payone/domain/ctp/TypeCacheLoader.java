@@ -6,6 +6,9 @@ import io.sphere.sdk.queries.PagedQueryResult;
 import io.sphere.sdk.types.Type;
 import io.sphere.sdk.types.queries.TypeQuery;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 public class TypeCacheLoader implements CacheLoader<String, Type> {
     private final BlockingSphereClient client;
 
@@ -15,10 +18,24 @@ public class TypeCacheLoader implements CacheLoader<String, Type> {
 
     @Override
     public Type load(String typeKey) throws Exception {
-        final PagedQueryResult<Type> result = client.executeBlocking(
-            TypeQuery.of()
-                    .withPredicates(m -> m.key().is(typeKey))
-                    .withLimit(1));
+        final PagedQueryResult<Type> result = client.executeBlocking(createQuery(typeKey));
         return result.head().orElseThrow(() -> new IllegalStateException(typeKey + " was not found"));
     }
+
+    /**
+     * Used by async caches: the query is not blocking, so no thread (and no cache lock) is held while waiting
+     * for the response.
+     */
+    @Override
+    public CompletableFuture<Type> asyncLoad(String typeKey, Executor executor) {
+        return client.execute(createQuery(typeKey))
+                .thenApply(result -> result.head().orElseThrow(() -> new IllegalStateException(typeKey + " was not found")))
+                .toCompletableFuture();
+    }
+
+    private static TypeQuery createQuery(String typeKey) {
+        return TypeQuery.of()
+                .withPredicates(m -> m.key().is(typeKey))
+                .withLimit(1);
+    }
 }
@@ -0,0 +1,192 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending the requests of a tenant to Payone while Payone fails most of them, so the transactions fail fast
+ * instead of holding threads and connections with requests and retries which Payone can't serve anyway.
+ * <p>
+ * States:<ul>
+ * <li><b>closed</b>: the requests are sent, their outcomes are counted in a rolling window of
+ * {@link #WINDOW_BUCKETS} x {@link #BUCKET_MILLIS} msec. If the window has at least {@link #MINIMUM_REQUESTS}
+ * requests and at least {@link #FAILURE_RATE_PERCENT}% of them failed, the breaker opens.</li>
+ * <li><b>open</b>: the requests are rejected for {@link #OPEN_MILLIS} msec.</li>
+ * <li><b>half-open</b>: a single probe request is sent, the other requests are rejected until its outcome is
+ * known. A successful probe closes the breaker, a failed one opens it again.</li>
+ * </ul>
+ * Every permitted request must report its outcome with {@link #onSuccess(long)} or {@link #onFailure(long)} and the
+ * permit it got. The permits belong to the state in which they were given: the outcomes of the requests which were
+ * permitted before the last state change (like the slow requests which were sent while closed and finish while
+ * half-open) are ignored, so only the probe decides about a half-open breaker.
+ */
+public final class PayoneCircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayoneCircuitBreaker.class);
+
+    static final int WINDOW_BUCKETS = 10;
+
+    static final long BUCKET_MILLIS = 1000;
+
+    static final int MINIMUM_REQUESTS = 20;
+
+    static final int FAILURE_RATE_PERCENT = 50;
+
+    static final long OPEN_MILLIS = 5000;
+
+    /**
+     * Returned by {@link #tryAcquirePermission()} if the request is rejected.
+     */
+    public static final long REJECTED = -1;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final LongSupplier clock;
+
+    private final long[] bucketIds = new long[WINDOW_BUCKETS];
+    private final int[] bucketSuccesses = new int[WINDOW_BUCKETS];
+    private final int[] bucketFailures = new int[WINDOW_BUCKETS];
+
+    private State state = State.CLOSED;
+    private long openedAtMillis;
+    private boolean probeInFlight;
+
+    /**
+     * Incremented on every state change, the permits are the generation in which they were given.
+     */
+    private long generation;
+
+    PayoneCircuitBreaker(@Nonnull final String name, @Nonnull final LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+    }
+
+    /**
+     * @param name name of the breaker in the logs, like the tenant name
+     * @return new closed breaker
+     */
+    @Nonnull
+    public static PayoneCircuitBreaker of(@Nonnull final String name) {
+        return new PayoneCircuitBreaker(name, System::currentTimeMillis);
+    }
+
+    /**
+     * @return permit of the request, which must be reported with its outcome, or {@link #REJECTED} if the request
+     * may not be sent
+     */
+    public synchronized long tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (clock.getAsLong() - openedAtMillis < OPEN_MILLIS) {
+                    return REJECTED;
+                }
+                changeState(State.HALF_OPEN);
+                probeInFlight = true;
+                LOG.info("Payone circuit breaker [{}] is half-open, a probe request is sent", name);
+                return generation;
+            default:
+                if (probeInFlight) {
+                    return REJECTED;
+                }
+                probeInFlight = true;
+                return generation;
+        }
+    }
+
+    /**
+     * @param permit permit of the request, see {@link #tryAcquirePermission()}
+     */
+    public synchronized void onSuccess(final long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            changeState(State.CLOSED);
+            probeInFlight = false;
+            clearWindow();
+            LOG.info("Payone circuit breaker [{}] is closed, the probe request succeeded", name);
+            return;
+        }
+        if (state == State.CLOSED) {
+            bucketSuccesses[currentBucket()]++;
+        }
+    }
+
+    /**
+     * @param permit permit of the request, see {@link #tryAcquirePermission()}
+     */
+    public synchronized void onFailure(final long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        bucketFailures[currentBucket()]++;
+
+        final long oldestBucketId = clock.getAsLong() / BUCKET_MILLIS - WINDOW_BUCKETS;
+        int successes = 0;
+        int failures = 0;
+        for (int i = 0; i < WINDOW_BUCKETS; i++) {
+            if (bucketIds[i] > oldestBucketId) {
+                successes += bucketSuccesses[i];
+                failures += bucketFailures[i];
+            }
+        }
+        final int requests = successes + failures;
+        if (requests >= MINIMUM_REQUESTS && failures * 100 >= requests * FAILURE_RATE_PERCENT) {
+            open();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        changeState(State.OPEN);
+        openedAtMillis = clock.getAsLong();
+        probeInFlight = false;
+        LOG.warn("Payone circuit breaker [{}] is open, the requests are rejected for {} msec", name, OPEN_MILLIS);
+    }
+
+    private void changeState(@Nonnull final State newState) {
+        state = newState;
+        generation++;
+    }
+
+    /**
+     * @return index of the bucket of the current time, which is reset if it belongs to an older period
+     */
+    private int currentBucket() {
+        final long bucketId = clock.getAsLong() / BUCKET_MILLIS;
+        final int index = (int) (bucketId % WINDOW_BUCKETS);
+        if (bucketIds[index] != bucketId) {
+            bucketIds[index] = bucketId;
+            bucketSuccesses[index] = 0;
+            bucketFailures[index] = 0;
+        }
+        return index;
+    }
+
+    private void clearWindow() {
+        for (int i = 0; i < WINDOW_BUCKETS; i++) {
+            bucketIds[i] = 0;
+            bucketSuccesses[i] = 0;
+            bucketFailures[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import com.commercetools.pspadapter.payone.config.PayoneConfig;
+import com.commercetools.pspadapter.payone.config.PropertyProvider;
+import com.commercetools.util.PayoneHttpClientUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ClientStats;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.commercetools.pspadapter.payone.config.PropertyProvider.PAYONE_MAX_CONNECTIONS_PER_ROUTE;
+
+/**
+ * Blocking HTTP client to Payone with its connection pool, and the non-blocking client with the same limits, see
+ * {@link #getAsyncHttpClient()}.
+ * <p>
+ * By default all the tenants use the {@link #shared()} pool, which allows up to
+ * {@code PAYONE_MAX_CONNECTIONS_PER_ROUTE} connections to the Payone host (20 if not set). A tenant with
+ * {@link com.commercetools.pspadapter.payone.config.PayoneConfig#getConnectionPoolSize()} gets an
+ * {@link #isolated(String, int)} pool instead, so a busy tenant can't take the connections of the others.
+ * <p>
+ * The pools are created once and kept for the service run, also if a lazily activated tenant is released and
+ * activated again. The time the blocking requests wait for a connection is recorded, see {@link #getMetrics()}.
+ * <p>
+ * {@link #warmUp(String, int)} opens connections in advance, so the first requests don't wait for the TCP and TLS
+ * handshakes.
+ */
+public final class PayoneConnectionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayoneConnectionPool.class);
+
+    static final String SHARED_POOL_NAME = "shared";
+
+    /**
+     * Upper bounds (inclusive) of the lease wait histogram buckets, the last bucket counts the longer waits.
+     */
+    static final long[] LEASE_WAIT_BUCKET_MILLIS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    /**
+     * Validity of the idle connections which are leased again by {@link #warmUp(String, int)}: they have been idle
+     * for less than {@link PayoneHttpClientUtil#KEEP_ALIVE_MILLIS} already, so they are kept only until the next
+     * warm-up is due, see {@link #WARM_UP_PERIOD_MILLIS}.
+     */
+    private static final long REUSED_CONNECTION_KEEP_ALIVE_MILLIS = PayoneHttpClientUtil.KEEP_ALIVE_MILLIS / 2;
+
+    /**
+     * Period to keep the min number of idle connections with {@link #warmUp(String, int)}, shorter than the
+     * keep-alive time of the connections.
+     */
+    public static final long WARM_UP_PERIOD_MILLIS = PayoneHttpClientUtil.KEEP_ALIVE_MILLIS / 2;
+
+    private static final DefaultRoutePlanner ROUTE_PLANNER =
+            new DefaultRoutePlanner(DefaultSchemePortResolver.INSTANCE);
+
+    private static final ConcurrentMap<String, PayoneConnectionPool> ISOLATED_POOLS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final InstrumentedConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    private final Object asyncHttpClientLock = new Object();
+
+    /**
+     * Created on the first async request, so the client threads are started only if async requests are used.
+     */
+    @Nullable
+    private volatile AsyncHttpClient asyncHttpClient;
+
+    private final AtomicLongArray leaseWaitBuckets = new AtomicLongArray(LEASE_WAIT_BUCKET_MILLIS.length + 1);
+    private final AtomicLong leaseWaitTotalMillis = new AtomicLong();
+    private final AtomicLong leaseWaitMaxMillis = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+
+    PayoneConnectionPool(@Nonnull final String name, final int maxTotal, final int maxPerRoute) {
+        this.name = name;
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+        this.connectionManager = PayoneHttpClientUtil.configureConnectionManager(
+                new InstrumentedConnectionManager(), maxTotal, maxPerRoute);
+        this.httpClient = PayoneHttpClientUtil.buildHttpClient(connectionManager);
+    }
+
+    /**
+     * @return pool of all the tenants without an isolated pool, which is created on the first call
+     */
+    @Nonnull
+    public static PayoneConnectionPool shared() {
+        return SharedPoolHolder.SHARED_POOL;
+    }
+
+    /**
+     * @param tenantName     name of the tenant
+     * @param maxConnections max number of connections of the tenant to Payone
+     * @return pool of the tenant, which is created on the first call. The size of an existing pool is not changed.
+     */
+    @Nonnull
+    public static PayoneConnectionPool isolated(@Nonnull final String tenantName, final int maxConnections) {
+        return ISOLATED_POOLS.computeIfAbsent(tenantName, name -> {
+            LOG.info("Use an isolated Payone connection pool for the tenant [{}], max connections: {}",
+                    name, maxConnections);
+            return new PayoneConnectionPool(name, maxConnections, maxConnections);
+        });
+    }
+
+    /**
+     * @param tenantName   name of the tenant
+     * @param payoneConfig Payone config of the tenant
+     * @return the isolated pool of the tenant if {@link PayoneConfig#getConnectionPoolSize()} is set, otherwise the
+     * shared pool
+     */
+    @Nonnull
+    public static PayoneConnectionPool of(@Nonnull final String tenantName, @Nonnull final PayoneConfig payoneConfig) {
+        return payoneConfig.getConnectionPoolSize()
+                .map(size -> isolated(tenantName, size))
+                .orElseGet(PayoneConnectionPool::shared);
+    }
+
+    /**
+     * @return metrics of the shared pool and of the isolated pools which are created so far
+     */
+    @Nonnull
+    public static List<PayoneConnectionPoolMetrics> getAllMetrics() {
+        final List<PayoneConnectionPoolMetrics> metrics = new ArrayList<>(ISOLATED_POOLS.size() + 1);
+        metrics.add(shared().getMetrics());
+        ISOLATED_POOLS.values().forEach(pool -> metrics.add(pool.getMetrics()));
+        return metrics;
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    @Nonnull
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @return non-blocking client with the limits of this pool (its own connections, not shared with the blocking
+     * client), which is created on the first call
+     */
+    @Nonnull
+    public AsyncHttpClient getAsyncHttpClient() {
+        AsyncHttpClient client = asyncHttpClient;
+        if (client == null) {
+            synchronized (asyncHttpClientLock) {
+                client = asyncHttpClient;
+                if (client == null) {
+                    client = PayoneHttpClientUtil.buildAsyncHttpClient("payone-http-" + name, maxTotal, maxPerRoute);
+                    asyncHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    @Nonnull
+    PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * @return snapshot of the connection counts and of the time the blocking requests waited for a connection
+     */
+    @Nonnull
+    public PayoneConnectionPoolMetrics getMetrics() {
+        final PoolStats stats = connectionManager.getTotalStats();
+        final Map<String, Long> histogram = new LinkedHashMap<>();
+        long leases = 0;
+        for (int i = 0; i < leaseWaitBuckets.length(); i++) {
+            final long count = leaseWaitBuckets.get(i);
+            histogram.put(i < LEASE_WAIT_BUCKET_MILLIS.length
+                    ? "<=" + LEASE_WAIT_BUCKET_MILLIS[i]
+                    : ">" + LEASE_WAIT_BUCKET_MILLIS[LEASE_WAIT_BUCKET_MILLIS.length - 1], count);
+            leases += count;
+        }
+        final AsyncHttpClient client = asyncHttpClient;
+        final ClientStats asyncStats = client != null ? client.getClientStats() : null;
+        return new PayoneConnectionPoolMetrics(name, maxTotal, maxPerRoute,
+                stats.getLeased(), stats.getPending(), stats.getAvailable(), leases, leaseTimeouts.get(),
+                leases > 0 ? leaseWaitTotalMillis.get() / leases : 0, leaseWaitMaxMillis.get(), histogram,
+                asyncStats != null ? asyncStats.getTotalActiveConnectionCount() : 0,
+                asyncStats != null ? asyncStats.getTotalIdleConnectionCount() : 0);
+    }
+
+    /**
+     * Opens new connections to the host of {@code url} until the pool has {@code idleConnections} idle connections
+     * to it (at most {@link #getMaxPerRoute()}). The connections which are leased by requests are not counted and
+     * not waited for: if the pool is fully occupied, no connection is opened.
+     * <p>
+     * The expired connections are closed first, so calling this method periodically keeps the idle connections
+     * open instead of letting the pool drop to zero after {@link PayoneHttpClientUtil#KEEP_ALIVE_MILLIS}.
+     *
+     * @param url             Payone API URL
+     * @param idleConnections number of the idle connections to keep
+     * @return number of the opened connections
+     * @throws IOException if a connection can't be opened, the connections opened before are kept
+     */
+    public synchronized int warmUp(@Nonnull final String url, final int idleConnections)
+            throws IOException, InterruptedException {
+        final HttpClientContext context = HttpClientContext.create();
+        final HttpRoute route;
+        try {
+            // the same route the client uses, so the requests get the opened connections
+            route = ROUTE_PLANNER.determineRoute(URIUtils.extractHost(URI.create(url)), new HttpGet(url), context);
+        } catch (HttpException e) {
+            throw new IOException(e);
+        }
+
+        connectionManager.closeExpiredConnections();
+        final int target = Math.min(idleConnections, maxPerRoute);
+        if (connectionManager.getStats(route).getAvailable() >= target) {
+            return 0;
+        }
+
+        // all the idle connections are leased, otherwise the pool would return the idle ones instead of new ones
+        final List<HttpClientConnection> reused = new ArrayList<>(target);
+        final List<HttpClientConnection> opened = new ArrayList<>(target);
+        try {
+            while (reused.size() + opened.size() < target) {
+                final HttpClientConnection connection;
+                try {
+                    connection = connectionManager.requestWarmUpConnection(route);
+                } catch (ConnectionPoolTimeoutException | ExecutionException e) {
+                    // the pool is fully occupied by the requests
+                    break;
+                }
+                if (connection.isOpen()) {
+                    reused.add(connection);
+                } else {
+                    opened.add(connection);
+                    connectionManager.connect(connection, route, PayoneHttpClientUtil.TIMEOUT_TO_ESTABLISH_CONNECTION,
+                            context);
+                    connectionManager.routeComplete(connection, route, context);
+                }
+            }
+        } finally {
+            reused.forEach(connection -> connectionManager.releaseConnection(connection, null,
+                    REUSED_CONNECTION_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS));
+            // a connection which failed to open is not open, then the pool discards it
+            opened.forEach(connection -> connectionManager.releaseConnection(connection, null,
+                    PayoneHttpClientUtil.KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        return opened.size();
+    }
+
+    void recordLeaseWait(final long waitMillis, final boolean timedOut) {
+        int bucket = 0;
+        while (bucket < LEASE_WAIT_BUCKET_MILLIS.length && waitMillis > LEASE_WAIT_BUCKET_MILLIS[bucket]) {
+            bucket++;
+        }
+        leaseWaitBuckets.incrementAndGet(bucket);
+        leaseWaitTotalMillis.addAndGet(waitMillis);
+        leaseWaitMaxMillis.accumulateAndGet(waitMillis, Math::max);
+        if (timedOut) {
+            leaseTimeouts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Measures the time from a connection request until the connection is leased (or the request times out).
+     */
+    private final class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        /**
+         * Leases a connection for {@link #warmUp(String, int)}, which is not counted in the metrics.
+         *
+         * @throws ConnectionPoolTimeoutException if the pool has no free connection at once
+         */
+        private HttpClientConnection requestWarmUpConnection(final HttpRoute route)
+                throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+            return super.requestConnection(route, null).get(1, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+            final ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(final long timeout, final TimeUnit timeUnit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    final long startNanos = System.nanoTime();
+                    boolean timedOut = false;
+                    try {
+                        return request.get(timeout, timeUnit);
+                    } catch (ConnectionPoolTimeoutException e) {
+                        timedOut = true;
+                        throw e;
+                    } finally {
+                        recordLeaseWait(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), timedOut);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+
+    /**
+     * Lazy holder, so {@code PAYONE_MAX_CONNECTIONS_PER_ROUTE} is read on the first use of the shared pool.
+     */
+    private static final class SharedPoolHolder {
+        private static final PayoneConnectionPool SHARED_POOL = createSharedPool();
+
+        private static PayoneConnectionPool createSharedPool() {
+            final int maxPerRoute = new PropertyProvider().getProperty(PAYONE_MAX_CONNECTIONS_PER_ROUTE)
+                    .map(String::trim)
+                    .filter(StringUtils::isNotEmpty)
+                    .map(Integer::valueOf)
+                    .orElse(PayoneHttpClientUtil.CONNECTION_MAX_PER_ROUTE);
+            return new PayoneConnectionPool(SHARED_POOL_NAME,
+                    Math.max(PayoneHttpClientUtil.CONNECTION_MAX_TOTAL, maxPerRoute), maxPerRoute);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the metrics of a {@link PayoneConnectionPool}.
+ */
+public class PayoneConnectionPoolMetrics {
+
+    private final String pool;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final int leased;
+    private final int pending;
+    private final int available;
+    private final long leases;
+    private final long leaseTimeouts;
+    private final long leaseWaitAvgMillis;
+    private final long leaseWaitMaxMillis;
+    private final Map<String, Long> leaseWaitHistogram;
+    private final long asyncActive;
+    private final long asyncIdle;
+
+    PayoneConnectionPoolMetrics(final String pool, final int maxTotal, final int maxPerRoute,
+                                final int leased, final int pending, final int available,
+                                final long leases, final long leaseTimeouts,
+                                final long leaseWaitAvgMillis, final long leaseWaitMaxMillis,
+                                final Map<String, Long> leaseWaitHistogram,
+                                final long asyncActive, final long asyncIdle) {
+        this.pool = pool;
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+        this.leased = leased;
+        this.pending = pending;
+        this.available = available;
+        this.leases = leases;
+        this.leaseTimeouts = leaseTimeouts;
+        this.leaseWaitAvgMillis = leaseWaitAvgMillis;
+        this.leaseWaitMaxMillis = leaseWaitMaxMillis;
+        this.leaseWaitHistogram = leaseWaitHistogram;
+        this.asyncActive = asyncActive;
+        this.asyncIdle = asyncIdle;
+    }
+
+    /**
+     * @return name of the tenant of an isolated pool, or {@value PayoneConnectionPool#SHARED_POOL_NAME}
+     */
+    public String getPool() {
+        return pool;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * @return number of the connections which are used by requests at the moment
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * @return number of the requests which are waiting for a connection at the moment
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return number of the idle connections which are kept alive
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return number of the connection requests since the start, including the timed out ones
+     */
+    public long getLeases() {
+        return leases;
+    }
+
+    /**
+     * @return number of the connection requests which timed out because the pool was fully occupied
+     */
+    public long getLeaseTimeouts() {
+        return leaseTimeouts;
+    }
+
+    /**
+     * @return average time the requests waited for a connection
+     */
+    public long getLeaseWaitAvgMillis() {
+        return leaseWaitAvgMillis;
+    }
+
+    /**
+     * @return maximum time a request waited for a connection
+     */
+    public long getLeaseWaitMaxMillis() {
+        return leaseWaitMaxMillis;
+    }
+
+    /**
+     * @return number of the connection requests per wait time bucket, like {@code "<=5"} (msec), in ascending order
+     */
+    public Map<String, Long> getLeaseWaitHistogram() {
+        return leaseWaitHistogram;
+    }
+
+    /**
+     * @return number of the connections of the non-blocking client which are used by requests at the moment
+     */
+    public long getAsyncActive() {
+        return asyncActive;
+    }
+
+    /**
+     * @return number of the idle connections of the non-blocking client
+     */
+    public long getAsyncIdle() {
+        return asyncIdle;
+    }
+}
@@ -4,6 +4,10 @@ import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneExcept
 import com.commercetools.pspadapter.payone.domain.payone.model.common.BaseRequest;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
 
 /**
  * Encapsulates the communication with the payone services.
@@ -19,4 +23,22 @@ public interface PayonePostService {
      */
     Map<String, String> executePost(final BaseRequest baseRequest) throws PayoneException;
 
+    /**
+     * Stage based version of {@link #executePost(BaseRequest)}. Failures are reported by completing the stage
+     * exceptionally with {@link PayoneException}.
+     * <p>
+     * <b>Note:</b> the default implementation executes the blocking {@link #executePost(BaseRequest)} in the calling
+     * thread, implementations should override it with a non-blocking call.
+     *
+     * @param baseRequest set to request
+     * @return stage completed with the map containing the servers response
+     */
+    default CompletionStage<Map<String, String>> executePostAsync(final BaseRequest baseRequest) {
+        try {
+            return CompletableFuture.completedFuture(executePost(baseRequest));
+        } catch (final PayoneException | RuntimeException e) {
+            return failedStage(e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.commercetools.pspadapter.payone.domain.payone;
 
+import com.commercetools.pspadapter.payone.config.PayoneConfig;
+import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneCircuitOpenException;
 import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneException;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.BaseRequest;
 import com.commercetools.util.PayoneHttpClientUtil;
@@ -8,32 +10,44 @@ import org.apache.http.Consts;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 import static com.commercetools.util.PayoneHttpClientUtil.nameValue;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
@@ -48,12 +62,24 @@ import static java.util.stream.Collectors.toList;
  * (see {@link DefaultHttpRequestRetryHandler#isRequestSentRetryEnabled()}
  * and {@link PayoneHttpClientUtil#httpRequestRetryHandler})</li>
  * <li>connections pool is 200 connections, up to 20 per route (see {@link PayoneHttpClientUtil#CONNECTION_MAX_TOTAL}
- * and {@link PayoneHttpClientUtil#CONNECTION_MAX_PER_ROUTE}). These values are "inherited" from
+ * and {@link PayoneHttpClientUtil#CONNECTION_MAX_PER_ROUTE}), the tenants share it unless they have an isolated
+ * pool (see {@link PayoneConnectionPool}). These values are "inherited" from
  * <a href="https://github.com/Kong/unirest-java/blob/3b461599ad021d0a3f14213c0dbb85bab7244f66/src/main/java/com/mashape/unirest/http/options/Options.java#L23-L24">Unirest</a>
  * library. It could be changed in the future if we face problems (for example, decrease if we have OutOfMemory
  * or increase if out of connections from the pool.</li>
  * </ul>
  * <p>
+ * {@link #executePostAsync(BaseRequest)} uses the non-blocking client of the same pool, which has the same limits
+ * and is created on the first async request (see {@link PayoneConnectionPool#getAsyncHttpClient()} and
+ * {@link PayoneHttpClientUtil#executeRequestAsync}), so an isolated pool isolates the async requests too.
+ * <p>
+ * The requests are encoded with {@link PayoneRequestEncoder} and the responses are parsed while they are read,
+ * see {@link PayoneResponseParser}.
+ * <p>
+ * The retries of the requests of a tenant are limited by its {@link PayoneRetryBudget}. If enabled, its
+ * {@link PayoneCircuitBreaker} rejects the requests while Payone fails, then {@link #executePost(BaseRequest)}
+ * fails at once with {@link PayoneCircuitOpenException}.
+ * <p>
  * This service is intended to replace <i>Unirest</i> and <i>fluent-hc</i> dependencies, which don't propose any flexible
  * way to implement retry strategy.
  * <p>
@@ -68,29 +94,37 @@ import static java.util.stream.Collectors.toList;
 
 public class PayonePostServiceImpl implements PayonePostService {
 
-    private static final String ENCODING_UTF8 = "UTF-8";
-
     private String serverAPIURL;
 
-    private static final CloseableHttpClient PAYONE_HTTP_CLIENT = HttpClientBuilder.create()
-            .setDefaultRequestConfig(RequestConfig.custom()
-                    .setConnectionRequestTimeout(
-                            PayoneHttpClientUtil.TIMEOUT_WHEN_CONNECTION_POOL_FULLY_OCCUPIED)
-                    .setSocketTimeout(
-                            PayoneHttpClientUtil.TIMEOUT_WHEN_CONTINUOUS_DATA_STREAM_DOES_NOT_REPLY)
-                    .setConnectTimeout(PayoneHttpClientUtil.TIMEOUT_TO_ESTABLISH_CONNECTION)
-                    .build())
-            .setRetryHandler(PayoneHttpClientUtil.httpRequestRetryHandler)
-            .setServiceUnavailableRetryStrategy(PayoneHttpClientUtil.serviceUnavailableRetryStrategy)
-            .setKeepAliveStrategy(PayoneHttpClientUtil.keepAliveStrategy)
-            .setConnectionManager(PayoneHttpClientUtil.buildDefaultConnectionManager())
-            .build();
-
-    private PayonePostServiceImpl(final String serverAPIURL) {
+    private static final ContentType FORM_CONTENT_TYPE =
+            ContentType.APPLICATION_FORM_URLENCODED.withCharset(Consts.UTF_8);
+
+    private final PayoneRequestEncoder requestEncoder;
+
+    private final PayoneConnectionPool connectionPool;
+
+    @Nullable
+    private final PayoneRetryBudget retryBudget;
+
+    @Nullable
+    private final PayoneCircuitBreaker circuitBreaker;
+
+    private final Supplier<AsyncHttpClient> asyncHttpClient;
+
+    private PayonePostServiceImpl(final String serverAPIURL, final PayoneRequestEncoder requestEncoder,
+                                  final PayoneConnectionPool connectionPool,
+                                  @Nullable final PayoneRetryBudget retryBudget,
+                                  @Nullable final PayoneCircuitBreaker circuitBreaker,
+                                  final Supplier<AsyncHttpClient> asyncHttpClient) {
         if(StringUtils.isBlank(serverAPIURL)) {
             throw new IllegalArgumentException("The server api url must not be null or empty.");
         }
         this.serverAPIURL = serverAPIURL;
+        this.requestEncoder = requestEncoder;
+        this.connectionPool = connectionPool;
+        this.retryBudget = retryBudget;
+        this.circuitBreaker = circuitBreaker;
+        this.asyncHttpClient = asyncHttpClient;
     }
 
     /**
@@ -101,26 +135,168 @@ public class PayonePostServiceImpl implements PayonePostService {
      * @throws IllegalArgumentException if the provided {@code payoneServerApiUrl} is invalid
      */
     public static PayonePostServiceImpl of(final String payoneServerApiUrl) throws IllegalArgumentException {
-        return new PayonePostServiceImpl(payoneServerApiUrl);
+        final PayoneConnectionPool connectionPool = PayoneConnectionPool.shared();
+        return new PayonePostServiceImpl(payoneServerApiUrl, PayoneRequestEncoder.of(), connectionPool,
+                null, null, connectionPool::getAsyncHttpClient);
+    }
+
+    /**
+     * Initialize new service for the tenant {@code payoneConfig}, the config parameters of the requests are
+     * encoded only once (see {@link PayoneRequestEncoder}). The retries are limited by a new
+     * {@link PayoneRetryBudget}, the requests are guarded by a new {@link PayoneCircuitBreaker} if
+     * {@link PayoneConfig#isCircuitBreaker()}. The blocking and the async requests use the isolated connection pool
+     * of the tenant if {@link PayoneConfig#getConnectionPoolSize()} is set, otherwise the shared one.
+     *
+     * @param tenantName   - name of the tenant, used in the logs
+     * @param payoneConfig - the payone config of the tenant, its server api url must not be null or empty
+     * @return new instance of PayonePostServiceImpl.class
+     * @throws IllegalArgumentException if the server api url of the {@code payoneConfig} is invalid
+     */
+    public static PayonePostServiceImpl of(final String tenantName, final PayoneConfig payoneConfig)
+            throws IllegalArgumentException {
+        final PayoneConnectionPool connectionPool = PayoneConnectionPool.of(tenantName, payoneConfig);
+        return new PayonePostServiceImpl(payoneConfig.getApiUrl(), PayoneRequestEncoder.of(payoneConfig),
+                connectionPool, PayoneRetryBudget.of(),
+                payoneConfig.isCircuitBreaker() ? PayoneCircuitBreaker.of(tenantName) : null,
+                connectionPool::getAsyncHttpClient);
+    }
+
+    /**
+     * For tests: the async requests are executed by {@code asyncHttpClient}, guarded by {@code circuitBreaker}.
+     */
+    static PayonePostServiceImpl of(final String payoneServerApiUrl,
+                                    @Nullable final PayoneCircuitBreaker circuitBreaker,
+                                    final AsyncHttpClient asyncHttpClient) {
+        return new PayonePostServiceImpl(payoneServerApiUrl, PayoneRequestEncoder.of(), PayoneConnectionPool.shared(),
+                PayoneRetryBudget.of(), circuitBreaker, () -> asyncHttpClient);
     }
 
     @Override
     public Map<String, String> executePost(final BaseRequest baseRequest) throws PayoneException {
-
+        final byte[] formBody;
         try {
-            final List<BasicNameValuePair> mappedListParameters =
-                    getNameValuePairsWithExpandedLists(baseRequest.toStringMap(false));
-            final String serverResponse = executePostRequestToString(this.serverAPIURL, mappedListParameters);
+            formBody = requestEncoder.encode(baseRequest);
+        } catch (Exception e) {
+            throw createPayoneException(baseRequest, e);
+        }
 
-            return buildMapFromResultParams(serverResponse);
+        final long permit = acquirePermission(baseRequest);
+        try {
+            final Map<String, String> serverResponse = executeFormPostToMap(connectionPool.getHttpClient(),
+                    this.serverAPIURL, formBody, retryBudget);
+            onOutcome(permit, null);
+            return serverResponse;
         } catch (Exception e) {
-            final String requestBody =
-                getNameValuePairsWithExpandedLists(baseRequest.toStringMap(true)).toString();
-            final String exceptionMessage = format("Payone POST request with body (%s) failed.", requestBody);
-            throw new PayoneException(exceptionMessage, e);
+            onOutcome(permit, e);
+            throw createPayoneException(baseRequest, e);
         }
     }
 
+    @Override
+    public CompletionStage<Map<String, String>> executePostAsync(final BaseRequest baseRequest) {
+        final byte[] formBody;
+        try {
+            formBody = requestEncoder.encode(baseRequest);
+        } catch (RuntimeException e) {
+            return failedStage(createPayoneException(baseRequest, e));
+        }
+
+        final long permit;
+        try {
+            permit = acquirePermission(baseRequest);
+        } catch (PayoneCircuitOpenException e) {
+            return failedStage(e);
+        }
+
+        final CompletionStage<Map<String, String>> serverResponseStage;
+        try {
+            serverResponseStage = executeFormPostToMapAsync(asyncHttpClient.get(), this.serverAPIURL, formBody,
+                    retryBudget);
+        } catch (RuntimeException e) {
+            onOutcome(permit, e);
+            return failedStage(createPayoneException(baseRequest, e));
+        }
+
+        final CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+        serverResponseStage.whenComplete((serverResponse, throwable) -> {
+            if (throwable != null) {
+                final Throwable cause = unwrapCompletionException(throwable);
+                onOutcome(permit, cause);
+                result.completeExceptionally(createPayoneException(baseRequest, cause));
+            } else {
+                onOutcome(permit, null);
+                result.complete(serverResponse);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Deposits the request to the retry budget and asks the circuit breaker (if any) for a permission.
+     *
+     * @return permit of the circuit breaker, see {@link PayoneCircuitBreaker#tryAcquirePermission()}
+     * @throws PayoneCircuitOpenException if the circuit breaker rejects the request
+     */
+    private long acquirePermission(final BaseRequest baseRequest) throws PayoneCircuitOpenException {
+        final long permit = circuitBreaker != null ? circuitBreaker.tryAcquirePermission() : 0;
+        if (permit == PayoneCircuitBreaker.REJECTED) {
+            throw new PayoneCircuitOpenException(format("Payone POST request with body (%s) is rejected: "
+                    + "Payone is unavailable, the requests are suspended after repeated failures.",
+                    getNameValuePairsWithExpandedLists(baseRequest.toStringMap(true))));
+        }
+        if (retryBudget != null) {
+            retryBudget.onRequest();
+        }
+        return permit;
+    }
+
+    /**
+     * Reports the outcome of a permitted request to the circuit breaker (if any), see {@link #isPayoneFailure}.
+     *
+     * @param permit  permit of the request, see {@link #acquirePermission(BaseRequest)}
+     * @param failure failure of the request, <i>null</i> if it succeeded
+     */
+    private void onOutcome(final long permit, @Nullable final Throwable failure) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (isPayoneFailure(failure)) {
+            circuitBreaker.onFailure(permit);
+        } else {
+            circuitBreaker.onSuccess(permit);
+        }
+    }
+
+    /**
+     * Only 5xx responses, I/O failures and timeouts (the async client fails with {@link TimeoutException} on request
+     * and read timeouts), also as a cause, are failures of Payone. Other errors (like a response which can't be
+     * parsed) show that Payone responds.
+     *
+     * @param failure failure of the request, <i>null</i> if it succeeded
+     * @return <b>true</b> if the {@code failure} shows that Payone is unavailable
+     */
+    static boolean isPayoneFailure(@Nullable final Throwable failure) {
+        if (failure instanceof HttpResponseException) {
+            return ((HttpResponseException) failure).getStatusCode() >= 500;
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private PayoneException createPayoneException(final BaseRequest baseRequest, final Throwable cause) {
+        final String requestBody =
+            getNameValuePairsWithExpandedLists(baseRequest.toStringMap(true)).toString();
+        final String exceptionMessage = format("Payone POST request with body (%s) failed.", requestBody);
+        return new PayoneException(exceptionMessage, cause);
+    }
+
     /**
      * Make URL request and return a response string.
      *
@@ -137,6 +313,49 @@ public class PayonePostServiceImpl implements PayonePostService {
         return PayoneHttpClientUtil.responseToString(executePostRequest(url, parameters));
     }
 
+    /**
+     * Make URL request and parse the Payone response parameters while the response is read, without reading the
+     * whole response to a string first (see {@link PayoneResponseParser}).
+     *
+     * @param url        URL to post/query
+     * @param parameters list of values to send as URL encoded form data. If <b>null</b> - not data is sent, but
+     *                   empty POST request is executed.
+     * @return parameters of the response
+     * @throws IOException              in case of a problem or the connection was aborted,
+     *                                  {@link HttpResponseException} if the response status is not successful
+     * @throws IllegalArgumentException if a response value can't be decoded
+     */
+    public static Map<String, String> executePostRequestToMap(@Nonnull String url,
+                                                              @Nullable Iterable<? extends NameValuePair> parameters)
+            throws IOException {
+
+        return executeFormPostToMap(PayoneConnectionPool.shared().getHttpClient(), url, formBodyOf(parameters), null);
+    }
+
+    private static Map<String, String> executeFormPostToMap(@Nonnull CloseableHttpClient httpClient,
+                                                            @Nonnull String url, @Nullable byte[] formBody,
+                                                            @Nullable PayoneRetryBudget retryBudget)
+            throws IOException {
+
+        try (final CloseableHttpResponse response = httpClient.execute(createPostRequest(url, formBody),
+                PayoneHttpClientUtil.contextOf(retryBudget))) {
+            final StatusLine statusLine = response.getStatusLine();
+            final HttpEntity entity = response.getEntity();
+            if (statusLine.getStatusCode() >= 300) {
+                EntityUtils.consume(entity);
+                throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+            }
+            if (entity == null) {
+                return new HashMap<>();
+            }
+
+            final Charset charset = ContentType.getOrDefault(entity).getCharset();
+            try (final InputStream content = entity.getContent()) {
+                return PayoneResponseParser.parse(content, charset != null ? charset : HTTP.DEF_CONTENT_CHARSET);
+            }
+        }
+    }
+
     /**
      * Execute retryable HTTP POST request with specified {@code timeoutMsec}
      *
@@ -150,12 +369,72 @@ public class PayonePostServiceImpl implements PayonePostService {
                                                   @Nullable Iterable<? extends NameValuePair> parameters)
             throws IOException {
 
+        return executeReadAndCloseRequest(createPostRequest(url, formBodyOf(parameters)));
+    }
+
+    @Nullable
+    private static byte[] formBodyOf(@Nullable Iterable<? extends NameValuePair> parameters) {
+        return parameters != null ? URLEncodedUtils.format(parameters, Consts.UTF_8).getBytes(Consts.UTF_8) : null;
+    }
+
+    private static HttpPost createPostRequest(@Nonnull String url, @Nullable byte[] formBody) {
         final HttpPost request = new HttpPost(url);
-        if (parameters != null) {
-            request.setEntity(new UrlEncodedFormEntity(parameters, Consts.UTF_8));
+        if (formBody != null) {
+            request.setEntity(new ByteArrayEntity(formBody, FORM_CONTENT_TYPE));
         }
+        return request;
+    }
 
-        return executeReadAndCloseRequest(request);
+    /**
+     * Non-blocking version of {@link #executePostRequestToString(String, Iterable)}.
+     *
+     * @param url        URL to post/query
+     * @param parameters list of values to send as URL encoded form data. If <b>null</b> - not data is sent, but
+     *                   empty POST request is executed.
+     * @return stage completed with the response string from the request
+     */
+    public static CompletionStage<String> executePostRequestToStringAsync(@Nonnull String url,
+                                                                          @Nullable Iterable<? extends NameValuePair> parameters) {
+        return PayoneHttpClientUtil.executeRequestToStringAsync(PayoneConnectionPool.shared().getAsyncHttpClient(),
+                createAsyncPostRequest(url, formBodyOf(parameters)));
+    }
+
+    /**
+     * Non-blocking version of {@link #executePostRequestToMap(String, Iterable)}.
+     *
+     * @param url        URL to post/query
+     * @param parameters list of values to send as URL encoded form data. If <b>null</b> - not data is sent, but
+     *                   empty POST request is executed.
+     * @return stage completed with the parameters of the response
+     */
+    public static CompletionStage<Map<String, String>> executePostRequestToMapAsync(@Nonnull String url,
+                                                                                    @Nullable Iterable<? extends NameValuePair> parameters) {
+        return executeFormPostToMapAsync(PayoneConnectionPool.shared().getAsyncHttpClient(), url,
+                formBodyOf(parameters), null);
+    }
+
+    private static CompletionStage<Map<String, String>> executeFormPostToMapAsync(@Nonnull AsyncHttpClient client,
+                                                                                  @Nonnull String url,
+                                                                                  @Nullable byte[] formBody,
+                                                                                  @Nullable PayoneRetryBudget retryBudget) {
+        return PayoneHttpClientUtil.executeRequestAsync(client,
+                createAsyncPostRequest(url, formBody), response -> {
+                    try (final InputStream content = response.getResponseBodyAsStream()) {
+                        return PayoneResponseParser.parse(content, PayoneHttpClientUtil.getCharset(response));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, retryBudget);
+    }
+
+    private static Request createAsyncPostRequest(@Nonnull String url, @Nullable byte[] formBody) {
+        final RequestBuilder requestBuilder = new RequestBuilder(HttpPost.METHOD_NAME).setUrl(url);
+        if (formBody != null) {
+            requestBuilder
+                    .setHeader(HTTP.CONTENT_TYPE, FORM_CONTENT_TYPE.toString())
+                    .setBody(formBody);
+        }
+        return requestBuilder.build();
     }
 
     /**
@@ -173,7 +452,7 @@ public class PayonePostServiceImpl implements PayonePostService {
     private static CloseableHttpResponse executeReadAndCloseRequest(@Nonnull final HttpUriRequest request)
             throws IOException {
 
-        final CloseableHttpResponse response = PAYONE_HTTP_CLIENT.execute(request);
+        final CloseableHttpResponse response = PayoneConnectionPool.shared().getHttpClient().execute(request);
         try {
             final HttpEntity entity = response.getEntity();
             if (entity != null) {
@@ -248,21 +527,8 @@ public class PayonePostServiceImpl implements PayonePostService {
                 .collect(toList());
     }
 
-    Map<String, String> buildMapFromResultParams(final String serverResponse) throws UnsupportedEncodingException {
-        Map<String, String> resultMap = new HashMap<>();
-
-        String[] properties = serverResponse.split("\\r?\\n");
-        for (String property : properties) {
-            String[] param = StringUtils.split(property, "=", 2);
-            if (param != null && param.length > 1) {
-                // Attention: the Redirect-param should not be decoded, otherwise the redirect will not work
-                resultMap.put(
-                        param[0],
-                        StringUtils.equalsIgnoreCase("redirecturl", param[0]) ? param[1] : URLDecoder.decode(param[1],
-                                ENCODING_UTF8));
-            }
-        }
-        return resultMap;
+    Map<String, String> buildMapFromResultParams(final String serverResponse) {
+        return PayoneResponseParser.parse(serverResponse.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
     }
 
     public String getServerAPIURL() {
@@ -0,0 +1,382 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import com.commercetools.pspadapter.payone.config.PayoneConfig;
+import com.commercetools.pspadapter.payone.domain.payone.model.common.BaseRequest;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes a {@link BaseRequest} to the UTF-8 {@code application/x-www-form-urlencoded} body of a Payone request.
+ * <p>
+ * The body is the same as {@link org.apache.http.client.entity.UrlEncodedFormEntity} of
+ * {@link PayonePostServiceImpl#getNameValuePairsWithExpandedLists(Map)
+ * getNameValuePairsWithExpandedLists(request.toStringMap(false))}, but:<ul>
+ * <li>the properties of every request class are introspected only once, with the same property names and
+ * <i>null</i> handling as {@link BaseRequest#toStringMap(boolean)}, and read directly from the request</li>
+ * <li>list values are expanded to {@code key[1], key[2]...} and map values to {@code add_paydata[key]} while they
+ * are written</li>
+ * <li>the parameters of the {@link PayoneConfig} ({@code mid}, {@code portalid}, {@code key}, {@code api_version},
+ * solution and integrator...) are encoded once per tenant</li>
+ * <li>the body is written to a reusable per thread buffer</li>
+ * </ul>
+ * The encoder is thread safe.
+ */
+public final class PayoneRequestEncoder {
+
+    /**
+     * Names of the request properties, which are set from {@link PayoneConfig} in the {@link BaseRequest}
+     * constructor, see {@link #isConfigOf(BaseRequest)}.
+     */
+    private static final Set<String> CONFIG_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "mid", "portalid", "key", "mode", "api_version", "encoding",
+            "solution_name", "solution_version", "integrator_name", "integrator_version")));
+
+    private static final String PAY_DATA_PREFIX = "add_paydata[";
+
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(UTF_8);
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * Only used to introspect the request classes like {@link BaseRequest#toStringMap(boolean)} does.
+     */
+    private static final ObjectMapper INTROSPECTION_MAPPER = new ObjectMapper();
+
+    private static final ConcurrentMap<Class<?>, List<PropertyEncoder>> PROPERTY_ENCODERS =
+            new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<FormBuffer> BUFFER = ThreadLocal.withInitial(FormBuffer::new);
+
+    @Nullable
+    private final PayoneConfig config;
+
+    /**
+     * {@link #CONFIG_PROPERTIES} of {@link #config}, <b>null</b> if the encoder has no config.
+     */
+    @Nullable
+    private final byte[] encodedConfigParameters;
+
+    private PayoneRequestEncoder(@Nullable final PayoneConfig config) {
+        this.config = config;
+        this.encodedConfigParameters = config != null ? encodeConfigParameters(config) : null;
+    }
+
+    /**
+     * @return encoder which encodes all the request properties
+     */
+    public static PayoneRequestEncoder of() {
+        return new PayoneRequestEncoder(null);
+    }
+
+    /**
+     * @param config config of the tenant, which requests are encoded
+     * @return encoder with pre-encoded parameters of the tenant {@code config}
+     */
+    public static PayoneRequestEncoder of(@Nonnull final PayoneConfig config) {
+        return new PayoneRequestEncoder(config);
+    }
+
+    /**
+     * @param request request to encode
+     * @return new array with the UTF-8 form encoded parameters of the {@code request}
+     */
+    @Nonnull
+    public byte[] encode(@Nonnull final BaseRequest request) {
+        final FormBuffer buffer = BUFFER.get();
+        buffer.reset();
+
+        final boolean withConfigParameters = encodedConfigParameters != null && isConfigOf(request);
+        if (withConfigParameters) {
+            buffer.write(encodedConfigParameters);
+        }
+
+        for (final PropertyEncoder propertyEncoder : getPropertyEncoders(request.getClass())) {
+            if (!withConfigParameters || !propertyEncoder.isConfigProperty) {
+                propertyEncoder.encode(request, buffer);
+            }
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @return <b>true</b> if the config parameters of the {@code request} are not changed after the request was
+     * created from {@link #config}, so they could be taken from {@link #encodedConfigParameters}
+     */
+    private boolean isConfigOf(@Nonnull final BaseRequest request) {
+        return Objects.equals(request.getMid(), config.getMerchantId())
+                && Objects.equals(request.getPortalid(), config.getPortalId())
+                && Objects.equals(request.getKey(), config.getKeyAsHash())
+                && Objects.equals(request.getMode(), config.getMode())
+                && Objects.equals(request.getApiVersion(), config.getApiVersion())
+                && Objects.equals(request.getEncoding(), config.getEncoding())
+                && Objects.equals(request.getSolutionName(), config.getSolutionName())
+                && Objects.equals(request.getSolutionVersion(), config.getSolutionVersion())
+                && Objects.equals(request.getIntegratorName(), config.getIntegratorName())
+                && Objects.equals(request.getIntegratorVersion(), config.getIntegratorVersion());
+    }
+
+    private static byte[] encodeConfigParameters(@Nonnull final PayoneConfig config) {
+        final FormBuffer buffer = new FormBuffer(256);
+        writeConfigParameter(buffer, "mid", config.getMerchantId());
+        writeConfigParameter(buffer, "portalid", config.getPortalId());
+        writeConfigParameter(buffer, "key", config.getKeyAsHash());
+        writeConfigParameter(buffer, "mode", config.getMode());
+        writeConfigParameter(buffer, "api_version", config.getApiVersion());
+        writeConfigParameter(buffer, "encoding", config.getEncoding());
+        writeConfigParameter(buffer, "solution_name", config.getSolutionName());
+        writeConfigParameter(buffer, "solution_version", config.getSolutionVersion());
+        writeConfigParameter(buffer, "integrator_name", config.getIntegratorName());
+        writeConfigParameter(buffer, "integrator_version", config.getIntegratorVersion());
+        return buffer.toByteArray();
+    }
+
+    /**
+     * <i>null</i> values are skipped, like in {@link BaseRequest#toStringMap(boolean)}.
+     */
+    private static void writeConfigParameter(@Nonnull final FormBuffer buffer,
+                                             @Nonnull final String name,
+                                             @Nullable final String value) {
+        if (value != null) {
+            buffer.writeParameter(name, value);
+        }
+    }
+
+    private static List<PropertyEncoder> getPropertyEncoders(@Nonnull final Class<?> requestClass) {
+        final List<PropertyEncoder> propertyEncoders = PROPERTY_ENCODERS.get(requestClass);
+        return propertyEncoders != null
+                ? propertyEncoders
+                : PROPERTY_ENCODERS.computeIfAbsent(requestClass, PayoneRequestEncoder::introspect);
+    }
+
+    private static List<PropertyEncoder> introspect(@Nonnull final Class<?> requestClass) {
+        final BeanDescription description = INTROSPECTION_MAPPER.getSerializationConfig()
+                .introspect(INTROSPECTION_MAPPER.constructType(requestClass));
+
+        final List<PropertyEncoder> propertyEncoders = new ArrayList<>();
+        for (final BeanPropertyDefinition property : description.findProperties()) {
+            final AnnotatedMember accessor = property.getAccessor();
+            if (accessor != null && property.couldSerialize()) {
+                accessor.fixAccess(true);
+                propertyEncoders.add(new PropertyEncoder(property.getName(), accessor));
+            }
+        }
+        return Collections.unmodifiableList(propertyEncoders);
+    }
+
+    /**
+     * Writes one request property, the type of the value is checked on every write like
+     * {@link PayonePostServiceImpl#getNameValuePairsWithExpandedLists(Map)} does.
+     */
+    private static final class PropertyEncoder {
+
+        private final AnnotatedMember accessor;
+        private final boolean isConfigProperty;
+
+        /**
+         * {@code name=}
+         */
+        private final byte[] encodedName;
+
+        /**
+         * {@code name[} before the index of a list item
+         */
+        private final byte[] encodedListName;
+
+        /**
+         * {@code name[]=} for an empty list
+         */
+        private final byte[] encodedEmptyListName;
+
+        private PropertyEncoder(@Nonnull final String name, @Nonnull final AnnotatedMember accessor) {
+            this.accessor = accessor;
+            this.isConfigProperty = CONFIG_PROPERTIES.contains(name);
+            this.encodedName = FormBuffer.encodeName(name, "=");
+            this.encodedListName = FormBuffer.encodeName(name, "%5B");
+            this.encodedEmptyListName = FormBuffer.encodeName(name, "%5B%5D=");
+        }
+
+        private void encode(@Nonnull final BaseRequest request, @Nonnull final FormBuffer buffer) {
+            final Object value = accessor.getValue(request);
+            if (value == null) {
+                return;
+            }
+
+            if (value instanceof List) {
+                encodeList((List<?>) value, buffer);
+            } else if (value instanceof Map) {
+                // like toStringMap(), null map values are skipped, but null list items are not
+                ((Map<?, ?>) value).forEach((key, item) -> {
+                    if (item != null) {
+                        buffer.writeParameter(PAY_DATA_PREFIX + key + "]", item);
+                    }
+                });
+            } else {
+                buffer.writeSeparator();
+                buffer.write(encodedName);
+                buffer.writeEncoded(value.toString());
+            }
+        }
+
+        private void encodeList(@Nonnull final List<?> list, @Nonnull final FormBuffer buffer) {
+            if (list.isEmpty()) {
+                buffer.writeSeparator();
+                buffer.write(encodedEmptyListName);
+                return;
+            }
+
+            int index = 1;
+            for (final Object item : list) {
+                buffer.writeSeparator();
+                buffer.write(encodedListName);
+                buffer.writeAscii(Integer.toString(index++));
+                if (item != null) {
+                    buffer.writeAscii("%5D=");
+                    buffer.writeEncoded(item.toString());
+                } else {
+                    buffer.writeAscii("%5D");
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable byte buffer which percent-encodes like
+     * {@link org.apache.http.client.utils.URLEncodedUtils#format(Iterable, java.nio.charset.Charset)} with UTF-8:
+     * letters, digits and {@code _-.*} are written as is, space as {@code +}, all other bytes as {@code %XX}.
+     */
+    private static final class FormBuffer {
+
+        private byte[] bytes;
+        private int length;
+
+        private FormBuffer() {
+            this(INITIAL_BUFFER_SIZE);
+        }
+
+        private FormBuffer(final int initialSize) {
+            this.bytes = new byte[initialSize];
+        }
+
+        /**
+         * @param encodedSuffix already encoded suffix, written as is
+         */
+        private static byte[] encodeName(@Nonnull final String name, @Nonnull final String encodedSuffix) {
+            final FormBuffer buffer = new FormBuffer(name.length() + encodedSuffix.length());
+            buffer.writeEncoded(name);
+            buffer.writeAscii(encodedSuffix);
+            return buffer.toByteArray();
+        }
+
+        private void reset() {
+            length = 0;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        private void writeSeparator() {
+            if (length > 0) {
+                writeByte('&');
+            }
+        }
+
+        private void writeParameter(@Nonnull final String name, @Nullable final Object value) {
+            writeSeparator();
+            writeEncoded(name);
+            if (value != null) {
+                writeByte('=');
+                writeEncoded(value.toString());
+            }
+        }
+
+        private void write(@Nonnull final byte[] encoded) {
+            ensureCapacity(encoded.length);
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            length += encoded.length;
+        }
+
+        private void writeAscii(@Nonnull final String ascii) {
+            ensureCapacity(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                bytes[length++] = (byte) ascii.charAt(i);
+            }
+        }
+
+        private void writeEncoded(@Nonnull final String value) {
+            // the longest encoding of one char is 3 percent-encoded UTF-8 bytes
+            ensureCapacity(value.length() * 9);
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c < 0x80) {
+                    writeAsciiEncoded(c);
+                } else if (c < 0x800) {
+                    writePercent(0xC0 | (c >> 6));
+                    writePercent(0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    final int codePoint = value.codePointAt(i);
+                    if (Character.isSupplementaryCodePoint(codePoint)) {
+                        writePercent(0xF0 | (codePoint >> 18));
+                        writePercent(0x80 | ((codePoint >> 12) & 0x3F));
+                        writePercent(0x80 | ((codePoint >> 6) & 0x3F));
+                        writePercent(0x80 | (codePoint & 0x3F));
+                        i++;
+                    } else {
+                        // unpaired surrogate is replaced like String.getBytes() does
+                        writePercent('?');
+                    }
+                } else {
+                    writePercent(0xE0 | (c >> 12));
+                    writePercent(0x80 | ((c >> 6) & 0x3F));
+                    writePercent(0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void writeAsciiEncoded(final char c) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-' || c == '.' || c == '*') {
+                bytes[length++] = (byte) c;
+            } else if (c == ' ') {
+                bytes[length++] = '+';
+            } else {
+                writePercent(c);
+            }
+        }
+
+        private void writePercent(final int b) {
+            bytes[length++] = '%';
+            bytes[length++] = HEX_DIGITS[(b >> 4) & 0xF];
+            bytes[length++] = HEX_DIGITS[b & 0xF];
+        }
+
+        private void writeByte(final char c) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) c;
+        }
+
+        private void ensureCapacity(final int additionalLength) {
+            if (length + additionalLength > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additionalLength));
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses the {@code key=value} lines of a Payone server API response in one pass while the body is read.
+ * <p>
+ * The result is the same as splitting the body into lines, splitting every line with
+ * {@link org.apache.commons.lang3.StringUtils#split(String, String, int) StringUtils.split(line, "=", 2)} and
+ * decoding the values with {@link java.net.URLDecoder#decode(String, String) URLDecoder.decode(value, "UTF-8")}:<ul>
+ * <li>lines are separated by {@code \n} or {@code \r\n}</li>
+ * <li>leading {@code =} of the key and of the value are skipped, lines without a key or a value are ignored</li>
+ * <li>{@code %XX} sequences are UTF-8 bytes, {@code +} is a space; a malformed {@code %} sequence fails the
+ * parsing with {@link IllegalArgumentException}</li>
+ * <li>the value of {@code redirecturl} (case insensitive) is not decoded, otherwise the redirect doesn't work</li>
+ * </ul>
+ * Other bytes are decoded with the charset of the response, which must be ASCII compatible.
+ */
+public final class PayoneResponseParser {
+
+    private static final byte[] REDIRECT_URL_KEY = "redirecturl".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int READ_BUFFER_SIZE = 2048;
+
+    private static final int KEY_START = 0;
+    private static final int KEY = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE = 3;
+    private static final int PERCENT_FIRST_DIGIT = 4;
+    private static final int PERCENT_SECOND_DIGIT = 5;
+
+    private final Charset charset;
+    private final boolean utf8;
+    private final Map<String, String> result = new HashMap<>();
+
+    private byte[] key = new byte[32];
+    private int keyLength;
+    private byte[] value = new byte[128];
+    private int valueLength;
+    private boolean decodeValue;
+    private int state = KEY_START;
+    private int percentHighDigit;
+    private boolean pendingCarriageReturn;
+
+    private PayoneResponseParser(@Nonnull final Charset charset) {
+        this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+    }
+
+    /**
+     * Reads {@code body} to the end and parses it. The stream is not closed.
+     *
+     * @param body    response body
+     * @param charset charset of the response, like {@code ISO-8859-1} if the response doesn't specify any
+     * @return mutable map of the response parameters
+     * @throws IOException              if the body can't be read
+     * @throws IllegalArgumentException if a value contains a malformed {@code %} sequence
+     */
+    @Nonnull
+    public static Map<String, String> parse(@Nonnull final InputStream body, @Nonnull final Charset charset)
+            throws IOException {
+        final PayoneResponseParser parser = new PayoneResponseParser(charset);
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                parser.accept(buffer[i]);
+            }
+        }
+        return parser.finish();
+    }
+
+    /**
+     * Same as {@link #parse(InputStream, Charset)} for a body which is already read.
+     */
+    @Nonnull
+    public static Map<String, String> parse(@Nonnull final byte[] body, @Nonnull final Charset charset) {
+        final PayoneResponseParser parser = new PayoneResponseParser(charset);
+        for (final byte b : body) {
+            parser.accept(b);
+        }
+        return parser.finish();
+    }
+
+    private void accept(final byte b) {
+        if (pendingCarriageReturn) {
+            pendingCarriageReturn = false;
+            if (b == '\n') {
+                endLine();
+                return;
+            }
+            acceptLineByte((byte) '\r');
+        }
+
+        if (b == '\r') {
+            pendingCarriageReturn = true;
+        } else if (b == '\n') {
+            endLine();
+        } else {
+            acceptLineByte(b);
+        }
+    }
+
+    private void acceptLineByte(final byte b) {
+        switch (state) {
+            case KEY_START:
+                if (b != '=') {
+                    appendKey(b);
+                    state = KEY;
+                }
+                break;
+            case KEY:
+                if (b == '=') {
+                    decodeValue = !isRedirectUrlKey();
+                    state = VALUE_START;
+                } else {
+                    appendKey(b);
+                }
+                break;
+            case VALUE_START:
+                if (b != '=') {
+                    state = VALUE;
+                    acceptValueByte(b);
+                }
+                break;
+            case VALUE:
+                acceptValueByte(b);
+                break;
+            case PERCENT_FIRST_DIGIT:
+                // URLDecoder parses the two characters with Integer.parseInt(), which accepts a sign
+                percentHighDigit = b == '+' || b == '-' ? -b : hexDigit(b);
+                state = PERCENT_SECOND_DIGIT;
+                break;
+            default:
+                appendValue(percentByte(percentHighDigit, hexDigit(b)));
+                state = VALUE;
+                break;
+        }
+    }
+
+    private void acceptValueByte(final byte b) {
+        if (!decodeValue) {
+            appendRawValue(b);
+        } else if (b == '%') {
+            state = PERCENT_FIRST_DIGIT;
+        } else if (b == '+') {
+            appendValue((byte) ' ');
+        } else {
+            appendRawValue(b);
+        }
+    }
+
+    private void endLine() {
+        if (state == PERCENT_FIRST_DIGIT || state == PERCENT_SECOND_DIGIT) {
+            throw new IllegalArgumentException("Incomplete trailing escape (%) pattern in Payone response value");
+        }
+        if (state == VALUE) {
+            // the value bytes are UTF-8, see appendRawValue()
+            result.put(new String(key, 0, keyLength, charset),
+                new String(value, 0, valueLength, StandardCharsets.UTF_8));
+        }
+        keyLength = 0;
+        valueLength = 0;
+        state = KEY_START;
+    }
+
+    private Map<String, String> finish() {
+        if (pendingCarriageReturn) {
+            pendingCarriageReturn = false;
+            acceptLineByte((byte) '\r');
+        }
+        endLine();
+        return result;
+    }
+
+    private boolean isRedirectUrlKey() {
+        if (keyLength != REDIRECT_URL_KEY.length) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            final int c = key[i];
+            if ((c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c) != REDIRECT_URL_KEY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The value bytes are kept as UTF-8 (like the percent-decoded bytes), so the not encoded non-ASCII bytes of
+     * other charsets are transcoded.
+     */
+    private void appendRawValue(final byte b) {
+        if (b >= 0 || utf8) {
+            appendValue(b);
+            return;
+        }
+
+        final String decoded = new String(new byte[]{b}, charset);
+        for (final byte utf8Byte : decoded.getBytes(StandardCharsets.UTF_8)) {
+            appendValue(utf8Byte);
+        }
+    }
+
+    private void appendKey(final byte b) {
+        if (keyLength == key.length) {
+            key = Arrays.copyOf(key, keyLength * 2);
+        }
+        key[keyLength++] = b;
+    }
+
+    private void appendValue(final byte b) {
+        if (valueLength == value.length) {
+            value = Arrays.copyOf(value, valueLength * 2);
+        }
+        value[valueLength++] = b;
+    }
+
+    private static byte percentByte(final int highDigit, final int lowDigit) {
+        if (highDigit == -'+') {
+            return (byte) lowDigit;
+        }
+        if (highDigit == -'-') {
+            if (lowDigit != 0) {
+                throw new IllegalArgumentException("Negative value in escape (%) pattern in Payone response value");
+            }
+            return 0;
+        }
+        return (byte) ((highDigit << 4) + lowDigit);
+    }
+
+    private static int hexDigit(final byte b) {
+        final int digit = Character.digit(b, 16);
+        if (digit < 0) {
+            throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern in Payone response value");
+        }
+        return digit;
+    }
+}
@@ -0,0 +1,47 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token bucket which limits the retries of the Payone requests of a tenant to a share of the requests, so the
+ * retries don't multiply the load when Payone is overloaded.
+ * <p>
+ * Every request deposits {@link #RETRY_PERCENT}% of a token, every retry takes a whole token. The bucket holds up to
+ * {@link #MAX_TOKENS} tokens and starts full, so occasional failures are retried even with low traffic.
+ */
+public final class PayoneRetryBudget {
+
+    static final int RETRY_PERCENT = 20;
+
+    static final int MAX_TOKENS = 10;
+
+    /**
+     * Balance in hundredths of a token.
+     */
+    private final AtomicInteger balance = new AtomicInteger(MAX_TOKENS * 100);
+
+    public static PayoneRetryBudget of() {
+        return new PayoneRetryBudget();
+    }
+
+    /**
+     * Deposits the share of a request, is called once per request (not per retry).
+     */
+    public void onRequest() {
+        balance.updateAndGet(current -> Math.min(current + RETRY_PERCENT, MAX_TOKENS * 100));
+    }
+
+    /**
+     * @return <b>true</b> if a token is taken and the request may be retried
+     */
+    public boolean tryAcquireRetry() {
+        int current;
+        do {
+            current = balance.get();
+            if (current < 100) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - 100));
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package com.commercetools.pspadapter.payone.domain.payone.exceptions;
+
+/**
+ * The request is not sent to Payone, because the circuit breaker of the tenant is open after repeated Payone
+ * failures, see {@link com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker}.
+ */
+public class PayoneCircuitOpenException extends PayoneException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PayoneCircuitOpenException(final String message) {
+        super(message);
+    }
+}
@@ -2,12 +2,11 @@ package com.commercetools.pspadapter.payone.domain.payone.model.common;
 
 import com.commercetools.pspadapter.payone.config.PayoneConfig;
 import com.commercetools.pspadapter.payone.util.ClearSecuredValuesSerializer;
+import com.commercetools.pspadapter.payone.util.RedactionPlan;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import java.io.Serializable;
 import java.util.HashMap;
@@ -79,19 +78,24 @@ public class BaseRequest implements Serializable {
     @JsonProperty("request")
     private String request;
 
-    public Map<String, Object> toStringMap(final boolean shouldClearSecurityValues) {
-
+    /**
+     * The mapper is thread safe and caches the serializers of the request classes, so it is created only once.
+     */
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    /**
+     * @param shouldClearSecurityValues whether the fields marked with {@link ClearSecuredValuesSerializer.Apply} are
+     *                                  masked, see {@link RedactionPlan}
+     * @return new map of the not <i>null</i> request parameters
+     */
+    public Map<String, Object> toStringMap(final boolean shouldClearSecurityValues) {
         if (shouldClearSecurityValues) {
-            SimpleModule module = new SimpleModule("test", Version.unknownVersion());
-            module.addSerializer(String.class, new ClearSecuredValuesSerializer());
-            mapper.registerModule(module);
+            return RedactionPlan.of(getClass()).toMaskedMap(this);
         }
 
-        return mapper.convertValue(this,
-                mapper.getTypeFactory().constructMapType(HashMap.class, String.class, Object.class));
+        return MAPPER.convertValue(this,
+                MAPPER.getTypeFactory().constructMapType(HashMap.class, String.class, Object.class));
     }
 
     BaseRequest(final PayoneConfig config, final String requestType) {
@@ -6,11 +6,15 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.Nonnull;
 import java.io.Serializable;
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * @author fhaertig
  * @since 17.12.15
@@ -58,7 +62,31 @@ public class Notification implements Serializable {
     private String accessid;
 
 
+    /**
+     * Separator of the notification parameters: {@code &}, optionally preceded by a line break.
+     */
+    public static final String DEFAULT_SEPARATOR_PATTERN = "\r?\n?&";
+
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    /**
+     * Parses the notification request body, see {@link NotificationParser}.
+     *
+     * @param body    notification request body
+     * @param charset charset of the request, Payone sends {@code ISO-8859-1} or {@code UTF-8}
+     * @return the parsed notification
+     * @throws IllegalArgumentException if the body is not a valid notification, e.g. it has duplicated keys or only
+     *                                  empty values
+     */
+    public static Notification fromKeyValueBytes(@Nonnull final byte[] body, @Nonnull final Charset charset) {
+        return NotificationParser.parse(body, charset);
+    }
+
     public static Notification fromKeyValueString(final String keyValueString, final String separatorPattern) {
+        if (DEFAULT_SEPARATOR_PATTERN.equals(separatorPattern)) {
+            return NotificationParser.parse(keyValueString.getBytes(UTF_8), UTF_8);
+        }
 
         //This code creates a map from an input string like this:
         //                "key=123&" +
@@ -75,9 +103,7 @@ public class Notification implements Serializable {
 
         validateNotificationValues(notificationValues);
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        return mapper.convertValue(notificationValues, Notification.class);
+        return MAPPER.convertValue(notificationValues, Notification.class);
     }
 
     private static void validateNotificationValues(final Map<String, String> notificationValues) {
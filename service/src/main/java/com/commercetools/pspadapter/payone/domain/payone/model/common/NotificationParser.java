@@ -0,0 +1,325 @@
+package com.commercetools.pspadapter.payone.domain.payone.model.common;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Parses the {@code key=value&...} body of a Payone transaction status notification in one pass over the bytes and
+ * sets the {@link Notification} fields directly.
+ * <p>
+ * The result is the same as {@link Notification#fromKeyValueString(String, String)} with
+ * {@link Notification#DEFAULT_SEPARATOR_PATTERN} did before, which split the trimmed body with the pattern, split
+ * every element with {@code split("=")} and converted the map with Jackson:<ul>
+ * <li>elements are separated by {@code &}, optionally preceded by {@code \r}, {@code \n} or {@code \r\n};
+ * trailing empty elements are ignored</li>
+ * <li>the key ends at the first {@code =}, the value at the second one; the values are not decoded</li>
+ * <li>a duplicated key, no element or only blank values fail the parsing with {@link IllegalArgumentException}</li>
+ * <li>unknown keys are ignored; the enum values are trimmed and matched by code or by ordinal, otherwise the parsing
+ * fails with {@link IllegalArgumentException}</li>
+ * </ul>
+ * An element which consists only of {@code =} also fails the parsing with {@link IllegalArgumentException}.
+ */
+final class NotificationParser {
+
+    private static final NotificationAction[] ACTIONS = NotificationAction.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private static final Field[] FIELDS = Field.values();
+
+    private static final int KEY_START = 0;
+    private static final int KEY_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+    /**
+     * Hash of the key bytes, or {@link #NOT_ASCII} if the key has non-ASCII bytes.
+     */
+    private static final int KEY_HASH = 4;
+    private static final int ELEMENT_SIZE = 5;
+
+    private static final int NOT_ASCII = -1;
+
+    private final byte[] body;
+    private final Charset charset;
+
+    /**
+     * {@link #ELEMENT_SIZE} ints for every element.
+     */
+    private int[] elements = new int[ELEMENT_SIZE * 32];
+    private int count;
+
+    private NotificationParser(@Nonnull final byte[] body, @Nonnull final Charset charset) {
+        this.body = body;
+        this.charset = charset;
+    }
+
+    /**
+     * @param body    notification request body
+     * @param charset charset of the request, Payone sends {@code ISO-8859-1} or {@code UTF-8}
+     * @return the parsed notification
+     * @throws IllegalArgumentException if the body is not a valid notification, see the class description
+     */
+    @Nonnull
+    static Notification parse(@Nonnull final byte[] body, @Nonnull final Charset charset) {
+        if (isAsciiCompatible(charset)) {
+            return new NotificationParser(body, charset).parse();
+        }
+        // the separators are searched as ASCII bytes, so other charsets are transcoded first
+        return new NotificationParser(new String(body, charset).getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8).parse();
+    }
+
+    private Notification parse() {
+        int start = 0;
+        int end = body.length;
+        // like String.trim()
+        while (start < end && (body[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (body[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+
+        splitElements(start, end);
+
+        if (count == 0) {
+            throw new IllegalArgumentException("The notification string is null or empty.");
+        }
+        if (!hasNotBlankValue()) {
+            throw new IllegalArgumentException("The notification string contains elements with empty value.");
+        }
+
+        final Notification notification = new Notification();
+        for (int i = 0; i < count; i++) {
+            final int element = ELEMENT_SIZE * i;
+            final Field field = fieldOf(elements[element + KEY_START], elements[element + KEY_END]);
+            if (field != null) {
+                field.setter.accept(notification,
+                        decode(elements[element + VALUE_START], elements[element + VALUE_END]));
+            }
+        }
+        return notification;
+    }
+
+    private void splitElements(final int start, final int end) {
+        // trailing empty elements are skipped, unless the body has no separator at all
+        int pendingEmptyElements = 0;
+        boolean separatorFound = false;
+        int elementStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && body[i] != '&') {
+                continue;
+            }
+            int elementEnd = i;
+            if (i < end) {
+                separatorFound = true;
+                if (elementEnd > elementStart && body[elementEnd - 1] == '\n') {
+                    elementEnd--;
+                }
+                if (elementEnd > elementStart && body[elementEnd - 1] == '\r') {
+                    elementEnd--;
+                }
+            }
+
+            if (elementEnd == elementStart && separatorFound) {
+                pendingEmptyElements++;
+            } else {
+                for (; pendingEmptyElements > 0; pendingEmptyElements--) {
+                    addElement(elementStart, elementStart);
+                }
+                addElement(elementStart, elementEnd);
+            }
+            elementStart = i + 1;
+        }
+    }
+
+    private void addElement(final int start, final int end) {
+        int keyHash = 0;
+        int keyEnd = start;
+        while (keyEnd < end && body[keyEnd] != '=') {
+            if (keyHash != NOT_ASCII) {
+                keyHash = body[keyEnd] < 0 ? NOT_ASCII : (31 * keyHash + body[keyEnd]) & Integer.MAX_VALUE;
+            }
+            keyEnd++;
+        }
+        final int valueStart = keyEnd < end ? keyEnd + 1 : end;
+        int valueEnd = valueStart;
+        while (valueEnd < end && body[valueEnd] != '=') {
+            valueEnd++;
+        }
+        if (end > start && isOnlyEqualsSigns(start, end)) {
+            throw new IllegalArgumentException("The notification string contains an element without key and value.");
+        }
+
+        for (int element = 0; element < ELEMENT_SIZE * count; element += ELEMENT_SIZE) {
+            if (isSameKey(element, start, keyEnd, keyHash)) {
+                throw new IllegalArgumentException(
+                        decode(elements[element + VALUE_START], elements[element + VALUE_END])
+                                + " is not a valid entry.");
+            }
+        }
+
+        final int element = ELEMENT_SIZE * count;
+        if (element == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+        elements[element + KEY_START] = start;
+        elements[element + KEY_END] = keyEnd;
+        elements[element + VALUE_START] = valueStart;
+        elements[element + VALUE_END] = valueEnd;
+        elements[element + KEY_HASH] = keyHash;
+        count++;
+    }
+
+    private boolean isOnlyEqualsSigns(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (body[i] != '=') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSameKey(final int element, final int start, final int end, final int hash) {
+        final int otherStart = elements[element + KEY_START];
+        final int otherEnd = elements[element + KEY_END];
+        if (hash == NOT_ASCII || elements[element + KEY_HASH] == NOT_ASCII) {
+            // different bytes might decode to the same string, e.g. malformed UTF-8 sequences
+            return decode(start, end).equals(decode(otherStart, otherEnd));
+        }
+        if (hash != elements[element + KEY_HASH] || end - start != otherEnd - otherStart) {
+            return false;
+        }
+        for (int i = 0; i < end - start; i++) {
+            if (body[start + i] != body[otherStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasNotBlankValue() {
+        for (int element = 0; element < ELEMENT_SIZE * count; element += ELEMENT_SIZE) {
+            final int start = elements[element + VALUE_START];
+            final int end = elements[element + VALUE_END];
+            if (!isAscii(start, end)) {
+                if (!StringUtils.isBlank(decode(start, end))) {
+                    return true;
+                }
+                continue;
+            }
+            for (int j = start; j < end; j++) {
+                if (!Character.isWhitespace((char) body[j])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private Field fieldOf(final int start, final int end) {
+        for (final Field field : FIELDS) {
+            final byte[] name = field.name;
+            if (name.length == end - start && name[0] == body[start] && isSameBytes(name, start)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private boolean isSameBytes(final byte[] name, final int start) {
+        for (int i = 1; i < name.length; i++) {
+            if (name[i] != body[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAscii(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (body[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(final int start, final int end) {
+        return new String(body, start, end - start, charset);
+    }
+
+    /**
+     * Matches the value like Jackson does for an enum with a {@code @JsonValue} code: the trimmed value is the code
+     * or, if it starts with a digit, the ordinal.
+     */
+    private static <E extends Enum<E>> E enumOf(final E[] constants, final String value,
+                                                final Function<E, String> code) {
+        final String trimmed = value.trim();
+        for (final E constant : constants) {
+            if (code.apply(constant).equals(trimmed)) {
+                return constant;
+            }
+        }
+        if (!trimmed.isEmpty() && trimmed.charAt(0) >= '0' && trimmed.charAt(0) <= '9') {
+            try {
+                final int ordinal = Integer.parseInt(trimmed);
+                if (ordinal >= 0 && ordinal < constants.length) {
+                    return constants[ordinal];
+                }
+            } catch (NumberFormatException e) {
+                // not an ordinal
+            }
+        }
+        throw new IllegalArgumentException(String.format("\"%s\" is not a valid %s value.",
+                value, constants[0].getDeclaringClass().getSimpleName()));
+    }
+
+    private static boolean isAsciiCompatible(final Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset)
+                || StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    /**
+     * The {@link Notification} properties, named like their JSON properties.
+     */
+    private enum Field {
+        KEY("key", Notification::setKey),
+        TXACTION("txaction", (notification, value) ->
+                notification.setTxaction(enumOf(ACTIONS, value, NotificationAction::getTxActionCode))),
+        TRANSACTION_STATUS("transaction_status", (notification, value) ->
+                notification.setTransactionStatus(enumOf(STATUSES, value, TransactionStatus::getPayoneCode))),
+        MODE("mode", Notification::setMode),
+        PORTALID("portalid", Notification::setPortalid),
+        AID("aid", Notification::setAid),
+        CLEARINGTYPE("clearingtype", Notification::setClearingtype),
+        TXTIME("txtime", Notification::setTxtime),
+        CURRENCY("currency", Notification::setCurrency),
+        USERID("userid", Notification::setUserid),
+        COUNTRY("country", Notification::setCountry),
+        TXID("txid", Notification::setTxid),
+        REFERENCE("reference", Notification::setReference),
+        SEQUENCENUMBER("sequencenumber", Notification::setSequencenumber),
+        PRICE("price", Notification::setPrice),
+        RECEIVABLE("receivable", Notification::setReceivable),
+        BALANCE("balance", Notification::setBalance),
+        PRODUCTID("productid", Notification::setProductid),
+        ACCESSID("accessid", Notification::setAccessid);
+
+        private final byte[] name;
+        private final BiConsumer<Notification, String> setter;
+
+        Field(final String name, final BiConsumer<Notification, String> setter) {
+            this.name = name.getBytes(StandardCharsets.US_ASCII);
+            this.setter = setter;
+        }
+    }
+}
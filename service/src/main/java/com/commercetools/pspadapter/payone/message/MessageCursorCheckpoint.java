@@ -0,0 +1,81 @@
+package com.commercetools.pspadapter.payone.message;
+
+import com.commercetools.pspadapter.payone.domain.ctp.MessageCursor;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Durable {@link MessageCursor} of the last commercetools message which is consumed together with all the preceding
+ * messages.
+ * <p>
+ * Like {@link com.commercetools.pspadapter.payone.notification.journal.JournalCheckpoint} the cursor is written to a
+ * temporary file which atomically replaces the checkpoint file, so after a crash the checkpoint is either the
+ * previous or the new one, never a torn value.
+ */
+public class MessageCursorCheckpoint {
+
+    private static final String CHECKPOINT_FILE_NAME = "payment-messages-checkpoint";
+    private static final String TEMPORARY_FILE_NAME = "payment-messages-checkpoint.tmp";
+
+    private final Path file;
+    private final Path temporaryFile;
+
+    public MessageCursorCheckpoint(@Nonnull final Path directory) {
+        this.file = directory.resolve(CHECKPOINT_FILE_NAME);
+        this.temporaryFile = directory.resolve(TEMPORARY_FILE_NAME);
+    }
+
+    /**
+     * @return the saved cursor, empty if nothing is saved yet
+     * @throws IOException if the checkpoint file can't be read or parsed
+     */
+    public Optional<MessageCursor> read() throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        final String content = new String(Files.readAllBytes(file), UTF_8);
+        final int separator = content.indexOf('\n');
+        if (separator < 0) {
+            throw new IOException("Invalid message cursor checkpoint " + file + ": " + content);
+        }
+        try {
+            return Optional.of(MessageCursor.of(ZonedDateTime.parse(content.substring(0, separator)),
+                content.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid message cursor checkpoint " + file + ": " + content, e);
+        }
+    }
+
+    /**
+     * Durably saves {@code cursor}.
+     *
+     * @param cursor cursor of the last consumed message
+     * @throws IOException if the checkpoint file can't be written
+     */
+    public void write(@Nonnull final MessageCursor cursor) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((cursor.getCreatedAt() + "\n" + cursor.getId()).getBytes(UTF_8));
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(temporaryFile, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,277 @@
+package com.commercetools.pspadapter.payone.message;
+
+import com.commercetools.pspadapter.payone.domain.ctp.MessageCursor;
+import com.commercetools.pspadapter.payone.notification.NotificationWorkerPool;
+import io.sphere.sdk.messages.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Background consumer which reads the {@code PaymentTransactionAdded} messages of a tenant and handles their payments
+ * like the payment handling URL does, so the transactions are executed without the shop calling the URL.
+ * <p>
+ * The messages are paged with a {@link MessageCursor}. The payments are handled on a fixed number of worker threads:
+ * a payment is assigned to a worker by its id, so the messages of one payment are handled one after another in
+ * message order, different payments in parallel.
+ * <p>
+ * The checkpoint is the cursor of the last message which is handled together with all the preceding messages, so it
+ * never skips a message which is still queued or in progress. It is saved to a {@link MessageCursorCheckpoint} after
+ * every page and whenever the consumer has caught up with the messages. After a crash the consumer resumes from the
+ * last checkpoint, thus a few payments might be handled twice, which is harmless since only the pending transactions
+ * of a payment are executed. Without a checkpoint the consumer starts with the messages created at its start.
+ * <p>
+ * A payment which fails to be handled is logged and skipped: the payment handler retries the concurrent
+ * modifications itself, and the shop can still call the payment handling URL.
+ * <p>
+ * {@link #close()} doesn't interrupt the payments in progress: a payment interrupted after its Payone request was
+ * sent, but before the response was stored on the payment, would look not executed on the next run. The queued
+ * payments are not started anymore, they are handled after the next start.
+ */
+public class PaymentMessageConsumer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PaymentMessageConsumer.class);
+
+    public static final int PAGE_SIZE = 100;
+
+    /**
+     * Maximum number of the read messages which are not handled yet.
+     */
+    private static final int MAX_IN_FLIGHT = 1000;
+
+    static final long POLL_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Max time to wait for the payments in progress on close: a payment is handled with a few commercetools requests
+     * (timeout 10 sec each) and a Payone request (up to 25 sec for connecting, waiting for a pooled connection and
+     * reading).
+     */
+    static final long SHUTDOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final String tenantName;
+    private final Function<MessageCursor, List<? extends Message>> messagePageQuery;
+    private final MessageCursorCheckpoint checkpoint;
+    private final Consumer<String> paymentHandler;
+    private final long pollIntervalMillis;
+    private final List<ExecutorService> workers;
+
+    private final ConcurrentSkipListSet<MessageCursor> inFlightCursors = new ConcurrentSkipListSet<>();
+    private final Semaphore inFlightPermits = new Semaphore(MAX_IN_FLIGHT);
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    private final CountDownLatch closeRequested = new CountDownLatch(1);
+
+    /**
+     * @param tenantName       name of the tenant
+     * @param messagePageQuery queries up to {@value #PAGE_SIZE} {@code PaymentTransactionAdded} messages after a
+     *                         cursor in cursor order, like
+     *                         {@code CommercetoolsQueryExecutor#queryPaymentTransactionAddedMessages()}
+     * @param checkpoint       checkpoint of the tenant
+     * @param paymentHandler   handles the payment with the given id, like
+     *                         {@link com.commercetools.pspadapter.payone.PaymentHandler#handlePayment(String)}
+     */
+    public PaymentMessageConsumer(@Nonnull final String tenantName,
+                                  @Nonnull final Function<MessageCursor, List<? extends Message>> messagePageQuery,
+                                  @Nonnull final MessageCursorCheckpoint checkpoint,
+                                  @Nonnull final Consumer<String> paymentHandler) {
+        this(tenantName, messagePageQuery, checkpoint, paymentHandler, POLL_INTERVAL_MILLIS,
+            NotificationWorkerPool.defaultPartitionCount());
+    }
+
+    PaymentMessageConsumer(@Nonnull final String tenantName,
+                           @Nonnull final Function<MessageCursor, List<? extends Message>> messagePageQuery,
+                           @Nonnull final MessageCursorCheckpoint checkpoint,
+                           @Nonnull final Consumer<String> paymentHandler,
+                           final long pollIntervalMillis,
+                           final int workerCount) {
+        this.tenantName = tenantName;
+        this.messagePageQuery = messagePageQuery;
+        this.checkpoint = checkpoint;
+        this.paymentHandler = paymentHandler;
+        this.pollIntervalMillis = pollIntervalMillis;
+
+        this.workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            final String workerName = "payment-message-worker-" + tenantName + "-" + i;
+            workers.add(Executors.newSingleThreadExecutor(runnable -> {
+                final Thread worker = new Thread(runnable, workerName);
+                worker.setDaemon(true);
+                return worker;
+            }));
+        }
+
+        this.thread = new Thread(this::consume, "payment-messages-" + tenantName);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops reading the messages, waits up to {@link #SHUTDOWN_TIMEOUT_MILLIS} for the payments in progress and then
+     * saves the checkpoint. The messages which are not handled yet are handled after the next start.
+     */
+    @Override
+    public void close() {
+        running = false;
+        closeRequested.countDown();
+        try {
+            // the last message query and the payments in progress
+            thread.join(SHUTDOWN_TIMEOUT_MILLIS + TimeUnit.SECONDS.toMillis(15));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        MessageCursor cursor;
+        try {
+            cursor = checkpoint.read().orElseGet(() -> MessageCursor.of(ZonedDateTime.now(), ""));
+        } catch (IOException e) {
+            LOG.error("Can't read the payment messages checkpoint of tenant [{}], start with the new messages",
+                tenantName, e);
+            cursor = MessageCursor.of(ZonedDateTime.now(), "");
+        }
+        LOG.info("Consume the payment messages of tenant [{}] after [{}]", tenantName, cursor);
+
+        // cursors of the messages read after the checkpoint, accessed only by this thread
+        final NavigableSet<MessageCursor> readCursors = new TreeSet<>();
+        MessageCursor checkpointedCursor = cursor;
+        try {
+            while (running) {
+                final List<? extends Message> messages;
+                try {
+                    messages = messagePageQuery.apply(cursor);
+                } catch (RuntimeException e) {
+                    if (!running) {
+                        break;
+                    }
+                    LOG.error("Can't query the payment messages of tenant [{}], retry in {} ms",
+                        tenantName, pollIntervalMillis, e);
+                    awaitClose(pollIntervalMillis);
+                    continue;
+                }
+
+                for (final Message message : messages) {
+                    final MessageCursor messageCursor = MessageCursor.of(message);
+                    if (!submit(message, messageCursor)) {
+                        break;
+                    }
+                    cursor = messageCursor;
+                    readCursors.add(cursor);
+                }
+
+                checkpointedCursor = saveCheckpoint(readCursors, checkpointedCursor);
+                if (messages.size() < PAGE_SIZE) {
+                    awaitClose(pollIntervalMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        awaitPaymentsInProgress();
+        saveCheckpoint(readCursors, checkpointedCursor);
+    }
+
+    private void awaitClose(final long timeoutMillis) throws InterruptedException {
+        closeRequested.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lets the workers finish the payments in progress without interrupting them, the queued payments are skipped.
+     */
+    private void awaitPaymentsInProgress() {
+        workers.forEach(ExecutorService::shutdown);
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MILLIS);
+        try {
+            for (final ExecutorService worker : workers) {
+                if (!worker.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    LOG.warn("The payments of tenant [{}] in progress are not finished in {} ms, they are handled "
+                        + "again after the next start", tenantName, SHUTDOWN_TIMEOUT_MILLIS);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return <b>false</b> if the consumer was closed before the payment could be queued
+     */
+    private boolean submit(@Nonnull final Message message, @Nonnull final MessageCursor cursor)
+        throws InterruptedException {
+
+        final String paymentId = message.getResource().getId();
+        while (!inFlightPermits.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                return false;
+            }
+        }
+        inFlightCursors.add(cursor);
+        workers.get(Math.floorMod(paymentId.hashCode(), workers.size())).execute(() -> {
+            if (!running) {
+                // closed before the payment was started, it stays in flight, thus it is not checkpointed
+                return;
+            }
+            handle(paymentId);
+            inFlightCursors.remove(cursor);
+            inFlightPermits.release();
+        });
+        return true;
+    }
+
+    private void handle(@Nonnull final String paymentId) {
+        try {
+            paymentHandler.accept(paymentId);
+        } catch (Exception e) {
+            LOG.error("Payment [{}] of tenant [{}] could not be handled on its PaymentTransactionAdded message",
+                paymentId, tenantName, e);
+        }
+    }
+
+    /**
+     * Saves the cursor of the last read message which precedes all the messages in progress.
+     *
+     * @return the saved cursor
+     */
+    private MessageCursor saveCheckpoint(@Nonnull final NavigableSet<MessageCursor> readCursors,
+                                         @Nonnull final MessageCursor checkpointedCursor) {
+        final Iterator<MessageCursor> inFlight = inFlightCursors.iterator();
+        final MessageCursor firstInFlight = inFlight.hasNext() ? inFlight.next() : null;
+        final MessageCursor handledCursor = firstInFlight != null
+            ? readCursors.lower(firstInFlight)
+            : readCursors.isEmpty() ? null : readCursors.last();
+        if (handledCursor == null || handledCursor.equals(checkpointedCursor)) {
+            return checkpointedCursor;
+        }
+
+        readCursors.headSet(handledCursor, true).clear();
+        try {
+            checkpoint.write(handledCursor);
+        } catch (Exception e) {
+            LOG.error("Can't save the payment messages checkpoint of tenant [{}]", tenantName, e);
+        }
+        return handledCursor;
+    }
+}
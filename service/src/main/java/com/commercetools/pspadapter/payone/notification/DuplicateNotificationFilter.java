@@ -0,0 +1,224 @@
+package com.commercetools.pspadapter.payone.notification;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the notifications which are already processed, so Payone redeliveries of them can be acknowledged
+ * without touching the commercetools platform.
+ * <p>
+ * A notification is identified by a 64-bit fingerprint of its {@code txid}, {@code sequencenumber}, {@code txaction},
+ * {@code transaction_status} and {@code txtime}. The fingerprints are stored in open-addressing {@code long} hash
+ * tables (linear probing, {@code 0} marks an empty slot). A table is allocated with a small initial capacity on the
+ * first fingerprint of its generation and doubles when it is filled up, up to the maximum capacity. Thus a tenant
+ * which gets few notifications keeps a few kilobytes, and the memory footprint is bounded regardless of the
+ * notifications rate. A lookup never allocates.
+ * <p>
+ * The tables are time-bucketed generations: new fingerprints go to the current generation, and when it is older than
+ * the generation period or its table is filled up at the maximum capacity, the oldest generation is dropped and
+ * becomes the current one. Thus a fingerprint is remembered for at least one generation period, unless the
+ * notifications rate fills a table earlier.
+ * <p>
+ * A fingerprint collision might skip a notification which is not a duplicate, but with 64-bit fingerprints it is
+ * negligible compared to the number of stored notifications.
+ */
+class DuplicateNotificationFilter {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 10;
+    static final int DEFAULT_MAX_CAPACITY = 1 << 19;
+    static final long DEFAULT_GENERATION_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    private static final int GENERATIONS = 2;
+    private static final long EMPTY = 0L;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Table of every generation, <i>null</i> until the first fingerprint of the generation is added.
+     */
+    private final long[][] tables;
+    private final int[] sizes;
+    private final int initialCapacity;
+    private final int maxCapacity;
+    private final long generationMillis;
+    private final LongSupplier clock;
+
+    private int current;
+    private long currentGenerationStart;
+
+    DuplicateNotificationFilter() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_CAPACITY, DEFAULT_GENERATION_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * Same as {@link #DuplicateNotificationFilter(int, int, long, LongSupplier)} with tables of fixed
+     * {@code capacity}.
+     */
+    DuplicateNotificationFilter(final int capacity, final long generationMillis, @Nonnull final LongSupplier clock) {
+        this(capacity, capacity, generationMillis, clock);
+    }
+
+    /**
+     * @param initialCapacity  number of slots of a new generation table, must be a power of two
+     * @param maxCapacity      number of slots up to which a generation table grows, must be a power of two
+     * @param generationMillis period after which the current generation is replaced
+     * @param clock            source of the current time in milliseconds
+     */
+    DuplicateNotificationFilter(final int initialCapacity, final int maxCapacity, final long generationMillis,
+                                @Nonnull final LongSupplier clock) {
+        if (initialCapacity < 2 || Integer.bitCount(initialCapacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, but is " + initialCapacity);
+        }
+        if (maxCapacity < initialCapacity || Integer.bitCount(maxCapacity) != 1) {
+            throw new IllegalArgumentException("Maximum capacity must be a power of two not less than "
+                + initialCapacity + ", but is " + maxCapacity);
+        }
+        this.tables = new long[GENERATIONS][];
+        this.sizes = new int[GENERATIONS];
+        this.initialCapacity = initialCapacity;
+        this.maxCapacity = maxCapacity;
+        this.generationMillis = generationMillis;
+        this.clock = clock;
+        this.currentGenerationStart = clock.getAsLong();
+    }
+
+    /**
+     * @param fingerprint fingerprint of a notification, see {@link #fingerprint(Notification)}
+     * @return <b>true</b> if the notification was marked as processed and is still remembered
+     */
+    synchronized boolean contains(final long fingerprint) {
+        expireGenerations();
+        for (final long[] table : tables) {
+            if (table != null && contains(table, fingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the notification with {@code fingerprint} as processed.
+     *
+     * @param fingerprint fingerprint of a notification, see {@link #fingerprint(Notification)}
+     */
+    synchronized void add(final long fingerprint) {
+        expireGenerations();
+        if (tables[current] == null) {
+            tables[current] = new long[initialCapacity];
+        } else if (contains(tables[current], fingerprint)) {
+            return;
+        }
+        if (sizes[current] >= maxSizeOf(tables[current])) {
+            if (tables[current].length < maxCapacity) {
+                tables[current] = grow(tables[current]);
+            } else {
+                nextGeneration();
+                tables[current] = new long[initialCapacity];
+            }
+        }
+
+        insert(tables[current], fingerprint);
+        sizes[current]++;
+    }
+
+    /**
+     * @return number of slots of the current generation table, {@code 0} if it is not allocated
+     */
+    synchronized int getCurrentCapacity() {
+        return tables[current] != null ? tables[current].length : 0;
+    }
+
+    /**
+     * @param notification Payone notification
+     * @return non-zero 64-bit fingerprint of the notification identity fields
+     */
+    static long fingerprint(@Nonnull final Notification notification) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hashField(hash, notification.getTxid());
+        hash = hashField(hash, notification.getSequencenumber());
+        hash = hashField(hash, notification.getTxaction() != null ? notification.getTxaction().getTxActionCode() : null);
+        hash = hashField(hash, notification.getTransactionStatus() != null
+            ? notification.getTransactionStatus().name() : null);
+        hash = hashField(hash, notification.getTxtime());
+
+        // murmur3 finalizer spreads the bits over the whole word, since the low bits address the slots
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash != EMPTY ? hash : 1L;
+    }
+
+    private static long hashField(long hash, @Nullable final String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // separator, so the fields boundaries are a part of the fingerprint
+        return (hash ^ '|') * FNV_PRIME;
+    }
+
+    private static boolean contains(@Nonnull final long[] table, final long fingerprint) {
+        final int mask = table.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == fingerprint) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private static void insert(@Nonnull final long[] table, final long fingerprint) {
+        final int mask = table.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = fingerprint;
+    }
+
+    private static long[] grow(@Nonnull final long[] table) {
+        final long[] grown = new long[table.length * 2];
+        for (final long fingerprint : table) {
+            if (fingerprint != EMPTY) {
+                insert(grown, fingerprint);
+            }
+        }
+        return grown;
+    }
+
+    private static int maxSizeOf(@Nonnull final long[] table) {
+        return table.length / 4 * 3;
+    }
+
+    private void expireGenerations() {
+        final long elapsed = clock.getAsLong() - currentGenerationStart;
+        if (elapsed >= generationMillis) {
+            // if the current generation is older than two periods, all the fingerprints are older than one period
+            final int expiredGenerations = elapsed >= 2 * generationMillis ? GENERATIONS : 1;
+            for (int i = 0; i < expiredGenerations; i++) {
+                nextGeneration();
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest generation, its table is allocated again with the initial capacity on the next fingerprint.
+     */
+    private void nextGeneration() {
+        current = (current + 1) % GENERATIONS;
+        tables[current] = null;
+        sizes[current] = 0;
+        currentGenerationStart = clock.getAsLong();
+    }
+}
@@ -4,6 +4,7 @@ import com.commercetools.pspadapter.payone.config.PayoneConfig;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.ClearingType;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.NotificationAction;
+import com.commercetools.pspadapter.payone.util.PaymentLanes;
 import com.commercetools.pspadapter.tenant.TenantFactory;
 import io.sphere.sdk.payments.Payment;
 import io.sphere.sdk.payments.PaymentDraft;
@@ -19,6 +20,7 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import static com.commercetools.pspadapter.payone.util.CompletionUtil.executeBlocking;
+import static com.commercetools.pspadapter.payone.util.PaymentLanes.txidKey;
 
 /**
  * @author fhaertig
@@ -32,20 +34,38 @@ public class NotificationDispatcher {
     private final Map<NotificationAction, NotificationProcessor> processors;
     private final TenantFactory tenantFactory;
     private final PayoneConfig config;
+    private final PaymentLanes paymentLanes;
+    private final DuplicateNotificationFilter duplicateNotificationFilter = new DuplicateNotificationFilter();
 
     public NotificationDispatcher(
             final NotificationProcessor defaultProcessor,
             final Map<NotificationAction, NotificationProcessor> processors,
             final TenantFactory tenantFactory,
             final PayoneConfig config) {
+        this(defaultProcessor, processors, tenantFactory, config, new PaymentLanes());
+    }
+
+    /**
+     * @param paymentLanes lanes shared with the {@link com.commercetools.pspadapter.payone.PaymentHandler} of the
+     *                     same tenant, so notifications and handle requests for one payment don't run concurrently
+     */
+    public NotificationDispatcher(
+            final NotificationProcessor defaultProcessor,
+            final Map<NotificationAction, NotificationProcessor> processors,
+            final TenantFactory tenantFactory,
+            final PayoneConfig config,
+            final PaymentLanes paymentLanes) {
         this.defaultProcessor = defaultProcessor;
         this.processors = processors;
         this.tenantFactory = tenantFactory;
         this.config = config;
+        this.paymentLanes = paymentLanes;
     }
 
     /**
-     * Dispatches the {@code notification} to a notification processor
+     * Dispatches the {@code notification} to a notification processor.
+     * <p>
+     * A notification which has been already processed by this instance (i.e. a Payone redelivery) is skipped.
      *
      * @param notification a PAYONE transaction status notification
      * @throws ConcurrentModificationException in case the respective payment could not be updated due to concurrent
@@ -55,6 +75,12 @@ public class NotificationDispatcher {
     public void dispatchNotification(final Notification notification) {
         validateSecrets(notification);
 
+        final long fingerprint = DuplicateNotificationFilter.fingerprint(notification);
+        if (duplicateNotificationFilter.contains(fingerprint)) {
+            LOGGER.info("Notification [{}] is already processed, skip the duplicate.", notification.toString());
+            return;
+        }
+
         final NotificationProcessor notificationProcessor = getNotificationProcessor(notification.getTxaction());
 
         try {
@@ -66,6 +92,9 @@ public class NotificationDispatcher {
             // try once more
             dispatchNotificationToProcessor(notification, notificationProcessor);
         }
+
+        // only successfully processed notifications are remembered, so failed ones are processed on redelivery
+        duplicateNotificationFilter.add(fingerprint);
     }
 
     /**
@@ -75,7 +104,7 @@ public class NotificationDispatcher {
      * @param notification the notification object to check
      * @throws IllegalArgumentException if any argument is null or not matching
      */
-    private void validateSecrets(final Notification notification) throws IllegalArgumentException {
+    public void validateSecrets(final Notification notification) throws IllegalArgumentException {
         if(!config.getKeyAsHash().equals(notification.getKey())) {
             throw new IllegalArgumentException("the value for 'key' is not valid for this service instance: " + notification.getKey());
         }
@@ -97,7 +126,20 @@ public class NotificationDispatcher {
     private void dispatchNotificationToProcessor(final Notification notification,
                                                  final NotificationProcessor notificationProcessor) {
 
-        Payment payment = executeBlocking(tenantFactory.getPaymentService()
+        // the lane of the txid prevents creating the same payment twice by concurrent notifications
+        final Payment payment = paymentLanes.execute(txidKey(notification.getTxid()),
+                () -> getOrCreatePayment(notification));
+
+        paymentLanes.executeAfterPrevious(payment.getId(), waitedForPrevious -> {
+            // the payment might have been updated by the previous task of the lane, e.g. a handle request
+            final Payment actualPayment = waitedForPrevious ? getOrCreatePayment(notification) : payment;
+            notificationProcessor.processTransactionStatusNotification(notification, actualPayment);
+            return null;
+        });
+    }
+
+    private Payment getOrCreatePayment(final Notification notification) {
+        return executeBlocking(tenantFactory.getPaymentService()
                     .getByPaymentMethodAndInterfaceId(tenantFactory.getPayoneInterfaceName(), notification.getTxid())
                 .thenComposeAsync(optionalPayment -> optionalPayment
                         .map(CompletableFuture::completedFuture)
@@ -105,8 +147,6 @@ public class NotificationDispatcher {
                     PaymentDraft paymentDraft = createNewPaymentDraftFromNotification(notification);
                     return tenantFactory.getPaymentService().createPayment(paymentDraft).toCompletableFuture();
                 })));
-
-        notificationProcessor.processTransactionStatusNotification(notification, payment);
     }
 
     private PaymentDraft createNewPaymentDraftFromNotification(final Notification notification) {
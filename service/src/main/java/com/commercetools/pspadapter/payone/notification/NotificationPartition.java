@@ -0,0 +1,233 @@
+package com.commercetools.pspadapter.payone.notification;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Partition of a {@link NotificationWorkerPool}: a worker thread with its queue and the reordering state of the
+ * transactions of the partition. The reordering state is accessed only by the worker thread.
+ */
+class NotificationPartition {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationPartition.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+    private static final long IDLE_TRANSACTION_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final int index;
+    private final long reorderWindowMillis;
+    private final Predicate<Notification> handler;
+    private final Thread thread;
+
+    private final BlockingQueue<Task> inbox = new LinkedBlockingQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong reordered = new AtomicLong();
+    private final AtomicLong reorderWaitTotalMillis = new AtomicLong();
+    private final AtomicLong reorderWaitMaxMillis = new AtomicLong();
+
+    // accessed only by the worker thread
+    private final Map<String, Transaction> transactions = new HashMap<>();
+    private final Set<Transaction> waitingTransactions = new LinkedHashSet<>();
+    private long arrivalCounter;
+    private long lastExpiry;
+
+    NotificationPartition(@Nonnull final String name, final int index, final long reorderWindowMillis,
+                          @Nonnull final Predicate<Notification> handler) {
+        this.index = index;
+        this.reorderWindowMillis = reorderWindowMillis;
+        this.handler = handler;
+        this.thread = new Thread(this::work, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        thread.interrupt();
+    }
+
+    void join() {
+        try {
+            thread.join(POLL_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void submit(@Nonnull final Notification notification, @Nonnull final Runnable onHandled) {
+        queueDepth.incrementAndGet();
+        inbox.add(new Task(notification, onHandled, System.currentTimeMillis()));
+    }
+
+    @Nonnull
+    NotificationPartitionMetrics getMetrics() {
+        final long reorderedCount = reordered.get();
+        return new NotificationPartitionMetrics(index, queueDepth.get(), handled.get(), reorderedCount,
+            reorderedCount > 0 ? reorderWaitTotalMillis.get() / reorderedCount : 0, reorderWaitMaxMillis.get());
+    }
+
+    private void work() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Task task = inbox.poll(nextDeadlineDelay(System.currentTimeMillis()), MILLISECONDS);
+                if (task != null) {
+                    accept(task);
+                }
+                if (!handleReady(System.currentTimeMillis())) {
+                    return;
+                }
+                expireIdleTransactions(System.currentTimeMillis());
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void accept(@Nonnull final Task task) throws InterruptedException {
+        final String txid = task.notification.getTxid();
+        final Integer sequenceNumber = parseSequenceNumber(task.notification.getSequencenumber());
+        if (txid == null || sequenceNumber == null) {
+            // nothing to order by
+            if (!handle(task)) {
+                throw new InterruptedException();
+            }
+            return;
+        }
+
+        task.sequenceNumber = sequenceNumber;
+        task.arrival = arrivalCounter++;
+        final Transaction transaction = transactions.computeIfAbsent(txid, key -> new Transaction());
+        transaction.pending.add(task);
+        waitingTransactions.add(transaction);
+    }
+
+    /**
+     * Handles the held notifications which are in order or whose reorder window is over.
+     *
+     * @return <b>false</b> if the worker is interrupted
+     */
+    private boolean handleReady(final long now) {
+        final Iterator<Transaction> iterator = waitingTransactions.iterator();
+        while (iterator.hasNext()) {
+            final Transaction transaction = iterator.next();
+            while (!transaction.pending.isEmpty()) {
+                final Task head = transaction.pending.peek();
+                final boolean inOrder = transaction.lastSequenceNumber >= 0
+                    ? head.sequenceNumber <= transaction.lastSequenceNumber + 1
+                    : head.sequenceNumber == 0;
+                if (!inOrder && head.receivedAt + reorderWindowMillis > now) {
+                    transaction.pending.forEach(task -> task.held = true);
+                    break;
+                }
+
+                transaction.pending.poll();
+                if (!inOrder) {
+                    LOG.debug("Notification [{}] is handled without the preceding sequence numbers after {} ms",
+                        head.notification, now - head.receivedAt);
+                }
+                if (!handle(head)) {
+                    return false;
+                }
+                transaction.lastSequenceNumber = Math.max(transaction.lastSequenceNumber, head.sequenceNumber);
+                transaction.lastActivity = now;
+            }
+            if (transaction.pending.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return true;
+    }
+
+    private boolean handle(@Nonnull final Task task) {
+        if (task.held) {
+            final long waitMillis = System.currentTimeMillis() - task.receivedAt;
+            reordered.incrementAndGet();
+            reorderWaitTotalMillis.addAndGet(waitMillis);
+            reorderWaitMaxMillis.accumulateAndGet(waitMillis, Math::max);
+        }
+
+        if (!handler.test(task.notification)) {
+            return false;
+        }
+        queueDepth.decrementAndGet();
+        handled.incrementAndGet();
+        task.onHandled.run();
+        return true;
+    }
+
+    private long nextDeadlineDelay(final long now) {
+        long delay = POLL_TIMEOUT_MILLIS;
+        for (final Transaction transaction : waitingTransactions) {
+            final Task head = transaction.pending.peek();
+            if (head != null) {
+                delay = Math.min(delay, head.receivedAt + reorderWindowMillis - now);
+            }
+        }
+        return Math.max(1, delay);
+    }
+
+    private void expireIdleTransactions(final long now) {
+        if (now - lastExpiry < POLL_TIMEOUT_MILLIS) {
+            return;
+        }
+        lastExpiry = now;
+        transactions.values().removeIf(transaction -> transaction.pending.isEmpty()
+            && now - transaction.lastActivity > IDLE_TRANSACTION_EXPIRY_MILLIS);
+    }
+
+    @Nullable
+    private static Integer parseSequenceNumber(@Nullable final String sequenceNumber) {
+        if (sequenceNumber == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(sequenceNumber.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Task {
+        private final Notification notification;
+        private final Runnable onHandled;
+        private final long receivedAt;
+        private int sequenceNumber;
+        private long arrival;
+        private boolean held;
+
+        private Task(final Notification notification, final Runnable onHandled, final long receivedAt) {
+            this.notification = notification;
+            this.onHandled = onHandled;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private static final class Transaction {
+        private final PriorityQueue<Task> pending = new PriorityQueue<>(
+            Comparator.<Task>comparingInt(task -> task.sequenceNumber).thenComparingLong(task -> task.arrival));
+        private int lastSequenceNumber = -1;
+        private long lastActivity;
+    }
+}
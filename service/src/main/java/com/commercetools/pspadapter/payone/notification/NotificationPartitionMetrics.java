@@ -0,0 +1,63 @@
+package com.commercetools.pspadapter.payone.notification;
+
+/**
+ * Snapshot of the metrics of a {@link NotificationWorkerPool} partition.
+ */
+public class NotificationPartitionMetrics {
+
+    private final int partition;
+    private final int queueDepth;
+    private final long handled;
+    private final long reordered;
+    private final long reorderWaitAvgMillis;
+    private final long reorderWaitMaxMillis;
+
+    NotificationPartitionMetrics(final int partition, final int queueDepth, final long handled, final long reordered,
+                                 final long reorderWaitAvgMillis, final long reorderWaitMaxMillis) {
+        this.partition = partition;
+        this.queueDepth = queueDepth;
+        this.handled = handled;
+        this.reordered = reordered;
+        this.reorderWaitAvgMillis = reorderWaitAvgMillis;
+        this.reorderWaitMaxMillis = reorderWaitMaxMillis;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return number of the notifications which are queued or held for reordering
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return number of the handled notifications since the start
+     */
+    public long getHandled() {
+        return handled;
+    }
+
+    /**
+     * @return number of the handled notifications which were held waiting for a lower sequence number
+     */
+    public long getReordered() {
+        return reordered;
+    }
+
+    /**
+     * @return average time the reordered notifications were held
+     */
+    public long getReorderWaitAvgMillis() {
+        return reorderWaitAvgMillis;
+    }
+
+    /**
+     * @return maximum time a reordered notification was held
+     */
+    public long getReorderWaitMaxMillis() {
+        return reorderWaitMaxMillis;
+    }
+}
@@ -0,0 +1,90 @@
+package com.commercetools.pspadapter.payone.notification;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Processes notifications asynchronously on a fixed number of partitions, each with its own worker thread.
+ * <p>
+ * A notification is assigned to a partition by its {@code txid}, so all the notifications of one Payone transaction
+ * are handled by the same worker, one after another, while different transactions are spread over all the workers.
+ * Within a partition the notifications of a transaction are handled in {@code sequencenumber} order: a notification
+ * which overtook a notification with a lower sequence number is held for up to the reorder window, waiting for the
+ * missing one; after the window it is handled anyway.
+ * <p>
+ * The queue depth and the reorder wait time of every partition are available from {@link #getMetrics()}.
+ */
+public class NotificationWorkerPool implements Closeable {
+
+    public static final long DEFAULT_REORDER_WINDOW_MILLIS = 500;
+
+    private final List<NotificationPartition> partitions;
+
+    /**
+     * @param name                name of the pool, used in the worker thread names
+     * @param partitionCount      number of the partitions (and worker threads)
+     * @param reorderWindowMillis how long an out of order notification waits for the missing ones
+     * @param handler             handles a notification in a worker thread and returns <b>false</b> if the handling
+     *                            was interrupted, i.e. the notification is not handled
+     */
+    public NotificationWorkerPool(@Nonnull final String name,
+                                  final int partitionCount,
+                                  final long reorderWindowMillis,
+                                  @Nonnull final Predicate<Notification> handler) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be positive, but is " + partitionCount);
+        }
+        this.partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new NotificationPartition(name + "-" + i, i, reorderWindowMillis, handler));
+        }
+    }
+
+    /**
+     * @return number of the partitions for the cores of this machine
+     */
+    public static int defaultPartitionCount() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    public void start() {
+        partitions.forEach(NotificationPartition::start);
+    }
+
+    /**
+     * Queues {@code notification} to the partition of its {@code txid}.
+     *
+     * @param notification notification to handle
+     * @param onHandled    called in the worker thread after the notification is handled; not called if the pool is
+     *                     closed before
+     */
+    public void submit(@Nonnull final Notification notification, @Nonnull final Runnable onHandled) {
+        final String txid = notification.getTxid();
+        final int partition = txid != null ? Math.floorMod(txid.hashCode(), partitions.size()) : 0;
+        partitions.get(partition).submit(notification, onHandled);
+    }
+
+    /**
+     * @return current metrics of every partition
+     */
+    @Nonnull
+    public List<NotificationPartitionMetrics> getMetrics() {
+        final List<NotificationPartitionMetrics> metrics = new ArrayList<>(partitions.size());
+        partitions.forEach(partition -> metrics.add(partition.getMetrics()));
+        return metrics;
+    }
+
+    /**
+     * Stops the workers. Queued and held notifications are dropped without calling their callbacks.
+     */
+    @Override
+    public void close() {
+        partitions.forEach(NotificationPartition::stop);
+        partitions.forEach(NotificationPartition::join);
+    }
+}
@@ -0,0 +1,63 @@
+package com.commercetools.pspadapter.payone.notification.journal;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Durable position of the first not yet consumed record of a {@link NotificationJournal}.
+ * <p>
+ * The position is written to a temporary file which atomically replaces the checkpoint file, so after a crash the
+ * checkpoint is either the previous or the new one, never a torn value.
+ */
+public class JournalCheckpoint {
+
+    private static final String CHECKPOINT_FILE_NAME = "checkpoint";
+    private static final String TEMPORARY_FILE_NAME = "checkpoint.tmp";
+
+    private final Path file;
+    private final Path temporaryFile;
+
+    public JournalCheckpoint(@Nonnull final Path directory) {
+        this.file = directory.resolve(CHECKPOINT_FILE_NAME);
+        this.temporaryFile = directory.resolve(TEMPORARY_FILE_NAME);
+    }
+
+    /**
+     * @return the saved position, or 0 if nothing is saved yet
+     * @throws IOException if the checkpoint file can't be read
+     */
+    public long read() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+    }
+
+    /**
+     * Durably saves {@code position}.
+     *
+     * @param position position of the first not yet consumed record
+     * @throws IOException if the checkpoint file can't be written
+     */
+    public void write(final long position) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(position).flip();
+        try (FileChannel channel = FileChannel.open(temporaryFile, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+}
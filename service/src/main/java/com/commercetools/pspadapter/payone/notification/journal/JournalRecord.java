@@ -0,0 +1,35 @@
+package com.commercetools.pspadapter.payone.notification.journal;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Record read from a {@link NotificationJournal}.
+ */
+public class JournalRecord {
+
+    private final long position;
+    private final byte[] data;
+    private final long nextPosition;
+
+    JournalRecord(final long position, @Nonnull final byte[] data, final long nextPosition) {
+        this.position = position;
+        this.data = data;
+        this.nextPosition = nextPosition;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Nonnull
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return position to read the record following this one
+     */
+    public long getNextPosition() {
+        return nextPosition;
+    }
+}
@@ -0,0 +1,384 @@
+package com.commercetools.pspadapter.payone.notification.journal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+
+/**
+ * Local append-only journal of raw Payone notifications.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files of a fixed size. Every record is stored as
+ * {@code [int length][int crc32][bytes]} and is addressed by its position, which grows monotonically over all
+ * segments. If a record doesn't fit into the rest of a segment, the segment is closed with an end marker and the
+ * record is written to the next one.
+ * <p>
+ * {@link #append(byte[])} returns only when the record is flushed to the disk. The flushes are batched: a thread which
+ * flushes a segment makes durable all the records appended before, so concurrent appenders usually share one flush.
+ * Only durable records are visible to {@link #read(long)}.
+ * <p>
+ * On {@link #open(Path)} the end of the journal is recovered by scanning the last segment: a record with a wrong
+ * length or checksum is treated as an incomplete write of a crash and is overwritten by the next append.
+ */
+public class NotificationJournal implements Closeable {
+
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_FILE_SUFFIX = ".segment";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentMap<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+    private final Object flushLock = new Object();
+    private final Object durableSignal = new Object();
+
+    // guarded by writeLock
+    private MappedByteBuffer writeSegment;
+    private long writePosition;
+
+    private volatile long durablePosition;
+    private volatile long firstPosition;
+    private volatile boolean closed;
+
+    private NotificationJournal(@Nonnull final Path directory, final int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the journal in {@code directory}, creating the directory if it doesn't exist yet.
+     *
+     * @param directory directory of the segment files, must not be shared with other journals
+     * @return opened journal, ready for appending
+     * @throws IOException if the directory or the segments can't be created or read
+     */
+    @Nonnull
+    public static NotificationJournal open(@Nonnull final Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Nonnull
+    static NotificationJournal open(@Nonnull final Path directory, final int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        final NotificationJournal journal = new NotificationJournal(directory, segmentSize);
+        journal.recover();
+        return journal;
+    }
+
+    /**
+     * Appends {@code data} to the journal and waits till it is flushed to the disk.
+     *
+     * @param data record to append, must fit into one segment
+     * @return position of the appended record
+     * @throws IllegalArgumentException if the record is larger than a segment
+     * @throws IllegalStateException    if the journal is closed
+     * @throws UncheckedIOException     if the record can't be written
+     */
+    public long append(@Nonnull final byte[] data) {
+        if (data.length == 0 || data.length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException(format("Journal record size must be in range [1, %d], but is %d",
+                segmentSize - HEADER_SIZE, data.length));
+        }
+
+        final long position;
+        final long end;
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IllegalStateException("Notification journal is closed: " + directory);
+            }
+
+            int offset = offsetOf(writePosition);
+            if (offset + HEADER_SIZE + data.length > segmentSize) {
+                if (segmentSize - offset >= Integer.BYTES) {
+                    writeSegment.putInt(offset, END_OF_SEGMENT);
+                }
+                // the closed segment is never flushed by a later append
+                writeSegment.force();
+                writePosition = (segmentIndexOf(writePosition) + 1) * segmentSize;
+                writeSegment = segment(segmentIndexOf(writePosition), true);
+                offset = 0;
+            }
+
+            final CRC32 crc = new CRC32();
+            crc.update(data);
+
+            final ByteBuffer target = writeSegment.duplicate();
+            target.position(offset + Integer.BYTES);
+            target.putInt((int) crc.getValue());
+            target.put(data);
+            // the length is written last, so a record is never visible with a partial header
+            writeSegment.putInt(offset, data.length);
+
+            position = writePosition;
+            end = position + HEADER_SIZE + data.length;
+            writePosition = end;
+        }
+
+        flush(end);
+        return position;
+    }
+
+    /**
+     * Reads the durable record at {@code position}.
+     *
+     * @param position position of a record: {@link #getFirstPosition()} or {@link JournalRecord#getNextPosition()}
+     *                 of the previous record
+     * @return the record, or <b>null</b> if there is no durable record at the position yet
+     * @throws IllegalStateException if the record is corrupted
+     * @throws UncheckedIOException  if the segment of the record can't be read
+     */
+    @Nullable
+    public JournalRecord read(final long position) {
+        if (position >= durablePosition) {
+            return null;
+        }
+
+        final int offset = offsetOf(position);
+        final long nextSegmentPosition = (segmentIndexOf(position) + 1) * segmentSize;
+        if (segmentSize - offset < HEADER_SIZE) {
+            return read(nextSegmentPosition);
+        }
+
+        final MappedByteBuffer segment = segment(segmentIndexOf(position), false);
+        final int length = segment.getInt(offset);
+        if (length == END_OF_SEGMENT) {
+            return read(nextSegmentPosition);
+        }
+        if (length <= 0 || length > segmentSize - offset - HEADER_SIZE) {
+            throw new IllegalStateException(format("Corrupted notification journal record at position %d in %s",
+                position, directory));
+        }
+
+        final byte[] data = new byte[length];
+        final ByteBuffer source = segment.duplicate();
+        source.position(offset + Integer.BYTES);
+        final int checksum = source.getInt();
+        source.get(data);
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalStateException(format("Wrong checksum of notification journal record at position %d in %s",
+                position, directory));
+        }
+
+        return new JournalRecord(position, data, position + HEADER_SIZE + length);
+    }
+
+    /**
+     * Waits till a record at {@code position} becomes durable, the timeout elapses or the journal is closed.
+     *
+     * @param position      position of the awaited record
+     * @param timeoutMillis maximum time to wait
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public void awaitRecord(final long position, final long timeoutMillis) throws InterruptedException {
+        synchronized (durableSignal) {
+            if (position >= durablePosition && !closed) {
+                durableSignal.wait(timeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments which contain only records before {@code position}, e.g. before a checkpoint.
+     *
+     * @param position position of the first record which should be kept
+     * @throws UncheckedIOException if the segments can't be listed or deleted
+     */
+    public void deleteSegmentsBefore(final long position) {
+        final long firstKeptSegment = segmentIndexOf(Math.min(position, durablePosition));
+        try {
+            for (final long segmentIndex : listSegmentIndexes()) {
+                if (segmentIndex < firstKeptSegment) {
+                    segments.remove(segmentIndex);
+                    Files.deleteIfExists(segmentFile(segmentIndex));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        firstPosition = Math.max(firstPosition, firstKeptSegment * segmentSize);
+    }
+
+    /**
+     * @return position of the first record which is still stored in the journal
+     */
+    public long getFirstPosition() {
+        return firstPosition;
+    }
+
+    /**
+     * @return position after the last durable record
+     */
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            if (!closed) {
+                closed = true;
+                writeSegment.force();
+            }
+        }
+        synchronized (durableSignal) {
+            durableSignal.notifyAll();
+        }
+    }
+
+    private void flush(final long end) {
+        if (durablePosition >= end) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (durablePosition >= end) {
+                return;
+            }
+
+            final long target;
+            final MappedByteBuffer segment;
+            synchronized (writeLock) {
+                target = writePosition;
+                segment = writeSegment;
+            }
+            // appends of other threads may go on while the segment is flushed:
+            // they are flushed by the next call, since they are behind the target
+            segment.force();
+
+            durablePosition = target;
+        }
+        synchronized (durableSignal) {
+            durableSignal.notifyAll();
+        }
+    }
+
+    private void recover() throws IOException {
+        final List<Long> segmentIndexes = listSegmentIndexes();
+        final long firstSegment = segmentIndexes.isEmpty() ? 0 : segmentIndexes.get(0);
+        final long lastSegment = segmentIndexes.isEmpty() ? 0 : segmentIndexes.get(segmentIndexes.size() - 1);
+
+        final MappedByteBuffer segment = segment(lastSegment, true);
+        int offset = 0;
+        boolean segmentClosed = false;
+        while (segmentSize - offset >= HEADER_SIZE) {
+            final int length = segment.getInt(offset);
+            if (length == END_OF_SEGMENT) {
+                segmentClosed = true;
+                break;
+            }
+            if (length <= 0 || length > segmentSize - offset - HEADER_SIZE || !hasValidChecksum(segment, offset, length)) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+
+        if (!segmentClosed) {
+            eraseFrom(segment, offset);
+        }
+
+        synchronized (writeLock) {
+            writeSegment = segment;
+            writePosition = lastSegment * segmentSize + offset;
+            if (segmentClosed || segmentSize - offset < HEADER_SIZE) {
+                writePosition = (lastSegment + 1) * segmentSize;
+                writeSegment = segment(lastSegment + 1, true);
+            }
+            durablePosition = writePosition;
+        }
+        firstPosition = firstSegment * segmentSize;
+    }
+
+    /**
+     * Erases the rest of the segment after the last valid record: an incomplete write of a crash is never mistaken
+     * for a record then, even if a part of it (or of the records after it) got to the disk.
+     */
+    private static void eraseFrom(@Nonnull final MappedByteBuffer segment, final int offset) {
+        final byte[] zeros = new byte[64 * 1024];
+        final ByteBuffer target = segment.duplicate();
+        target.position(offset);
+        while (target.hasRemaining()) {
+            target.put(zeros, 0, Math.min(zeros.length, target.remaining()));
+        }
+        segment.force();
+    }
+
+    private static boolean hasValidChecksum(@Nonnull final MappedByteBuffer segment, final int offset, final int length) {
+        final ByteBuffer source = segment.duplicate();
+        source.position(offset + Integer.BYTES);
+        final int checksum = source.getInt();
+        final byte[] data = new byte[length];
+        source.get(data);
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue() == checksum;
+    }
+
+    @Nonnull
+    private MappedByteBuffer segment(final long segmentIndex, final boolean create) {
+        return segments.computeIfAbsent(segmentIndex, index -> {
+            final Path file = segmentFile(index);
+            try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (NoSuchFileException e) {
+                throw new IllegalStateException(format("Notification journal segment %s is missing", file), e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Nonnull
+    private List<Long> listSegmentIndexes() throws IOException {
+        final List<Long> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_FILE_SUFFIX)) {
+            for (final Path file : files) {
+                final String name = file.getFileName().toString();
+                try {
+                    indexes.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // not a segment of this journal
+                }
+            }
+        }
+        indexes.sort(Long::compare);
+        return indexes;
+    }
+
+    @Nonnull
+    private Path segmentFile(final long segmentIndex) {
+        return directory.resolve(format("%020d%s", segmentIndex, SEGMENT_FILE_SUFFIX));
+    }
+
+    private long segmentIndexOf(final long position) {
+        return position / segmentSize;
+    }
+
+    private int offsetOf(final long position) {
+        return (int) (position % segmentSize);
+    }
+}
@@ -0,0 +1,249 @@
+package com.commercetools.pspadapter.payone.notification.journal;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+import com.commercetools.pspadapter.payone.notification.NotificationDispatcher;
+import com.commercetools.pspadapter.payone.notification.NotificationWorkerPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Background consumer which reads the notifications of a {@link NotificationJournal} and dispatches them into a
+ * {@link NotificationDispatcher} on a {@link NotificationWorkerPool}: the notifications of one Payone transaction are
+ * dispatched one by one in {@code sequencenumber} order, different transactions in parallel.
+ * <p>
+ * The checkpoint is the position of the first record which is not dispatched yet, so it never skips a notification
+ * which is still queued or in progress. It is saved to a {@link JournalCheckpoint} every {@value #CHECKPOINT_INTERVAL}
+ * records and whenever the consumer has caught up with the journal; then the fully consumed segments are deleted.
+ * After a crash the consumer resumes from the last checkpoint, thus a few notifications might be dispatched twice,
+ * which the notification processors tolerate since they check the transactions of the payment.
+ * <p>
+ * Payone has been answered already when a notification is journaled, so a notification which fails to be dispatched
+ * (e.g. while commercetools is unavailable) is never skipped: it is retried with a doubled delay up to
+ * {@value #MAX_RETRY_DELAY_MILLIS} ms until it is dispatched or the consumer is closed, and the checkpoint doesn't pass
+ * it meanwhile. Only the notifications which are invalid (like wrong secrets) are skipped at once.
+ */
+public class NotificationJournalConsumer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationJournalConsumer.class);
+
+    static final int CHECKPOINT_INTERVAL = 100;
+    static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+    /**
+     * Maximum number of the read notifications which are not dispatched yet.
+     */
+    private static final int MAX_IN_FLIGHT = 1000;
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+    private final String tenantName;
+    private final NotificationJournal journal;
+    private final JournalCheckpoint checkpoint;
+    private final Consumer<Notification> notificationDispatcher;
+    private final long retryDelayMillis;
+    private final NotificationWorkerPool workerPool;
+
+    private final ConcurrentSkipListSet<Long> inFlightPositions = new ConcurrentSkipListSet<>();
+    private final Semaphore inFlightPermits = new Semaphore(MAX_IN_FLIGHT);
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public NotificationJournalConsumer(@Nonnull final String tenantName,
+                                       @Nonnull final NotificationJournal journal,
+                                       @Nonnull final JournalCheckpoint checkpoint,
+                                       @Nonnull final NotificationDispatcher notificationDispatcher) {
+        this(tenantName, journal, checkpoint, notificationDispatcher::dispatchNotification);
+    }
+
+    /**
+     * @param notificationDispatcher dispatches a notification like
+     *                               {@link NotificationDispatcher#dispatchNotification(Notification)}, e.g. after
+     *                               the tenant is activated
+     */
+    public NotificationJournalConsumer(@Nonnull final String tenantName,
+                                       @Nonnull final NotificationJournal journal,
+                                       @Nonnull final JournalCheckpoint checkpoint,
+                                       @Nonnull final Consumer<Notification> notificationDispatcher) {
+        this(tenantName, journal, checkpoint, notificationDispatcher, RETRY_DELAY_MILLIS,
+            NotificationWorkerPool.defaultPartitionCount(), NotificationWorkerPool.DEFAULT_REORDER_WINDOW_MILLIS);
+    }
+
+    NotificationJournalConsumer(@Nonnull final String tenantName,
+                                @Nonnull final NotificationJournal journal,
+                                @Nonnull final JournalCheckpoint checkpoint,
+                                @Nonnull final Consumer<Notification> notificationDispatcher,
+                                final long retryDelayMillis,
+                                final int partitionCount,
+                                final long reorderWindowMillis) {
+        this.tenantName = tenantName;
+        this.journal = journal;
+        this.checkpoint = checkpoint;
+        this.notificationDispatcher = notificationDispatcher;
+        this.retryDelayMillis = retryDelayMillis;
+        this.workerPool = new NotificationWorkerPool("notification-worker-" + tenantName, partitionCount,
+            reorderWindowMillis, this::dispatch);
+
+        this.thread = new Thread(this::consume, "notification-journal-" + tenantName);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        workerPool.start();
+        thread.start();
+    }
+
+    /**
+     * @return the pool which dispatches the notifications, e.g. to get its metrics
+     */
+    @Nonnull
+    public NotificationWorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Stops reading the journal and the workers, then saves the checkpoint. The notifications which are not
+     * dispatched yet are dispatched after the next start.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(POLL_TIMEOUT_MILLIS + RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        long position;
+        try {
+            position = Math.max(checkpoint.read(), journal.getFirstPosition());
+        } catch (IOException e) {
+            LOG.error("Can't read the notification journal checkpoint of tenant [{}], replay the whole journal",
+                tenantName, e);
+            position = journal.getFirstPosition();
+        }
+
+        long checkpointedPosition = position;
+        int readSinceCheckpoint = 0;
+        try {
+            while (running) {
+                final JournalRecord record = journal.read(position);
+                if (record == null) {
+                    final long dispatchedPosition = getDispatchedPosition(position);
+                    if (dispatchedPosition != checkpointedPosition) {
+                        saveCheckpoint(dispatchedPosition);
+                        checkpointedPosition = dispatchedPosition;
+                        readSinceCheckpoint = 0;
+                    }
+                    journal.awaitRecord(position, POLL_TIMEOUT_MILLIS);
+                    continue;
+                }
+
+                submit(record);
+
+                position = record.getNextPosition();
+                if (++readSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                    checkpointedPosition = getDispatchedPosition(position);
+                    saveCheckpoint(checkpointedPosition);
+                    readSinceCheckpoint = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+
+        workerPool.close();
+        final long dispatchedPosition = getDispatchedPosition(position);
+        if (dispatchedPosition != checkpointedPosition) {
+            saveCheckpoint(dispatchedPosition);
+        }
+    }
+
+    private void submit(@Nonnull final JournalRecord record) throws InterruptedException {
+        final Notification notification;
+        try {
+            notification = Notification.fromKeyValueBytes(record.getData(), UTF_8);
+        } catch (RuntimeException e) {
+            LOG.error("Invalid journaled Payone notification of tenant [{}] is skipped. Request body: {}",
+                tenantName, new String(record.getData(), UTF_8), e);
+            return;
+        }
+
+        inFlightPermits.acquire();
+        final long recordPosition = record.getPosition();
+        inFlightPositions.add(recordPosition);
+        workerPool.submit(notification, () -> {
+            inFlightPositions.remove(recordPosition);
+            inFlightPermits.release();
+        });
+    }
+
+    /**
+     * @param readPosition position of the next record to read
+     * @return position of the first record which is not dispatched yet
+     */
+    private long getDispatchedPosition(final long readPosition) {
+        final Iterator<Long> inFlight = inFlightPositions.iterator();
+        return inFlight.hasNext() ? inFlight.next() : readPosition;
+    }
+
+    /**
+     * @return <b>false</b> if the consumer was closed before the notification was dispatched or skipped
+     */
+    private boolean dispatch(@Nonnull final Notification notification) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                notificationDispatcher.accept(notification);
+                return true;
+            } catch (IllegalArgumentException e) {
+                LOG.error("Invalid journaled Payone notification of tenant [{}] is skipped. Notification: {}",
+                    tenantName, notification, e);
+                return true;
+            } catch (Exception e) {
+                if (!running) {
+                    // the failure is likely caused by the interruption of close()
+                    return false;
+                }
+                final long delayMillis = getRetryDelayMillis(attempt);
+                LOG.warn("Payone notification handling error (attempt {}), retry in {} ms. Notification: {}",
+                    attempt, delayMillis, notification, e);
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException interruptedException) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@link #retryDelayMillis} doubled per failed attempt, at most {@value #MAX_RETRY_DELAY_MILLIS} ms
+     */
+    long getRetryDelayMillis(final int attempt) {
+        final int doublings = Math.min(attempt - 1, 20);
+        return Math.min(retryDelayMillis << doublings, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    private void saveCheckpoint(final long position) {
+        try {
+            checkpoint.write(position);
+            journal.deleteSegmentsBefore(position);
+        } catch (Exception e) {
+            LOG.error("Can't save the notification journal checkpoint of tenant [{}]", tenantName, e);
+        }
+    }
+}
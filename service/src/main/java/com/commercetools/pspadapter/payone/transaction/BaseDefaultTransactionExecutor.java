@@ -1,6 +1,7 @@
 package com.commercetools.pspadapter.payone.transaction;
 
 import com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder;
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
 import com.commercetools.pspadapter.payone.domain.payone.PayonePostService;
 import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneException;
@@ -11,6 +12,7 @@ import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
 import com.commercetools.pspadapter.payone.mapping.PayoneRequestFactory;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.sphere.sdk.client.BlockingSphereClient;
+import io.sphere.sdk.commands.UpdateActionImpl;
 import io.sphere.sdk.payments.Payment;
 import io.sphere.sdk.payments.Transaction;
 import io.sphere.sdk.payments.TransactionState;
@@ -25,8 +27,12 @@ import javax.annotation.Nonnull;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 import static java.lang.String.format;
 
 
@@ -41,8 +47,9 @@ abstract public class BaseDefaultTransactionExecutor extends TransactionBaseExec
     public BaseDefaultTransactionExecutor(@Nonnull LoadingCache<String, Type> typeCache,
                                           @Nonnull final PayoneRequestFactory requestFactory,
                                           @Nonnull final PayonePostService payonePostService,
-                                          @Nonnull BlockingSphereClient client) {
-        super(typeCache, client);
+                                          @Nonnull BlockingSphereClient client,
+                                          @Nonnull PaymentLookupCache paymentLookupCache) {
+        super(typeCache, client, paymentLookupCache);
         this.requestFactory = requestFactory;
         this.payonePostService = payonePostService;
 
@@ -65,18 +72,10 @@ abstract public class BaseDefaultTransactionExecutor extends TransactionBaseExec
 
     @Override
     public boolean wasExecuted(PaymentWithCartLike paymentWithCartLike, Transaction transaction) {
-        boolean hasTransactionId = getCustomFieldsOfType(paymentWithCartLike,
+        return hasTransactionInteraction(paymentWithCartLike, transaction,
                 CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
                 CustomTypeBuilder.PAYONE_INTERACTION_REDIRECT)
-                .anyMatch(fields -> transaction.getId().equals(fields.getFieldAsString(CustomFieldKeys.TRANSACTION_ID_FIELD)));
-
-        if (!hasTransactionId) {
-            return getCustomFieldsOfType(paymentWithCartLike, CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION)
-                    //sequenceNumber field is mandatory -> can't be null
-                    .anyMatch(fields -> fields.getFieldAsString(CustomFieldKeys.SEQUENCE_NUMBER_FIELD).equals(transaction.getInteractionId()));
-        }
-
-        return true;
+                || hasNotificationOfTransaction(paymentWithCartLike, transaction);
     }
 
     @Override
@@ -84,81 +83,130 @@ abstract public class BaseDefaultTransactionExecutor extends TransactionBaseExec
     protected PaymentWithCartLike execute(final PaymentWithCartLike paymentWithCartLike,
                                           final Transaction transaction) {
         final String transactionId = transaction.getId();
-        final String sequenceNumber = String.valueOf(getNextSequenceNumber(paymentWithCartLike));
+        final BaseRequest request = createRequest(paymentWithCartLike);
+
+        final Payment updatedPayment = client.executeBlocking(
+                createRequestInteractionCommand(paymentWithCartLike, transactionId, request));
+
+        List<UpdateActionImpl<Payment>> updateActions;
+        try {
+            updateActions = getResponseUpdateActions(updatedPayment, transactionId,
+                    payonePostService.executePost(request));
+        } catch (PayoneException paymentException) {
+            updateActions = getPayoneExceptionUpdateActions(paymentWithCartLike, transactionId, paymentException);
+        }
 
+        return update(paymentWithCartLike, updatedPayment, updateActions);
+    }
+
+    @Override
+    @Nonnull
+    protected CompletionStage<PaymentWithCartLike> executeAsync(final PaymentWithCartLike paymentWithCartLike,
+                                                                final Transaction transaction) {
+        final String transactionId = transaction.getId();
         final BaseRequest request = createRequest(paymentWithCartLike);
 
+        return client.execute(createRequestInteractionCommand(paymentWithCartLike, transactionId, request))
+                .thenComposeAsync(updatedPayment -> payonePostService.executePostAsync(request)
+                        .thenApply(response -> getResponseUpdateActions(updatedPayment, transactionId, response))
+                        .exceptionally(throwable -> {
+                            final Throwable cause = unwrapCompletionException(throwable);
+                            if (cause instanceof PayoneException) {
+                                return getPayoneExceptionUpdateActions(paymentWithCartLike, transactionId,
+                                        (PayoneException) cause);
+                            }
+                            throw new CompletionException(cause);
+                        })
+                        .thenCompose(updateActions -> updateAsync(paymentWithCartLike, updatedPayment, updateActions)));
+    }
+
+    /**
+     * Adds the request interaction and sets the transaction interaction id to the next sequence number, before the
+     * request is sent to Payone.
+     */
+    private PaymentUpdateCommand createRequestInteractionCommand(final PaymentWithCartLike paymentWithCartLike,
+                                                                 final String transactionId,
+                                                                 final BaseRequest request) {
+        final String sequenceNumber = String.valueOf(getNextSequenceNumber(paymentWithCartLike));
+
         final Map<String, Object> requestInfo = new HashMap<>();
         requestInfo.put(CustomFieldKeys.REQUEST_FIELD, request.toStringMap(true).toString());
         requestInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
         requestInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
 
-        final Payment updatedPayment = client.executeBlocking(
-                PaymentUpdateCommand.of(paymentWithCartLike.getPayment(),
-                    Arrays.asList(
-                        AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_REQUEST,
-                            requestInfo),
-                        ChangeTransactionInteractionId.of(sequenceNumber, transactionId)
-                    )
+        return PaymentUpdateCommand.of(paymentWithCartLike.getPayment(),
+                Arrays.asList(
+                    AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_REQUEST,
+                        requestInfo),
+                    ChangeTransactionInteractionId.of(sequenceNumber, transactionId)
                 ));
+    }
 
+    /**
+     * Maps the Payone response status to the payment update actions.
+     *
+     * @throws IllegalStateException if the status is unknown
+     */
+    private List<UpdateActionImpl<Payment>> getResponseUpdateActions(final Payment updatedPayment,
+                                                                     final String transactionId,
+                                                                     final Map<String, String> response) {
         final Map<String, Object> responseInfo = new HashMap<>();
-        try {
-            final Map<String, String> response = payonePostService.executePost(request);
-
-            final String status = response.get(PayoneResponseFields.STATUS);
-            if (ResponseStatus.REDIRECT.getStateCode().equals(status)) {
-                responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, responseToJsonString(response));
-                responseInfo.put(CustomFieldKeys.REDIRECT_URL_FIELD, response.get(PayoneResponseFields.REDIRECT_URL));
-                responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
-                responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
+        final String status = response.get(PayoneResponseFields.STATUS);
+        if (ResponseStatus.REDIRECT.getStateCode().equals(status)) {
+            responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, responseToJsonString(response));
+            responseInfo.put(CustomFieldKeys.REDIRECT_URL_FIELD, response.get(PayoneResponseFields.REDIRECT_URL));
+            responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
+            responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
 
-                final AddInterfaceInteraction interfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_REDIRECT,
-                        responseInfo);
+            final AddInterfaceInteraction interfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_REDIRECT,
+                    responseInfo);
 
-                return update(paymentWithCartLike, updatedPayment, getRedirectUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction));
+            return getRedirectUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction);
 
-            } else {
-                responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, responseToJsonString(response));
-                responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
-                responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
+        } else {
+            responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, responseToJsonString(response));
+            responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
+            responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
 
-                final AddInterfaceInteraction interfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
-                        responseInfo);
+            final AddInterfaceInteraction interfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
+                    responseInfo);
 
-                if (ResponseStatus.APPROVED.getStateCode().equals(status)) {
+            if (ResponseStatus.APPROVED.getStateCode().equals(status)) {
 
-                    return update(paymentWithCartLike, updatedPayment, getDefaultSuccessUpdateActions(TransactionState.SUCCESS, updatedPayment, transactionId, response, interfaceInteraction));
+                return getDefaultSuccessUpdateActions(TransactionState.SUCCESS, updatedPayment, transactionId, response, interfaceInteraction);
 
-                } else if (ResponseStatus.ERROR.getStateCode().equals(status)) {
+            } else if (ResponseStatus.ERROR.getStateCode().equals(status)) {
 
-                    return update(paymentWithCartLike, updatedPayment, getDefaultUpdateActions(TransactionState.FAILURE, updatedPayment, transactionId, response, interfaceInteraction));
+                return getDefaultUpdateActions(TransactionState.FAILURE, updatedPayment, transactionId, response, interfaceInteraction);
 
-                } else if (ResponseStatus.PENDING.getStateCode().equals(status)) {
+            } else if (ResponseStatus.PENDING.getStateCode().equals(status)) {
 
-                    return update(paymentWithCartLike, updatedPayment, getDefaultSuccessUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction));
+                return getDefaultSuccessUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction);
 
-                }
             }
+        }
 
-            // TODO: https://github.com/commercetools/commercetools-payone-integration/issues/199
-            throw new IllegalStateException("Unknown Payone status: " + status);
-        } catch (PayoneException paymentException) {
-            getClassLogger().error(
-                format("Request to Payone failed for commercetools Payment with id '%s' and Transaction with id '%s'.",
-                    paymentWithCartLike.getPayment().getId(), transactionId), paymentException);
+        // TODO: https://github.com/commercetools/commercetools-payone-integration/issues/199
+        throw new IllegalStateException("Unknown Payone status: " + status);
+    }
 
-            responseInfo.clear();
-            responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, exceptionToResponseJsonString(paymentException));
-            responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
-            responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
+    private List<UpdateActionImpl<Payment>> getPayoneExceptionUpdateActions(final PaymentWithCartLike paymentWithCartLike,
+                                                                            final String transactionId,
+                                                                            final PayoneException paymentException) {
+        getClassLogger().error(
+            format("Request to Payone failed for commercetools Payment with id '%s' and Transaction with id '%s'.",
+                paymentWithCartLike.getPayment().getId(), transactionId), paymentException);
 
-            final AddInterfaceInteraction interfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
-                    responseInfo);
+        final Map<String, Object> responseInfo = new HashMap<>();
+        responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, exceptionToResponseJsonString(paymentException));
+        responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
+        responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
 
-            final ChangeTransactionState failureTransaction = ChangeTransactionState.of(TransactionState.FAILURE, transactionId);
+        final AddInterfaceInteraction interfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
+                responseInfo);
 
-            return update(paymentWithCartLike, updatedPayment, Arrays.asList(interfaceInteraction, failureTransaction));
-        }
+        final ChangeTransactionState failureTransaction = ChangeTransactionState.of(TransactionState.FAILURE, transactionId);
+
+        return Arrays.asList(interfaceInteraction, failureTransaction);
     }
 }
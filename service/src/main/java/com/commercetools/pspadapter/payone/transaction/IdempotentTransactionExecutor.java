@@ -1,21 +1,22 @@
 package com.commercetools.pspadapter.payone.transaction;
 
 import com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder;
+import com.commercetools.pspadapter.payone.domain.ctp.InterfaceInteractionIndex;
 import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
-import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
 
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.sphere.sdk.payments.Transaction;
 import io.sphere.sdk.payments.TransactionType;
-import io.sphere.sdk.types.CustomFields;
 import io.sphere.sdk.types.Type;
-import org.apache.commons.lang3.StringUtils;
 
 import javax.annotation.Nonnull;
 import java.util.Arrays;
-import java.util.function.Predicate;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.completedStageOf;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
 
 /**
  * Idempotently executes a Transaction of one Type (e.g. Charge) for a specific PaymentWithCartLike Method.
@@ -58,6 +59,24 @@ public abstract class IdempotentTransactionExecutor implements TransactionExecut
         return executeIdempotent(paymentWithCartLike, transaction);
     }
 
+    /**
+     * Non-blocking version of {@link #executeTransaction(PaymentWithCartLike, Transaction)}.
+     */
+    @Override
+    @Nonnull
+    public CompletionStage<PaymentWithCartLike> executeTransactionAsync(@Nonnull PaymentWithCartLike paymentWithCartLike,
+                                                                        @Nonnull Transaction transaction) {
+        if (transaction.getType() != supportedTransactionType()) {
+            return failedStage(new IllegalArgumentException("Unsupported Transaction Type"));
+        }
+
+        if (wasExecuted(paymentWithCartLike, transaction)) {
+            return CompletableFuture.completedFuture(paymentWithCartLike);
+        }
+
+        return executeIdempotentAsync(paymentWithCartLike, transaction);
+    }
+
     /**
      * Whether the transaction was executed and nothing else can be done by the executor.
      *
@@ -77,6 +96,19 @@ public abstract class IdempotentTransactionExecutor implements TransactionExecut
      */
     protected abstract PaymentWithCartLike executeIdempotent(PaymentWithCartLike paymentWithCartLike, Transaction transaction);
 
+    /**
+     * Non-blocking version of {@link #executeIdempotent(PaymentWithCartLike, Transaction)}. By default executes the
+     * blocking method in the calling thread, executors with non-blocking implementation should override it.
+     *
+     * @param paymentWithCartLike
+     * @param transaction
+     * @return stage completed with a new version of the PaymentWithCartLike.
+     */
+    protected CompletionStage<PaymentWithCartLike> executeIdempotentAsync(PaymentWithCartLike paymentWithCartLike,
+                                                                          Transaction transaction) {
+        return completedStageOf(() -> executeIdempotent(paymentWithCartLike, transaction));
+    }
+
     /**
      * Determines the next sequence number to use from already received notifications.
      *
@@ -84,34 +116,40 @@ public abstract class IdempotentTransactionExecutor implements TransactionExecut
      * @return 0 if no notifications received yet, else the highest sequence number received + 1
      */
     protected int getNextSequenceNumber(final PaymentWithCartLike paymentWithCartLike) {
-        Predicate<String> isInteger = (i) -> i != null && i.matches("-?[0-9]+");
-
-        return IntStream.concat(
-            getCustomFieldsOfType(paymentWithCartLike, CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION)
-                .map(f -> f.getFieldAsString(CustomFieldKeys.SEQUENCE_NUMBER_FIELD))
-                .filter(isInteger)
-                .mapToInt(Integer::parseInt),
-            paymentWithCartLike
-                .getPayment()
-                .getTransactions()
-                .stream()
-                .map(t -> StringUtils.trim(t.getInteractionId()))
-                .filter(isInteger)
-                .mapToInt(Integer::parseInt)
-        )
-        .map(i -> i + 1)
-        .max()
-        .orElse(0);
+        final InterfaceInteractionIndex index = paymentWithCartLike.getInterfaceInteractionIndex();
+        final OptionalInt maxSequenceNumber = index.getMaxSequenceNumber(index.hasInteractions()
+                ? getTypeId(CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION)
+                : null);
+        return maxSequenceNumber.isPresent() ? maxSequenceNumber.getAsInt() + 1 : 0;
     }
 
-    protected Stream<CustomFields> getCustomFieldsOfType(PaymentWithCartLike paymentWithCartLike, String... typeKeys) {
-        return paymentWithCartLike
-                .getPayment()
-                .getInterfaceInteractions()
-                .stream()
-                .filter(i -> Arrays.stream(typeKeys)
-                        .map(t -> getTypeCache().get(t).toReference())
-                        .anyMatch(t -> t.getId().equals(i.getType().getId())));
+    /**
+     * @return <b>true</b> if an interaction of one of the types belongs to the transaction
+     */
+    protected boolean hasTransactionInteraction(final PaymentWithCartLike paymentWithCartLike,
+                                                final Transaction transaction,
+                                                final String... typeKeys) {
+        final InterfaceInteractionIndex index = paymentWithCartLike.getInterfaceInteractionIndex();
+        return index.hasInteractions() && Arrays.stream(typeKeys)
+                .anyMatch(typeKey -> index.hasTransactionId(getTypeId(typeKey), transaction.getId()));
+    }
+
+    /**
+     * @return <b>true</b> if a Payone notification with the sequence number of the transaction was received
+     */
+    protected boolean hasNotificationOfTransaction(final PaymentWithCartLike paymentWithCartLike,
+                                                   final Transaction transaction) {
+        final InterfaceInteractionIndex index = paymentWithCartLike.getInterfaceInteractionIndex();
+        return index.hasInteractions()
+                && index.hasSequenceNumber(getTypeId(CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION),
+                        transaction.getInteractionId());
+    }
+
+    /**
+     * Only called when the payment has interactions, so payments without interactions don't need the types.
+     */
+    private String getTypeId(final String typeKey) {
+        return getTypeCache().get(typeKey).getId();
     }
 
     private LoadingCache<String, Type> getTypeCache() {
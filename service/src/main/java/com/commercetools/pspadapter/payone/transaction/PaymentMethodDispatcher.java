@@ -7,6 +7,8 @@ import io.sphere.sdk.payments.TransactionType;
 
 import javax.annotation.Nonnull;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public class PaymentMethodDispatcher {
     private final TransactionExecutor defaultExecutor;
@@ -42,12 +44,42 @@ public class PaymentMethodDispatcher {
             .orElse(paymentWithCartLike);
     }
 
+    /**
+     * Non-blocking version of {@link #dispatchPayment(PaymentWithCartLike)}: the uncompleted transactions are still
+     * executed one after another, but each step is chained to the previous stage instead of waiting for it.
+     */
+    public CompletionStage<PaymentWithCartLike> dispatchPaymentAsync(@Nonnull final PaymentWithCartLike paymentWithCartLike) {
+        return paymentWithCartLike.getPayment()
+            .getTransactions()
+            .stream()
+            .filter(transactionStateResolver::isNotCompletedTransaction)
+            .findFirst()
+            .map(transaction -> executeTransactionAsync(paymentWithCartLike, transaction)
+                .thenCompose(newPaymentWithCartLike -> dispatchNextPaymentAsync(transaction, newPaymentWithCartLike)))
+            .orElseGet(() -> CompletableFuture.completedFuture(paymentWithCartLike));
+    }
+
+    private CompletionStage<PaymentWithCartLike> dispatchNextPaymentAsync(final Transaction transaction,
+                                                                          final PaymentWithCartLike newPaymentWithCartLike) {
+        final Transaction updatedTransaction = getUpdatedTransaction(transaction, newPaymentWithCartLike);
+        if (transactionStateResolver.isNotCompletedTransaction(updatedTransaction)) {
+            return CompletableFuture.completedFuture(newPaymentWithCartLike);
+        }
+        return dispatchPaymentAsync(newPaymentWithCartLike);
+    }
+
     private PaymentWithCartLike executeTransaction(final PaymentWithCartLike paymentWithCartLike,
                                                    final Transaction transaction) {
         return executors.getOrDefault(transaction.getType(), defaultExecutor)
                 .executeTransaction(paymentWithCartLike, transaction);
     }
 
+    private CompletionStage<PaymentWithCartLike> executeTransactionAsync(final PaymentWithCartLike paymentWithCartLike,
+                                                                         final Transaction transaction) {
+        return executors.getOrDefault(transaction.getType(), defaultExecutor)
+                .executeTransactionAsync(paymentWithCartLike, transaction);
+    }
+
     private static Transaction getUpdatedTransaction(final Transaction transaction,
                                                      final PaymentWithCartLike paymentWithCartLike) {
         return paymentWithCartLike.getPayment()
@@ -1,5 +1,6 @@
 package com.commercetools.pspadapter.payone.transaction;
 
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.ResponseErrorCode;
@@ -29,6 +30,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 import static com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields.CUSTOMER_MESSAGE;
 import static com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields.ERROR_CODE;
@@ -47,10 +49,14 @@ public abstract class TransactionBaseExecutor extends IdempotentTransactionExecu
 
     protected final BlockingSphereClient client;
 
+    private final PaymentLookupCache paymentLookupCache;
+
     public TransactionBaseExecutor(@Nonnull final LoadingCache<String, Type> typeCache,
-                                   @Nonnull final BlockingSphereClient client) {
+                                   @Nonnull final BlockingSphereClient client,
+                                   @Nonnull final PaymentLookupCache paymentLookupCache) {
         super(typeCache);
         this.client = client;
+        this.paymentLookupCache = paymentLookupCache;
     }
 
     @Override
@@ -58,10 +64,24 @@ public abstract class TransactionBaseExecutor extends IdempotentTransactionExecu
         return execute(paymentWithCartLike, transaction);
     }
 
+    @Override
+    protected CompletionStage<PaymentWithCartLike> executeIdempotentAsync(PaymentWithCartLike paymentWithCartLike,
+                                                                          Transaction transaction) {
+        return executeAsync(paymentWithCartLike, transaction);
+    }
+
     @Nonnull
     abstract protected PaymentWithCartLike execute(final PaymentWithCartLike paymentWithCartLike,
                                                    final Transaction transaction);
 
+    /**
+     * Non-blocking version of {@link #execute(PaymentWithCartLike, Transaction)}: the same update actions are applied,
+     * but neither the commercetools platform nor Payone calls block the calling thread.
+     */
+    @Nonnull
+    abstract protected CompletionStage<PaymentWithCartLike> executeAsync(final PaymentWithCartLike paymentWithCartLike,
+                                                                         final Transaction transaction);
+
     /**
      * Creates the SetStatusInterfaceCode from the response
      * @param response contains all key that creates the
@@ -151,6 +171,8 @@ public abstract class TransactionBaseExecutor extends IdempotentTransactionExecu
     /**
      * Additionally to {@link #getDefaultUpdateActions(TransactionState, Payment, String, Map, AddInterfaceInteraction)}
      * adds payment interface id from the {@code response} ({@link PayoneResponseFields#TXID} field).
+     * The interface id is also put to the {@link PaymentLookupCache}, so the notifications of the transaction find the
+     * payment by id.
      * <p>
      * This update actions list is used for all success payment handling (including redirect, approved and pending)
      */
@@ -160,7 +182,11 @@ public abstract class TransactionBaseExecutor extends IdempotentTransactionExecu
                                                                              @Nonnull Map<String, String> response,
                                                                              @Nonnull AddInterfaceInteraction interfaceInteraction) {
         List<UpdateActionImpl<Payment>> updateActions = getDefaultUpdateActions(newState, updatedPayment, transactionId, response, interfaceInteraction);
-        updateActions.add(SetInterfaceId.of(response.get(TXID)));
+        final String txid = response.get(TXID);
+        updateActions.add(SetInterfaceId.of(txid));
+        if (txid != null && updatedPayment.getId() != null) {
+            paymentLookupCache.putPaymentId(txid, updatedPayment.getId());
+        }
 
         return updateActions;
     }
@@ -200,4 +226,9 @@ public abstract class TransactionBaseExecutor extends IdempotentTransactionExecu
         return paymentWithCartLike.withPayment(
                 client.executeBlocking(PaymentUpdateCommand.of(payment, updateActions)));
     }
+
+    protected CompletionStage<PaymentWithCartLike> updateAsync(PaymentWithCartLike paymentWithCartLike, Payment payment, List<? extends UpdateAction<Payment>> updateActions) {
+        return client.execute(PaymentUpdateCommand.of(payment, updateActions))
+                .thenApply(paymentWithCartLike::withPayment);
+    }
 }
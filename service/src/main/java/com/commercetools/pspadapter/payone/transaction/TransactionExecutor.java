@@ -4,6 +4,9 @@ import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
 import io.sphere.sdk.payments.Transaction;
 
 import javax.annotation.Nonnull;
+import java.util.concurrent.CompletionStage;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.completedStageOf;
 
 /**
  * Interface for executing pending transactions, i.e. triggering the PSP.
@@ -18,4 +21,19 @@ public interface TransactionExecutor {
      */
     @Nonnull
     PaymentWithCartLike executeTransaction(@Nonnull PaymentWithCartLike paymentWithCartLike, @Nonnull Transaction transaction);
+
+    /**
+     * Non-blocking version of {@link #executeTransaction(PaymentWithCartLike, Transaction)}.
+     * <p>
+     * The default implementation executes the blocking method in the calling thread.
+     *
+     * @param paymentWithCartLike the payment and cartlike to process a transaction
+     * @param transaction the transaction to be triggered on the PSP
+     * @return stage completed with the updated version of the payment after triggering the transaction
+     */
+    @Nonnull
+    default CompletionStage<PaymentWithCartLike> executeTransactionAsync(@Nonnull PaymentWithCartLike paymentWithCartLike,
+                                                                         @Nonnull Transaction transaction) {
+        return completedStageOf(() -> executeTransaction(paymentWithCartLike, transaction));
+    }
 }
@@ -17,6 +17,7 @@ import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 import static java.lang.String.format;
 
@@ -41,7 +42,19 @@ public class UnsupportedTransactionExecutor implements TransactionExecutor {
     @Nonnull
     public PaymentWithCartLike executeTransaction(@Nonnull final PaymentWithCartLike paymentWithCartLike,
                                                   @Nonnull final Transaction transaction) {
-        final Payment payment = paymentWithCartLike.getPayment();
+        return paymentWithCartLike.withPayment(
+            client.executeBlocking(createFailureCommand(paymentWithCartLike.getPayment(), transaction)));
+    }
+
+    @Override
+    @Nonnull
+    public CompletionStage<PaymentWithCartLike> executeTransactionAsync(@Nonnull final PaymentWithCartLike paymentWithCartLike,
+                                                                        @Nonnull final Transaction transaction) {
+        return client.execute(createFailureCommand(paymentWithCartLike.getPayment(), transaction))
+            .thenApply(paymentWithCartLike::withPayment);
+    }
+
+    private static PaymentUpdateCommand createFailureCommand(final Payment payment, final Transaction transaction) {
         final ChangeTransactionState changeTransactionState = ChangeTransactionState.of(
                 TransactionState.FAILURE,
                 transaction.getId());
@@ -55,9 +68,7 @@ public class UnsupportedTransactionExecutor implements TransactionExecutor {
         final AddInterfaceInteraction addInterfaceInteraction = AddInterfaceInteraction.ofTypeKeyAndObjects(
                 CustomTypeBuilder.PAYONE_UNSUPPORTED_TRANSACTION, fieldsMap);
 
-        return paymentWithCartLike.withPayment(
-            client.executeBlocking(
-                PaymentUpdateCommand.of(payment, Arrays.asList(changeTransactionState, addInterfaceInteraction))));
+        return PaymentUpdateCommand.of(payment, Arrays.asList(changeTransactionState, addInterfaceInteraction));
     }
 
 }
@@ -1,5 +1,6 @@
 package com.commercetools.pspadapter.payone.transaction.paymentinadvance;
 
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
 import com.commercetools.pspadapter.payone.domain.payone.PayonePostService;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneRequest;
@@ -28,8 +29,9 @@ public class BankTransferInAdvanceChargeTransactionExecutor extends BaseBankTran
     public BankTransferInAdvanceChargeTransactionExecutor(@Nonnull LoadingCache<String, Type> typeCache,
                                                           @Nonnull PayoneRequestFactory requestFactory,
                                                           @Nonnull PayonePostService payonePostService,
-                                                          @Nonnull BlockingSphereClient client) {
-        super(CHARGE, typeCache, requestFactory, payonePostService, client);
+                                                          @Nonnull BlockingSphereClient client,
+                                                          @Nonnull PaymentLookupCache paymentLookupCache) {
+        super(CHARGE, typeCache, requestFactory, payonePostService, client, paymentLookupCache);
     }
 
     @Nonnull
@@ -1,6 +1,7 @@
 package com.commercetools.pspadapter.payone.transaction.paymentinadvance;
 
 import com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder;
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.ctp.PaymentWithCartLike;
 import com.commercetools.pspadapter.payone.domain.payone.PayonePostService;
 import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneException;
@@ -31,11 +32,14 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 import static com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields.ACCOUNT_HOLDER;
 import static com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields.BIC;
 import static com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields.IBAN;
 import static com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields.STATUS;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 import static java.lang.String.format;
 
 /**
@@ -54,8 +58,9 @@ abstract class BaseBankTransferInAdvanceTransactionExecutor extends TransactionB
                                                            @Nonnull final LoadingCache<String, Type> typeCache,
                                                            @Nonnull final PayoneRequestFactory requestFactory,
                                                            @Nonnull final PayonePostService payonePostService,
-                                                           @Nonnull final BlockingSphereClient client) {
-        super(typeCache, client);
+                                                           @Nonnull final BlockingSphereClient client,
+                                                           @Nonnull final PaymentLookupCache paymentLookupCache) {
+        super(typeCache, client, paymentLookupCache);
         this.transactionType = transactionType;
         this.requestFactory = requestFactory;
         this.payonePostService = payonePostService;
@@ -79,16 +84,8 @@ abstract class BaseBankTransferInAdvanceTransactionExecutor extends TransactionB
 
     @Override
     protected boolean wasExecuted(PaymentWithCartLike paymentWithCartLike, Transaction transaction) {
-        if (getCustomFieldsOfType(paymentWithCartLike,
-                CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE)
-                .noneMatch(fields -> transaction.getId().equals(fields.getFieldAsString(CustomFieldKeys.TRANSACTION_ID_FIELD)))) {
-
-            return getCustomFieldsOfType(paymentWithCartLike, CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION)
-                    //sequenceNumber field is mandatory -> can't be null
-                    .anyMatch(fields -> fields.getFieldAsString(CustomFieldKeys.SEQUENCE_NUMBER_FIELD).equals(transaction.getInteractionId()));
-        } else {
-            return true;
-        }
+        return hasTransactionInteraction(paymentWithCartLike, transaction, CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE)
+                || hasNotificationOfTransaction(paymentWithCartLike, transaction);
     }
 
     @Override
@@ -96,10 +93,48 @@ abstract class BaseBankTransferInAdvanceTransactionExecutor extends TransactionB
     protected PaymentWithCartLike execute(final PaymentWithCartLike paymentWithCartLike,
                                           final Transaction transaction) {
         final String transactionId = transaction.getId();
-        final int sequenceNumber = getNextSequenceNumber(paymentWithCartLike);
+        final PayoneRequest request = createRequest(paymentWithCartLike);
+
+        final Payment updatedPayment = client.executeBlocking(
+            createRequestInteractionCommand(paymentWithCartLike, transactionId, request));
 
+        List<UpdateActionImpl<Payment>> updateActions;
+        try {
+            updateActions = getResponseUpdateActions(updatedPayment, transactionId,
+                payonePostService.executePost(request));
+        } catch (PayoneException paymentException) {
+            updateActions = getPayoneExceptionUpdateActions(paymentWithCartLike, transactionId, paymentException);
+        }
+
+        return update(paymentWithCartLike, updatedPayment, updateActions);
+    }
+
+    @Override
+    @Nonnull
+    protected CompletionStage<PaymentWithCartLike> executeAsync(final PaymentWithCartLike paymentWithCartLike,
+                                                                final Transaction transaction) {
+        final String transactionId = transaction.getId();
         final PayoneRequest request = createRequest(paymentWithCartLike);
 
+        return client.execute(createRequestInteractionCommand(paymentWithCartLike, transactionId, request))
+            .thenComposeAsync(updatedPayment -> payonePostService.executePostAsync(request)
+                .thenApply(response -> getResponseUpdateActions(updatedPayment, transactionId, response))
+                .exceptionally(throwable -> {
+                    final Throwable cause = unwrapCompletionException(throwable);
+                    if (cause instanceof PayoneException) {
+                        return getPayoneExceptionUpdateActions(paymentWithCartLike, transactionId,
+                            (PayoneException) cause);
+                    }
+                    throw new CompletionException(cause);
+                })
+                .thenCompose(updateActions -> updateAsync(paymentWithCartLike, updatedPayment, updateActions)));
+    }
+
+    private PaymentUpdateCommand createRequestInteractionCommand(final PaymentWithCartLike paymentWithCartLike,
+                                                                 final String transactionId,
+                                                                 final PayoneRequest request) {
+        final int sequenceNumber = getNextSequenceNumber(paymentWithCartLike);
+
         final Map<String, Object> requestInfo = new HashMap<>();
         requestInfo.put(CustomFieldKeys.REQUEST_FIELD, request.toStringMap(true).toString());
         requestInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
@@ -109,60 +144,66 @@ abstract class BaseBankTransferInAdvanceTransactionExecutor extends TransactionB
             AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_REQUEST,
                 requestInfo);
 
-        final Payment updatedPayment = client.executeBlocking(
-            PaymentUpdateCommand.of(paymentWithCartLike.getPayment(),
-                Arrays.asList(interfaceInteraction1,
-                    ChangeTransactionInteractionId.of(String.valueOf(sequenceNumber), transactionId))
-            ));
+        return PaymentUpdateCommand.of(paymentWithCartLike.getPayment(),
+            Arrays.asList(interfaceInteraction1,
+                ChangeTransactionInteractionId.of(String.valueOf(sequenceNumber), transactionId))
+        );
+    }
 
-        final Map<String, Object> responseInfo = new HashMap<>();
-        try {
-            final Map<String, String> response = payonePostService.executePost(request);
+    /**
+     * @throws IllegalStateException if the Payone response status is unknown
+     */
+    private List<UpdateActionImpl<Payment>> getResponseUpdateActions(final Payment updatedPayment,
+                                                                     final String transactionId,
+                                                                     final Map<String, String> response) {
+        final String status = response.get(STATUS);
 
-            final String status = response.get(STATUS);
+        final Map<String, Object> responseInfo = new HashMap<>();
+        responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, responseToJsonString(response));
+        responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
+        responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
 
-            responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, responseToJsonString(response));
-            responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
-            responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
+        final AddInterfaceInteraction interfaceInteraction2 = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
+                responseInfo);
 
-            final AddInterfaceInteraction interfaceInteraction2 = AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
-                    responseInfo);
+        if (ResponseStatus.APPROVED.getStateCode().equals(status)) {
 
-            if (ResponseStatus.APPROVED.getStateCode().equals(status)) {
+            return getBankTransferAdvancedUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction2);
 
-                return update(paymentWithCartLike, updatedPayment, getBankTransferAdvancedUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction2));
+        } else if (ResponseStatus.ERROR.getStateCode().equals(status)) {
 
-            } else if (ResponseStatus.ERROR.getStateCode().equals(status)) {
+            return getDefaultUpdateActions(TransactionState.FAILURE, updatedPayment, transactionId, response, interfaceInteraction2);
 
-                return update(paymentWithCartLike, updatedPayment, getDefaultUpdateActions(TransactionState.FAILURE, updatedPayment, transactionId, response, interfaceInteraction2));
+        } else if (ResponseStatus.PENDING.getStateCode().equals(status)) {
 
-            } else if (ResponseStatus.PENDING.getStateCode().equals(status)) {
+            return getDefaultSuccessUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction2);
 
-                return update(paymentWithCartLike, updatedPayment, getDefaultSuccessUpdateActions(TransactionState.PENDING, updatedPayment, transactionId, response, interfaceInteraction2));
+        }
 
-            }
+        // TODO: https://github.com/commercetools/commercetools-payone-integration/issues/199
+        throw new IllegalStateException("Unknown Payone status: " + status);
+    }
 
-            // TODO: https://github.com/commercetools/commercetools-payone-integration/issues/199
-            throw new IllegalStateException("Unknown Payone status: " + status);
-        } catch (PayoneException paymentException) {
-            LOGGER.error(format("Request to Payone failed for commercetools Payment with id '%s' and "
-                    + "Transaction with id '%s'.", paymentWithCartLike.getPayment().getId(), transactionId),
-                paymentException);
+    private List<UpdateActionImpl<Payment>> getPayoneExceptionUpdateActions(final PaymentWithCartLike paymentWithCartLike,
+                                                                            final String transactionId,
+                                                                            final PayoneException paymentException) {
+        LOGGER.error(format("Request to Payone failed for commercetools Payment with id '%s' and "
+                + "Transaction with id '%s'.", paymentWithCartLike.getPayment().getId(), transactionId),
+            paymentException);
 
-            responseInfo.clear();
-            responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, exceptionToResponseJsonString(paymentException));
-            responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
-            responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
+        final Map<String, Object> responseInfo = new HashMap<>();
+        responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, exceptionToResponseJsonString(paymentException));
+        responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, transactionId);
+        responseInfo.put(CustomFieldKeys.TIMESTAMP_FIELD, ZonedDateTime.now());
 
-            final AddInterfaceInteraction interfaceInteraction =
-                AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
-                    responseInfo);
+        final AddInterfaceInteraction interfaceInteraction =
+            AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
+                responseInfo);
 
-            final ChangeTransactionState failureTransaction =
-                ChangeTransactionState.of(TransactionState.FAILURE, transactionId);
+        final ChangeTransactionState failureTransaction =
+            ChangeTransactionState.of(TransactionState.FAILURE, transactionId);
 
-            return update(paymentWithCartLike, updatedPayment, Arrays.asList(interfaceInteraction, failureTransaction));
-        }
+        return Arrays.asList(interfaceInteraction, failureTransaction);
     }
 
     /**
@@ -1,6 +1,5 @@
 package com.commercetools.pspadapter.payone.util;
 
-import com.commercetools.pspadapter.payone.config.PropertyProvider;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.JsonSerializer;
@@ -11,14 +10,15 @@ import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
-import static com.commercetools.pspadapter.payone.config.PropertyProvider.HIDE_CUSTOMER_PERSONAL_DATA;
-
 /**
  * Bean fields marked with this annotation should be serialized with value {@code <HIDDEN>}.
  * {@code Apply} accepts 1 boolean parameter. If the parameter is {@code true} then the value will be hidden.
  * If the parameter is {@code false} or was not provided then the code will check environment variable
  * {@code HIDE_CUSTOMER_PERSONAL_DATA}. If the value of the environment variable is {@code true} then the
- * field will be hidden. If the value of environment variable is not provided then it will be counted as {@code true}
+ * field will be hidden. If the value of environment variable is not provided then it will be counted as {@code true}.
+ * The environment variable is read once, see {@link RedactionPlan#isHideCustomerPersonalData()}.
+ * <p>
+ * The requests are masked with the precomputed {@link RedactionPlan} of their class, which gives the same result.
  *
  * @author fhaertig
  * @since 19.04.16
@@ -38,10 +38,7 @@ public class ClearSecuredValuesSerializer extends JsonSerializer<String> impleme
 
     @Override
     public void serialize(final String value, final JsonGenerator gen, final SerializerProvider serializers) throws IOException {
-        final PropertyProvider propertyProvider = new PropertyProvider();
-        final boolean hideCustomerPersonalData = propertyProvider.getProperty(HIDE_CUSTOMER_PERSONAL_DATA)
-                .map(dataString -> !dataString.equals("false"))
-                .orElse(true);
+        final boolean hideCustomerPersonalData = RedactionPlan.isHideCustomerPersonalData();
         if (property != null && property.getAnnotation(Apply.class) != null && (property.getAnnotation(Apply.class).value() || hideCustomerPersonalData)) {
             gen.writeString(PLACEHOLDER);
         } else {
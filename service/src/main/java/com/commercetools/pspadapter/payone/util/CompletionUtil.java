@@ -1,10 +1,28 @@
 package com.commercetools.pspadapter.payone.util;
 
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public final class CompletionUtil {
 
+    /**
+     * Single daemon thread which only completes the {@link #delay(long)} stages. Never run blocking work on it:
+     * chain the delayed work with {@code *Async} methods instead.
+     */
+    private static final ScheduledExecutorService DELAY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "completion-delay-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * This method is used as an intermediate step of re-factoring blocking Sphere client usage to use stages,
      * but in some places blocking operation are still required.
@@ -29,6 +47,68 @@ public final class CompletionUtil {
         return completionStage.toCompletableFuture().join();
     }
 
+    /**
+     * Java 8 replacement of {@code CompletableFuture#failedFuture(Throwable)}.
+     *
+     * @param throwable the exception to complete the stage with
+     * @param <T>       type of the stage value
+     * @return a stage which is already completed exceptionally with {@code throwable}
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> failedStage(@Nonnull final Throwable throwable) {
+        final CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(throwable);
+        return failed;
+    }
+
+    /**
+     * Wraps a synchronous call into a completed stage: the stage is completed exceptionally if {@code supplier}
+     * throws. Used to bridge blocking implementations into the {@link CompletionStage} based interfaces.
+     *
+     * @param supplier synchronous call to execute in the current thread
+     * @param <T>      type of the stage value
+     * @return completed stage with the result or the exception of {@code supplier}
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> completedStageOf(@Nonnull final Supplier<T> supplier) {
+        try {
+            return CompletableFuture.completedFuture(supplier.get());
+        } catch (final Throwable throwable) {
+            return failedStage(throwable);
+        }
+    }
+
+    /**
+     * Java 8 replacement of {@code CompletableFuture#delayedExecutor(long, TimeUnit)}: the returned stage is completed
+     * after {@code delayMillis} without blocking any thread.
+     *
+     * @param delayMillis delay in milliseconds
+     * @return stage which is completed with {@code null} after the delay
+     */
+    @Nonnull
+    public static CompletionStage<Void> delay(final long delayMillis) {
+        final CompletableFuture<Void> delayed = new CompletableFuture<>();
+        DELAY_SCHEDULER.schedule(() -> delayed.complete(null), delayMillis, TimeUnit.MILLISECONDS);
+        return delayed;
+    }
+
+    /**
+     * Stages wrap the exceptions of the dependent stages into {@link CompletionException} (and
+     * {@link CompletableFuture#get()} into {@link ExecutionException}), this method returns the original cause, so the
+     * async error handling could match the same exception types as the blocking one.
+     *
+     * @param throwable exception from {@link CompletionStage#handle(java.util.function.BiFunction)} or similar
+     * @return the first cause which is not a {@link CompletionException} or {@link ExecutionException}
+     */
+    @Nonnull
+    public static Throwable unwrapCompletionException(@Nonnull final Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
     private CompletionUtil() {
     }
 }
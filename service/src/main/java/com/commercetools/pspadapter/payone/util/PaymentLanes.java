@@ -0,0 +1,174 @@
+package com.commercetools.pspadapter.payone.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.delay;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Serializes work per payment: tasks with the same key are executed one after another in submission order,
+ * tasks with different keys run fully in parallel.
+ * <p>
+ * Every key has a lane, which is just the completion signal of the last submitted task. A new task atomically
+ * replaces the lane tail with its own signal and starts when the previous tail completes, so no thread holds a lock
+ * while a task is running and idle keys don't occupy any memory.
+ * <p>
+ * The lanes are an optimization against {@link java.util.ConcurrentModificationException}s on a single node, not a
+ * guarantee: if the previous task doesn't finish within the wait timeout the next one is started anyway, thus the
+ * callers should keep their retries on concurrent modifications.
+ * <p>
+ * Use the payment id as a key if it is known, or {@link #txidKey(String)} for work which is done before the payment is
+ * known, like looking up or creating a payment from a Payone notification.
+ */
+public final class PaymentLanes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PaymentLanes.class);
+
+    /**
+     * How long a task waits for the previous task of its lane. It is longer than any single commercetools or Payone
+     * request (including retries) is expected to last.
+     */
+    static final long DEFAULT_WAIT_TIMEOUT_MILLIS = 30_000;
+
+    private static final String TXID_KEY_PREFIX = "txid:";
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    private final long waitTimeoutMillis;
+
+    public PaymentLanes() {
+        this(DEFAULT_WAIT_TIMEOUT_MILLIS);
+    }
+
+    PaymentLanes(final long waitTimeoutMillis) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    /**
+     * @param txid Payone transaction id
+     * @return lane key for the work on the payment with the {@code txid}, which never collides with payment ids
+     */
+    @Nonnull
+    public static String txidKey(@Nonnull final String txid) {
+        return TXID_KEY_PREFIX + txid;
+    }
+
+    /**
+     * @param key lane key
+     * @return {@code true} if some task is running or waiting in the lane at the moment of the call
+     */
+    public boolean isBusy(@Nonnull final String key) {
+        return tails.containsKey(key);
+    }
+
+    /**
+     * Waits for the previous task of the lane and executes {@code task} in the calling thread.
+     *
+     * @param key  lane key
+     * @param task blocking task to execute
+     * @param <T>  type of the task result
+     * @return result of {@code task}
+     * @throws CompletionException with an {@link InterruptedException} cause if the calling thread is interrupted
+     *                             while waiting for the previous task, {@code task} isn't executed then
+     */
+    public <T> T execute(@Nonnull final String key, @Nonnull final Supplier<T> task) {
+        return executeAfterPrevious(key, waitedForPrevious -> task.get());
+    }
+
+    /**
+     * Like {@link #execute(String, Supplier)}, but tells {@code task} whether it waited for a previous task of the
+     * lane, which might have changed the data the caller has read before. Unlike checking {@link #isBusy(String)}
+     * before the call, the answer can't be outdated by a task which is submitted in between.
+     *
+     * @param key  lane key
+     * @param task blocking task to execute, gets <b>true</b> if a previous task of the lane was submitted before it
+     * @param <T>  type of the task result
+     * @return result of {@code task}
+     * @throws CompletionException with an {@link InterruptedException} cause if the calling thread is interrupted
+     *                             while waiting for the previous task, {@code task} isn't executed then
+     */
+    public <T> T executeAfterPrevious(@Nonnull final String key, @Nonnull final Function<Boolean, T> task) {
+        final CompletableFuture<Void> own = new CompletableFuture<>();
+        final CompletableFuture<Void> previous = tails.put(key, own);
+        if (previous != null) {
+            try {
+                awaitPrevious(key, previous);
+            } catch (CompletionException e) {
+                // the tasks submitted after this one still have to wait for the previous task, not just for this one
+                previous.whenComplete((ignored, throwable) -> release(key, own));
+                throw e;
+            }
+        }
+        try {
+            return task.apply(previous != null);
+        } finally {
+            release(key, own);
+        }
+    }
+
+    /**
+     * Starts {@code task} when the previous task of the lane has completed, without blocking the calling thread.
+     *
+     * @param key  lane key
+     * @param task non-blocking task to start
+     * @param <T>  type of the task result
+     * @return stage of the {@code task} result
+     */
+    public <T> CompletionStage<T> executeAsync(@Nonnull final String key,
+                                               @Nonnull final Supplier<? extends CompletionStage<T>> task) {
+        final CompletableFuture<Void> own = new CompletableFuture<>();
+        final CompletableFuture<Void> previous = tails.put(key, own);
+
+        final CompletionStage<Void> turn = previous == null
+            ? completedFuture(null)
+            : previous.acceptEither(delay(waitTimeoutMillis), ignored -> {
+                if (!previous.isDone()) {
+                    LOG.warn("Previous task of payment lane [{}] is not completed in {} ms, start the next one.",
+                        key, waitTimeoutMillis);
+                }
+            });
+
+        final CompletableFuture<T> result = turn.<T>thenCompose(ignored -> task.get()).toCompletableFuture();
+        result.whenComplete((value, throwable) -> release(key, own));
+        return result;
+    }
+
+    /**
+     * @return number of lanes with running or waiting tasks
+     */
+    public int size() {
+        return tails.size();
+    }
+
+    private void awaitPrevious(@Nonnull final String key, @Nonnull final CompletableFuture<Void> previous) {
+        try {
+            previous.get(waitTimeoutMillis, MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("Previous task of payment lane [{}] is not completed in {} ms, start the next one.",
+                key, waitTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            // lane signals are never completed exceptionally
+        }
+    }
+
+    private void release(@Nonnull final String key, @Nonnull final CompletableFuture<Void> own) {
+        tails.remove(key, own);
+        own.complete(null);
+    }
+}
@@ -0,0 +1,178 @@
+package com.commercetools.pspadapter.payone.util;
+
+import com.commercetools.pspadapter.payone.config.PropertyProvider;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.commercetools.pspadapter.payone.config.PropertyProvider.HIDE_CUSTOMER_PERSONAL_DATA;
+import static com.commercetools.pspadapter.payone.util.ClearSecuredValuesSerializer.PLACEHOLDER;
+
+/**
+ * Masks the fields marked with {@link ClearSecuredValuesSerializer.Apply} when a request is converted to the map
+ * stored in the interactions and logs.
+ * <p>
+ * The plan of a class lists its properties and which of them are masked. It is computed once per class, so
+ * masking a request is a pass over the precomputed properties instead of a serialization with
+ * {@link ClearSecuredValuesSerializer}. The result is the same as the serialization: <i>null</i> values are skipped,
+ * the property names are the serialized names.
+ * <p>
+ * {@code HIDE_CUSTOMER_PERSONAL_DATA} is read once, see {@link #isHideCustomerPersonalData()} and
+ * {@link #resetConfigSnapshot()}.
+ */
+public final class RedactionPlan {
+
+    private static final int NOT_MASKED = 0;
+    private static final int SECURED = 1;
+    private static final int PERSONAL_DATA = 2;
+
+    /**
+     * Only used to introspect the classes like the serialization does.
+     */
+    private static final ObjectMapper INTROSPECTION_MAPPER =
+            new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private static final ConcurrentMap<Class<?>, RedactionPlan> PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * Snapshot of {@code HIDE_CUSTOMER_PERSONAL_DATA}, <i>null</i> until the first use.
+     */
+    private static volatile Boolean hideCustomerPersonalData;
+
+    private final String[] names;
+    private final AnnotatedMember[] accessors;
+    private final int[] redactions;
+
+    private RedactionPlan(@Nonnull final Class<?> beanClass) {
+        final BeanDescription description = INTROSPECTION_MAPPER.getSerializationConfig()
+                .introspect(INTROSPECTION_MAPPER.constructType(beanClass));
+
+        final List<String> propertyNames = new ArrayList<>();
+        final List<AnnotatedMember> propertyAccessors = new ArrayList<>();
+        final List<Integer> propertyRedactions = new ArrayList<>();
+        for (final BeanPropertyDefinition property : description.findProperties()) {
+            final AnnotatedMember accessor = property.getAccessor();
+            if (accessor == null || !property.couldSerialize()) {
+                continue;
+            }
+            accessor.fixAccess(true);
+            propertyNames.add(property.getName());
+            propertyAccessors.add(accessor);
+            propertyRedactions.add(redactionOf(accessor));
+        }
+
+        this.names = propertyNames.toArray(new String[0]);
+        this.accessors = propertyAccessors.toArray(new AnnotatedMember[0]);
+        this.redactions = propertyRedactions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param beanClass class of the request
+     * @return plan of the {@code beanClass}, which is computed on the first call
+     */
+    @Nonnull
+    public static RedactionPlan of(@Nonnull final Class<?> beanClass) {
+        final RedactionPlan plan = PLANS.get(beanClass);
+        return plan != null ? plan : PLANS.computeIfAbsent(beanClass, RedactionPlan::new);
+    }
+
+    /**
+     * Snapshot of {@code HIDE_CUSTOMER_PERSONAL_DATA}, which is read on the first use.
+     *
+     * @return <b>false</b> only if {@code HIDE_CUSTOMER_PERSONAL_DATA} is <i>false</i>
+     */
+    public static boolean isHideCustomerPersonalData() {
+        Boolean snapshot = hideCustomerPersonalData;
+        if (snapshot == null) {
+            snapshot = new PropertyProvider()
+                    .getProperty(HIDE_CUSTOMER_PERSONAL_DATA)
+                    .map(dataString -> !dataString.equals("false"))
+                    .orElse(true);
+            hideCustomerPersonalData = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshot of {@code HIDE_CUSTOMER_PERSONAL_DATA}, so it is read again on the next use. Intended for
+     * tests which change the property.
+     */
+    public static void resetConfigSnapshot() {
+        hideCustomerPersonalData = null;
+    }
+
+    /**
+     * Same as {@link #toMaskedMap(Object, boolean)} with the {@link #isHideCustomerPersonalData()} snapshot.
+     */
+    @Nonnull
+    public Map<String, Object> toMaskedMap(@Nonnull final Object bean) {
+        return toMaskedMap(bean, isHideCustomerPersonalData());
+    }
+
+    /**
+     * @param bean                     instance of the class of this plan
+     * @param hideCustomerPersonalData whether the personal data fields are masked, the secured fields
+     *                                 ({@code Apply(true)}) are always masked
+     * @return new map of the not <i>null</i> properties of the {@code bean}, the masked values are replaced by
+     * {@link ClearSecuredValuesSerializer#PLACEHOLDER}
+     */
+    @Nonnull
+    public Map<String, Object> toMaskedMap(@Nonnull final Object bean, final boolean hideCustomerPersonalData) {
+        final Map<String, Object> result = new HashMap<>();
+        for (int i = 0; i < accessors.length; i++) {
+            final Object value = accessors[i].getValue(bean);
+            if (value != null) {
+                result.put(names[i], isMasked(redactions[i], value, hideCustomerPersonalData)
+                        ? PLACEHOLDER
+                        : copyOf(value));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isMasked(final int redaction, @Nonnull final Object value,
+                                    final boolean hideCustomerPersonalData) {
+        // like the serializer, only String values are masked
+        return value instanceof String
+                && (redaction == SECURED || (redaction == PERSONAL_DATA && hideCustomerPersonalData));
+    }
+
+    /**
+     * Lists and maps are copied like the serialization does, <i>null</i> map values are skipped.
+     */
+    private static Object copyOf(@Nonnull final Object value) {
+        if (value instanceof List) {
+            return new ArrayList<>((List<?>) value);
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, item) -> {
+                if (item != null) {
+                    copy.put(key, item);
+                }
+            });
+            return copy;
+        }
+        return value;
+    }
+
+    private static int redactionOf(@Nonnull final AnnotatedMember accessor) {
+        final ClearSecuredValuesSerializer.Apply apply =
+                accessor.getAnnotation(ClearSecuredValuesSerializer.Apply.class);
+        if (apply == null) {
+            return NOT_MASKED;
+        }
+        return apply.value() ? SECURED : PERSONAL_DATA;
+    }
+}
@@ -0,0 +1,107 @@
+package com.commercetools.pspadapter.payone.util;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
+
+/**
+ * Coalesces concurrent calls with the same key: while a call for a key is in flight, other calls for the same key
+ * don't execute anything, but join the running call and receive the same result (or exception).
+ * <p>
+ * Calls which are started after the running one has finished are executed again, so nothing is cached.
+ * <p>
+ * Blocking ({@link #execute(Object, Supplier)}) and non-blocking ({@link #executeAsync(Object, Supplier)}) calls of
+ * the same instance join each other.
+ *
+ * @param <K> type of the key, like payment id
+ * @param <V> type of the result
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Executes {@code call} in the calling thread, or waits for the in-flight call with the same {@code key}.
+     *
+     * @param key  calls with equal keys are coalesced
+     * @param call blocking call to execute
+     * @return result of {@code call} or of the joined call
+     */
+    public V execute(@Nonnull final K key, @Nonnull final Supplier<V> call) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return join(running);
+        }
+
+        try {
+            final V result = call.get();
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts {@code call}, or returns the stage of the in-flight call with the same {@code key}.
+     *
+     * @param key  calls with equal keys are coalesced
+     * @param call non-blocking call to start
+     * @return stage of {@code call} or of the joined call
+     */
+    public CompletionStage<V> executeAsync(@Nonnull final K key,
+                                           @Nonnull final Supplier<? extends CompletionStage<V>> call) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return running.thenApply(result -> result);
+        }
+
+        try {
+            call.get().whenComplete((result, throwable) -> {
+                inFlight.remove(key, flight);
+                if (throwable != null) {
+                    flight.completeExceptionally(unwrapCompletionException(throwable));
+                } else {
+                    flight.complete(result);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+
+        return flight.thenApply(result -> result);
+    }
+
+    /**
+     * @return number of the keys with in-flight calls
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private static <V> V join(@Nonnull final CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (RuntimeException e) {
+            final Throwable cause = unwrapCompletionException(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
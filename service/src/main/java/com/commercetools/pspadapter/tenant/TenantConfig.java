@@ -1,6 +1,7 @@
 package com.commercetools.pspadapter.tenant;
 
 import com.commercetools.pspadapter.payone.config.PayoneConfig;
+import com.commercetools.pspadapter.payone.config.PropertyProvider;
 import io.sphere.sdk.client.SphereClientConfig;
 
 import javax.annotation.Nonnull;
@@ -19,6 +20,12 @@ public class TenantConfig {
 
     private final boolean updateOrderPaymentState;
 
+    private final boolean graphQLPaymentFetch;
+
+    private final boolean adaptiveConcurrency;
+
+    private final boolean archiveInterfaceInteractions;
+
     private final String secureKey;
 
     private final SphereClientConfig sphereClientConfig;
@@ -47,6 +54,24 @@ public class TenantConfig {
                 .map(String::trim)
                 .map(Boolean::valueOf)
                 .orElse(false);
+
+        this.graphQLPaymentFetch = tenantPropertyProvider.getCommonPropertyProvider()
+                .getProperty(PropertyProvider.CT_GRAPHQL_PAYMENT_FETCH)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+
+        this.adaptiveConcurrency = tenantPropertyProvider.getCommonPropertyProvider()
+                .getProperty(PropertyProvider.CT_ADAPTIVE_CONCURRENCY)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
+
+        this.archiveInterfaceInteractions = tenantPropertyProvider.getCommonPropertyProvider()
+                .getProperty(PropertyProvider.ARCHIVE_INTERFACE_INTERACTIONS)
+                .map(String::trim)
+                .map(Boolean::valueOf)
+                .orElse(false);
     }
 
     public String getName() {
@@ -80,6 +105,47 @@ public class TenantConfig {
         return updateOrderPaymentState;
     }
 
+    /**
+     * If <b>true</b> - the payment, its customer and its order or cart are fetched with a single GraphQL request,
+     * which projects only the fields the service reads, instead of three REST requests.
+     * <p>
+     * By default it is <b>false</b>
+     *
+     * @return <b>true</b> if the property {@link PropertyProvider#CT_GRAPHQL_PAYMENT_FETCH} is a string <i>true</i>
+     * case insensitive, <b>false</b> otherwise.
+     */
+    public boolean isGraphQLPaymentFetch() {
+        return graphQLPaymentFetch;
+    }
+
+    /**
+     * If <b>true</b> - the number of the parallel commercetools requests of the tenant is limited by a
+     * {@link com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter}, which adapts the limit
+     * to the response times and the throttling of commercetools, instead of the fixed limit.
+     * <p>
+     * By default it is <b>false</b>
+     *
+     * @return <b>true</b> if the property {@link PropertyProvider#CT_ADAPTIVE_CONCURRENCY} is a string <i>true</i>
+     * case insensitive, <b>false</b> otherwise.
+     */
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    /**
+     * If <b>true</b> - the large request, response and notification fields of the interface interactions are stored
+     * in commercetools custom objects and the interactions on the payment only reference them, so the payments stay
+     * small. See {@link com.commercetools.pspadapter.payone.domain.ctp.InterfaceInteractionArchivingSphereClient}.
+     * <p>
+     * By default it is <b>false</b>
+     *
+     * @return <b>true</b> if the property {@link PropertyProvider#ARCHIVE_INTERFACE_INTERACTIONS} is a string
+     * <i>true</i> case insensitive, <b>false</b> otherwise.
+     */
+    public boolean isArchiveInterfaceInteractions() {
+        return archiveInterfaceInteractions;
+    }
+
     /**
      * Gets the secure key which was used for encrypting data with Blowfish.
      *
@@ -5,8 +5,11 @@ import com.commercetools.payments.TransactionStateResolverImpl;
 import com.commercetools.pspadapter.payone.KlarnaStartSessionHandler;
 import com.commercetools.pspadapter.payone.PaymentDispatcher;
 import com.commercetools.pspadapter.payone.PaymentHandler;
+import com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter;
 import com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsQueryExecutor;
 import com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder;
+import com.commercetools.pspadapter.payone.domain.ctp.InterfaceInteractionArchivingSphereClient;
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.ctp.TypeCacheLoader;
 import com.commercetools.pspadapter.payone.domain.ctp.paymentmethods.PaymentMethod;
 import com.commercetools.pspadapter.payone.domain.payone.PayonePostService;
@@ -38,6 +41,7 @@ import com.commercetools.pspadapter.payone.transaction.common.ChargeTransactionE
 import com.commercetools.pspadapter.payone.transaction.common.UnsupportedTransactionExecutor;
 import com.commercetools.pspadapter.payone.transaction.paymentinadvance.BankTransferInAdvanceAuthorizationTransactionExecutor;
 import com.commercetools.pspadapter.payone.transaction.paymentinadvance.BankTransferInAdvanceChargeTransactionExecutor;
+import com.commercetools.pspadapter.payone.util.PaymentLanes;
 import com.commercetools.service.OrderService;
 import com.commercetools.service.OrderServiceImpl;
 import com.commercetools.service.PaymentService;
@@ -47,12 +51,17 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.sphere.sdk.client.BlockingSphereClient;
 import io.sphere.sdk.client.SphereClient;
+import io.sphere.sdk.http.HttpClient;
 import io.sphere.sdk.payments.TransactionType;
+import io.sphere.sdk.payments.queries.PaymentQuery;
 import io.sphere.sdk.types.Type;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 import static com.commercetools.pspadapter.payone.domain.ctp.paymentmethods.PaymentMethod.supportedPaymentMethods;
 import static com.commercetools.pspadapter.payone.domain.ctp.paymentmethods.PaymentMethod.supportedTransactionTypes;
@@ -64,7 +73,8 @@ public class TenantFactory {
 
     private final String tenantName;
 
-    private final String urlPrefix;
+    @Nullable
+    private final String ctpProjectKey;
 
     private final BlockingSphereClient blockingSphereClient;
 
@@ -85,15 +95,38 @@ public class TenantFactory {
 
     private final TransactionStateResolver transactionStateResolver;
 
+    private final PaymentLanes paymentLanes;
+
+    private final PaymentLookupCache paymentLookupCache;
+
+    private final LoadingCache<String, Type> typeCache;
+
+    @Nullable
+    private final HttpClient sharedHttpClient;
 
 
 
     public TenantFactory(String payoneInterfaceName, TenantConfig tenantConfig) {
+        this(payoneInterfaceName, tenantConfig, null);
+    }
+
+    /**
+     * @param sharedHttpClient HTTP client shared by the commercetools clients of all the tenants,
+     *                         or <b>null</b> to create a separate one for this tenant
+     */
+    public TenantFactory(String payoneInterfaceName, TenantConfig tenantConfig,
+                         @Nullable HttpClient sharedHttpClient) {
         this.payoneInterfaceName = payoneInterfaceName;
 
+        this.sharedHttpClient = sharedHttpClient;
+
         this.tenantName = tenantConfig.getName();
 
-        this.urlPrefix = "/" + tenantName;
+        this.ctpProjectKey = tenantConfig.getSphereClientConfig() != null
+                ? tenantConfig.getSphereClientConfig().getProjectKey()
+                : null;
+
+        this.paymentLookupCache = new PaymentLookupCache();
 
         this.paymentToOrderStateMapper = createPaymentToOrderStateMapper();
 
@@ -105,14 +138,20 @@ public class TenantFactory {
 
         this.transactionStateResolver = createTransactionStateResolver();
 
-        this.paymentDispatcher = createPaymentDispatcher(tenantConfig, createTypeCache(blockingSphereClient),
+        this.paymentLanes = new PaymentLanes();
+
+        this.typeCache = createTypeCache(blockingSphereClient);
+
+        this.paymentDispatcher = createPaymentDispatcher(tenantConfig, typeCache,
                 blockingSphereClient, payonePostService, transactionStateResolver);
 
-        this.notificationDispatcher = createNotificationDispatcher(tenantConfig, transactionStateResolver);
+        this.notificationDispatcher = createNotificationDispatcher(tenantConfig, transactionStateResolver, paymentLanes);
 
-        this.commercetoolsQueryExecutor = new CommercetoolsQueryExecutor(blockingSphereClient);
+        this.commercetoolsQueryExecutor = new CommercetoolsQueryExecutor(blockingSphereClient,
+                tenantConfig.isGraphQLPaymentFetch(), paymentLookupCache);
 
-        this.paymentHandler = createPaymentHandler(payoneInterfaceName, tenantConfig.getName(), commercetoolsQueryExecutor, paymentDispatcher);
+        this.paymentHandler = createPaymentHandler(payoneInterfaceName, tenantConfig.getName(), commercetoolsQueryExecutor,
+                paymentDispatcher, paymentLanes);
 
         this.customTypeBuilder = createCustomTypeBuilder(blockingSphereClient, tenantConfig.getStartFromScratch());
 
@@ -131,20 +170,52 @@ public class TenantFactory {
         return tenantName;
     }
 
+    /**
+     * @return key of the commercetools project of the tenant, several tenants may share one project
+     */
+    @Nullable
+    public String getCtpProjectKey() {
+        return ctpProjectKey;
+    }
+
     public String getPayoneInterfaceName() {
         return payoneInterfaceName;
     }
 
     public String getPaymentHandlerUrl() {
-        return urlPrefix + "/commercetools/handle/payments/:id";
+        return paymentHandlerUrlOf(tenantName);
     }
 
     public String getPayoneNotificationUrl() {
-        return urlPrefix + "/payone/notification";
+        return payoneNotificationUrlOf(tenantName);
+    }
+
+    public String getPayoneNotificationMetricsUrl() {
+        return payoneNotificationMetricsUrlOf(tenantName);
     }
 
     public String getPayoneStartSessionUrl() {
-        return urlPrefix + "/commercetools/start/session/:id";
+        return payoneStartSessionUrlOf(tenantName);
+    }
+
+    /**
+     * URL getters which don't need the tenant to be created, e.g. to register the routes of a {@link TenantHandle}
+     * which is activated on the first request.
+     */
+    public static String paymentHandlerUrlOf(@Nonnull final String tenantName) {
+        return "/" + tenantName + "/commercetools/handle/payments/:id";
+    }
+
+    public static String payoneNotificationUrlOf(@Nonnull final String tenantName) {
+        return "/" + tenantName + "/payone/notification";
+    }
+
+    public static String payoneNotificationMetricsUrlOf(@Nonnull final String tenantName) {
+        return "/" + tenantName + "/payone/notification/metrics";
+    }
+
+    public static String payoneStartSessionUrlOf(@Nonnull final String tenantName) {
+        return "/" + tenantName + "/commercetools/start/session/:id";
     }
 
     public PaymentService getPaymentService() {
@@ -186,22 +257,62 @@ public class TenantFactory {
 
     @Nonnull
     protected BlockingSphereClient createBlockingSphereClient(TenantConfig tenantConfig) {
-        return SphereClientConfigurationUtil.createBlockingClient(tenantConfig.getSphereClientConfig());
+        final HttpClient httpClient = sharedHttpClient != null
+                ? sharedHttpClient
+                : SphereClientConfigurationUtil.getHttpClient();
+        SphereClient client = tenantConfig.isAdaptiveConcurrency()
+                ? SphereClientConfigurationUtil.createClient(tenantConfig.getSphereClientConfig(), httpClient,
+                        CommercetoolsConcurrencyLimiter.of(tenantConfig.getName()))
+                : SphereClientConfigurationUtil.createClient(tenantConfig.getSphereClientConfig(), httpClient);
+        if (tenantConfig.isArchiveInterfaceInteractions()) {
+            client = InterfaceInteractionArchivingSphereClient.of(client);
+        }
+        return SphereClientConfigurationUtil.createBlockingClient(client);
     }
 
     public BlockingSphereClient getBlockingSphereClient() {
         return blockingSphereClient;
     }
 
+    /**
+     * Releases the resources of a tenant which is not used anymore (see {@link TenantHandle#releaseIfIdle()}): the
+     * commercetools client is closed (a shared HTTP client stays open) and the type and payment lookup caches are
+     * emptied. The other state, like the payment lanes and the duplicate notification filter, holds no threads and
+     * is dropped with the factory.
+     * <p>
+     * The commercetools concurrency limiter and the isolated Payone connection pool are registered by the tenant
+     * name, they are kept and reused by the next factory of the tenant: the limit stays adapted and the connections
+     * stay open. Their number is bounded by the number of the tenants.
+     */
+    public void close() {
+        typeCache.invalidateAll();
+        paymentLookupCache.invalidateAll();
+        blockingSphereClient.close();
+    }
+
+    /**
+     * Sends {@code connections} parallel queries to commercetools and waits for them, so the access token is fetched
+     * and the connections are opened before the first request of the tenant.
+     *
+     * @param connections number of the parallel queries
+     * @throws java.util.concurrent.CompletionException if a query fails
+     */
+    public void warmUpCommercetools(final int connections) {
+        final CompletableFuture<?>[] queries = IntStream.range(0, connections)
+                .mapToObj(i -> blockingSphereClient.execute(PaymentQuery.of().withLimit(1)).toCompletableFuture())
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(queries).join();
+    }
+
     @Nonnull
     protected PayonePostService getPayonePostService(TenantConfig tenantConfig) {
-        return PayonePostServiceImpl.of(tenantConfig.getPayoneConfig().getApiUrl());
+        return PayonePostServiceImpl.of(tenantConfig.getName(), tenantConfig.getPayoneConfig());
     }
 
 
 
     protected PaymentService createPaymentService(SphereClient sphereClient) {
-        return new PaymentServiceImpl(sphereClient);
+        return new PaymentServiceImpl(sphereClient, paymentLookupCache);
     }
 
     protected OrderService createOrderService(SphereClient sphereClient) {
@@ -213,7 +324,8 @@ public class TenantFactory {
     }
 
     protected NotificationDispatcher createNotificationDispatcher(TenantConfig tenantConfig,
-                                                                  TransactionStateResolver transactionStateResolver) {
+                                                                  TransactionStateResolver transactionStateResolver,
+                                                                  PaymentLanes paymentLanes) {
         final NotificationProcessor defaultNotificationProcessor =
                 new DefaultNotificationProcessor(this, tenantConfig, transactionStateResolver);
 
@@ -223,13 +335,16 @@ public class TenantFactory {
         processorMap.put(NotificationAction.PAID, new PaidNotificationProcessor(this, tenantConfig, transactionStateResolver));
         processorMap.put(NotificationAction.UNDERPAID, new UnderpaidNotificationProcessor(this, tenantConfig, transactionStateResolver));
 
-        return new NotificationDispatcher(defaultNotificationProcessor, processorMap, this, tenantConfig.getPayoneConfig());
+        return new NotificationDispatcher(defaultNotificationProcessor, processorMap, this, tenantConfig.getPayoneConfig(),
+                paymentLanes);
     }
 
     protected PaymentHandler createPaymentHandler(String payoneInterfaceName, String tenantName,
                                                   CommercetoolsQueryExecutor commercetoolsQueryExecutor,
-                                                  PaymentDispatcher paymentDispatcher) {
-        return new PaymentHandler(payoneInterfaceName, tenantName, commercetoolsQueryExecutor, paymentDispatcher);
+                                                  PaymentDispatcher paymentDispatcher,
+                                                  PaymentLanes paymentLanes) {
+        return new PaymentHandler(payoneInterfaceName, tenantName, commercetoolsQueryExecutor, paymentDispatcher,
+                paymentLanes);
     }
 
     protected KlarnaStartSessionHandler createKlarnaStartSessionHandler(String payoneInterfaceName, String tenantName,
@@ -278,16 +393,20 @@ public class TenantFactory {
             case AUTHORIZATION:
                 switch (paymentMethod) {
                     case BANK_TRANSFER_ADVANCE:
-                        return new BankTransferInAdvanceAuthorizationTransactionExecutor(typeCache, requestFactory, postService, client);
+                        return new BankTransferInAdvanceAuthorizationTransactionExecutor(typeCache, requestFactory, postService, client,
+                                paymentLookupCache);
                     default:
-                        return new AuthorizationTransactionExecutor(typeCache, requestFactory, postService, client);
+                        return new AuthorizationTransactionExecutor(typeCache, requestFactory, postService, client,
+                                paymentLookupCache);
                 }
             case CHARGE:
                 switch (paymentMethod) {
                     case BANK_TRANSFER_ADVANCE:
-                        return new BankTransferInAdvanceChargeTransactionExecutor(typeCache, requestFactory, postService, client);
+                        return new BankTransferInAdvanceChargeTransactionExecutor(typeCache, requestFactory, postService, client,
+                                paymentLookupCache);
                     default:
-                        return new ChargeTransactionExecutor(typeCache, requestFactory, postService, client);
+                        return new ChargeTransactionExecutor(typeCache, requestFactory, postService, client,
+                                paymentLookupCache);
                 }
         }
         throw new IllegalArgumentException(format("Transaction type \"%s\" is not supported", transactionType));
@@ -336,10 +455,16 @@ public class TenantFactory {
                 CustomTypeBuilder.PermissionToStartFromScratch.fromBoolean(startFromScratch));
     }
 
+    /**
+     * The cache is built as an async cache with a blocking view: a synchronous Caffeine cache executes the loader
+     * inside a {@code ConcurrentHashMap} bin lock, which pins the carrier thread when requests are served by
+     * virtual threads.
+     */
     protected LoadingCache<String, Type> createTypeCache(final BlockingSphereClient client) {
         return Caffeine.newBuilder()
                        .maximumSize(1000)
-                       .build(new TypeCacheLoader(client));
+                       .buildAsync(new TypeCacheLoader(client))
+                       .synchronous();
     }
     public KlarnaStartSessionHandler getSessionHandler() {
         return klarnaStartSessionHandler;
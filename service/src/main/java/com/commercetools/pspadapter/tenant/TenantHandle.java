@@ -0,0 +1,269 @@
+package com.commercetools.pspadapter.tenant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Gives the request handlers access to the {@link TenantFactory} of one tenant.
+ * <p>
+ * The factory is either created at startup (see {@link #of(TenantFactory)}) or activated on demand (see
+ * {@link #lazy(String, Supplier, long)}): then it is created by the first request and released again after it has not
+ * been used for the idle timeout, so low-traffic tenants don't keep their commercetools clients, caches and
+ * dispatchers in memory. The next request activates the tenant again.
+ * <p>
+ * A lazy tenant is never released while a request is using it: the factory is used only inside
+ * {@link #call(Function)}, {@link #run(Consumer)} and {@link #callAsync(Function)}.
+ * <p>
+ * The factory is created outside of the lock of the handle: the first request activates the tenant, the concurrent
+ * requests wait for the same activation, and {@link #isActive()} or {@link #releaseIfIdle()} don't wait for it.
+ */
+public class TenantHandle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TenantHandle.class);
+
+    private final String tenantName;
+
+    /**
+     * Factory which is created at startup and never released, <b>null</b> for a lazy tenant.
+     */
+    @Nullable
+    private final TenantFactory permanentTenantFactory;
+
+    @Nullable
+    private final Supplier<TenantFactory> tenantFactorySupplier;
+    private final long idleTimeoutMillis;
+    private final LongSupplier clock;
+
+    // guarded by this
+    @Nullable
+    private TenantFactory activeTenantFactory;
+    /**
+     * Activation in progress, completed with the created factory.
+     */
+    @Nullable
+    private CompletableFuture<TenantFactory> activation;
+    /**
+     * Requests which use the factory or wait for the activation.
+     */
+    private int usages;
+    private long lastUsedMillis;
+
+    TenantHandle(@Nonnull final String tenantName,
+                 @Nullable final TenantFactory permanentTenantFactory,
+                 @Nullable final Supplier<TenantFactory> tenantFactorySupplier,
+                 final long idleTimeoutMillis,
+                 @Nonnull final LongSupplier clock) {
+        this.tenantName = tenantName;
+        this.permanentTenantFactory = permanentTenantFactory;
+        this.tenantFactorySupplier = tenantFactorySupplier;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param tenantFactory factory which is already created, it is never released
+     * @return handle of the permanently active tenant
+     */
+    public static TenantHandle of(@Nonnull final TenantFactory tenantFactory) {
+        return new TenantHandle(tenantFactory.getTenantName(), tenantFactory, null, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * @param tenantName            name of the tenant
+     * @param tenantFactorySupplier creates the factory (including the custom types) when the tenant is activated
+     * @param idleTimeoutMillis     the tenant is released after it has not been used for this time,
+     *                              never if 0 or negative
+     * @return handle of the tenant which is activated on the first request
+     */
+    public static TenantHandle lazy(@Nonnull final String tenantName,
+                                    @Nonnull final Supplier<TenantFactory> tenantFactorySupplier,
+                                    final long idleTimeoutMillis) {
+        return new TenantHandle(tenantName, null, tenantFactorySupplier, idleTimeoutMillis,
+            System::currentTimeMillis);
+    }
+
+    public String getTenantName() {
+        return tenantName;
+    }
+
+    public boolean isLazy() {
+        return permanentTenantFactory == null;
+    }
+
+    /**
+     * @return <b>true</b> if the factory of the tenant is created at the moment
+     */
+    public synchronized boolean isActive() {
+        return permanentTenantFactory != null || activeTenantFactory != null;
+    }
+
+    public String getPaymentHandlerUrl() {
+        return permanentTenantFactory != null
+            ? permanentTenantFactory.getPaymentHandlerUrl()
+            : TenantFactory.paymentHandlerUrlOf(tenantName);
+    }
+
+    public String getPayoneNotificationUrl() {
+        return permanentTenantFactory != null
+            ? permanentTenantFactory.getPayoneNotificationUrl()
+            : TenantFactory.payoneNotificationUrlOf(tenantName);
+    }
+
+    public String getPayoneNotificationMetricsUrl() {
+        return permanentTenantFactory != null
+            ? permanentTenantFactory.getPayoneNotificationMetricsUrl()
+            : TenantFactory.payoneNotificationMetricsUrlOf(tenantName);
+    }
+
+    public String getPayoneStartSessionUrl() {
+        return permanentTenantFactory != null
+            ? permanentTenantFactory.getPayoneStartSessionUrl()
+            : TenantFactory.payoneStartSessionUrlOf(tenantName);
+    }
+
+    /**
+     * Applies {@code action} to the factory of the tenant, activates the tenant if needed.
+     *
+     * @throws RuntimeException if the tenant can't be activated, or thrown by {@code action}
+     */
+    public <T> T call(@Nonnull final Function<TenantFactory, T> action) {
+        if (permanentTenantFactory != null) {
+            return action.apply(permanentTenantFactory);
+        }
+
+        final TenantFactory tenantFactory = acquire();
+        try {
+            return action.apply(tenantFactory);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Same as {@link #call(Function)} without a result.
+     */
+    public void run(@Nonnull final Consumer<TenantFactory> action) {
+        call(tenantFactory -> {
+            action.accept(tenantFactory);
+            return null;
+        });
+    }
+
+    /**
+     * Same as {@link #call(Function)}, but the tenant stays in use until the returned stage is completed.
+     */
+    public <T> CompletionStage<T> callAsync(@Nonnull final Function<TenantFactory, CompletionStage<T>> action) {
+        if (permanentTenantFactory != null) {
+            return action.apply(permanentTenantFactory);
+        }
+
+        final TenantFactory tenantFactory = acquire();
+        final CompletionStage<T> stage;
+        try {
+            stage = action.apply(tenantFactory);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        return stage.whenComplete((result, throwable) -> release());
+    }
+
+    /**
+     * Releases the factory of a lazy tenant, if it has not been used for the idle timeout. The factory is closed, see
+     * {@link TenantFactory#close()}.
+     *
+     * @return <b>true</b> if the tenant has been released
+     */
+    public boolean releaseIfIdle() {
+        final TenantFactory idleTenantFactory;
+        final long idleMillis;
+        synchronized (this) {
+            idleMillis = clock.getAsLong() - lastUsedMillis;
+            if (activeTenantFactory == null || usages > 0 || idleTimeoutMillis <= 0 || idleMillis < idleTimeoutMillis) {
+                return false;
+            }
+            idleTenantFactory = activeTenantFactory;
+            activeTenantFactory = null;
+        }
+
+        LOG.info("Tenant [{}] is released after {} ms idle", tenantName, idleMillis);
+        try {
+            idleTenantFactory.close();
+        } catch (RuntimeException e) {
+            LOG.warn("Can't close the released tenant [{}]", tenantName, e);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the tenant as used and returns its factory. If the tenant isn't active, the first caller creates the
+     * factory without holding the lock, the concurrent callers wait for it.
+     *
+     * @throws RuntimeException if the tenant can't be activated
+     */
+    private TenantFactory acquire() {
+        final CompletableFuture<TenantFactory> pendingActivation;
+        final boolean activating;
+        synchronized (this) {
+            usages++;
+            lastUsedMillis = clock.getAsLong();
+            if (activeTenantFactory != null) {
+                return activeTenantFactory;
+            }
+            activating = activation == null;
+            if (activating) {
+                activation = new CompletableFuture<>();
+            }
+            pendingActivation = activation;
+        }
+
+        if (activating) {
+            return activate(pendingActivation);
+        }
+        try {
+            return pendingActivation.join();
+        } catch (CompletionException e) {
+            release();
+            final Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    private TenantFactory activate(@Nonnull final CompletableFuture<TenantFactory> pendingActivation) {
+        final long startMillis = clock.getAsLong();
+        final TenantFactory tenantFactory;
+        try {
+            tenantFactory = tenantFactorySupplier.get();
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                activation = null;
+            }
+            release();
+            pendingActivation.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (this) {
+            activeTenantFactory = tenantFactory;
+            activation = null;
+        }
+        pendingActivation.complete(tenantFactory);
+        LOG.info("Tenant [{}] is activated in {} ms", tenantName, clock.getAsLong() - startMillis);
+        return tenantFactory;
+    }
+
+    private synchronized void release() {
+        usages--;
+        lastUsedMillis = clock.getAsLong();
+    }
+}
@@ -12,6 +12,7 @@ public class TenantPropertyProvider {
     public static final String PAYONE_PORTAL_ID = "PAYONE_PORTAL_ID";
     public static final String PAYONE_KEY = "PAYONE_KEY";
     public static final String PAYONE_MODE = "PAYONE_MODE";
+    public static final String PAYONE_CONNECTION_POOL_SIZE = "PAYONE_CONNECTION_POOL_SIZE";
 
     public static final String CT_PROJECT_KEY = "CT_PROJECT_KEY";
     public static final String CT_CLIENT_ID = "CT_CLIENT_ID";
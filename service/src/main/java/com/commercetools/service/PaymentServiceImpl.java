@@ -1,38 +1,79 @@
 package com.commercetools.service;
 
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import io.sphere.sdk.client.SphereClient;
 import io.sphere.sdk.commands.UpdateAction;
 import io.sphere.sdk.payments.Payment;
 import io.sphere.sdk.payments.PaymentDraft;
 import io.sphere.sdk.payments.commands.PaymentCreateCommand;
 import io.sphere.sdk.payments.commands.PaymentUpdateCommand;
+import io.sphere.sdk.payments.queries.PaymentByIdGet;
 import io.sphere.sdk.payments.queries.PaymentQuery;
 import io.sphere.sdk.queries.PagedQueryResult;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 public class PaymentServiceImpl implements PaymentService {
 
     private final SphereClient client;
 
+    private final PaymentLookupCache lookupCache;
+
     public PaymentServiceImpl(SphereClient sphereClient) {
+        this(sphereClient, new PaymentLookupCache());
+    }
+
+    public PaymentServiceImpl(SphereClient sphereClient, PaymentLookupCache lookupCache) {
         this.client = sphereClient;
+        this.lookupCache = lookupCache;
     }
 
     @Override
     public CompletionStage<Payment> createPayment(PaymentDraft paymentDraft) {
-        return client.execute(PaymentCreateCommand.of(paymentDraft));
+        return client.execute(PaymentCreateCommand.of(paymentDraft))
+                .thenApply(payment -> {
+                    if (payment.getInterfaceId() != null) {
+                        lookupCache.putPaymentId(payment.getInterfaceId(), payment.getId());
+                    }
+                    return payment;
+                });
     }
 
+    /**
+     * If the payment id of the {@code interfaceId} is cached, the payment is fetched by id and the query is sent only
+     * if the payment doesn't match anymore.
+     */
     @Override
     public CompletionStage<Optional<Payment>> getByPaymentMethodAndInterfaceId(String paymentMethodInterface, String interfaceId) {
+        final String paymentId = lookupCache.getPaymentId(interfaceId);
+        if (paymentId == null) {
+            return queryByPaymentMethodAndInterfaceId(paymentMethodInterface, interfaceId);
+        }
+        return client.execute(PaymentByIdGet.of(paymentId))
+                .thenComposeAsync(payment -> {
+                    if (payment != null && interfaceId.equals(payment.getInterfaceId())
+                            && paymentMethodInterface.equals(payment.getPaymentMethodInfo().getPaymentInterface())) {
+                        return CompletableFuture.completedFuture(Optional.of(payment));
+                    }
+                    lookupCache.invalidatePaymentId(interfaceId);
+                    return queryByPaymentMethodAndInterfaceId(paymentMethodInterface, interfaceId);
+                });
+    }
+
+    private CompletionStage<Optional<Payment>> queryByPaymentMethodAndInterfaceId(String paymentMethodInterface,
+                                                                                 String interfaceId) {
         return client.execute(
                 PaymentQuery.of()
                         .withPredicates(p -> p.interfaceId().is(interfaceId))
                         .plusPredicates(p -> p.paymentMethodInfo().paymentInterface().is(paymentMethodInterface)))
-                .thenApplyAsync(PagedQueryResult::head);
+                .thenApplyAsync(PagedQueryResult::head)
+                .thenApply(payment -> {
+                    payment.ifPresent(found -> lookupCache.putPaymentId(interfaceId, found.getId()));
+                    return payment;
+                });
     }
 
     @Override
@@ -6,6 +6,7 @@ import spark.Request;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
 import java.util.UUID;
 
 import static net.logstash.logback.encoder.org.apache.commons.lang3.StringUtils.isBlank;
@@ -17,6 +18,10 @@ public final class CorrelationIdUtil {
         MDC.put(CORRELATION_ID_LOG_VAR_NAME, getOrGenerate(request.headers(HttpHeaders.X_CORRELATION_ID)));
     }
 
+    public static void attachFromRequestOrGenerateNew(@Nonnull final HttpServletRequest request) {
+        MDC.put(CORRELATION_ID_LOG_VAR_NAME, getOrGenerate(request.getHeader(HttpHeaders.X_CORRELATION_ID)));
+    }
+
     public static String getFromMDCOrGenerateNew() {
         final String correlationId = getOrGenerate(MDC.get(CORRELATION_ID_LOG_VAR_NAME));
         MDC.put(CORRELATION_ID_LOG_VAR_NAME, correlationId);
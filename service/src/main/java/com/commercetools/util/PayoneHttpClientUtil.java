@@ -1,17 +1,32 @@
 package com.commercetools.util;
 
+import com.commercetools.pspadapter.payone.domain.payone.PayoneRetryBudget;
 import org.apache.http.HeaderElement;
 import org.apache.http.HeaderElementIterator;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.impl.client.BasicResponseHandler;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeaderElementIterator;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.exception.ChannelClosedException;
+import org.asynchttpclient.exception.TooManyConnectionsException;
+import org.asynchttpclient.exception.TooManyConnectionsPerHostException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,10 +36,19 @@ import javax.net.ssl.SSLException;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 import static com.commercetools.pspadapter.payone.domain.payone.PayonePostServiceImpl.executeGetRequest;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.delay;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.unwrapCompletionException;
 import static java.lang.String.format;
 
 /**
@@ -40,14 +64,24 @@ public final class PayoneHttpClientUtil {
 
     static final int RETRY_TIMES = 5;
 
-    static final int CONNECTION_MAX_TOTAL = 200;
+    public static final int CONNECTION_MAX_TOTAL = 200;
 
-    static final int CONNECTION_MAX_PER_ROUTE = 20;
+    /**
+     * Default of {@link com.commercetools.pspadapter.payone.config.PropertyProvider#PAYONE_MAX_CONNECTIONS_PER_ROUTE}.
+     */
+    public static final int CONNECTION_MAX_PER_ROUTE = 20;
 
     static final int SERVICE_UNAVAILABLE_RETRY_DELAY_MILLIS = 100;
 
+    public static final int KEEP_ALIVE_MILLIS = 2500;
+
     static final Logger logger = LoggerFactory.getLogger(PayoneHttpClientUtil.class);
 
+    /**
+     * {@link HttpContext} attribute with the {@link PayoneRetryBudget} of the request, see {@link #contextOf}.
+     */
+    static final String RETRY_BUDGET_ATTRIBUTE = PayoneRetryBudget.class.getName();
+
     /**
      * Don't resend request on connection exception once it has been successfully sent.
      */
@@ -57,7 +91,7 @@ public final class PayoneHttpClientUtil {
      * {@link java.io.InterruptedIOException} and {@link ConnectException} so the client will retry on interruption and
      * socket timeouts.
      * <p>
-     * The implementation will retry 5 times.
+     * The implementation will retry 5 times, if the {@link PayoneRetryBudget} of the request (if any) allows.
      */
     public static final DefaultHttpRequestRetryHandler httpRequestRetryHandler = new DefaultHttpRequestRetryHandler(
             RETRY_TIMES, REQUEST_SENT_RETRY_ENABLED, Arrays.asList(
@@ -68,7 +102,8 @@ public final class PayoneHttpClientUtil {
                 // everytime we make a retry attempt
                 @Override
                 public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
-                   boolean isRetryable = super.retryRequest(exception, executionCount, context);
+                   boolean isRetryable = super.retryRequest(exception, executionCount, context)
+                           && tryAcquireRetry(context);
                    if(isRetryable) {
                        logger.error(
                                format("Handle payment request to payone service endpoint failed. " +
@@ -82,28 +117,40 @@ public final class PayoneHttpClientUtil {
 
     /**
      * ServiceUnavailableRetryStrategy represents a strategy determining whether or not the request should be
-     * retried after a while in case of the service being temporarily unavailable
+     * retried after a while in case of the service being temporarily unavailable.
+     * <p>
+     * The 5xx responses are retried up to {@link #RETRY_TIMES} times, if the {@link PayoneRetryBudget} of the request
+     * (if any) allows, after {@link #getJitteredRetryDelay(int)}. The client calls {@link #getRetryInterval()} right
+     * after {@link #retryRequest} in the same thread, so the delay of the request is passed in a thread local.
      */
     public static final ServiceUnavailableRetryStrategy serviceUnavailableRetryStrategy = new ServiceUnavailableRetryStrategy() {
 
-        int waitPeriod = SERVICE_UNAVAILABLE_RETRY_DELAY_MILLIS;
+        private final ThreadLocal<Long> retryInterval =
+                ThreadLocal.withInitial(() -> (long) SERVICE_UNAVAILABLE_RETRY_DELAY_MILLIS);
 
         @Override
         public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
-            waitPeriod *= 2;
             int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode >= 500) {
-                logger.error(
-                        format("Payone service endpoint is unavailable! Received HTTP Code: [%d]. " +
-                                        "We have already retried [%d] times. We are going to retry again...",
-                                statusCode, executionCount));
+            if (statusCode < 500) {
+                return false;
+            }
+            if (executionCount > RETRY_TIMES || !tryAcquireRetry(context)) {
+                logger.error(format("Payone service endpoint is unavailable! Received HTTP Code: [%d]. " +
+                                "We have already retried [%d] times, the request is not retried.",
+                        statusCode, executionCount - 1));
+                return false;
             }
-            return executionCount <= RETRY_TIMES && statusCode >= 500;
+            logger.error(
+                    format("Payone service endpoint is unavailable! Received HTTP Code: [%d]. " +
+                                    "We have already retried [%d] times. We are going to retry again...",
+                            statusCode, executionCount - 1));
+            retryInterval.set(getJitteredRetryDelay(executionCount));
+            return true;
         }
 
         @Override
         public long getRetryInterval() {
-            return waitPeriod;
+            return retryInterval.get();
         }
     };
 
@@ -125,21 +172,284 @@ public final class PayoneHttpClientUtil {
             }
         }
         // Keep alive for 2.5 seconds only
-        return 2500;
+        return KEEP_ALIVE_MILLIS;
     };
 
     private PayoneHttpClientUtil() {
     }
 
+    /**
+     * Builds a non-blocking (Netty based) client with the same timeouts, pool limits and keep-alive time as the
+     * blocking client. The client's own retries are disabled, see {@link #executeRequestToStringAsync}.
+     */
+    public static AsyncHttpClient buildDefaultAsyncHttpClient() {
+        return buildAsyncHttpClient(CONNECTION_MAX_TOTAL, CONNECTION_MAX_PER_ROUTE);
+    }
+
+    /**
+     * Same as {@link #buildDefaultAsyncHttpClient()} with the given pool limits.
+     */
+    public static AsyncHttpClient buildAsyncHttpClient(final int maxTotal, final int maxPerRoute) {
+        return buildAsyncHttpClient("payone-http", maxTotal, maxPerRoute);
+    }
+
+    /**
+     * Same as {@link #buildAsyncHttpClient(int, int)}, the client threads are named by {@code threadPoolName}.
+     */
+    public static AsyncHttpClient buildAsyncHttpClient(final String threadPoolName, final int maxTotal,
+                                                       final int maxPerRoute) {
+        return new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder()
+                .setThreadPoolName(threadPoolName)
+                .setConnectTimeout(TIMEOUT_TO_ESTABLISH_CONNECTION)
+                .setAcquireFreeChannelTimeout(TIMEOUT_WHEN_CONNECTION_POOL_FULLY_OCCUPIED)
+                .setReadTimeout(TIMEOUT_WHEN_CONTINUOUS_DATA_STREAM_DOES_NOT_REPLY)
+                .setMaxConnections(maxTotal)
+                .setMaxConnectionsPerHost(maxPerRoute)
+                .setPooledConnectionIdleTimeout(KEEP_ALIVE_MILLIS)
+                .setMaxRequestRetry(0)
+                .build());
+    }
+
+    /**
+     * @param retryBudget retry budget of the request, <i>null</i> to retry up to {@link #RETRY_TIMES} times
+     * @return context to execute a request with the blocking client, see {@link #httpRequestRetryHandler} and
+     * {@link #serviceUnavailableRetryStrategy}
+     */
+    @Nonnull
+    public static HttpClientContext contextOf(@Nullable final PayoneRetryBudget retryBudget) {
+        final HttpClientContext context = HttpClientContext.create();
+        if (retryBudget != null) {
+            context.setAttribute(RETRY_BUDGET_ATTRIBUTE, retryBudget);
+        }
+        return context;
+    }
+
+    private static boolean tryAcquireRetry(@Nullable final HttpContext context) {
+        final Object retryBudget = context != null ? context.getAttribute(RETRY_BUDGET_ATTRIBUTE) : null;
+        return !(retryBudget instanceof PayoneRetryBudget) || ((PayoneRetryBudget) retryBudget).tryAcquireRetry();
+    }
+
+    /**
+     * Non-blocking counterpart of the blocking client execution with {@link #httpRequestRetryHandler} and
+     * {@link #serviceUnavailableRetryStrategy}:<ul>
+     * <li>connection failures, when the request has not been sent yet, are retried immediately up to
+     * {@link #RETRY_TIMES} times (except unknown host and SSL failures)</li>
+     * <li>5xx responses are retried up to {@link #RETRY_TIMES} times after {@link #getJitteredRetryDelay(int)},
+     * which is scheduled on a timer instead of sleeping in the calling thread</li>
+     * </ul>
+     *
+     * @param client  client to execute the request
+     * @param request request to execute, may be executed several times
+     * @return stage completed with the response body, or exceptionally with {@link HttpResponseException} if the
+     * final response status is not successful, like {@link #responseToString(HttpResponse)}
+     */
+    public static CompletionStage<String> executeRequestToStringAsync(@Nonnull final AsyncHttpClient client,
+                                                                      @Nonnull final Request request) {
+        return executeRequestAsync(client, request, response -> response.getResponseBody(getCharset(response)));
+    }
+
+    /**
+     * Same as {@link #executeRequestToStringAsync(AsyncHttpClient, Request)}, but the body of the successful response
+     * is read by {@code responseReader}, e.g. parsed directly from {@link Response#getResponseBodyAsStream()}.
+     *
+     * @param client         client to execute the request
+     * @param request        request to execute, may be executed several times
+     * @param responseReader reads the final successful response
+     * @param <T>            type of the read response
+     * @return stage completed with the read response, or exceptionally with {@link HttpResponseException} if the
+     * final response status is not successful, or with the exception thrown by {@code responseReader}
+     */
+    public static <T> CompletionStage<T> executeRequestAsync(@Nonnull final AsyncHttpClient client,
+                                                             @Nonnull final Request request,
+                                                             @Nonnull final Function<Response, T> responseReader) {
+        return executeRequestAsync(client, request, responseReader, null);
+    }
+
+    /**
+     * Same as {@link #executeRequestAsync(AsyncHttpClient, Request, Function)}, but the retries are limited by
+     * {@code retryBudget}.
+     *
+     * @param retryBudget retry budget of the request, <i>null</i> to retry up to {@link #RETRY_TIMES} times
+     */
+    public static <T> CompletionStage<T> executeRequestAsync(@Nonnull final AsyncHttpClient client,
+                                                             @Nonnull final Request request,
+                                                             @Nonnull final Function<Response, T> responseReader,
+                                                             @Nullable final PayoneRetryBudget retryBudget) {
+        return executeAsync(client, request, responseReader, retryBudget, 1);
+    }
+
+    private static <T> CompletionStage<T> executeAsync(@Nonnull final AsyncHttpClient client,
+                                                       @Nonnull final Request request,
+                                                       @Nonnull final Function<Response, T> responseReader,
+                                                       @Nullable final PayoneRetryBudget retryBudget,
+                                                       final int executionCount) {
+        final CompletionStage<Response> responseStage;
+        try {
+            responseStage = client.executeRequest(request).toCompletableFuture();
+        } catch (RuntimeException e) {
+            return failedStage(e);
+        }
+
+        return responseStage
+                .handle((response, throwable) ->
+                        retryOrRead(client, request, responseReader, retryBudget, executionCount, response,
+                                throwable))
+                .thenCompose(bodyStage -> bodyStage);
+    }
+
+    private static <T> CompletionStage<T> retryOrRead(@Nonnull final AsyncHttpClient client,
+                                                      @Nonnull final Request request,
+                                                      @Nonnull final Function<Response, T> responseReader,
+                                                      @Nullable final PayoneRetryBudget retryBudget,
+                                                      final int executionCount,
+                                                      @Nullable final Response response,
+                                                      @Nullable final Throwable throwable) {
+        if (throwable != null) {
+            final Throwable cause = unwrapCompletionException(throwable);
+            if (isRetryableAsyncFailure(cause, executionCount)
+                    && (retryBudget == null || retryBudget.tryAcquireRetry())) {
+                logger.error(
+                        format("Handle payment request to payone service endpoint failed. " +
+                                        "We have already retried [%d] times. We are going to retry again...",
+                                executionCount - 1),
+                        cause);
+                return executeAsync(client, request, responseReader, retryBudget, executionCount + 1);
+            }
+            return failedStage(cause);
+        }
+
+        final int statusCode = response.getStatusCode();
+        if (statusCode >= 500) {
+            if (executionCount <= RETRY_TIMES && (retryBudget == null || retryBudget.tryAcquireRetry())) {
+                logger.error(
+                        format("Payone service endpoint is unavailable! Received HTTP Code: [%d]. " +
+                                        "We have already retried [%d] times. We are going to retry again...",
+                                statusCode, executionCount - 1));
+                return delay(getJitteredRetryDelay(executionCount))
+                        .thenCompose(ignored ->
+                                executeAsync(client, request, responseReader, retryBudget, executionCount + 1));
+            }
+            logger.error(format("Payone service endpoint is unavailable! Received HTTP Code: [%d]. " +
+                            "We have already retried [%d] times, the request is not retried.",
+                    statusCode, executionCount - 1));
+        }
+
+        if (statusCode >= 300) {
+            return failedStage(new HttpResponseException(statusCode, response.getStatusText()));
+        }
+
+        try {
+            return CompletableFuture.completedFuture(responseReader.apply(response));
+        } catch (RuntimeException e) {
+            return failedStage(e);
+        }
+    }
+
+    /**
+     * Classifies the async failures like {@link #httpRequestRetryHandler} with {@link #REQUEST_SENT_RETRY_ENABLED}
+     * <b>false</b> does: a failure is retried if it happened before the request was sent and the retry limit is not
+     * reached yet. These are (anywhere in the cause chain):<ul>
+     * <li>{@link ConnectException}, which includes the connect timeouts (netty's {@code ConnectTimeoutException})</li>
+     * <li>{@link ChannelClosedException}: the pooled connection was closed before the request was written, the
+     * counterpart of a stale pooled connection of the blocking client</li>
+     * <li>{@link TooManyConnectionsException} and {@link TooManyConnectionsPerHostException}: no free connection,
+     * like the connection pool timeout of the blocking client</li>
+     * </ul>
+     * Unknown host and SSL failures are never retried. The read/request timeouts and connections closed while
+     * waiting for the response are not retried either, because the request might have been processed by Payone
+     * already. The async client itself doesn't retry ({@code maxRequestRetry} is 0).
+     */
+    static boolean isRetryableAsyncFailure(@Nonnull final Throwable failure, final int executionCount) {
+        if (executionCount > RETRY_TIMES) {
+            return false;
+        }
+
+        boolean notSent = false;
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnknownHostException || cause instanceof SSLException) {
+                return false;
+            }
+            notSent |= cause instanceof ConnectException
+                    || cause instanceof ChannelClosedException
+                    || cause instanceof TooManyConnectionsException
+                    || cause instanceof TooManyConnectionsPerHostException;
+        }
+        return notSent;
+    }
+
+    /**
+     * The maximal delay is doubled per request: 200, 400, 800... msec, see {@link #getJitteredRetryDelay(int)}.
+     */
+    static long getServiceUnavailableRetryDelay(final int executionCount) {
+        return (long) SERVICE_UNAVAILABLE_RETRY_DELAY_MILLIS << executionCount;
+    }
+
+    /**
+     * Random delay between a half and the whole {@link #getServiceUnavailableRetryDelay(int)}, so the retries of the
+     * requests which failed at the same time don't hit Payone again at the same time.
+     */
+    static long getJitteredRetryDelay(final int executionCount) {
+        final long maxDelay = getServiceUnavailableRetryDelay(executionCount);
+        return maxDelay / 2 + ThreadLocalRandom.current().nextLong(maxDelay / 2 + 1);
+    }
+
+    /**
+     * @return charset of the response content type, or the same default charset as
+     * {@link #responseToString(HttpResponse)} uses, if the response doesn't specify any
+     */
+    @Nonnull
+    public static Charset getCharset(@Nonnull final Response response) {
+        final String contentType = response.getContentType();
+        if (contentType != null) {
+            try {
+                final Charset charset = org.apache.http.entity.ContentType.parse(contentType).getCharset();
+                if (charset != null) {
+                    return charset;
+                }
+            } catch (RuntimeException ignore) {
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
     public static PoolingHttpClientConnectionManager buildDefaultConnectionManager() {
-        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
-        connectionManager.setMaxTotal(CONNECTION_MAX_TOTAL);
+        return configureConnectionManager(new PoolingHttpClientConnectionManager(),
+                CONNECTION_MAX_TOTAL, CONNECTION_MAX_PER_ROUTE);
+    }
+
+    /**
+     * @param connectionManager new connection manager
+     * @param maxTotal          max number of connections
+     * @param maxPerRoute       max number of connections to one host
+     * @return the {@code connectionManager} with the pool limits and the connection validation of the default one
+     */
+    public static <T extends PoolingHttpClientConnectionManager> T configureConnectionManager(
+            @Nonnull final T connectionManager, final int maxTotal, final int maxPerRoute) {
+        connectionManager.setMaxTotal(maxTotal);
         connectionManager.setValidateAfterInactivity(100);
-        connectionManager.setDefaultMaxPerRoute(CONNECTION_MAX_PER_ROUTE);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
 
         return connectionManager;
     }
 
+    /**
+     * @param connectionManager connection manager of the client, see {@link #configureConnectionManager}
+     * @return blocking client with the timeouts, retry strategies and keep-alive strategy of this util
+     */
+    public static CloseableHttpClient buildHttpClient(@Nonnull final HttpClientConnectionManager connectionManager) {
+        return HttpClientBuilder.create()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(TIMEOUT_WHEN_CONNECTION_POOL_FULLY_OCCUPIED)
+                        .setSocketTimeout(TIMEOUT_WHEN_CONTINUOUS_DATA_STREAM_DOES_NOT_REPLY)
+                        .setConnectTimeout(TIMEOUT_TO_ESTABLISH_CONNECTION)
+                        .build())
+                .setRetryHandler(httpRequestRetryHandler)
+                .setServiceUnavailableRetryStrategy(serviceUnavailableRetryStrategy)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setConnectionManager(connectionManager)
+                .build();
+    }
+
 
     /**
      * Make URL request and return a response string.
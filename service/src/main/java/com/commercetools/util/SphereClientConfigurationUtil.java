@@ -1,16 +1,21 @@
 package com.commercetools.util;
 
+import com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter;
 import io.sphere.sdk.client.BlockingSphereClient;
 import io.sphere.sdk.client.SphereClient;
 import io.sphere.sdk.client.SphereClientConfig;
 import io.sphere.sdk.client.retry.RetryableSphereClientBuilder;
 import io.sphere.sdk.http.AsyncHttpClientAdapter;
 import io.sphere.sdk.http.HttpClient;
+import io.sphere.sdk.http.HttpRequest;
+import io.sphere.sdk.http.HttpResponse;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 public final class SphereClientConfigurationUtil {
@@ -27,11 +32,42 @@ public final class SphereClientConfigurationUtil {
     public static SphereClient createClient(@Nonnull final SphereClientConfig clientConfig) {
 
         final HttpClient httpClient = getHttpClient();
+        return createClient(clientConfig, httpClient);
+    }
+
+    /**
+     * Creates a {@link SphereClient} which executes the requests with the given {@code httpClient}.
+     *
+     * @param clientConfig the client configuration for the client.
+     * @param httpClient   the http client to use, e.g. a {@link #createSharedHttpClient(AsyncHttpClient) shared} one.
+     * @return the instantiated {@link SphereClient}.
+     */
+    public static SphereClient createClient(@Nonnull final SphereClientConfig clientConfig,
+                                            @Nonnull final HttpClient httpClient) {
+
         return RetryableSphereClientBuilder.of(clientConfig, httpClient)
                                            .withMaxParallelRequests(MAX_PARALLEL_REQUESTS)
                                            .build();
     }
 
+    /**
+     * Creates a {@link SphereClient} which executes the requests with the given {@code httpClient} within the
+     * adaptive limit of the {@code limiter} instead of the fixed number of parallel requests.
+     *
+     * @param clientConfig the client configuration for the client.
+     * @param httpClient   the http client to use, e.g. a {@link #createSharedHttpClient(AsyncHttpClient) shared} one.
+     * @param limiter      the limiter of the tenant.
+     * @return the instantiated {@link SphereClient}.
+     */
+    public static SphereClient createClient(@Nonnull final SphereClientConfig clientConfig,
+                                            @Nonnull final HttpClient httpClient,
+                                            @Nonnull final CommercetoolsConcurrencyLimiter limiter) {
+
+        return RetryableSphereClientBuilder.of(clientConfig, limiter.limit(httpClient, clientConfig.getAuthUrl()))
+                                           .withMaxParallelRequests(CommercetoolsConcurrencyLimiter.MAX_LIMIT)
+                                           .build();
+    }
+
     /**
      * Creates a {@link BlockingSphereClient} with a default {@code timeout} of 10 seconds.
      *
@@ -44,13 +80,81 @@ public final class SphereClientConfigurationUtil {
                 DEFAULT_TIMEOUT_TIME_UNIT);
     }
 
+    /**
+     * Creates a {@link BlockingSphereClient} with a default {@code timeout} of 10 seconds, which executes the
+     * requests with the given {@code httpClient}.
+     *
+     * @param clientConfig the client configuration for the client.
+     * @param httpClient   the http client to use, e.g. a {@link #createSharedHttpClient(AsyncHttpClient) shared} one.
+     * @return the instantiated {@link BlockingSphereClient}.
+     */
+    public static BlockingSphereClient createBlockingClient(@Nonnull final SphereClientConfig clientConfig,
+                                                            @Nonnull final HttpClient httpClient) {
+
+        return BlockingSphereClient.of(createClient(clientConfig, httpClient), CTP_EXECUTE_COMPLETABLE_FUTURE_TIMEOUT,
+                DEFAULT_TIMEOUT_TIME_UNIT);
+    }
+
+    /**
+     * Creates a {@link BlockingSphereClient} with a default {@code timeout} of 10 seconds, which executes the
+     * requests with the given {@code client}, e.g. a decorated one.
+     *
+     * @param client the client created by one of the {@code createClient} methods.
+     * @return the instantiated {@link BlockingSphereClient}.
+     */
+    public static BlockingSphereClient createBlockingClient(@Nonnull final SphereClient client) {
+
+        return BlockingSphereClient.of(client, CTP_EXECUTE_COMPLETABLE_FUTURE_TIMEOUT, DEFAULT_TIMEOUT_TIME_UNIT);
+    }
+
+    /**
+     * Creates an {@link AsyncHttpClient} to be shared by the {@link SphereClient}s of all the tenants, so they use
+     * one event loop, timer and connection pool instead of one per tenant.
+     *
+     * @param maxConnectionsPerHost max number of open connections to one host (of all the tenants together),
+     *                              unlimited if <b>null</b>
+     * @return new {@link AsyncHttpClient}, which should be closed when the service stops
+     */
+    public static AsyncHttpClient createSharedAsyncHttpClient(@Nullable final Integer maxConnectionsPerHost) {
+        final DefaultAsyncHttpClientConfig.Builder configBuilder = new DefaultAsyncHttpClientConfig.Builder()
+            .setThreadPoolName("ctp-shared-http");
+        if (maxConnectionsPerHost != null) {
+            configBuilder.setMaxConnectionsPerHost(maxConnectionsPerHost);
+        }
+        return new DefaultAsyncHttpClient(configBuilder.build());
+    }
+
+    /**
+     * Wraps the shared {@code asyncHttpClient} to be used by the {@link SphereClient} of one tenant.
+     * <p>
+     * Closing the returned {@link HttpClient} (e.g. when the {@link SphereClient} is closed) doesn't close
+     * {@code asyncHttpClient}, because the other tenants still use it.
+     *
+     * @param asyncHttpClient the client created by {@link #createSharedAsyncHttpClient(Integer)}
+     * @return {@link HttpClient} which delegates the requests to {@code asyncHttpClient}
+     */
+    public static HttpClient createSharedHttpClient(@Nonnull final AsyncHttpClient asyncHttpClient) {
+        final HttpClient httpClient = AsyncHttpClientAdapter.of(asyncHttpClient);
+        return new HttpClient() {
+            @Override
+            public CompletionStage<HttpResponse> execute(final HttpRequest httpRequest) {
+                return httpClient.execute(httpRequest);
+            }
+
+            @Override
+            public void close() {
+                // the shared client is closed by its owner
+            }
+        };
+    }
+
     /**
      * Gets an asynchronous {@link HttpClient} of `asynchttpclient` library, to be used by as an
      * underlying http client for the {@link SphereClient}.
      *
      * @return an asynchronous {@link HttpClient}
      */
-    private static HttpClient getHttpClient() {
+    public static HttpClient getHttpClient() {
         final AsyncHttpClient asyncHttpClient =
             new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder().build());
         return AsyncHttpClientAdapter.of(asyncHttpClient);
@@ -0,0 +1,25 @@
+package com.commercetools.util.spark;
+
+import javax.annotation.Nonnull;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Route which doesn't block the Jetty thread: the response is committed when the returned stage is completed.
+ *
+ * @see AsyncRoutes
+ */
+@FunctionalInterface
+public interface AsyncRoute {
+
+    /**
+     * @param params   path parameters of the matched route without the leading colon, e.g. {@code id} for
+     *                 {@code /payments/:id}
+     * @param response response to set the status and the body to before the returned stage is completed
+     * @return stage which completes the request. If it is completed exceptionally - <i>500 Internal Server Error</i>
+     * is responded.
+     */
+    @Nonnull
+    CompletionStage<?> handle(@Nonnull Map<String, String> params, @Nonnull HttpServletResponse response);
+}
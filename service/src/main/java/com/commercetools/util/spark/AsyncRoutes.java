@@ -0,0 +1,123 @@
+package com.commercetools.util.spark;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of {@link AsyncRoute}s, similar to the static {@link spark.Spark#get(String, spark.Route)} API.
+ * <p>
+ * Spark 2 can't complete a response asynchronously, so these routes are served by {@link AsyncRoutesHandler} before
+ * the request reaches Spark. The handler is installed by {@link JettyServerWithRequestLogFactory}, thus the routes
+ * are served only if the embedded Jetty server is created by this factory.
+ */
+public final class AsyncRoutes {
+
+    private static final String GET = "GET";
+
+    private static final List<RoutePattern> ROUTES = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a GET route.
+     *
+     * @param path  route path, segments starting with {@code :} are path parameters, like in Spark
+     * @param route route to serve the matched requests
+     */
+    public static void get(@Nonnull final String path, @Nonnull final AsyncRoute route) {
+        ROUTES.add(new RoutePattern(GET, path, route));
+    }
+
+    /**
+     * Removes all the registered routes.
+     */
+    public static void clear() {
+        ROUTES.clear();
+    }
+
+    /**
+     * @param method HTTP method of the request
+     * @param path   decoded request path
+     * @return the first registered route which matches the request, or <b>null</b> if none matches
+     */
+    @Nullable
+    static Match match(@Nonnull final String method, @Nonnull final String path) {
+        if (ROUTES.isEmpty()) {
+            return null;
+        }
+
+        final String[] pathSegments = splitPath(path);
+        for (final RoutePattern routePattern : ROUTES) {
+            final Map<String, String> params = routePattern.match(method, pathSegments);
+            if (params != null) {
+                return new Match(routePattern.route, params);
+            }
+        }
+
+        return null;
+    }
+
+    private static String[] splitPath(@Nonnull final String path) {
+        final String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1).split("/") : trimmed.split("/");
+    }
+
+    static final class Match {
+        private final AsyncRoute route;
+        private final Map<String, String> params;
+
+        private Match(@Nonnull final AsyncRoute route, @Nonnull final Map<String, String> params) {
+            this.route = route;
+            this.params = params;
+        }
+
+        @Nonnull
+        AsyncRoute getRoute() {
+            return route;
+        }
+
+        @Nonnull
+        Map<String, String> getParams() {
+            return params;
+        }
+    }
+
+    private static final class RoutePattern {
+        private final String method;
+        private final String[] segments;
+        private final AsyncRoute route;
+
+        private RoutePattern(@Nonnull final String method, @Nonnull final String path, @Nonnull final AsyncRoute route) {
+            this.method = method;
+            this.segments = splitPath(path);
+            this.route = route;
+        }
+
+        @Nullable
+        private Map<String, String> match(@Nonnull final String requestMethod, @Nonnull final String[] pathSegments) {
+            if (!method.equalsIgnoreCase(requestMethod) || segments.length != pathSegments.length) {
+                return null;
+            }
+
+            final Map<String, String> params = new HashMap<>();
+            for (int i = 0; i < segments.length; i++) {
+                final String segment = segments[i];
+                if (segment.startsWith(":")) {
+                    if (pathSegments[i].isEmpty()) {
+                        return null;
+                    }
+                    params.put(segment.substring(1), pathSegments[i]);
+                } else if (!segment.equals(pathSegments[i])) {
+                    return null;
+                }
+            }
+
+            return params;
+        }
+    }
+
+    private AsyncRoutes() {
+    }
+}
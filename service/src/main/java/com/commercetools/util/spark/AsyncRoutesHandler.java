@@ -0,0 +1,111 @@
+package com.commercetools.util.spark;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.commercetools.util.CorrelationIdUtil.attachFromRequestOrGenerateNew;
+
+/**
+ * Serves the {@link AsyncRoutes} using Servlet 3 async processing: the Jetty thread is released as soon as the route
+ * returns its stage, and the response is completed by the thread which completes the stage.
+ * <p>
+ * All other requests are passed to the wrapped (Spark) handler.
+ */
+public class AsyncRoutesHandler extends HandlerWrapper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncRoutesHandler.class);
+
+    /**
+     * Same as the blocking sphere client timeout multiplied by the payment handling retries, so an async request
+     * doesn't time out earlier than the blocking one.
+     */
+    static final long ASYNC_TIMEOUT_MILLIS = 60_000;
+
+    @Override
+    public void handle(final String target, final Request baseRequest,
+                       final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException, ServletException {
+
+        final AsyncRoutes.Match match = AsyncRoutes.match(request.getMethod(), target);
+        if (match == null) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        baseRequest.setHandled(true);
+        attachFromRequestOrGenerateNew(request);
+        try {
+            final AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(ASYNC_TIMEOUT_MILLIS);
+
+            final AtomicBoolean completed = new AtomicBoolean();
+            asyncContext.addListener(new TimeoutListener(completed, target));
+
+            try {
+                match.getRoute().handle(match.getParams(), response)
+                        .whenComplete((ignored, throwable) -> complete(asyncContext, completed, target, throwable));
+            } catch (RuntimeException e) {
+                complete(asyncContext, completed, target, e);
+            }
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static void complete(final AsyncContext asyncContext, final AtomicBoolean completed,
+                                 final String target, final Throwable throwable) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (throwable != null) {
+            LOG.error("Async route {} failed", target, throwable);
+            ((HttpServletResponse) asyncContext.getResponse()).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        asyncContext.complete();
+    }
+
+    private static final class TimeoutListener implements AsyncListener {
+        private final AtomicBoolean completed;
+        private final String target;
+
+        private TimeoutListener(final AtomicBoolean completed, final String target) {
+            this.completed = completed;
+            this.target = target;
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) throws IOException {
+            if (completed.compareAndSet(false, true)) {
+                LOG.error("Async route {} was not completed in {} ms", target, ASYNC_TIMEOUT_MILLIS);
+                ((HttpServletResponse) event.getAsyncContext().getResponse())
+                        .setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                event.getAsyncContext().complete();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+        }
+    }
+}
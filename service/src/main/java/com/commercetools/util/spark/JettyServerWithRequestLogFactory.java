@@ -1,16 +1,33 @@
 package com.commercetools.util.spark;
 
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import spark.embeddedserver.jetty.JettyServerFactory;
 
 public class JettyServerWithRequestLogFactory implements JettyServerFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JettyServerWithRequestLogFactory.class);
+
     private final RequestLog requestLog;
+    private final boolean virtualThreads;
 
     public JettyServerWithRequestLogFactory(final RequestLog requestLog) {
+        this(requestLog, false);
+    }
+
+    /**
+     * @param requestLog     request log to set to the created servers
+     * @param virtualThreads if <b>true</b> and the JVM supports virtual threads - the requests are executed on
+     *                       virtual threads (see {@link VirtualThreadPool}) instead of the queued thread pool
+     */
+    public JettyServerWithRequestLogFactory(final RequestLog requestLog, final boolean virtualThreads) {
         this.requestLog = requestLog;
+        this.virtualThreads = virtualThreads;
     }
 
     /**
@@ -25,23 +42,57 @@ public class JettyServerWithRequestLogFactory implements JettyServerFactory {
     public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
         Server server;
 
-        if (maxThreads > 0) {
+        if (useVirtualThreads()) {
+            server = new AsyncRoutesServer(new VirtualThreadPool());
+        } else if (maxThreads > 0) {
             int min = (minThreads > 0) ? minThreads : 8;
             int idleTimeout = (threadTimeoutMillis > 0) ? threadTimeoutMillis : 60000;
 
-            server = new Server(new QueuedThreadPool(maxThreads, min, idleTimeout));
+            server = new AsyncRoutesServer(new QueuedThreadPool(maxThreads, min, idleTimeout));
         } else {
-            server = new Server();
+            server = new AsyncRoutesServer(null);
         }
 
         server.setRequestLog(requestLog);
         return server;
     }
 
+    private boolean useVirtualThreads() {
+        if (virtualThreads && !VirtualThreadPool.isSupported()) {
+            LOG.warn("Virtual threads are not supported by Java {}, the platform thread pool is used",
+                    System.getProperty("java.version"));
+            return false;
+        }
+        return virtualThreads;
+    }
+
     @Override
     public Server create(ThreadPool threadPool) {
-        final Server server = threadPool != null ? new Server(threadPool) : new Server();
+        final Server server = new AsyncRoutesServer(threadPool);
         server.setRequestLog(requestLog);
         return server;
     }
+
+    /**
+     * Puts {@link AsyncRoutesHandler} in front of the handler which Spark sets, so {@link AsyncRoutes} are served
+     * before Spark's route matching.
+     */
+    private static class AsyncRoutesServer extends Server {
+
+        private AsyncRoutesServer(final ThreadPool threadPool) {
+            super(threadPool);
+        }
+
+        @Override
+        public void setHandler(final Handler handler) {
+            if (handler == null) {
+                super.setHandler(null);
+                return;
+            }
+
+            final AsyncRoutesHandler asyncRoutesHandler = new AsyncRoutesHandler();
+            asyncRoutesHandler.setHandler(handler);
+            super.setHandler(asyncRoutesHandler);
+        }
+    }
 }
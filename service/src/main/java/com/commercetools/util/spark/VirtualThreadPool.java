@@ -0,0 +1,124 @@
+package com.commercetools.util.spark;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Jetty {@link ThreadPool} which executes every job on a new virtual thread.
+ * <p>
+ * The service is compiled for Java 8, thus virtual threads are created reflectively and are available only if the
+ * service runs on Java 21+, see {@link #isSupported()}.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    private static final Supplier<ExecutorService> VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+    private final AtomicInteger activeJobs = new AtomicInteger();
+
+    private volatile ExecutorService executor;
+
+    /**
+     * @return <b>true</b> if the running JVM supports virtual threads (Java 21+)
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21+, running on "
+                    + System.getProperty("java.version"));
+        }
+        executor = VIRTUAL_THREAD_EXECUTOR_FACTORY.get();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        final ExecutorService stopped = executor;
+        if (stopped != null) {
+            stopped.shutdownNow();
+        }
+    }
+
+    @Override
+    public void execute(@Nonnull final Runnable job) {
+        final ExecutorService current = executor;
+        if (current == null) {
+            throw new RejectedExecutionException("Virtual thread pool is not started");
+        }
+
+        activeJobs.incrementAndGet();
+        try {
+            current.execute(() -> {
+                try {
+                    job.run();
+                } finally {
+                    activeJobs.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            activeJobs.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        final ExecutorService current = executor;
+        if (current != null) {
+            current.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return activeJobs.get();
+    }
+
+    /**
+     * Virtual threads are created per job, so there are never idle threads and the pool is never low on threads.
+     */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    private static Supplier<ExecutorService> findVirtualThreadExecutorFactory() {
+        final Method factoryMethod;
+        try {
+            factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+
+        return () -> {
+            try {
+                return (ExecutorService) factoryMethod.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOG.error("Virtual thread executor could not be created", e);
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
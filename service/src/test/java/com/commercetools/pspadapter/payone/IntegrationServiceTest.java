@@ -1,21 +1,33 @@
 package com.commercetools.pspadapter.payone;
 
 import com.commercetools.pspadapter.payone.config.ServiceConfig;
+import com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder;
 import com.commercetools.pspadapter.tenant.TenantFactory;
+import com.commercetools.util.spark.JettyServerWithRequestLogFactory;
+import org.eclipse.jetty.http.HttpStatus;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import spark.Spark;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 import spark.utils.IOUtils;
 
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.commercetools.pspadapter.payone.IntegrationService.SUCCESS_STATUS;
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static spark.Spark.awaitStop;
 
@@ -29,9 +41,16 @@ public class IntegrationServiceTest {
 
     private ServiceConfig serviceConfig = null;
 
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private static HealthResponse requestHealth(boolean isPretty) {
+        return request(format("/health%s", isPretty ? "?pretty" : ""));
+    }
+
+    private static HealthResponse request(String path) {
         try {
-            URL url = new URL(format("http://localhost:8080/health%s", isPretty ? "?pretty" : ""));
+            URL url = new URL("http://localhost:8080" + path);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("GET");
             connection.setDoOutput(true);
@@ -40,7 +59,7 @@ public class IntegrationServiceTest {
             String body = "";
             if (statusCode == 200) {
                 body = IOUtils.toString(connection.getInputStream());
-            } else {
+            } else if (connection.getErrorStream() != null) {
                 body = IOUtils.toString(connection.getErrorStream());
             }
             return new HealthResponse(statusCode, body);
@@ -64,6 +83,7 @@ public class IntegrationServiceTest {
     public void tearDown() throws Exception {
         integrationService.stop();
         awaitStop();
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory());
     }
 
     @Test
@@ -104,6 +124,126 @@ public class IntegrationServiceTest {
         );
     }
 
+    @Test
+    public void start_tenantsOfSameProject_createCustomTypesOnce() {
+        final TenantFactory tenant1 = createMockTenantFactory(TENANTNAME1, "project-1");
+        final TenantFactory tenant2 = createMockTenantFactory(TENANTNAME2, "project-1");
+        final TenantFactory tenant3 = createMockTenantFactory("tenant3", "project-2");
+        integrationService = new IntegrationService(serviceConfig, Arrays.asList(tenant1, tenant2, tenant3));
+
+        integrationService.start();
+
+        verify(tenant1.getCustomTypeBuilder()).run();
+        verify(tenant2.getCustomTypeBuilder(), never()).run();
+        verify(tenant3.getCustomTypeBuilder()).run();
+    }
+
+    @Test
+    public void start_perTenantRoutes_resolveTenantByPath() {
+        assertTenantIsResolvedByPath(false, false);
+    }
+
+    @Test
+    public void start_tenantRouteDispatch_resolveTenantByPath() {
+        assertTenantIsResolvedByPath(true, false);
+    }
+
+    @Test
+    public void start_perTenantAsyncRoutes_resolveTenantByPath() {
+        assertTenantIsResolvedByPath(false, true);
+    }
+
+    @Test
+    public void start_tenantRouteDispatchAsyncRoutes_resolveTenantByPath() {
+        assertTenantIsResolvedByPath(true, true);
+    }
+
+    @Test
+    public void start_tenantRouteDispatchWithoutWorkerPools_notificationMetricsAreNotFound() {
+        when(serviceConfig.isTenantRouteDispatch()).thenReturn(true);
+        integrationService = new IntegrationService(serviceConfig, Arrays.asList(
+                createMockTenantFactoryWithRoutes(TENANTNAME1),
+                createMockTenantFactoryWithRoutes(TENANTNAME2)));
+
+        integrationService.start();
+
+        assertThat(request(TenantFactory.payoneNotificationMetricsUrlOf(TENANTNAME1)).status)
+                .isEqualTo(HttpStatus.NOT_FOUND_404);
+    }
+
+    @Test
+    public void start_tenantRouteDispatchWithWorkerPools_servesNotificationMetricsOfKnownTenantsOnly() {
+        when(serviceConfig.isTenantRouteDispatch()).thenReturn(true);
+        when(serviceConfig.getNotificationJournalDir())
+                .thenReturn(Optional.of(temporaryFolder.getRoot().getAbsolutePath()));
+        integrationService = new IntegrationService(serviceConfig, Arrays.asList(
+                createMockTenantFactoryWithRoutes(TENANTNAME1),
+                createMockTenantFactoryWithRoutes(TENANTNAME2)));
+
+        integrationService.start();
+
+        final HealthResponse metrics = request(TenantFactory.payoneNotificationMetricsUrlOf(TENANTNAME2));
+        assertThat(metrics.status).isEqualTo(SUCCESS_STATUS);
+        assertThat(metrics.body).isNotEmpty();
+        assertThat(request(TenantFactory.payoneNotificationMetricsUrlOf("unknownTenant")).status)
+                .isEqualTo(HttpStatus.NOT_FOUND_404);
+    }
+
+    /**
+     * Requests the payment handler URL of the second tenant and of an unknown tenant.
+     *
+     * @param asyncPaymentHandling if <b>true</b> - the payment handler is served by the async routes, which need the
+     *                             Jetty server of {@link JettyServerWithRequestLogFactory}
+     */
+    private void assertTenantIsResolvedByPath(boolean tenantRouteDispatch, boolean asyncPaymentHandling) {
+        if (asyncPaymentHandling) {
+            EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                    new EmbeddedJettyFactory(new JettyServerWithRequestLogFactory(null)));
+        }
+        when(serviceConfig.isTenantRouteDispatch()).thenReturn(tenantRouteDispatch);
+        when(serviceConfig.isAsyncPaymentHandling()).thenReturn(asyncPaymentHandling);
+        final TenantFactory tenant1 = createMockTenantFactoryWithRoutes(TENANTNAME1);
+        final TenantFactory tenant2 = createMockTenantFactoryWithRoutes(TENANTNAME2);
+        integrationService = new IntegrationService(serviceConfig, Arrays.asList(tenant1, tenant2));
+
+        integrationService.start();
+
+        assertThat(request("/" + TENANTNAME2 + "/commercetools/handle/payments/payment-1").status)
+                .isEqualTo(HttpStatus.ACCEPTED_202);
+        assertThat(request("/unknownTenant/commercetools/handle/payments/payment-1").status)
+                .isEqualTo(HttpStatus.NOT_FOUND_404);
+        if (asyncPaymentHandling) {
+            verify(tenant2.getPaymentHandler()).handlePaymentAsync("payment-1");
+            verify(tenant1.getPaymentHandler(), never()).handlePaymentAsync(anyString());
+        } else {
+            verify(tenant2.getPaymentHandler()).handlePayment("payment-1");
+            verify(tenant1.getPaymentHandler(), never()).handlePayment(anyString());
+        }
+    }
+
+    private TenantFactory createMockTenantFactoryWithRoutes(String tenantName) {
+        final TenantFactory tenantFactory = createMockTenantFactory(tenantName);
+        final PaymentHandler paymentHandler = Mockito.mock(PaymentHandler.class);
+        final PayoneResult payoneResult = new PayoneResult(HttpStatus.ACCEPTED_202);
+        when(paymentHandler.handlePayment(anyString())).thenReturn(payoneResult);
+        when(paymentHandler.handlePaymentAsync(anyString())).thenReturn(CompletableFuture.completedFuture(payoneResult));
+        when(tenantFactory.getPaymentHandler()).thenReturn(paymentHandler);
+        when(tenantFactory.getPaymentHandlerUrl()).thenReturn(TenantFactory.paymentHandlerUrlOf(tenantName));
+        when(tenantFactory.getPayoneStartSessionUrl()).thenReturn(TenantFactory.payoneStartSessionUrlOf(tenantName));
+        when(tenantFactory.getPayoneNotificationUrl()).thenReturn(TenantFactory.payoneNotificationUrlOf(tenantName));
+        when(tenantFactory.getPayoneNotificationMetricsUrl())
+                .thenReturn(TenantFactory.payoneNotificationMetricsUrlOf(tenantName));
+        return tenantFactory;
+    }
+
+    private TenantFactory createMockTenantFactory(String tenantName, String projectKey) {
+        final TenantFactory tenantFactory = createMockTenantFactory(tenantName);
+        final CustomTypeBuilder customTypeBuilder = Mockito.mock(CustomTypeBuilder.class);
+        when(tenantFactory.getCtpProjectKey()).thenReturn(projectKey);
+        when(tenantFactory.getCustomTypeBuilder()).thenReturn(customTypeBuilder);
+        return tenantFactory;
+    }
+
     private TenantFactory createMockTenantFactory(String tenantName) {
         TenantFactory tenantFactory = Mockito.mock(TenantFactory.class);
         when(tenantFactory.getTenantName()).thenReturn(tenantName);
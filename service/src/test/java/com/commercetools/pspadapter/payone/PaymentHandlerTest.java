@@ -21,8 +21,11 @@ import org.mockito.junit.MockitoRule;
 
 import java.util.ConcurrentModificationException;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.executeBlocking;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
 import static java.lang.String.format;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -325,6 +328,89 @@ public class PaymentHandlerTest
             + " Payment with id [%s]. See the service logs", paymentId));
     }
 
+    @Test
+    public void handlePaymentAsync_returnsStatusCodeOk200InCaseOfSuccessfulPaymentHandling() {
+        final String paymentId = randomString();
+        final PaymentWithCartLike paymentWithCartLike = new PaymentWithCartLike(payment, UNUSED_CART);
+
+        when(commercetoolsQueryExecutor.getPaymentWithCartLikeAsync(eq(paymentId)))
+            .thenReturn(CompletableFuture.completedFuture(paymentWithCartLike));
+        when(paymentDispatcher.dispatchPaymentAsync(same(paymentWithCartLike)))
+            .thenReturn(CompletableFuture.completedFuture(paymentWithCartLike));
+
+        final PayoneResult payoneResult = executeBlocking(testee.handlePaymentAsync(paymentId));
+
+        verify(paymentDispatcher, times(1)).dispatchPaymentAsync(same(paymentWithCartLike));
+        assertThat(payoneResult.statusCode()).isEqualTo(HttpStatusCode.OK_200);
+        assertThat(payoneResult.body()).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void handlePaymentAsync_WithLessThanLimitConcurrentModificationException_ShouldReturn200() {
+        final String paymentId = randomString();
+        final PaymentWithCartLike paymentWithCartLike = new PaymentWithCartLike(payment, UNUSED_CART);
+
+        when(commercetoolsQueryExecutor.getPaymentWithCartLikeAsync(eq(paymentId)))
+            .thenReturn(CompletableFuture.completedFuture(paymentWithCartLike));
+        when(paymentDispatcher.dispatchPaymentAsync(same(paymentWithCartLike)))
+            .thenReturn(failedStage(new ConcurrentModificationException()),
+                failedStage(new ConcurrentModificationException()),
+                CompletableFuture.completedFuture(paymentWithCartLike));
+
+        final PayoneResult payoneResult = executeBlocking(testee.handlePaymentAsync(paymentId));
+
+        verify(paymentDispatcher, times(3)).dispatchPaymentAsync(same(paymentWithCartLike));
+        assertThat(payoneResult.statusCode()).isEqualTo(HttpStatusCode.OK_200);
+    }
+
+    @Test
+    public void handlePaymentAsync_WithAlwaysConcurrentModificationException_ShouldReturn202() {
+        final String paymentId = randomString();
+        final PaymentWithCartLike paymentWithCartLike = new PaymentWithCartLike(payment, UNUSED_CART);
+
+        when(commercetoolsQueryExecutor.getPaymentWithCartLikeAsync(eq(paymentId)))
+            .thenReturn(CompletableFuture.completedFuture(paymentWithCartLike));
+        when(paymentDispatcher.dispatchPaymentAsync(same(paymentWithCartLike)))
+            .thenAnswer(invocation -> failedStage(new CompletionException(new ConcurrentModificationException())));
+
+        final PayoneResult payoneResult = executeBlocking(testee.handlePaymentAsync(paymentId));
+
+        verify(paymentDispatcher, times(5)).dispatchPaymentAsync(same(paymentWithCartLike));
+        assertThat(payoneResult.statusCode()).isEqualTo(HttpStatusCode.ACCEPTED_202);
+    }
+
+    @Test
+    public void handlePaymentAsync_returnsStatusCodeNotFound404InCaseOfCartLikeMissing() {
+        final String paymentId = randomString();
+
+        when(commercetoolsQueryExecutor.getPaymentWithCartLikeAsync(eq(paymentId)))
+            .thenReturn(failedStage(new NoCartLikeFoundException()));
+
+        final PayoneResult payoneResult = executeBlocking(testee.handlePaymentAsync(paymentId));
+
+        assertThat(payoneResult.statusCode()).isEqualTo(HttpStatusCode.NOT_FOUND_404);
+        assertThat(payoneResult.body()).contains(format("Failed to process the commercetools Payment with id "
+            + "[%s], as the payment or the cart could not be found", paymentId));
+    }
+
+    @Test
+    public void handlePaymentAsync_returnsStatusCodeInternalServerError500InCaseOfUnexpectedException() {
+        final String paymentId = randomString();
+        final PaymentWithCartLike paymentWithCartLike = new PaymentWithCartLike(payment, UNUSED_CART);
+
+        when(commercetoolsQueryExecutor.getPaymentWithCartLikeAsync(eq(paymentId)))
+            .thenReturn(CompletableFuture.completedFuture(paymentWithCartLike));
+        when(paymentDispatcher.dispatchPaymentAsync(same(paymentWithCartLike)))
+            .thenReturn(failedStage(new RuntimeException(randomString())));
+
+        final PayoneResult payoneResult = executeBlocking(testee.handlePaymentAsync(paymentId));
+
+        assertThat(payoneResult.statusCode()).isEqualTo(HttpStatusCode.INTERNAL_SERVER_ERROR_500);
+        assertThat(payoneResult.body()).contains(format("Unexpected error occurred when processing commercetools"
+            + " Payment with id [%s]. See the service logs", paymentId));
+    }
+
     private static PaymentMethodInfo paymentMethodInfo(final String paymentInterface) {
         return SphereJsonUtils.readObject(
                 "{\"paymentInterface\": \"" + paymentInterface +  "\",\"method\": \"CREDIT_CARD\"}",
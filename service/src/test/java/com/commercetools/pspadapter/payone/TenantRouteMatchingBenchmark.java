@@ -0,0 +1,117 @@
+package com.commercetools.pspadapter.payone;
+
+import com.commercetools.pspadapter.tenant.TenantFactory;
+import spark.Route;
+import spark.RouteImpl;
+import spark.route.HttpMethod;
+import spark.route.Routes;
+import spark.routematch.RouteMatch;
+import spark.utils.SparkUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Measures the cost of matching a notification request with the route matcher of Spark: the routes registered per
+ * tenant against the routes registered once with the tenant name as a path parameter and the tenant looked up in a
+ * hash map, see {@link com.commercetools.pspadapter.payone.config.ServiceConfig#isTenantRouteDispatch()}. The
+ * requests are spread over all the tenants.
+ * <p>
+ * Not a test: run {@link #main(String[])} with the test classpath, the arguments are the numbers of tenants (default
+ * 1, 10, 100 and 1000). The results are rough, there is no benchmark framework in the build.
+ */
+public class TenantRouteMatchingBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int REQUESTS_PER_ROUND = 200_000;
+
+    private static final Route NO_OP_ROUTE = (req, res) -> "";
+
+    private static final String TENANT_PARAM = ":tenant";
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        final int[] tenantCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 10, 100, 1000};
+
+        System.out.println("tenants   per-tenant routes   tenant route dispatch");
+        for (final int tenantCount : tenantCounts) {
+            final List<String> tenantNames = new ArrayList<>(tenantCount);
+            final Map<String, String> tenantsByName = new HashMap<>(tenantCount * 2);
+            for (int i = 0; i < tenantCount; i++) {
+                final String tenantName = "tenant-" + i;
+                tenantNames.add(tenantName);
+                tenantsByName.put(tenantName, tenantName);
+            }
+
+            final Routes perTenantRoutes = Routes.create();
+            tenantNames.forEach(tenantName -> addTenantRoutes(perTenantRoutes, tenantName));
+            final Routes dispatchRoutes = Routes.create();
+            addTenantRoutes(dispatchRoutes, TENANT_PARAM);
+
+            final String[] paths = tenantNames.stream()
+                    .map(TenantFactory::payoneNotificationUrlOf)
+                    .toArray(String[]::new);
+
+            final double perTenantNanos = measure(perTenantRoutes, paths, match -> match);
+            final double dispatchNanos = measure(dispatchRoutes, paths, match -> {
+                // like spark.Request, which resolves the path parameters from the matched route
+                final List<String> requestParts = SparkUtils.convertRouteToList(match.getRequestURI());
+                final List<String> matchedParts = SparkUtils.convertRouteToList(match.getMatchUri());
+                return tenantsByName.get(requestParts.get(matchedParts.indexOf(TENANT_PARAM)));
+            });
+            System.out.println(String.format("%-9d %-19s %s", tenantCount, format(perTenantNanos),
+                    format(dispatchNanos)));
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    /**
+     * Registers the routes like {@link IntegrationService} does for one tenant.
+     */
+    private static void addTenantRoutes(Routes routes, String tenantName) {
+        routes.add(HttpMethod.get, RouteImpl.create(TenantFactory.paymentHandlerUrlOf(tenantName),
+                NO_OP_ROUTE));
+        routes.add(HttpMethod.get, RouteImpl.create(TenantFactory.payoneStartSessionUrlOf(tenantName),
+                NO_OP_ROUTE));
+        routes.add(HttpMethod.post, RouteImpl.create(TenantFactory.payoneNotificationUrlOf(tenantName),
+                NO_OP_ROUTE));
+        routes.add(HttpMethod.get, RouteImpl.create(TenantFactory.payoneNotificationMetricsUrlOf(tenantName),
+                NO_OP_ROUTE));
+    }
+
+    /**
+     * @return the mean nanoseconds per request of the measured rounds
+     */
+    private static double measure(Routes routes, String[] paths, Function<RouteMatch, Object> resolveTenant) {
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            runRound(routes, paths, resolveTenant);
+        }
+
+        long totalNanos = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            final long startNanos = System.nanoTime();
+            runRound(routes, paths, resolveTenant);
+            totalNanos += System.nanoTime() - startNanos;
+        }
+        return (double) totalNanos / ((long) MEASURED_ROUNDS * REQUESTS_PER_ROUND);
+    }
+
+    private static void runRound(Routes routes, String[] paths, Function<RouteMatch, Object> resolveTenant) {
+        for (int i = 0; i < REQUESTS_PER_ROUND; i++) {
+            final RouteMatch match = routes.find(HttpMethod.post, paths[i % paths.length], null);
+            sink += resolveTenant.apply(match).hashCode();
+        }
+    }
+
+    private static String format(double nanos) {
+        return nanos >= 1000 ? String.format("%.1f us", nanos / 1000) : String.format("%.0f ns", nanos);
+    }
+}
@@ -0,0 +1,176 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import io.sphere.sdk.http.HttpResponse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter.INITIAL_LIMIT;
+import static com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter.MIN_LIMIT;
+import static com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter.QUEUE_TIMEOUT_MILLIS;
+import static com.commercetools.pspadapter.payone.domain.ctp.CommercetoolsConcurrencyLimiter.SLOW_RESPONSE_MILLIS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CommercetoolsConcurrencyLimiterTest {
+
+    private static final HttpResponse OK = HttpResponse.of(200, "");
+    private static final HttpResponse TOO_MANY_REQUESTS = HttpResponse.of(429, "");
+    private static final HttpResponse SERVICE_UNAVAILABLE = HttpResponse.of(503, "");
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Mock
+    private ScheduledExecutorService timer;
+
+    private CommercetoolsConcurrencyLimiter limiter() {
+        return new CommercetoolsConcurrencyLimiter("tenant", nanos::get, timer);
+    }
+
+    @Test
+    public void acquire_aboveLimit_queuesUntilRelease() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+        final List<Long> starts = acquire(limiter, INITIAL_LIMIT);
+
+        final CompletableFuture<Long> queued = limiter.acquire().toCompletableFuture();
+        assertThat(queued).isNotDone();
+        assertThat(limiter.getMetrics().getInFlight()).isEqualTo(INITIAL_LIMIT);
+        assertThat(limiter.getMetrics().getQueued()).isEqualTo(1);
+
+        advanceMillis(40);
+        limiter.release(starts.get(0), OK, null);
+
+        assertThat(queued).isCompletedWithValue(nanos.get());
+        final CommercetoolsConcurrencyLimiterMetrics metrics = limiter.getMetrics();
+        assertThat(metrics.getInFlight()).isEqualTo(INITIAL_LIMIT);
+        assertThat(metrics.getQueued()).isZero();
+        assertThat(metrics.getRequests()).isEqualTo(INITIAL_LIMIT + 1);
+        assertThat(metrics.getQueueWaitMaxMillis()).isEqualTo(40);
+    }
+
+    @Test
+    public void release_throttled_decreasesLimitOncePerOverload() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+        advanceMillis(1);
+        final List<Long> starts = acquire(limiter, INITIAL_LIMIT);
+
+        advanceMillis(10);
+        limiter.release(starts.get(0), TOO_MANY_REQUESTS, null);
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(27);
+
+        // sent before the decrease, so they don't decrease the limit again
+        limiter.release(starts.get(1), SERVICE_UNAVAILABLE, null);
+        limiter.release(starts.get(2), null, new RuntimeException("connection reset"));
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(27);
+        assertThat(limiter.getMetrics().getOverloads()).isEqualTo(3);
+
+        limiter.release(starts.get(3), OK, null);
+        advanceMillis(1);
+        final long start = limiter.acquire().toCompletableFuture().join();
+        assertThat(limiter.getMetrics().getInFlight()).isEqualTo(27);
+        advanceMillis(10);
+        limiter.release(start, SERVICE_UNAVAILABLE, null);
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(24);
+    }
+
+    @Test
+    public void release_slowResponse_decreasesLimit() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+        advanceMillis(1);
+        final long start = limiter.acquire().toCompletableFuture().join();
+
+        advanceMillis(SLOW_RESPONSE_MILLIS + 1);
+        limiter.release(start, OK, null);
+
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(27);
+    }
+
+    @Test
+    public void release_throttled_keepsMinLimit() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+        for (int i = 0; i < 100; i++) {
+            advanceMillis(1);
+            final long start = limiter.acquire().toCompletableFuture().join();
+            advanceMillis(1);
+            limiter.release(start, TOO_MANY_REQUESTS, null);
+        }
+
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(MIN_LIMIT);
+    }
+
+    @Test
+    public void release_successWhileUtilized_increasesLimitAdditively() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+        acquire(limiter, INITIAL_LIMIT - 1);
+
+        // ~ 1/limit per response, so the limit grows by 1 after about INITIAL_LIMIT responses
+        for (int i = 0; i < INITIAL_LIMIT + 1; i++) {
+            final long start = limiter.acquire().toCompletableFuture().join();
+            limiter.release(start, OK, null);
+        }
+
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(INITIAL_LIMIT + 1);
+    }
+
+    @Test
+    public void release_successWhileIdle_keepsLimit() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+
+        for (int i = 0; i < 10 * INITIAL_LIMIT; i++) {
+            final long start = limiter.acquire().toCompletableFuture().join();
+            limiter.release(start, OK, null);
+        }
+
+        assertThat(limiter.getMetrics().getLimit()).isEqualTo(INITIAL_LIMIT);
+    }
+
+    @Test
+    public void queuedRequest_afterQueueTimeout_isRejected() {
+        final CommercetoolsConcurrencyLimiter limiter = limiter();
+        final List<Long> starts = acquire(limiter, INITIAL_LIMIT);
+        final CompletableFuture<Long> queued = limiter.acquire().toCompletableFuture();
+
+        final ArgumentCaptor<Runnable> timeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer).schedule(timeout.capture(), eq(QUEUE_TIMEOUT_MILLIS), any(TimeUnit.class));
+        advanceMillis(QUEUE_TIMEOUT_MILLIS);
+        timeout.getValue().run();
+
+        assertThat(queued).isCompletedExceptionally();
+        assertThat(queued.handle((start, throwable) -> throwable).join())
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("tenant");
+        assertThat(limiter.getMetrics().getQueueTimeouts()).isEqualTo(1);
+        assertThat(limiter.getMetrics().getQueued()).isZero();
+
+        // the rejected request is not admitted anymore
+        limiter.release(starts.get(0), OK, null);
+        assertThat(limiter.getMetrics().getInFlight()).isEqualTo(INITIAL_LIMIT - 1);
+    }
+
+    private static List<Long> acquire(final CommercetoolsConcurrencyLimiter limiter, final int requests) {
+        final List<Long> starts = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            final CompletableFuture<Long> start = limiter.acquire().toCompletableFuture();
+            assertThat(start).isDone();
+            starts.add(start.join());
+        }
+        return starts;
+    }
+
+    private void advanceMillis(final long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,158 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import io.sphere.sdk.client.BlockingSphereClient;
+import io.sphere.sdk.client.ErrorResponseException;
+import io.sphere.sdk.client.SphereRequest;
+import io.sphere.sdk.customobjects.CustomObject;
+import io.sphere.sdk.customobjects.commands.CustomObjectUpsertCommand;
+import io.sphere.sdk.customobjects.queries.CustomObjectByKeyGet;
+import io.sphere.sdk.http.HttpStatusCode;
+import io.sphere.sdk.models.errors.ErrorResponse;
+import io.sphere.sdk.models.errors.SphereError;
+import io.sphere.sdk.queries.PagedQueryResult;
+import io.sphere.sdk.types.Type;
+import io.sphere.sdk.types.commands.TypeCreateCommand;
+import io.sphere.sdk.types.queries.TypeQuery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder.PAYMENT_CREDIT_CARD;
+import static com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder.PAYMENT_WALLET;
+import static com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder.PAYONE_INTERACTION_REQUEST;
+import static com.commercetools.pspadapter.payone.domain.ctp.CustomTypeBuilder.PermissionToStartFromScratch.DENIED;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.failedStage;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CustomTypeBuilderTest {
+
+    @Mock
+    private BlockingSphereClient ctpClient;
+
+    @Test
+    public void createsOnlyMissingTypesAndStoresFingerprint() {
+        final List<Type> existingTypes = Arrays.asList(
+                mockType(PAYMENT_CREDIT_CARD), mockType(PAYMENT_WALLET), mockType(PAYONE_INTERACTION_REQUEST));
+        when(ctpClient.executeBlocking(any(TypeQuery.class))).thenReturn(PagedQueryResult.of(existingTypes));
+        doReturn(CompletableFuture.completedFuture(null)).when(ctpClient).execute(any(TypeCreateCommand.class));
+
+        new CustomTypeBuilder(ctpClient, DENIED).run();
+
+        // all the types are fetched in one query
+        verify(ctpClient, times(1)).executeBlocking(any(TypeQuery.class));
+
+        final ArgumentCaptor<TypeCreateCommand> createCaptor = ArgumentCaptor.forClass(TypeCreateCommand.class);
+        verify(ctpClient, times(8)).execute(createCaptor.capture());
+        assertThat(createCaptor.getAllValues().stream().map(command -> command.getDraft().getKey()).collect(toList()))
+                .doesNotContain(PAYMENT_CREDIT_CARD, PAYMENT_WALLET, PAYONE_INTERACTION_REQUEST);
+
+        assertThat(getStoredFingerprint()).hasSize(64);
+    }
+
+    @Test
+    public void skipsTypesIfFingerprintMatches() {
+        when(ctpClient.executeBlocking(any(TypeQuery.class))).thenReturn(PagedQueryResult.of(Arrays.asList()));
+        doReturn(CompletableFuture.completedFuture(null)).when(ctpClient).execute(any(TypeCreateCommand.class));
+        new CustomTypeBuilder(ctpClient, DENIED).run();
+        final String fingerprint = getStoredFingerprint();
+
+        final BlockingSphereClient restartedCtpClient = mock(BlockingSphereClient.class);
+        final CustomObject<String> storedFingerprint = mock(CustomObject.class);
+        when(storedFingerprint.getValue()).thenReturn(fingerprint);
+        when(restartedCtpClient.executeBlocking(any(CustomObjectByKeyGet.class))).thenReturn(storedFingerprint);
+
+        new CustomTypeBuilder(restartedCtpClient, DENIED).run();
+
+        verify(restartedCtpClient, never()).executeBlocking(any(TypeQuery.class));
+        verify(restartedCtpClient, never()).execute(any(TypeCreateCommand.class));
+        verify(restartedCtpClient, never()).executeBlocking(any(CustomObjectUpsertCommand.class));
+    }
+
+    @Test
+    public void typeCreatedConcurrently_isFoundAgainAndCountsAsCreated() {
+        when(ctpClient.executeBlocking(any(TypeQuery.class))).thenReturn(
+                PagedQueryResult.of(Collections.emptyList()),
+                PagedQueryResult.of(Collections.singletonList(mockType(PAYMENT_CREDIT_CARD))));
+        doReturn(CompletableFuture.completedFuture(null)).when(ctpClient).execute(any(TypeCreateCommand.class));
+        doReturn(failedStage(duplicateKeyException())).when(ctpClient).execute(typeCreateCommandOf(PAYMENT_CREDIT_CARD));
+
+        new CustomTypeBuilder(ctpClient, DENIED).run();
+
+        verify(ctpClient, times(2)).executeBlocking(any(TypeQuery.class));
+        assertThat(getStoredFingerprint()).hasSize(64);
+    }
+
+    @Test
+    public void duplicateKeyOfMissingType_fails() {
+        when(ctpClient.executeBlocking(any(TypeQuery.class))).thenReturn(PagedQueryResult.of(Collections.emptyList()));
+        doReturn(CompletableFuture.completedFuture(null)).when(ctpClient).execute(any(TypeCreateCommand.class));
+        doReturn(failedStage(duplicateKeyException())).when(ctpClient).execute(typeCreateCommandOf(PAYMENT_CREDIT_CARD));
+
+        final Throwable throwable = catchThrowable(() -> new CustomTypeBuilder(ctpClient, DENIED).run());
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class).hasMessageContaining(PAYMENT_CREDIT_CARD);
+        verify(ctpClient, never()).executeBlocking(any(CustomObjectUpsertCommand.class));
+    }
+
+    @Test
+    public void otherCreateFailure_isRethrown() {
+        when(ctpClient.executeBlocking(any(TypeQuery.class))).thenReturn(PagedQueryResult.of(Collections.emptyList()));
+        doReturn(CompletableFuture.completedFuture(null)).when(ctpClient).execute(any(TypeCreateCommand.class));
+        final ErrorResponseException unavailable = new ErrorResponseException(ErrorResponse.of(
+                HttpStatusCode.SERVICE_UNAVAILABLE_503, "commercetools is unavailable", Collections.emptyList()));
+        doReturn(failedStage(unavailable)).when(ctpClient).execute(typeCreateCommandOf(PAYMENT_CREDIT_CARD));
+
+        final Throwable throwable = catchThrowable(() -> new CustomTypeBuilder(ctpClient, DENIED).run());
+
+        assertThat(throwable).isInstanceOf(CompletionException.class).hasCause(unavailable);
+        verify(ctpClient, times(1)).executeBlocking(any(TypeQuery.class));
+    }
+
+    private static TypeCreateCommand typeCreateCommandOf(final String typeKey) {
+        return argThat(command -> command != null && typeKey.equals(command.getDraft().getKey()));
+    }
+
+    private static ErrorResponseException duplicateKeyException() {
+        return new ErrorResponseException(ErrorResponse.of(HttpStatusCode.BAD_REQUEST_400,
+                "A duplicate value '\"payment-CREDIT_CARD\"' exists for field 'key'.",
+                Collections.singletonList(SphereError.of(CustomTypeBuilder.DUPLICATE_FIELD_ERROR_CODE,
+                        "A duplicate value exists for field 'key'."))));
+    }
+
+    private String getStoredFingerprint() {
+        final ArgumentCaptor<SphereRequest> requestCaptor = ArgumentCaptor.forClass(SphereRequest.class);
+        verify(ctpClient, atLeastOnce()).executeBlocking(requestCaptor.capture());
+        final List<CustomObjectUpsertCommand> upserts = requestCaptor.getAllValues().stream()
+                .filter(request -> request instanceof CustomObjectUpsertCommand)
+                .map(request -> (CustomObjectUpsertCommand) request)
+                .collect(toList());
+        assertThat(upserts).hasSize(1);
+        return (String) upserts.get(0).getDraft().getValue();
+    }
+
+    private static Type mockType(final String key) {
+        final Type type = mock(Type.class);
+        when(type.getKey()).thenReturn(key);
+        return type;
+    }
+}
@@ -0,0 +1,218 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.sphere.sdk.client.SphereClient;
+import io.sphere.sdk.client.SphereRequest;
+import io.sphere.sdk.commands.UpdateAction;
+import io.sphere.sdk.models.Versioned;
+import io.sphere.sdk.payments.Payment;
+import io.sphere.sdk.payments.TransactionState;
+import io.sphere.sdk.payments.commands.PaymentUpdateCommand;
+import io.sphere.sdk.payments.commands.updateactions.AddInterfaceInteraction;
+import io.sphere.sdk.payments.commands.updateactions.ChangeTransactionState;
+import io.sphere.sdk.payments.queries.PaymentByIdGet;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InterfaceInteractionArchivingSphereClientTest {
+
+    private static final String PAYMENT_ID = "payment-1";
+    private static final String LARGE_VALUE =
+            StringUtils.repeat('x', InterfaceInteractionArchivingSphereClient.MAX_INLINE_LENGTH + 1);
+
+    @Mock
+    private SphereClient delegate;
+
+    private final List<Map<String, JsonNode>> archivedFields = new ArrayList<>();
+
+    private final List<String> archivedInteractionIds = new ArrayList<>();
+
+    private SphereClient client;
+
+    @Before
+    public void setUp() {
+        doReturn(CompletableFuture.completedFuture(null)).when(delegate).execute(any());
+        client = new InterfaceInteractionArchivingSphereClient(delegate, (paymentId, typeKey, interactionId, fields) -> {
+            archivedFields.add(fields);
+            archivedInteractionIds.add(interactionId);
+            return CompletableFuture.completedFuture(
+                    "container/" + CustomObjectInterfaceInteractionArchive.getKey(paymentId, typeKey, interactionId));
+        });
+    }
+
+    @Test
+    public void execute_replacesLargeFieldsByReference() {
+        final Map<String, Object> responseInfo = new HashMap<>();
+        responseInfo.put(CustomFieldKeys.RESPONSE_FIELD, LARGE_VALUE);
+        responseInfo.put(CustomFieldKeys.TRANSACTION_ID_FIELD, "transaction-1");
+        final ChangeTransactionState changeState = ChangeTransactionState.of(TransactionState.SUCCESS, "transaction-1");
+
+        client.execute(PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 1L), asList(
+                AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_RESPONSE,
+                        responseInfo),
+                changeState)));
+
+        final List<? extends UpdateAction<Payment>> updateActions = executedCommand().getUpdateActions();
+        assertThat(updateActions).hasSize(2);
+        final Map<String, JsonNode> fields = ((AddInterfaceInteraction) updateActions.get(0)).getFields().getFields();
+        assertThat(fields.get(CustomFieldKeys.RESPONSE_FIELD).textValue())
+                .startsWith("archived:container/payment-1-PAYONE_INTERACTION_RESPONSE-transaction-1-");
+        assertThat(fields.get(CustomFieldKeys.TRANSACTION_ID_FIELD).textValue()).isEqualTo("transaction-1");
+        assertThat(updateActions.get(1)).isSameAs(changeState);
+
+        assertThat(archivedFields).hasSize(1);
+        assertThat(archivedFields.get(0)).containsOnlyKeys(CustomFieldKeys.RESPONSE_FIELD);
+        assertThat(archivedFields.get(0).get(CustomFieldKeys.RESPONSE_FIELD).textValue()).isEqualTo(LARGE_VALUE);
+        assertThat(archivedInteractionIds).hasSize(1);
+        assertThat(archivedInteractionIds.get(0)).startsWith("transaction-1-");
+    }
+
+    @Test
+    public void execute_retriedUpdate_archivesIntoSameReference() {
+        final Map<String, Object> notificationInfo = new HashMap<>();
+        notificationInfo.put(CustomFieldKeys.NOTIFICATION_FIELD, LARGE_VALUE);
+        notificationInfo.put(CustomFieldKeys.SEQUENCE_NUMBER_FIELD, "2");
+        notificationInfo.put(CustomFieldKeys.TX_ACTION_FIELD, "paid");
+        final AddInterfaceInteraction interaction = AddInterfaceInteraction.ofTypeKeyAndObjects(
+                CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION, notificationInfo);
+
+        client.execute(PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 1L), interaction));
+        client.execute(PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 2L), interaction));
+
+        final List<PaymentUpdateCommand> commands = executedCommands(2);
+        final JsonNode firstReference = ((AddInterfaceInteraction) commands.get(0).getUpdateActions().get(0))
+                .getFields().getFields().get(CustomFieldKeys.NOTIFICATION_FIELD);
+        final JsonNode secondReference = ((AddInterfaceInteraction) commands.get(1).getUpdateActions().get(0))
+                .getFields().getFields().get(CustomFieldKeys.NOTIFICATION_FIELD);
+        assertThat(firstReference.textValue())
+                .startsWith("archived:container/payment-1-PAYONE_INTERACTION_NOTIFICATION-2-paid-");
+        assertThat(secondReference).isEqualTo(firstReference);
+        assertThat(archivedInteractionIds).hasSize(2);
+        assertThat(archivedInteractionIds.get(1)).isEqualTo(archivedInteractionIds.get(0));
+    }
+
+    @Test
+    public void execute_notificationsDifferingInTransactionStatus_areArchivedSeparately() {
+        client.execute(PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 1L),
+                createAppointedNotification("pending")));
+        client.execute(PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 2L),
+                createAppointedNotification("completed")));
+
+        final List<PaymentUpdateCommand> commands = executedCommands(2);
+        final JsonNode pendingReference = ((AddInterfaceInteraction) commands.get(0).getUpdateActions().get(0))
+                .getFields().getFields().get(CustomFieldKeys.NOTIFICATION_FIELD);
+        final JsonNode completedReference = ((AddInterfaceInteraction) commands.get(1).getUpdateActions().get(0))
+                .getFields().getFields().get(CustomFieldKeys.NOTIFICATION_FIELD);
+        assertThat(pendingReference.textValue())
+                .startsWith("archived:container/payment-1-PAYONE_INTERACTION_NOTIFICATION-0-appointed-");
+        assertThat(completedReference.textValue())
+                .startsWith("archived:container/payment-1-PAYONE_INTERACTION_NOTIFICATION-0-appointed-")
+                .isNotEqualTo(pendingReference.textValue());
+        assertThat(archivedInteractionIds).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void getInteractionId_withoutTransactionIdAndSequenceNumber_dependsOnArchivedFieldsOnly() {
+        final Map<String, Object> requestInfo = new HashMap<>();
+        requestInfo.put(CustomFieldKeys.REQUEST_FIELD, LARGE_VALUE);
+        final AddInterfaceInteraction interaction = AddInterfaceInteraction.ofTypeKeyAndObjects(
+                CustomTypeBuilder.PAYONE_INTERACTION_REQUEST, requestInfo);
+        final Map<String, JsonNode> fields = interaction.getFields().getFields();
+
+        final String interactionId = InterfaceInteractionArchivingSphereClient.getInteractionId(interaction, fields);
+
+        assertThat(InterfaceInteractionArchivingSphereClient.getInteractionId(interaction, new HashMap<>(fields)))
+                .isEqualTo(interactionId);
+        assertThat(InterfaceInteractionArchivingSphereClient.getInteractionId(interaction,
+                Collections.singletonMap(CustomFieldKeys.REQUEST_FIELD, TextNode.valueOf("other"))))
+                .isNotEqualTo(interactionId);
+    }
+
+    @Test
+    public void execute_smallFields_keepsCommand() {
+        final Map<String, Object> notificationInfo = new HashMap<>();
+        notificationInfo.put(CustomFieldKeys.NOTIFICATION_FIELD, "small");
+        notificationInfo.put(CustomFieldKeys.SEQUENCE_NUMBER_FIELD, "0");
+        final PaymentUpdateCommand command = PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 1L),
+                AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION,
+                        notificationInfo));
+
+        client.execute(command);
+
+        assertThat(executedCommand()).isSameAs(command);
+        assertThat(archivedFields).isEmpty();
+    }
+
+    @Test
+    public void execute_archiveFails_keepsInteraction() {
+        client = new InterfaceInteractionArchivingSphereClient(delegate, (paymentId, typeKey, interactionId, fields) -> {
+            final CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Custom object can't be created"));
+            return failed;
+        });
+        final AddInterfaceInteraction interaction = AddInterfaceInteraction.ofTypeKeyAndObjects(
+                CustomTypeBuilder.PAYONE_INTERACTION_REQUEST,
+                Collections.<String, Object>singletonMap(CustomFieldKeys.REQUEST_FIELD, LARGE_VALUE));
+
+        client.execute(PaymentUpdateCommand.of(Versioned.of(PAYMENT_ID, 1L), interaction));
+
+        assertThat(executedCommand().getUpdateActions()).containsExactly(interaction);
+    }
+
+    @Test
+    public void execute_otherRequests_areDelegated() {
+        final PaymentByIdGet request = PaymentByIdGet.of(PAYMENT_ID);
+
+        client.execute(request);
+
+        verify(delegate).execute(request);
+        assertThat(archivedFields).isEmpty();
+    }
+
+    private static AddInterfaceInteraction createAppointedNotification(final String transactionStatus) {
+        final Map<String, Object> notificationInfo = new HashMap<>();
+        notificationInfo.put(CustomFieldKeys.NOTIFICATION_FIELD,
+                "txaction=appointed&sequencenumber=0&transaction_status=" + transactionStatus + "&" + LARGE_VALUE);
+        notificationInfo.put(CustomFieldKeys.SEQUENCE_NUMBER_FIELD, "0");
+        notificationInfo.put(CustomFieldKeys.TX_ACTION_FIELD, "appointed");
+        return AddInterfaceInteraction.ofTypeKeyAndObjects(CustomTypeBuilder.PAYONE_INTERACTION_NOTIFICATION,
+                notificationInfo);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PaymentUpdateCommand> executedCommands(final int times) {
+        final ArgumentCaptor<SphereRequest> captor = ArgumentCaptor.forClass(SphereRequest.class);
+        verify(delegate, times(times)).execute(captor.capture());
+        return captor.getAllValues().stream().map(PaymentUpdateCommand.class::cast).collect(toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private PaymentUpdateCommand executedCommand() {
+        final ArgumentCaptor<SphereRequest> captor = ArgumentCaptor.forClass(SphereRequest.class);
+        verify(delegate).execute(captor.capture());
+        return (PaymentUpdateCommand) captor.getValue();
+    }
+}
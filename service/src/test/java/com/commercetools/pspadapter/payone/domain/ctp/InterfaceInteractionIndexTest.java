@@ -0,0 +1,111 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import io.sphere.sdk.models.Reference;
+import io.sphere.sdk.payments.Payment;
+import io.sphere.sdk.payments.Transaction;
+import io.sphere.sdk.types.CustomFields;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static com.commercetools.pspadapter.payone.mapping.CustomFieldKeys.SEQUENCE_NUMBER_FIELD;
+import static com.commercetools.pspadapter.payone.mapping.CustomFieldKeys.TRANSACTION_ID_FIELD;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class InterfaceInteractionIndexTest {
+
+    private static final String RESPONSE_TYPE_ID = "response-type";
+    private static final String NOTIFICATION_TYPE_ID = "notification-type";
+
+    @Test
+    public void getInteractionsOfType_groupsByTypeInPaymentOrder() {
+        final CustomFields firstResponse = interaction(RESPONSE_TYPE_ID, TRANSACTION_ID_FIELD, "transaction-1");
+        final CustomFields notification = interaction(NOTIFICATION_TYPE_ID, SEQUENCE_NUMBER_FIELD, "0");
+        final CustomFields secondResponse = interaction(RESPONSE_TYPE_ID, TRANSACTION_ID_FIELD, "transaction-2");
+
+        final InterfaceInteractionIndex index =
+                new InterfaceInteractionIndex(payment(asList(firstResponse, notification, secondResponse),
+                        Collections.emptyList()));
+
+        assertThat(index.hasInteractions()).isTrue();
+        assertThat(index.getInteractionsOfType(RESPONSE_TYPE_ID)).containsExactly(firstResponse, secondResponse);
+        assertThat(index.getInteractionsOfType(NOTIFICATION_TYPE_ID)).containsExactly(notification);
+        assertThat(index.getInteractionsOfType("other-type")).isEmpty();
+    }
+
+    @Test
+    public void hasTransactionIdAndSequenceNumber_lookUpTheType() {
+        final InterfaceInteractionIndex index = new InterfaceInteractionIndex(payment(
+                asList(interaction(RESPONSE_TYPE_ID, TRANSACTION_ID_FIELD, "transaction-1"),
+                        interaction(NOTIFICATION_TYPE_ID, SEQUENCE_NUMBER_FIELD, "2")),
+                Collections.emptyList()));
+
+        assertThat(index.hasTransactionId(RESPONSE_TYPE_ID, "transaction-1")).isTrue();
+        assertThat(index.hasTransactionId(RESPONSE_TYPE_ID, "transaction-2")).isFalse();
+        assertThat(index.hasTransactionId(NOTIFICATION_TYPE_ID, "transaction-1")).isFalse();
+        assertThat(index.hasSequenceNumber(NOTIFICATION_TYPE_ID, "2")).isTrue();
+        assertThat(index.hasSequenceNumber(NOTIFICATION_TYPE_ID, "1")).isFalse();
+        assertThat(index.hasSequenceNumber(NOTIFICATION_TYPE_ID, null)).isFalse();
+    }
+
+    @Test
+    public void getMaxSequenceNumber_considersNotificationsAndTransactions() {
+        final InterfaceInteractionIndex index = new InterfaceInteractionIndex(payment(
+                asList(interaction(NOTIFICATION_TYPE_ID, SEQUENCE_NUMBER_FIELD, "3"),
+                        interaction(NOTIFICATION_TYPE_ID, SEQUENCE_NUMBER_FIELD, "invalid"),
+                        interaction(RESPONSE_TYPE_ID, SEQUENCE_NUMBER_FIELD, "10")),
+                asList(transaction(" 5 "), transaction(null), transaction("1"))));
+
+        assertThat(index.getMaxSequenceNumber(NOTIFICATION_TYPE_ID)).isEqualTo(OptionalInt.of(5));
+        assertThat(index.getMaxSequenceNumber(RESPONSE_TYPE_ID)).isEqualTo(OptionalInt.of(10));
+        assertThat(index.getMaxSequenceNumber(null)).isEqualTo(OptionalInt.of(5));
+        assertThat(index.getMaxSequenceNumber("other-type")).isEqualTo(OptionalInt.of(5));
+    }
+
+    @Test
+    public void getMaxSequenceNumber_withoutSequenceNumbers_isEmpty() {
+        final InterfaceInteractionIndex index =
+                new InterfaceInteractionIndex(payment(Collections.emptyList(), Collections.emptyList()));
+
+        assertThat(index.hasInteractions()).isFalse();
+        assertThat(index.getMaxSequenceNumber(null)).isEqualTo(OptionalInt.empty());
+        assertThat(index.getMaxSequenceNumber(NOTIFICATION_TYPE_ID)).isEqualTo(OptionalInt.empty());
+    }
+
+    @Test
+    public void parseSequenceNumber_acceptsIntegersOnly() {
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("42")).isEqualTo(42);
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("-1")).isEqualTo(-1);
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber(null)).isNull();
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("")).isNull();
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("-")).isNull();
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("+1")).isNull();
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("1a")).isNull();
+        assertThat(InterfaceInteractionIndex.parseSequenceNumber("99999999999")).isNull();
+    }
+
+    private static Payment payment(final List<CustomFields> interactions, final List<Transaction> transactions) {
+        final Payment payment = mock(Payment.class);
+        doReturn(interactions).when(payment).getInterfaceInteractions();
+        doReturn(transactions).when(payment).getTransactions();
+        return payment;
+    }
+
+    private static CustomFields interaction(final String typeId, final String fieldName, final String value) {
+        final CustomFields interaction = mock(CustomFields.class);
+        doReturn(Reference.of("type", typeId)).when(interaction).getType();
+        doReturn(value).when(interaction).getFieldAsString(fieldName);
+        return interaction;
+    }
+
+    private static Transaction transaction(final String interactionId) {
+        final Transaction transaction = mock(Transaction.class);
+        doReturn(interactionId).when(transaction).getInteractionId();
+        return transaction;
+    }
+}
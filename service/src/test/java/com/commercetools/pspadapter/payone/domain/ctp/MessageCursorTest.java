@@ -0,0 +1,37 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageCursorTest {
+
+    private static final ZonedDateTime CREATED_AT = ZonedDateTime.parse("2020-03-01T11:00:00.123+01:00");
+
+    @Test
+    public void toAfterPredicate_comparesCreatedAtAndThenId() {
+        assertThat(MessageCursor.of(CREATED_AT, "message-1").toAfterPredicate())
+                .isEqualTo("createdAt > \"2020-03-01T10:00:00.123Z\" "
+                        + "or (createdAt = \"2020-03-01T10:00:00.123Z\" and id > \"message-1\")");
+    }
+
+    @Test
+    public void compareTo_ordersByCreatedAtAndThenId() {
+        final MessageCursor first = MessageCursor.of(CREATED_AT, "message-2");
+        final MessageCursor second = MessageCursor.of(CREATED_AT.plusNanos(1_000_000), "message-1");
+        final MessageCursor third = MessageCursor.of(CREATED_AT.plusNanos(1_000_000), "message-3");
+
+        assertThat(first).isLessThan(second);
+        assertThat(second).isLessThan(third);
+        assertThat(MessageCursor.of(CREATED_AT, "")).isLessThan(first);
+    }
+
+    @Test
+    public void equals_comparesInstants() {
+        assertThat(MessageCursor.of(CREATED_AT, "message-1"))
+                .isEqualTo(MessageCursor.of(ZonedDateTime.parse("2020-03-01T10:00:00.123Z"), "message-1"))
+                .isNotEqualTo(MessageCursor.of(CREATED_AT, "message-2"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache.CART_LIKE_EXPIRE_MINUTES;
+import static com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache.INTERFACE_ID_EXPIRE_MINUTES;
+import static com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache.UNKNOWN_PAYMENT_EXPIRE_SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PaymentLookupCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final PaymentLookupCache cache = new PaymentLookupCache(nanos::get);
+
+    @Test
+    public void putOrderId_replacesCartId() {
+        cache.putCartId("payment-1", "cart-1");
+        assertThat(cache.getCartId("payment-1")).isEqualTo("cart-1");
+
+        cache.putOrderId("payment-1", "order-1");
+
+        assertThat(cache.getOrderId("payment-1")).isEqualTo("order-1");
+        assertThat(cache.getCartId("payment-1")).isNull();
+    }
+
+    @Test
+    public void cartLikeIds_expire() {
+        cache.putOrderId("payment-1", "order-1");
+        cache.putCartId("payment-2", "cart-2");
+
+        advance(TimeUnit.MINUTES.toNanos(CART_LIKE_EXPIRE_MINUTES) - 1);
+        assertThat(cache.getOrderId("payment-1")).isEqualTo("order-1");
+        assertThat(cache.getCartId("payment-2")).isEqualTo("cart-2");
+
+        advance(1);
+        assertThat(cache.getOrderId("payment-1")).isNull();
+        assertThat(cache.getCartId("payment-2")).isNull();
+    }
+
+    @Test
+    public void invalidate_removesIds() {
+        cache.putOrderId("payment-1", "order-1");
+        cache.putCartId("payment-2", "cart-2");
+        cache.putPaymentId("txid-1", "payment-1");
+
+        cache.invalidateOrderId("payment-1");
+        cache.invalidateCartId("payment-2");
+        cache.invalidatePaymentId("txid-1");
+
+        assertThat(cache.getOrderId("payment-1")).isNull();
+        assertThat(cache.getCartId("payment-2")).isNull();
+        assertThat(cache.getPaymentId("txid-1")).isNull();
+    }
+
+    @Test
+    public void invalidateAll_removesAllEntries() {
+        cache.putOrderId("payment-1", "order-1");
+        cache.putCartId("payment-2", "cart-2");
+        cache.putPaymentId("txid-1", "payment-1");
+        cache.putUnknownPayment("payment-3");
+
+        cache.invalidateAll();
+
+        assertThat(cache.getOrderId("payment-1")).isNull();
+        assertThat(cache.getCartId("payment-2")).isNull();
+        assertThat(cache.getPaymentId("txid-1")).isNull();
+        assertThat(cache.isUnknownPayment("payment-3")).isFalse();
+    }
+
+    @Test
+    public void paymentIdsByInterfaceId_outliveCartLikeIds() {
+        cache.putPaymentId("txid-1", "payment-1");
+
+        advance(TimeUnit.MINUTES.toNanos(INTERFACE_ID_EXPIRE_MINUTES) - 1);
+        assertThat(cache.getPaymentId("txid-1")).isEqualTo("payment-1");
+
+        advance(1);
+        assertThat(cache.getPaymentId("txid-1")).isNull();
+    }
+
+    @Test
+    public void unknownPayments_expireShortly() {
+        assertThat(cache.isUnknownPayment("payment-1")).isFalse();
+
+        cache.putUnknownPayment("payment-1");
+        assertThat(cache.isUnknownPayment("payment-1")).isTrue();
+        assertThat(cache.isUnknownPayment("payment-2")).isFalse();
+
+        advance(TimeUnit.SECONDS.toNanos(UNKNOWN_PAYMENT_EXPIRE_SECONDS));
+        assertThat(cache.isUnknownPayment("payment-1")).isFalse();
+    }
+
+    private void advance(final long deltaNanos) {
+        nanos.addAndGet(deltaNanos);
+    }
+}
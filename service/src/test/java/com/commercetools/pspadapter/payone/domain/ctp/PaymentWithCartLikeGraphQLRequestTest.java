@@ -0,0 +1,116 @@
+package com.commercetools.pspadapter.payone.domain.ctp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sphere.sdk.client.HttpRequestIntent;
+import io.sphere.sdk.customers.Customer;
+import io.sphere.sdk.http.HttpMethod;
+import io.sphere.sdk.http.HttpResponse;
+import io.sphere.sdk.http.StringHttpRequestBody;
+import io.sphere.sdk.json.SphereJsonUtils;
+import io.sphere.sdk.models.Address;
+import io.sphere.sdk.orders.Order;
+import io.sphere.sdk.payments.Payment;
+import org.junit.Test;
+import spark.utils.IOUtils;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+import static com.commercetools.pspadapter.payone.mapping.CustomFieldKeys.LANGUAGE_CODE_FIELD;
+import static com.commercetools.pspadapter.payone.mapping.CustomFieldKeys.REFERENCE_FIELD;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class PaymentWithCartLikeGraphQLRequestTest {
+
+    private static final String PAYMENT_ID = "40a495a2-d709-4484-88cb-d4129acffda7";
+
+    private final PaymentWithCartLikeGraphQLRequest request = PaymentWithCartLikeGraphQLRequest.of(PAYMENT_ID);
+
+    @Test
+    public void httpRequestIntent_postsQueryWithPaymentIdVariables() {
+        final HttpRequestIntent intent = request.httpRequestIntent();
+
+        assertThat(intent.getHttpMethod()).isEqualTo(HttpMethod.POST);
+        assertThat(intent.getPath()).isEqualTo("/graphql");
+
+        final JsonNode body = SphereJsonUtils.parse(((StringHttpRequestBody) intent.getBody()).getString());
+        assertThat(body.get("query").asText()).isEqualTo(PaymentWithCartLikeGraphQLRequest.QUERY);
+        assertThat(body.get("variables").get("paymentId").asText()).isEqualTo(PAYMENT_ID);
+        assertThat(body.get("variables").get("where").asText())
+                .isEqualTo("paymentInfo(payments(id=\"" + PAYMENT_ID + "\"))");
+    }
+
+    @Test
+    public void deserialize_mapsPaymentWithCustomerAndOrder() throws Exception {
+        final PaymentWithCartLikeGraphQLRequest.Result result = request.deserialize(
+                HttpResponse.of(200, IOUtils.toString(Thread.currentThread().getContextClassLoader()
+                        .getResourceAsStream("graphQLPaymentWithOrderResponse.json"))));
+
+        final Payment payment = result.getPayment();
+        assertThat(payment.getId()).isEqualTo(PAYMENT_ID);
+        assertThat(payment.getVersion()).isEqualTo(3L);
+        assertThat(payment.getInterfaceId()).isEqualTo("0000123");
+        assertThat(payment.getAmountPlanned().getNumber().intValueExact()).isEqualTo(20);
+        assertThat(payment.getPaymentMethodInfo().getMethod()).isEqualTo("CREDIT_CARD");
+        assertThat(payment.getPaymentMethodInfo().getName().get(Locale.GERMAN)).isEqualTo("Kreditkarte");
+        assertThat(payment.getTransactions()).hasSize(1);
+        assertThat(payment.getTransactions().get(0).getInteractionId()).isEqualTo("0");
+        assertThat(payment.getCustom().getFieldAsString(REFERENCE_FIELD)).isEqualTo("00028391823");
+        assertThat(payment.getCustom().getFieldAsString(LANGUAGE_CODE_FIELD)).isEqualTo("de");
+        assertThat(payment.getInterfaceInteractions()).hasSize(1);
+        assertThat(payment.getInterfaceInteractions().get(0).getFieldAsString("transactionId"))
+                .isEqualTo("58728a39-c2f5-4467-ab17-b329b55c4423");
+
+        final Customer customer = payment.getCustomer().getObj();
+        assertThat(customer.getLastName()).isEqualTo("Doe");
+        assertThat(customer.getCustomerNumber()).isEqualTo("123");
+        assertThat(customer.getVatId()).isEqualTo("DE123456789");
+        assertThat(customer.getDateOfBirth()).hasToString("1989-12-03");
+        assertThat(customer.getAddresses()).isEmpty();
+
+        final Order order = result.getOrder();
+        assertThat(order.getId()).isEqualTo("<order-id>");
+        assertThat(order.getOrderNumber()).isEqualTo("order-1");
+        assertThat(order.getLocale()).isEqualTo(Locale.GERMAN);
+        assertThat(order.getDiscountCodes()).isEmpty();
+        final Address billingAddress = order.getBillingAddress();
+        assertThat(billingAddress.getFirstName()).isEqualTo("Jane");
+        assertThat(billingAddress.getStreetName()).isEqualTo("Other Street");
+        assertThat(order.getShippingAddress().getCity()).isEqualTo("Any City");
+        assertThat(order.getLineItems()).hasSize(1);
+        assertThat(order.getLineItems().get(0).getName().get(Locale.ENGLISH)).isEqualTo("Some Product");
+        assertThat(order.getLineItems().get(0).getVariant().getSku()).isEqualTo("MATE-1");
+        assertThat(order.getLineItems().get(0).getQuantity()).isEqualTo(2L);
+        assertThat(order.getLineItems().get(0).getPrice().getValue().getNumber().intValueExact()).isEqualTo(10);
+        assertThat(order.getLineItems().get(0).getTaxRate().getAmount()).isEqualTo(0.19);
+        assertThat(order.getLineItems().get(0).getDiscountedPricePerQuantity()).isEmpty();
+        assertThat(order.getPaymentInfo().getPayments().get(0).getId()).isEqualTo(PAYMENT_ID);
+        assertThat(order.getTotalPrice().getNumber().numberValue(BigDecimal.class)).isEqualByComparingTo("20");
+
+        assertThat(result.getCart()).isNull();
+
+        assertThat(new PaymentWithCartLike(payment, order).getReference()).isEqualTo("00028391823");
+    }
+
+    @Test
+    public void deserialize_withoutPayment_returnsEmptyResult() {
+        final PaymentWithCartLikeGraphQLRequest.Result result = request.deserialize(HttpResponse.of(200,
+                "{\"data\": {\"payment\": null, \"orders\": {\"results\": []}, \"carts\": {\"results\": []}}}"));
+
+        assertThat(result.getPayment()).isNull();
+        assertThat(result.getOrder()).isNull();
+        assertThat(result.getCart()).isNull();
+    }
+
+    @Test
+    public void deserialize_withErrors_throwsIllegalStateException() {
+        final Throwable throwable = catchThrowable(() -> request.deserialize(HttpResponse.of(200,
+                "{\"data\": null, \"errors\": [{\"message\": \"Field 'foo' is not defined\"}]}")));
+
+        assertThat(throwable)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(PAYMENT_ID)
+                .hasMessageContaining("Field 'foo' is not defined");
+    }
+}
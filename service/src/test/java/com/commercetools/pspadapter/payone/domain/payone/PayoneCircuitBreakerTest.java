@@ -0,0 +1,126 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker.State;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker.BUCKET_MILLIS;
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker.MINIMUM_REQUESTS;
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker.OPEN_MILLIS;
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker.REJECTED;
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneCircuitBreaker.WINDOW_BUCKETS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PayoneCircuitBreakerTest {
+
+    private long nowMillis;
+
+    private PayoneCircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        nowMillis = 1_000_000L;
+        circuitBreaker = new PayoneCircuitBreaker("tenant", () -> nowMillis);
+    }
+
+    @Test
+    public void opensOnlyIfEnoughRequestsFailed() {
+        recordFailures(MINIMUM_REQUESTS - 1);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(circuitBreaker.tryAcquirePermission()).isNotEqualTo(REJECTED);
+
+        recordFailures(1);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isEqualTo(REJECTED);
+    }
+
+    @Test
+    public void staysClosedIfMostRequestsSucceed() {
+        for (int i = 0; i < MINIMUM_REQUESTS; i++) {
+            circuitBreaker.onSuccess(circuitBreaker.tryAcquirePermission());
+        }
+        recordFailures(MINIMUM_REQUESTS - 1);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void forgetsFailuresOutsideOfWindow() {
+        recordFailures(MINIMUM_REQUESTS - 1);
+        nowMillis += WINDOW_BUCKETS * BUCKET_MILLIS;
+
+        recordFailures(1);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void sendsSingleProbeWhenOpenPeriodIsOver() {
+        recordFailures(MINIMUM_REQUESTS);
+        nowMillis += OPEN_MILLIS - 1;
+        assertThat(circuitBreaker.tryAcquirePermission()).isEqualTo(REJECTED);
+
+        nowMillis += 1;
+        final long probePermit = circuitBreaker.tryAcquirePermission();
+        assertThat(probePermit).isNotEqualTo(REJECTED);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isEqualTo(REJECTED);
+
+        circuitBreaker.onSuccess(probePermit);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(circuitBreaker.tryAcquirePermission()).isNotEqualTo(REJECTED);
+    }
+
+    @Test
+    public void opensAgainIfProbeFails() {
+        recordFailures(MINIMUM_REQUESTS);
+        nowMillis += OPEN_MILLIS;
+        final long probePermit = circuitBreaker.tryAcquirePermission();
+        assertThat(probePermit).isNotEqualTo(REJECTED);
+
+        circuitBreaker.onFailure(probePermit);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isEqualTo(REJECTED);
+    }
+
+    @Test
+    public void ignoresOutcomesOfRequestsPermittedBeforeHalfOpen() {
+        final long slowFailurePermit = circuitBreaker.tryAcquirePermission();
+        final long slowSuccessPermit = circuitBreaker.tryAcquirePermission();
+        recordFailures(MINIMUM_REQUESTS);
+        nowMillis += OPEN_MILLIS;
+        final long probePermit = circuitBreaker.tryAcquirePermission();
+        assertThat(circuitBreaker.getState()).isEqualTo(State.HALF_OPEN);
+
+        circuitBreaker.onFailure(slowFailurePermit);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.HALF_OPEN);
+        circuitBreaker.onSuccess(slowSuccessPermit);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isEqualTo(REJECTED);
+
+        circuitBreaker.onSuccess(probePermit);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void ignoresOutcomesOfRequestsPermittedBeforeOpen() {
+        final long slowPermit = circuitBreaker.tryAcquirePermission();
+        recordFailures(MINIMUM_REQUESTS);
+        nowMillis += OPEN_MILLIS;
+        final long probePermit = circuitBreaker.tryAcquirePermission();
+        circuitBreaker.onSuccess(probePermit);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+
+        // a failure of the old closed period doesn't count in the new window
+        circuitBreaker.onFailure(slowPermit);
+        recordFailures(MINIMUM_REQUESTS - 1);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    private void recordFailures(final int count) {
+        for (int i = 0; i < count; i++) {
+            circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+        }
+    }
+}
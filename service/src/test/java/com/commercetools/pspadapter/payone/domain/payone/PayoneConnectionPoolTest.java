@@ -0,0 +1,129 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.util.EntityUtils;
+import org.asynchttpclient.AsyncHttpClient;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class PayoneConnectionPoolTest {
+
+    private static final HttpRoute PAYONE_ROUTE = new HttpRoute(new HttpHost("api.pay1.de", 443, "https"));
+
+    @Test
+    public void recordLeaseWait_countsWaitsPerBucket() {
+        final PayoneConnectionPool pool = new PayoneConnectionPool("tenant", 2, 2);
+
+        pool.recordLeaseWait(0, false);
+        pool.recordLeaseWait(1, false);
+        pool.recordLeaseWait(7, false);
+        pool.recordLeaseWait(20000, true);
+
+        final PayoneConnectionPoolMetrics metrics = pool.getMetrics();
+        assertThat(metrics.getPool()).isEqualTo("tenant");
+        assertThat(metrics.getLeases()).isEqualTo(4);
+        assertThat(metrics.getLeaseTimeouts()).isEqualTo(1);
+        assertThat(metrics.getLeaseWaitAvgMillis()).isEqualTo(5002);
+        assertThat(metrics.getLeaseWaitMaxMillis()).isEqualTo(20000);
+        assertThat(metrics.getLeaseWaitHistogram())
+                .hasSize(PayoneConnectionPool.LEASE_WAIT_BUCKET_MILLIS.length + 1)
+                .contains(entry("<=1", 2L), entry("<=5", 0L), entry("<=10", 1L), entry(">10000", 1L));
+    }
+
+    @Test
+    public void getMetrics_countsLeasedConnectionsAndTimeouts() throws Exception {
+        final PayoneConnectionPool pool = new PayoneConnectionPool("tenant", 1, 1);
+
+        final HttpClientConnection connection = pool.getConnectionManager()
+                .requestConnection(PAYONE_ROUTE, null).get(100, TimeUnit.MILLISECONDS);
+        assertThatThrownBy(() -> pool.getConnectionManager()
+                .requestConnection(PAYONE_ROUTE, null).get(10, TimeUnit.MILLISECONDS))
+                .isInstanceOf(ConnectionPoolTimeoutException.class);
+
+        final PayoneConnectionPoolMetrics metrics = pool.getMetrics();
+        assertThat(metrics.getLeased()).isEqualTo(1);
+        assertThat(metrics.getPending()).isEqualTo(0);
+        assertThat(metrics.getLeases()).isEqualTo(2);
+        assertThat(metrics.getLeaseTimeouts()).isEqualTo(1);
+        assertThat(metrics.getLeaseWaitMaxMillis()).isGreaterThanOrEqualTo(10);
+
+        pool.getConnectionManager().releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+        assertThat(pool.getMetrics().getLeased()).isEqualTo(0);
+    }
+
+    @Test
+    public void isolated_createsOnePoolPerTenant() {
+        final PayoneConnectionPool pool = PayoneConnectionPool.isolated("isolatedTenant", 3);
+
+        assertThat(PayoneConnectionPool.isolated("isolatedTenant", 5)).isSameAs(pool);
+        assertThat(pool.getMaxTotal()).isEqualTo(3);
+        assertThat(pool.getMaxPerRoute()).isEqualTo(3);
+        assertThat(pool).isNotSameAs(PayoneConnectionPool.shared());
+        assertThat(PayoneConnectionPool.getAllMetrics())
+                .extracting(PayoneConnectionPoolMetrics::getPool)
+                .contains(PayoneConnectionPool.SHARED_POOL_NAME, "isolatedTenant");
+    }
+
+    @Test
+    public void getAsyncHttpClient_createsOneClientPerPoolWithItsLimits() throws Exception {
+        final PayoneConnectionPool pool = new PayoneConnectionPool("tenant", 3, 2);
+        final PayoneConnectionPool otherPool = new PayoneConnectionPool("otherTenant", 3, 2);
+        assertThat(pool.getMetrics().getAsyncActive()).isEqualTo(0);
+
+        final AsyncHttpClient asyncHttpClient = pool.getAsyncHttpClient();
+        try {
+            assertThat(pool.getAsyncHttpClient()).isSameAs(asyncHttpClient);
+            assertThat(asyncHttpClient.getConfig().getMaxConnections()).isEqualTo(3);
+            assertThat(asyncHttpClient.getConfig().getMaxConnectionsPerHost()).isEqualTo(2);
+            assertThat(otherPool.getAsyncHttpClient()).isNotSameAs(asyncHttpClient);
+            assertThat(pool.getMetrics().getAsyncActive()).isEqualTo(0);
+            assertThat(pool.getMetrics().getAsyncIdle()).isEqualTo(0);
+        } finally {
+            asyncHttpClient.close();
+            otherPool.getAsyncHttpClient().close();
+        }
+    }
+
+    @Test
+    public void warmUp_opensConnectionsWhichTheRequestsUse() throws Exception {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            final byte[] body = "status=APPROVED".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post-gateway/";
+            final PayoneConnectionPool pool = new PayoneConnectionPool("tenant", 10, 4);
+
+            assertThat(pool.warmUp(url, 3)).isEqualTo(3);
+            assertThat(pool.warmUp(url, 3)).isEqualTo(0);
+            assertThat(pool.warmUp(url, 10)).isEqualTo(1);
+            assertThat(pool.getMetrics().getAvailable()).isEqualTo(4);
+            assertThat(pool.getMetrics().getLeases()).isEqualTo(0);
+
+            try (CloseableHttpResponse response = pool.getHttpClient().execute(new HttpPost(url))) {
+                EntityUtils.consume(response.getEntity());
+            }
+            assertThat(pool.getMetrics().getAvailable()).isEqualTo(4);
+            assertThat(pool.getMetrics().getLeases()).isEqualTo(1);
+        } finally {
+            server.stop(0);
+        }
+    }
+}
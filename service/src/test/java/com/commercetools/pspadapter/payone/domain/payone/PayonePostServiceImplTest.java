@@ -1,10 +1,20 @@
 package com.commercetools.pspadapter.payone.domain.payone;
 
+import com.commercetools.pspadapter.payone.config.PayoneConfig;
+import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneCircuitOpenException;
 import com.commercetools.pspadapter.payone.domain.payone.exceptions.PayoneException;
+import com.commercetools.pspadapter.payone.domain.payone.model.creditcard.CreditCardCaptureRequest;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.message.BasicNameValuePair;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.Response;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -13,10 +23,18 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class PayonePostServiceImplTest {
 
@@ -53,6 +71,45 @@ public class PayonePostServiceImplTest {
     }
 
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executePostAsync_timeouts_openCircuitBreaker() {
+        final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+        final CompletableFuture<Response> timedOut = new CompletableFuture<>();
+        timedOut.completeExceptionally(new TimeoutException("Request timeout to some.url.org after 10000 ms"));
+        final ListenableFuture<Response> responseFuture = mock(ListenableFuture.class);
+        when(responseFuture.toCompletableFuture()).thenReturn(timedOut);
+        when(asyncHttpClient.executeRequest(any(Request.class))).thenReturn(responseFuture);
+        final PayoneCircuitBreaker circuitBreaker = PayoneCircuitBreaker.of("tenant");
+        final PayonePostServiceImpl service =
+                PayonePostServiceImpl.of(PAYONE_SERVER_API_URL, circuitBreaker, asyncHttpClient);
+        final CreditCardCaptureRequest request = new CreditCardCaptureRequest(mock(PayoneConfig.class));
+
+        for (int i = 0; i < PayoneCircuitBreaker.MINIMUM_REQUESTS; i++) {
+            final Throwable throwable = catchThrowable(() ->
+                    service.executePostAsync(request).toCompletableFuture().join());
+            assertThat(throwable).hasCauseInstanceOf(PayoneException.class);
+            assertThat(throwable.getCause()).hasCauseInstanceOf(TimeoutException.class);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(PayoneCircuitBreaker.State.OPEN);
+        final Throwable rejected = catchThrowable(() -> service.executePostAsync(request).toCompletableFuture().join());
+        assertThat(rejected).hasCauseInstanceOf(PayoneCircuitOpenException.class);
+        verify(asyncHttpClient, times(PayoneCircuitBreaker.MINIMUM_REQUESTS)).executeRequest(any(Request.class));
+    }
+
+    @Test
+    public void isPayoneFailure_walksCauseChain() {
+        assertThat(PayonePostServiceImpl.isPayoneFailure(null)).isFalse();
+        assertThat(PayonePostServiceImpl.isPayoneFailure(new TimeoutException())).isTrue();
+        assertThat(PayonePostServiceImpl.isPayoneFailure(
+                new CompletionException(new IllegalStateException(new TimeoutException())))).isTrue();
+        assertThat(PayonePostServiceImpl.isPayoneFailure(new UncheckedIOException(new IOException()))).isTrue();
+        assertThat(PayonePostServiceImpl.isPayoneFailure(new HttpResponseException(503, "unavailable"))).isTrue();
+        assertThat(PayonePostServiceImpl.isPayoneFailure(new HttpResponseException(400, "bad request"))).isFalse();
+        assertThat(PayonePostServiceImpl.isPayoneFailure(new IllegalArgumentException("invalid"))).isFalse();
+    }
+
     @Test
     public void shouldBuildMapFromServerResponse() throws UnsupportedEncodingException {
         String serverResponse = "paramA=a\nredirecturl=https://www.redirect.de/xxx\nstatus=SUCCESSFUL";
@@ -0,0 +1,94 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import com.commercetools.pspadapter.payone.config.PayoneConfig;
+import com.commercetools.pspadapter.payone.domain.payone.model.common.BaseRequest;
+import com.commercetools.pspadapter.payone.domain.payone.model.common.ClearingType;
+import com.commercetools.pspadapter.payone.domain.payone.model.klarna.KlarnaAuthorizationRequest;
+import com.commercetools.pspadapter.payone.domain.payone.model.klarna.KlarnaStartSessionRequest;
+import com.commercetools.pspadapter.payone.domain.payone.model.wallet.WalletPayoneRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import util.PaymentTestHelper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PayoneRequestEncoderTest {
+
+    private final PaymentTestHelper testHelper = new PaymentTestHelper();
+
+    @Mock
+    private PayoneConfig payoneConfig;
+
+    @Before
+    public void setUp() {
+        when(payoneConfig.getMerchantId()).thenReturn("merchant 1");
+        when(payoneConfig.getPortalId()).thenReturn("portal&2");
+        when(payoneConfig.getKeyAsHash()).thenReturn("hashed key");
+        when(payoneConfig.getMode()).thenReturn("test");
+        when(payoneConfig.getApiVersion()).thenReturn("3.10");
+        when(payoneConfig.getEncoding()).thenReturn("UTF-8");
+        when(payoneConfig.getSolutionName()).thenReturn("commercetools [payone]");
+        when(payoneConfig.getSolutionVersion()).thenReturn("1.0");
+        when(payoneConfig.getIntegratorName()).thenReturn("Jürgen");
+        when(payoneConfig.getIntegratorVersion()).thenReturn("2.0");
+        when(payoneConfig.getSubAccountId()).thenReturn("sub account");
+    }
+
+    @Test
+    public void encodesCartRequestLikeExpandedStringMap() throws Exception {
+        final KlarnaAuthorizationRequest request =
+                new KlarnaAuthorizationRequest(payoneConfig, "KIV", testHelper.createKlarnaPaymentWithCartLike());
+        request.setLastname("Müller");
+        request.setStreet("Hauptstraße 1/2");
+
+        assertEncodedLikeStringMap(PayoneRequestEncoder.of(payoneConfig), request);
+        assertEncodedLikeStringMap(PayoneRequestEncoder.of(), request);
+        assertThat(parse(PayoneRequestEncoder.of(payoneConfig).encode(request)))
+                .extracting(NameValuePair::getName)
+                .contains("it[1]", "pr[1]", "de[1]", "va[1]", "financingtype");
+    }
+
+    @Test
+    public void encodesPayDataAsAddPayData() throws Exception {
+        final KlarnaStartSessionRequest request =
+                new KlarnaStartSessionRequest(payoneConfig, "KIV", testHelper.createKlarnaPaymentWithCartLike());
+
+        assertEncodedLikeStringMap(PayoneRequestEncoder.of(payoneConfig), request);
+        assertThat(parse(PayoneRequestEncoder.of(payoneConfig).encode(request)))
+                .extracting(NameValuePair::getName, NameValuePair::getValue)
+                .contains(tuple("add_paydata[action]", "start_session"));
+    }
+
+    @Test
+    public void encodesRequestWithoutLists() {
+        final WalletPayoneRequest request = new WalletPayoneRequest(payoneConfig, ClearingType.PAYONE_PPE, 1);
+        request.setEmail("hans+test@example.com");
+        request.setSuccessurl("https://example.com/success?order=1&lang=de");
+
+        assertEncodedLikeStringMap(PayoneRequestEncoder.of(payoneConfig), request);
+        assertEncodedLikeStringMap(PayoneRequestEncoder.of(), request);
+    }
+
+    private static void assertEncodedLikeStringMap(final PayoneRequestEncoder encoder, final BaseRequest request) {
+        final List<NameValuePair> expected = new ArrayList<>(PayonePostServiceImpl.of("http://some.url.org/payone")
+                .getNameValuePairsWithExpandedLists(request.toStringMap(false)));
+
+        assertThat(parse(encoder.encode(request))).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    private static List<NameValuePair> parse(final byte[] formBody) {
+        return URLEncodedUtils.parse(new String(formBody, StandardCharsets.US_ASCII), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PayoneResponseParserTest {
+
+    @Test
+    public void parsesLinesSeparatedByNewLineAndCarriageReturn() throws IOException {
+        final Map<String, String> result = parse("status=APPROVED\r\ntxid=123\n\nuserid=456\r\n");
+
+        assertThat(result).hasSize(3)
+                .containsEntry("status", "APPROVED")
+                .containsEntry("txid", "123")
+                .containsEntry("userid", "456");
+    }
+
+    @Test
+    public void decodesValuesButNotRedirectUrl() throws IOException {
+        final Map<String, String> result = parse("customermessage=M%C3%BCller+ist%3Dda\n"
+                + "RedirectUrl=https://secure.pay1.de/3ds/redirect.php?md=a%2Bb&txid=1+2");
+
+        assertThat(result)
+                .containsEntry("customermessage", "Müller ist=da")
+                .containsEntry("RedirectUrl", "https://secure.pay1.de/3ds/redirect.php?md=a%2Bb&txid=1+2");
+    }
+
+    @Test
+    public void decodesNotEncodedBytesWithResponseCharset() throws IOException {
+        final byte[] body = "errormessage=Straße".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThat(PayoneResponseParser.parse(new ByteArrayInputStream(body), StandardCharsets.ISO_8859_1))
+                .containsEntry("errormessage", "Straße");
+    }
+
+    @Test
+    public void skipsLinesWithoutKeyOrValue() throws IOException {
+        assertThat(parse("=x=\nkey=\nkey\n==value")).isEmpty();
+    }
+
+    @Test
+    public void parsesLinesSplitBetweenReads() throws IOException {
+        final byte[] body = "status=APPROVED\r\nerrormessage=a%20b\r\n".getBytes(StandardCharsets.UTF_8);
+
+        // every read returns one byte, so every line, "\r\n" and "%20" is split between the reads
+        final InputStream oneByteStream = new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        assertThat(PayoneResponseParser.parse(oneByteStream, StandardCharsets.UTF_8))
+                .hasSize(2)
+                .containsEntry("status", "APPROVED")
+                .containsEntry("errormessage", "a b");
+    }
+
+    @Test
+    public void failsOnMalformedPercentSequence() {
+        assertThatThrownBy(() -> parse("errormessage=100%zz"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse("errormessage=100%\nstatus=ERROR"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Map<String, String> parse(final String body) throws IOException {
+        return PayoneResponseParser.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,50 @@
+package com.commercetools.pspadapter.payone.domain.payone;
+
+import org.junit.Test;
+
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneRetryBudget.MAX_TOKENS;
+import static com.commercetools.pspadapter.payone.domain.payone.PayoneRetryBudget.RETRY_PERCENT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PayoneRetryBudgetTest {
+
+    @Test
+    public void startsWithFullBucket() {
+        final PayoneRetryBudget retryBudget = PayoneRetryBudget.of();
+
+        assertThat(acquireAllRetries(retryBudget)).isEqualTo(MAX_TOKENS);
+    }
+
+    @Test
+    public void allowsRetriesForShareOfRequests() {
+        final PayoneRetryBudget retryBudget = PayoneRetryBudget.of();
+        acquireAllRetries(retryBudget);
+
+        for (int i = 0; i < 100 / RETRY_PERCENT - 1; i++) {
+            retryBudget.onRequest();
+        }
+        assertThat(retryBudget.tryAcquireRetry()).isFalse();
+
+        retryBudget.onRequest();
+        assertThat(retryBudget.tryAcquireRetry()).isTrue();
+        assertThat(retryBudget.tryAcquireRetry()).isFalse();
+    }
+
+    @Test
+    public void depositsNotMoreThanMaxTokens() {
+        final PayoneRetryBudget retryBudget = PayoneRetryBudget.of();
+        for (int i = 0; i < 1000; i++) {
+            retryBudget.onRequest();
+        }
+
+        assertThat(acquireAllRetries(retryBudget)).isEqualTo(MAX_TOKENS);
+    }
+
+    private static int acquireAllRetries(final PayoneRetryBudget retryBudget) {
+        int retries = 0;
+        while (retryBudget.tryAcquireRetry()) {
+            retries++;
+        }
+        return retries;
+    }
+}
@@ -7,6 +7,8 @@ import org.assertj.core.api.SoftAssertions;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author fhaertig
@@ -144,4 +146,48 @@ public class NotificationTest {
         final Throwable noInterface = catchThrowable(() -> Notification.fromKeyValueString(requestBody, "\r?\n?&"));
         assertThat(noInterface).isInstanceOf(IllegalArgumentException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void deserializeNotificationBytesInPayoneEncodings() {
+        final String requestBody = "key=123&txaction=paid&reference=Müller-1&street=Hauptstraße";
+
+        for (final Charset charset : new Charset[]{StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8}) {
+            final Notification notification = Notification.fromKeyValueBytes(requestBody.getBytes(charset), charset);
+
+            assertThat(notification.getKey()).as(charset.name()).isEqualTo("123");
+            assertThat(notification.getTxaction()).as(charset.name()).isEqualTo(NotificationAction.PAID);
+            assertThat(notification.getReference()).as(charset.name()).isEqualTo("Müller-1");
+        }
+    }
+
+    @Test
+    public void deserializeNotificationWithLineBreaksBeforeSeparators() {
+        final byte[] requestBody = "  key=123\r\n&txaction=capture\n&mode=live&&portalid=000&\n"
+                .getBytes(StandardCharsets.UTF_8);
+
+        final Notification notification = Notification.fromKeyValueBytes(requestBody, StandardCharsets.UTF_8);
+
+        assertThat(notification.getKey()).isEqualTo("123");
+        assertThat(notification.getTxaction()).isEqualTo(NotificationAction.CAPTURE);
+        assertThat(notification.getMode()).isEqualTo("live");
+        assertThat(notification.getPortalid()).isEqualTo("000");
+    }
+
+    @Test
+    public void throwExceptionForInvalidNotificationBytes() {
+        assertThat(catchThrowable(() -> fromUtf8Bytes("key=123&mode=test&key=456")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("123 is not a valid entry.");
+        assertThat(catchThrowable(() -> fromUtf8Bytes("key= &mode=")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("The notification string contains elements with empty value.");
+        assertThat(catchThrowable(() -> fromUtf8Bytes("key=123&==")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> fromUtf8Bytes("key=123&txaction=unknown")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Notification fromUtf8Bytes(final String requestBody) {
+        return Notification.fromKeyValueBytes(requestBody.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
@@ -2,6 +2,7 @@ package com.commercetools.pspadapter.payone.domain.payone.model.common;
 
 import com.commercetools.pspadapter.payone.config.PayoneConfig;
 import com.commercetools.pspadapter.payone.util.ClearSecuredValuesSerializer;
+import com.commercetools.pspadapter.payone.util.RedactionPlan;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -116,6 +117,7 @@ public class PayoneRequestTest {
     @After
     public void tearDown() {
         System.clearProperty(HIDE_CUSTOMER_PERSONAL_DATA);
+        RedactionPlan.resetConfigSnapshot();
     }
 
     @Test
@@ -220,6 +222,7 @@ public class PayoneRequestTest {
     @Test
     public void createsMapWithHiddenSecretsWithoutHidingPersonalData() {
         System.setProperty(HIDE_CUSTOMER_PERSONAL_DATA, "false");
+        RedactionPlan.resetConfigSnapshot();
 
         assertThat(request.toStringMap(true)).containsOnly(
                 entry("narrative_text", narrativeText),
@@ -0,0 +1,200 @@
+package com.commercetools.pspadapter.payone.message;
+
+import com.commercetools.pspadapter.payone.domain.ctp.MessageCursor;
+import io.sphere.sdk.messages.Message;
+import io.sphere.sdk.models.Reference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PaymentMessageConsumerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private static final ZonedDateTime CREATED_AT = ZonedDateTime.parse("2020-03-01T10:00:00.000Z");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private Consumer<String> paymentHandler;
+
+    private final Queue<List<Message>> pages = new ConcurrentLinkedQueue<>();
+    private final List<MessageCursor> queriedCursors = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void consume_handlesPaymentsInMessageOrder() throws Exception {
+        final Message first = message("message-1", 0, "payment-1");
+        final Message second = message("message-2", 0, "payment-2");
+        final Message third = message("message-3", 1, "payment-1");
+        pages.add(asList(first, second, third));
+
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (PaymentMessageConsumer consumer = createConsumer(directory)) {
+            consumer.start();
+
+            final InOrder inOrder = inOrder(paymentHandler);
+            inOrder.verify(paymentHandler, timeout(TIMEOUT_MILLIS)).accept("payment-1");
+            inOrder.verify(paymentHandler, timeout(TIMEOUT_MILLIS)).accept("payment-1");
+            verify(paymentHandler, timeout(TIMEOUT_MILLIS)).accept("payment-2");
+
+            awaitCheckpoint(directory, MessageCursor.of(third));
+        }
+    }
+
+    @Test
+    public void consume_afterRestart_resumesFromCheckpoint() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        final MessageCursor checkpoint = MessageCursor.of(CREATED_AT, "message-1");
+        new MessageCursorCheckpoint(directory).write(checkpoint);
+
+        final Message second = message("message-2", 1, "payment-2");
+        pages.add(Collections.singletonList(second));
+
+        try (PaymentMessageConsumer consumer = createConsumer(directory)) {
+            consumer.start();
+            verify(paymentHandler, timeout(TIMEOUT_MILLIS)).accept("payment-2");
+            awaitCheckpoint(directory, MessageCursor.of(second));
+        }
+
+        assertThat(queriedCursors.get(0)).isEqualTo(checkpoint);
+    }
+
+    @Test
+    public void consume_paymentInProgress_holdsCheckpoint() throws Exception {
+        final CountDownLatch firstPaymentStarted = new CountDownLatch(1);
+        final CountDownLatch firstPaymentReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstPaymentStarted.countDown();
+            firstPaymentReleased.await();
+            return null;
+        }).when(paymentHandler).accept("payment-1");
+
+        final Message first = message("message-1", 0, "payment-1");
+        final Message second = message("message-2", 1, "payment-2");
+        final Message third = message("message-3", 2, "payment-3");
+        pages.add(Collections.singletonList(first));
+        pages.add(asList(second, third));
+
+        final Path directory = temporaryFolder.getRoot().toPath();
+        // three workers, so the other payments are not queued behind the first one
+        try (PaymentMessageConsumer consumer = createConsumer(directory, 3)) {
+            consumer.start();
+            assertThat(firstPaymentStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            verify(paymentHandler, timeout(TIMEOUT_MILLIS)).accept("payment-2");
+            verify(paymentHandler, timeout(TIMEOUT_MILLIS)).accept("payment-3");
+            Thread.sleep(10 * POLL_INTERVAL_MILLIS);
+            assertThat(new MessageCursorCheckpoint(directory).read()).isEmpty();
+
+            firstPaymentReleased.countDown();
+            awaitCheckpoint(directory, MessageCursor.of(third));
+        }
+    }
+
+    @Test
+    public void consume_failingPayment_isSkipped() throws Exception {
+        doThrow(new IllegalStateException("Payment can't be handled")).when(paymentHandler).accept("payment-1");
+
+        final Message first = message("message-1", 0, "payment-1");
+        final Message second = message("message-2", 1, "payment-1");
+        pages.add(asList(first, second));
+
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (PaymentMessageConsumer consumer = createConsumer(directory)) {
+            consumer.start();
+            verify(paymentHandler, timeout(TIMEOUT_MILLIS).times(2)).accept("payment-1");
+            awaitCheckpoint(directory, MessageCursor.of(second));
+        }
+    }
+
+    @Test
+    public void close_finishesPaymentInProgressWithoutInterruptAndSkipsQueuedPayments() throws Exception {
+        final CountDownLatch paymentStarted = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        doAnswer(invocation -> {
+            paymentStarted.countDown();
+            try {
+                Thread.sleep(20 * POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return null;
+        }).when(paymentHandler).accept("payment-1");
+
+        final Message first = message("message-1", 0, "payment-1");
+        final Message second = message("message-2", 1, "payment-1");
+        pages.add(asList(first, second));
+
+        final Path directory = temporaryFolder.getRoot().toPath();
+        final PaymentMessageConsumer consumer = createConsumer(directory, 1);
+        consumer.start();
+        assertThat(paymentStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+
+        consumer.close();
+
+        assertThat(interrupted.get()).isFalse();
+        verify(paymentHandler, times(1)).accept("payment-1");
+        assertThat(new MessageCursorCheckpoint(directory).read()).contains(MessageCursor.of(first));
+    }
+
+    private PaymentMessageConsumer createConsumer(final Path directory) {
+        return createConsumer(directory, 2);
+    }
+
+    private PaymentMessageConsumer createConsumer(final Path directory, final int workerCount) {
+        return new PaymentMessageConsumer("testTenant",
+            cursor -> {
+                queriedCursors.add(cursor);
+                final List<Message> page = pages.poll();
+                return page != null ? page : Collections.<Message>emptyList();
+            },
+            new MessageCursorCheckpoint(directory), paymentHandler, POLL_INTERVAL_MILLIS, workerCount);
+    }
+
+    private static Message message(final String id, final long secondsAfter, final String paymentId) {
+        final Message message = mock(Message.class);
+        doReturn(id).when(message).getId();
+        doReturn(CREATED_AT.plusSeconds(secondsAfter)).when(message).getCreatedAt();
+        doReturn(Reference.of("payment", paymentId)).when(message).getResource();
+        return message;
+    }
+
+    private static void awaitCheckpoint(final Path directory, final MessageCursor expected) throws Exception {
+        final MessageCursorCheckpoint checkpoint = new MessageCursorCheckpoint(directory);
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!checkpoint.read().equals(Optional.of(expected)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+        assertThat(checkpoint.read()).contains(expected);
+    }
+}
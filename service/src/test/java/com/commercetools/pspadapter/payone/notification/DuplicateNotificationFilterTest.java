@@ -0,0 +1,170 @@
+package com.commercetools.pspadapter.payone.notification;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+import com.commercetools.pspadapter.payone.domain.payone.model.common.NotificationAction;
+import com.commercetools.pspadapter.payone.domain.payone.model.common.TransactionStatus;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DuplicateNotificationFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    @Test
+    public void contains_addedFingerprint_isTrue() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 1000, clock::get);
+
+        assertThat(filter.contains(42L)).isFalse();
+        filter.add(42L);
+        assertThat(filter.contains(42L)).isTrue();
+        assertThat(filter.contains(43L)).isFalse();
+    }
+
+    @Test
+    public void contains_collidingSlots_areProbed() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 1000, clock::get);
+
+        // all the values have the same low bits, thus the same initial slot
+        filter.add(1L);
+        filter.add(17L);
+        filter.add(33L);
+
+        assertThat(filter.contains(1L)).isTrue();
+        assertThat(filter.contains(17L)).isTrue();
+        assertThat(filter.contains(33L)).isTrue();
+        assertThat(filter.contains(49L)).isFalse();
+    }
+
+    @Test
+    public void contains_fingerprintOlderThanTwoGenerations_isExpired() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 1000, clock::get);
+        filter.add(42L);
+
+        clock.addAndGet(1500);
+        assertThat(filter.contains(42L)).as("kept in the previous generation").isTrue();
+
+        clock.addAndGet(1000);
+        assertThat(filter.contains(42L)).as("expired with its generation").isFalse();
+    }
+
+    @Test
+    public void contains_longIdleTime_expiresAllGenerations() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 1000, clock::get);
+        filter.add(42L);
+
+        clock.addAndGet(5000);
+        assertThat(filter.contains(42L)).isFalse();
+    }
+
+    @Test
+    public void add_fullGeneration_startsNextGenerationWithBoundedMemory() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 1000, clock::get);
+
+        // 12 is the maximum size of a 16 slots table, so the first fingerprints are dropped after 24
+        for (long fingerprint = 1; fingerprint <= 100; fingerprint++) {
+            filter.add(fingerprint);
+        }
+
+        assertThat(filter.contains(100L)).isTrue();
+        assertThat(filter.contains(89L)).isTrue();
+        assertThat(filter.contains(1L)).isFalse();
+    }
+
+    @Test
+    public void add_firstFingerprint_allocatesInitialCapacity() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 1024, 1000, clock::get);
+
+        assertThat(filter.contains(42L)).isFalse();
+        assertThat(filter.getCurrentCapacity()).isZero();
+
+        filter.add(42L);
+        assertThat(filter.getCurrentCapacity()).isEqualTo(16);
+    }
+
+    @Test
+    public void add_fullTable_growsUpToMaxCapacityKeepingFingerprints() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 64, 1000, clock::get);
+
+        // 48 is the maximum size of a 64 slots table
+        for (long fingerprint = 1; fingerprint <= 48; fingerprint++) {
+            filter.add(fingerprint);
+        }
+        assertThat(filter.getCurrentCapacity()).isEqualTo(64);
+        assertThat(filter.contains(1L)).isTrue();
+        assertThat(filter.contains(48L)).isTrue();
+
+        filter.add(49L);
+        assertThat(filter.getCurrentCapacity()).as("next generation starts small").isEqualTo(16);
+        assertThat(filter.contains(1L)).as("kept in the previous generation").isTrue();
+        assertThat(filter.contains(49L)).isTrue();
+    }
+
+    @Test
+    public void add_afterExpiredGeneration_startsWithInitialCapacity() {
+        final DuplicateNotificationFilter filter = new DuplicateNotificationFilter(16, 64, 1000, clock::get);
+        for (long fingerprint = 1; fingerprint <= 20; fingerprint++) {
+            filter.add(fingerprint);
+        }
+        assertThat(filter.getCurrentCapacity()).isEqualTo(32);
+
+        clock.addAndGet(5000);
+        assertThat(filter.getCurrentCapacity()).isEqualTo(32);
+        filter.add(42L);
+
+        assertThat(filter.getCurrentCapacity()).isEqualTo(16);
+        assertThat(filter.contains(1L)).isFalse();
+    }
+
+    @Test
+    public void constructor_capacityIsNotPowerOfTwo_throwsException() {
+        assertThatThrownBy(() -> new DuplicateNotificationFilter(10, 1000, clock::get))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DuplicateNotificationFilter(16, 48, 1000, clock::get))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DuplicateNotificationFilter(16, 8, 1000, clock::get))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void fingerprint_sameIdentityFields_sameFingerprint() {
+        final Notification notification = createNotification("123", "1", NotificationAction.APPOINTED);
+        final Notification redelivery = createNotification("123", "1", NotificationAction.APPOINTED);
+        redelivery.setPrice("100.00");
+
+        assertThat(DuplicateNotificationFilter.fingerprint(notification))
+            .isEqualTo(DuplicateNotificationFilter.fingerprint(redelivery))
+            .isNotZero();
+    }
+
+    @Test
+    public void fingerprint_differentIdentityFields_differentFingerprints() {
+        final long fingerprint =
+            DuplicateNotificationFilter.fingerprint(createNotification("123", "1", NotificationAction.APPOINTED));
+
+        assertThat(DuplicateNotificationFilter.fingerprint(createNotification("124", "1", NotificationAction.APPOINTED)))
+            .isNotEqualTo(fingerprint);
+        assertThat(DuplicateNotificationFilter.fingerprint(createNotification("123", "2", NotificationAction.APPOINTED)))
+            .isNotEqualTo(fingerprint);
+        assertThat(DuplicateNotificationFilter.fingerprint(createNotification("123", "1", NotificationAction.PAID)))
+            .isNotEqualTo(fingerprint);
+        // field boundaries are a part of the fingerprint
+        assertThat(DuplicateNotificationFilter.fingerprint(createNotification("1231", "", NotificationAction.APPOINTED)))
+            .isNotEqualTo(fingerprint);
+    }
+
+    private static Notification createNotification(final String txid, final String sequenceNumber,
+                                                   final NotificationAction txaction) {
+        final Notification notification = new Notification();
+        notification.setTxid(txid);
+        notification.setSequencenumber(sequenceNumber);
+        notification.setTxaction(txaction);
+        notification.setTransactionStatus(TransactionStatus.COMPLETED);
+        notification.setTxtime("1450365542");
+        notification.setPrice("200.00");
+        return notification;
+    }
+}
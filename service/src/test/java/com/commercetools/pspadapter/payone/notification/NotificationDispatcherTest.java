@@ -221,4 +221,57 @@ public class NotificationDispatcherTest extends BaseTenantPropertyTest {
         verify(specificNotificationProcessor).processTransactionStatusNotification(same(notification), any());
         verifyZeroInteractions(defaultNotificationProcessor);
     }
+
+    @Test
+    public void skipsDuplicateOfProcessedNotification() {
+        // arrange
+        final NotificationDispatcher dispatcher =
+                new NotificationDispatcher(defaultNotificationProcessor, processors, tenantFactory, config);
+
+        // act
+        dispatcher.dispatchNotification(createAppointedNotification("1"));
+        dispatcher.dispatchNotification(createAppointedNotification("1"));
+        dispatcher.dispatchNotification(createAppointedNotification("2"));
+
+        // assert
+        verify(specificNotificationProcessor, times(2)).processTransactionStatusNotification(any(), any());
+        verifyZeroInteractions(defaultNotificationProcessor);
+    }
+
+    @Test
+    public void processesRedeliveryOfFailedNotification() {
+        // arrange
+        final NotificationDispatcher dispatcher =
+                new NotificationDispatcher(defaultNotificationProcessor, processors, tenantFactory, config);
+
+        doThrow(new RuntimeException("commercetools platform is not available"))
+                .doNothing()
+                .when(specificNotificationProcessor).processTransactionStatusNotification(any(), any());
+
+        // act
+        final Throwable throwable = catchThrowable(() -> dispatcher.dispatchNotification(createAppointedNotification("1")));
+        dispatcher.dispatchNotification(createAppointedNotification("1"));
+
+        // assert
+        assertThat(throwable).isInstanceOf(RuntimeException.class);
+        verify(specificNotificationProcessor, times(2)).processTransactionStatusNotification(any(), any());
+    }
+
+    private static Notification createAppointedNotification(final String sequenceNumber) {
+        final Notification notification = new Notification();
+        //txid = interfaceId -> must match the dummyPaymentQueryResult.json!
+        notification.setTxid("123");
+        notification.setSequencenumber(sequenceNumber);
+        notification.setClearingtype("cc");
+        notification.setPrice("200.00");
+        notification.setCurrency("EUR");
+        notification.setPortalid("dummyConfigValue");
+        notification.setAid("dummyConfigValue");
+        notification.setKey(PayoneHash.calculate("dummyConfigValue"));
+        notification.setMode("dummyConfigValue");
+        notification.setTxtime("1450365542");
+        notification.setTxaction(NotificationAction.APPOINTED);
+        notification.setTransactionStatus(TransactionStatus.COMPLETED);
+        return notification;
+    }
 }
@@ -0,0 +1,126 @@
+package com.commercetools.pspadapter.payone.notification;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+import com.commercetools.pspadapter.payone.domain.payone.model.common.NotificationAction;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NotificationWorkerPoolTest {
+
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+
+    private NotificationWorkerPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void submit_outOfOrderNotifications_areHandledInSequenceOrder() throws Exception {
+        pool = createPool(4, 10_000);
+        final CountDownLatch done = new CountDownLatch(3);
+
+        pool.submit(createNotification("111", "2"), done::countDown);
+        pool.submit(createNotification("111", "1"), done::countDown);
+        pool.submit(createNotification("111", "0"), done::countDown);
+
+        // the reorder window is long, so the test would time out if it waited for the window
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("111:0", "111:1", "111:2");
+    }
+
+    @Test
+    public void submit_missingSequenceNumber_isHandledAfterReorderWindow() throws Exception {
+        pool = createPool(1, 100);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        pool.submit(createNotification("111", "0"), done::countDown);
+        pool.submit(createNotification("111", "2"), done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("111:0", "111:2");
+
+        final NotificationPartitionMetrics metrics = pool.getMetrics().get(0);
+        assertThat(metrics.getHandled()).isEqualTo(2);
+        assertThat(metrics.getReordered()).isEqualTo(1);
+        assertThat(metrics.getReorderWaitMaxMillis()).isGreaterThanOrEqualTo(100);
+        assertThat(metrics.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void submit_sameSequenceNumber_isHandledInArrivalOrder() throws Exception {
+        pool = createPool(1, 10_000);
+        final CountDownLatch done = new CountDownLatch(3);
+
+        pool.submit(createNotification("111", "0", "appointed"), done::countDown);
+        pool.submit(createNotification("111", "1", "capture"), done::countDown);
+        pool.submit(createNotification("111", "1", "paid"), done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("111:0:appointed", "111:1:capture", "111:1:paid");
+    }
+
+    @Test
+    public void submit_notificationWithoutSequenceNumber_isHandledAtOnce() throws Exception {
+        pool = createPool(1, 10_000);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        pool.submit(createNotification("111", null), done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("111:null");
+    }
+
+    @Test
+    public void getMetrics_heldNotification_isCountedInQueueDepth() {
+        pool = createPool(1, 10_000);
+
+        pool.submit(createNotification("111", "5"), () -> { });
+
+        assertThat(pool.getMetrics()).hasSize(1);
+        assertThat(pool.getMetrics().get(0).getQueueDepth()).isEqualTo(1);
+        assertThat(handled).isEmpty();
+    }
+
+    @Test
+    public void constructor_nonPositivePartitionCount_throwsException() {
+        assertThatThrownBy(() -> new NotificationWorkerPool("test", 0, 100, notification -> true))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private NotificationWorkerPool createPool(final int partitionCount, final long reorderWindowMillis) {
+        final NotificationWorkerPool workerPool = new NotificationWorkerPool("test", partitionCount,
+            reorderWindowMillis, notification -> {
+                handled.add(notification.getTxid() + ":" + notification.getSequencenumber()
+                    + (notification.getTxaction() != null ? ":" + notification.getTxaction() : ""));
+                return true;
+            });
+        workerPool.start();
+        return workerPool;
+    }
+
+    private static Notification createNotification(final String txid, final String sequenceNumber) {
+        final Notification notification = new Notification();
+        notification.setTxid(txid);
+        notification.setSequencenumber(sequenceNumber);
+        return notification;
+    }
+
+    private static Notification createNotification(final String txid, final String sequenceNumber,
+                                                   final String txaction) {
+        final Notification notification = createNotification(txid, sequenceNumber);
+        notification.setTxaction(NotificationAction.valueOf(txaction.toUpperCase()));
+        return notification;
+    }
+}
@@ -0,0 +1,182 @@
+package com.commercetools.pspadapter.payone.notification.journal;
+
+import com.commercetools.pspadapter.payone.domain.payone.model.common.Notification;
+import com.commercetools.pspadapter.payone.notification.NotificationDispatcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationJournalConsumerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Test
+    public void consume_dispatchesNotificationsInJournalOrder() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            journal.append(notificationBody("111", "appointed"));
+
+            try (NotificationJournalConsumer consumer = createConsumer(journal, directory)) {
+                consumer.start();
+                journal.append(notificationBody("111", "paid"));
+
+                final InOrder inOrder = inOrder(notificationDispatcher);
+                inOrder.verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("appointed"));
+                inOrder.verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("paid"));
+            }
+        }
+    }
+
+    @Test
+    public void consume_afterRestart_resumesFromCheckpoint() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            journal.append(notificationBody("111", "appointed"));
+            try (NotificationJournalConsumer consumer = createConsumer(journal, directory)) {
+                consumer.start();
+                verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("appointed"));
+            }
+            assertThat(new JournalCheckpoint(directory).read()).isEqualTo(journal.getDurablePosition());
+        }
+
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            journal.append(notificationBody("111", "paid"));
+            try (NotificationJournalConsumer consumer = createConsumer(journal, directory)) {
+                consumer.start();
+                verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("paid"));
+            }
+        }
+
+        verify(notificationDispatcher, times(1)).dispatchNotification(txaction("appointed"));
+    }
+
+    @Test
+    public void consume_failingNotification_isRetriedUntilDispatched() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        final ConcurrentModificationException failure =
+            new ConcurrentModificationException("payment modified concurrently");
+        doThrow(failure).doThrow(failure).doThrow(failure).doThrow(failure).doNothing()
+            .when(notificationDispatcher).dispatchNotification(txaction("appointed"));
+
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            journal.append(notificationBody("111", "appointed"));
+            journal.append(notificationBody("111", "paid"));
+
+            try (NotificationJournalConsumer consumer = createConsumer(journal, directory)) {
+                consumer.start();
+                verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("paid"));
+            }
+        }
+
+        verify(notificationDispatcher, times(5)).dispatchNotification(txaction("appointed"));
+    }
+
+    @Test
+    public void consume_failingNotification_holdsCheckpoint() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        doThrow(new ConcurrentModificationException("commercetools is unavailable"))
+            .when(notificationDispatcher).dispatchNotification(txaction("appointed"));
+
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            final long firstPosition = journal.getFirstPosition();
+            journal.append(notificationBody("111", "appointed"));
+            journal.append(notificationBody("222", "paid"));
+
+            try (NotificationJournalConsumer consumer = createConsumer(journal, directory)) {
+                consumer.start();
+                verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("paid"));
+                verify(notificationDispatcher, timeout(TIMEOUT_MILLIS).atLeast(3))
+                    .dispatchNotification(txaction("appointed"));
+            }
+
+            assertThat(new JournalCheckpoint(directory).read()).isLessThanOrEqualTo(firstPosition);
+        }
+    }
+
+    @Test
+    public void getRetryDelayMillis_isDoubledUpToMaximum() {
+        final NotificationJournalConsumer consumer = new NotificationJournalConsumer("testTenant",
+            mock(NotificationJournal.class), mock(JournalCheckpoint.class),
+            notificationDispatcher::dispatchNotification, 1000, 1, 50);
+
+        assertThat(consumer.getRetryDelayMillis(1)).isEqualTo(1000);
+        assertThat(consumer.getRetryDelayMillis(2)).isEqualTo(2000);
+        assertThat(consumer.getRetryDelayMillis(6)).isEqualTo(32_000);
+        assertThat(consumer.getRetryDelayMillis(7)).isEqualTo(NotificationJournalConsumer.MAX_RETRY_DELAY_MILLIS);
+        assertThat(consumer.getRetryDelayMillis(1000)).isEqualTo(NotificationJournalConsumer.MAX_RETRY_DELAY_MILLIS);
+    }
+
+    @Test
+    public void consume_invalidNotification_isSkippedWithoutRetries() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        doThrow(new IllegalArgumentException("the value for 'key' is not valid for this service instance"))
+            .when(notificationDispatcher).dispatchNotification(txaction("appointed"));
+
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            journal.append(notificationBody("111", "appointed"));
+            journal.append(notificationBody("111", "paid"));
+
+            try (NotificationJournalConsumer consumer = createConsumer(journal, directory)) {
+                consumer.start();
+                verify(notificationDispatcher, timeout(TIMEOUT_MILLIS)).dispatchNotification(txaction("paid"));
+            }
+        }
+
+        verify(notificationDispatcher, times(1)).dispatchNotification(txaction("appointed"));
+    }
+
+    @Test
+    public void close_beforeAnyRecord_doesNotDispatch() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (NotificationJournal journal = NotificationJournal.open(directory)) {
+            final NotificationJournalConsumer consumer = createConsumer(journal, directory);
+            consumer.start();
+            consumer.close();
+        }
+
+        verify(notificationDispatcher, never()).dispatchNotification(any());
+    }
+
+    private NotificationJournalConsumer createConsumer(final NotificationJournal journal, final Path directory) {
+        return new NotificationJournalConsumer("testTenant", journal, new JournalCheckpoint(directory),
+            notificationDispatcher::dispatchNotification, 1, 2, 50);
+    }
+
+    private static Notification txaction(final String txaction) {
+        return argThat(notification -> notification != null
+            && notification.getTxaction() != null
+            && txaction.equals(notification.getTxaction().getTxActionCode()));
+    }
+
+    private static byte[] notificationBody(final String txid, final String txaction) {
+        return ("key=123&txid=" + txid + "&txaction=" + txaction + "&portalid=dummyPortal&aid=dummyAid&mode=test"
+            + "&txtime=1450365542&transaction_status=completed").getBytes(UTF_8);
+    }
+}
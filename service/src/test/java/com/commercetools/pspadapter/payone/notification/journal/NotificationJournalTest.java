@@ -0,0 +1,159 @@
+package com.commercetools.pspadapter.payone.notification.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NotificationJournalTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void append_recordsAreReadInOrder() throws Exception {
+        try (NotificationJournal journal = NotificationJournal.open(temporaryFolder.getRoot().toPath())) {
+            assertThat(journal.read(journal.getFirstPosition())).isNull();
+
+            journal.append(bytes("txid=1&txaction=appointed"));
+            journal.append(bytes("txid=1&txaction=paid"));
+
+            assertThat(readAll(journal, journal.getFirstPosition()))
+                .containsExactly("txid=1&txaction=appointed", "txid=1&txaction=paid");
+        }
+    }
+
+    @Test
+    public void append_recordDoesNotFitIntoSegment_isWrittenToNextSegment() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (NotificationJournal journal = NotificationJournal.open(directory, SEGMENT_SIZE)) {
+            final long first = journal.append(bytes("first-record-of-30-characters."));
+            final long second = journal.append(bytes("second-record-of-31-characters."));
+
+            assertThat(first).isZero();
+            assertThat(second).isEqualTo(SEGMENT_SIZE);
+            assertThat(readAll(journal, 0))
+                .containsExactly("first-record-of-30-characters.", "second-record-of-31-characters.");
+            assertThat(segmentFiles(directory)).hasSize(2);
+        }
+    }
+
+    @Test
+    public void append_tooLargeRecord_throwsException() throws Exception {
+        try (NotificationJournal journal = NotificationJournal.open(temporaryFolder.getRoot().toPath(), SEGMENT_SIZE)) {
+            assertThatThrownBy(() -> journal.append(new byte[SEGMENT_SIZE]))
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> journal.append(new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void append_concurrently_allRecordsAreDurable() throws Exception {
+        try (NotificationJournal journal = NotificationJournal.open(temporaryFolder.getRoot().toPath(), 1024)) {
+            final ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                final List<Future<Long>> appends = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    final String record = "record-" + i;
+                    appends.add(executor.submit(() -> journal.append(bytes(record))));
+                }
+                for (final Future<Long> append : appends) {
+                    assertThat(append.get(10, TimeUnit.SECONDS)).isLessThan(journal.getDurablePosition());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(readAll(journal, 0)).hasSize(100).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    public void open_existingJournal_appendsAfterLastRecord() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (NotificationJournal journal = NotificationJournal.open(directory, SEGMENT_SIZE)) {
+            journal.append(bytes("before restart"));
+        }
+
+        try (NotificationJournal journal = NotificationJournal.open(directory, SEGMENT_SIZE)) {
+            journal.append(bytes("after restart"));
+            assertThat(readAll(journal, 0)).containsExactly("before restart", "after restart");
+        }
+    }
+
+    @Test
+    public void open_incompleteRecord_isOverwritten() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        final long end;
+        try (NotificationJournal journal = NotificationJournal.open(directory, SEGMENT_SIZE)) {
+            journal.append(bytes("complete"));
+            end = journal.getDurablePosition();
+        }
+
+        // simulate a crash in the middle of a write: the length is written, but the checksum and data are not
+        final Path segment = segmentFiles(directory).get(0);
+        final byte[] content = Files.readAllBytes(segment);
+        content[(int) end + 3] = 20;
+        Files.write(segment, content);
+
+        try (NotificationJournal journal = NotificationJournal.open(directory, SEGMENT_SIZE)) {
+            assertThat(journal.getDurablePosition()).isEqualTo(end);
+            journal.append(bytes("next"));
+            assertThat(readAll(journal, 0)).containsExactly("complete", "next");
+        }
+    }
+
+    @Test
+    public void deleteSegmentsBefore_deletesOnlyConsumedSegments() throws Exception {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        try (NotificationJournal journal = NotificationJournal.open(directory, SEGMENT_SIZE)) {
+            journal.append(bytes("first-record-of-30-characters."));
+            final long second = journal.append(bytes("second-record-of-31-characters."));
+
+            journal.deleteSegmentsBefore(second);
+
+            assertThat(segmentFiles(directory)).hasSize(1);
+            assertThat(journal.getFirstPosition()).isEqualTo(second);
+            assertThat(readAll(journal, journal.getFirstPosition())).containsExactly("second-record-of-31-characters.");
+        }
+    }
+
+    private static List<String> readAll(final NotificationJournal journal, final long from) {
+        final List<String> records = new ArrayList<>();
+        JournalRecord record = journal.read(from);
+        while (record != null) {
+            records.add(new String(record.getData(), UTF_8));
+            record = journal.read(record.getNextPosition());
+        }
+        return records;
+    }
+
+    private static List<Path> segmentFiles(final Path directory) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(file -> file.toString().endsWith(".segment")).sorted().forEach(files::add);
+        }
+        return files;
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(UTF_8);
+    }
+}
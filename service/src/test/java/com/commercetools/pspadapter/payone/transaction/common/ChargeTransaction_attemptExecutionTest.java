@@ -1,5 +1,6 @@
 package com.commercetools.pspadapter.payone.transaction.common;
 
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneRequest;
 import com.commercetools.pspadapter.payone.transaction.BaseTransaction_attemptExecutionTest;
 import org.junit.Before;
@@ -26,7 +27,8 @@ public class ChargeTransaction_attemptExecutionTest extends BaseTransaction_atte
     public void setUp() {
         super.setUp();
 
-        executor = new ChargeTransactionExecutor(typeCache, requestFactory, payonePostService, client);
+        executor = new ChargeTransactionExecutor(typeCache, requestFactory, payonePostService, client,
+                new PaymentLookupCache());
 
         final HashMap<String, Object> requestMap = new HashMap<>();
         requestMap.put("testRequestKey1", "testRequestValue2");
@@ -1,5 +1,6 @@
 package com.commercetools.pspadapter.payone.transaction.paymentinadvance;
 
+import com.commercetools.pspadapter.payone.domain.ctp.PaymentLookupCache;
 import com.commercetools.pspadapter.payone.domain.payone.model.common.PayoneResponseFields;
 import com.commercetools.pspadapter.payone.domain.payone.model.paymentinadvance.BankTransferInAdvanceRequest;
 import com.commercetools.pspadapter.payone.mapping.CustomFieldKeys;
@@ -36,7 +37,8 @@ public class BankTransferInAdvanceChargeTransaction_attemptExecutionTest extends
     @Before
     public void setUp() {
         super.setUp();
-        executor = new BankTransferInAdvanceChargeTransactionExecutor(typeCache, requestFactory, payonePostService, client);
+        executor = new BankTransferInAdvanceChargeTransactionExecutor(typeCache, requestFactory, payonePostService, client,
+                new PaymentLookupCache());
 
         final HashMap<String, Object> requestMap = new HashMap<>();
         requestMap.put("testRequestKey1", "testRequestValue2");
@@ -0,0 +1,204 @@
+package com.commercetools.pspadapter.payone.util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.commercetools.pspadapter.payone.util.PaymentLanes.txidKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PaymentLanesTest {
+
+    @Test
+    public void executeAsync_sameKey_runsInSubmissionOrder() {
+        final PaymentLanes lanes = new PaymentLanes();
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CompletableFuture<String> firstResult = new CompletableFuture<>();
+
+        final CompletionStage<String> first = lanes.executeAsync("payment-1", () -> {
+            events.add("first started");
+            return firstResult;
+        });
+        final CompletionStage<String> second = lanes.executeAsync("payment-1", () -> {
+            events.add("second started");
+            return CompletableFuture.completedFuture("second");
+        });
+
+        assertThat(events).containsExactly("first started");
+        assertThat(lanes.isBusy("payment-1")).isTrue();
+
+        events.add("first completed");
+        firstResult.complete("first");
+
+        assertThat(first.toCompletableFuture().join()).isEqualTo("first");
+        assertThat(second.toCompletableFuture().join()).isEqualTo("second");
+        assertThat(events).containsExactly("first started", "first completed", "second started");
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void executeAsync_differentKeys_runInParallel() {
+        final PaymentLanes lanes = new PaymentLanes();
+        final CompletableFuture<String> blocked = new CompletableFuture<>();
+
+        lanes.executeAsync("payment-1", () -> blocked);
+        final CompletionStage<String> other = lanes.executeAsync("payment-2",
+            () -> CompletableFuture.completedFuture("other"));
+
+        assertThat(other.toCompletableFuture().join()).isEqualTo("other");
+        assertThat(lanes.isBusy("payment-1")).isTrue();
+        assertThat(lanes.isBusy("payment-2")).isFalse();
+
+        blocked.complete("done");
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void executeAsync_failedTask_doesNotBlockNextTask() {
+        final PaymentLanes lanes = new PaymentLanes();
+        final CompletableFuture<String> failing = new CompletableFuture<>();
+
+        final CompletionStage<String> first = lanes.executeAsync("payment-1", () -> failing);
+        final CompletionStage<String> second = lanes.executeAsync("payment-1",
+            () -> CompletableFuture.completedFuture("second"));
+
+        failing.completeExceptionally(new IllegalStateException("boom"));
+
+        assertThatThrownBy(() -> first.toCompletableFuture().join()).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(second.toCompletableFuture().join()).isEqualTo("second");
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void executeAsync_previousTaskHangs_nextTaskStartsAfterTimeout() {
+        final PaymentLanes lanes = new PaymentLanes(50);
+
+        lanes.executeAsync("payment-1", CompletableFuture::new);
+        final CompletionStage<String> second = lanes.executeAsync("payment-1",
+            () -> CompletableFuture.completedFuture("second"));
+
+        assertThat(second.toCompletableFuture().join()).isEqualTo("second");
+    }
+
+    @Test
+    public void execute_sameKey_blockingAndAsyncTasksDoNotOverlap() throws Exception {
+        final PaymentLanes lanes = new PaymentLanes();
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CompletableFuture<String> asyncResult = new CompletableFuture<>();
+
+        lanes.executeAsync("payment-1", () -> {
+            events.add("async started");
+            return asyncResult;
+        });
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch submitted = new CountDownLatch(1);
+            final Future<String> blocking = executor.submit(() -> {
+                submitted.countDown();
+                return lanes.execute("payment-1", () -> {
+                    events.add("blocking started");
+                    return "blocking";
+                });
+            });
+            assertThat(submitted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            events.add("async completed");
+            asyncResult.complete("async");
+
+            assertThat(blocking.get(5, TimeUnit.SECONDS)).isEqualTo("blocking");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(events).containsExactly("async started", "async completed", "blocking started");
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void execute_interruptedWhileWaiting_doesNotRunTask() throws Exception {
+        final PaymentLanes lanes = new PaymentLanes();
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CompletableFuture<String> asyncResult = new CompletableFuture<>();
+
+        lanes.executeAsync("payment-1", () -> {
+            events.add("async started");
+            return asyncResult;
+        });
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch submitted = new CountDownLatch(1);
+            final Future<Throwable> interrupted = executor.submit(() -> {
+                submitted.countDown();
+                try {
+                    lanes.execute("payment-1", () -> events.add("interrupted started"));
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            });
+            assertThat(submitted.await(5, TimeUnit.SECONDS)).isTrue();
+            executor.shutdownNow();
+
+            assertThat(interrupted.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(InterruptedException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the next task still waits for the running one, not just for the interrupted one
+        final CompletionStage<String> next = lanes.executeAsync("payment-1", () -> {
+            events.add("next started");
+            return CompletableFuture.completedFuture("next");
+        });
+        assertThat(events).containsExactly("async started");
+
+        events.add("async completed");
+        asyncResult.complete("async");
+
+        assertThat(next.toCompletableFuture().join()).isEqualTo("next");
+        assertThat(events).containsExactly("async started", "async completed", "next started");
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void execute_exception_releasesLane() {
+        final PaymentLanes lanes = new PaymentLanes();
+
+        assertThatThrownBy(() -> lanes.execute("payment-1", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(lanes.isBusy("payment-1")).isFalse();
+        assertThat(lanes.execute("payment-1", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    public void executeAfterPrevious_reportsWhetherTaskWaitedForPreviousOne() {
+        final PaymentLanes lanes = new PaymentLanes(50);
+
+        assertThat(lanes.executeAfterPrevious("payment-1", waitedForPrevious -> waitedForPrevious)).isFalse();
+
+        // the previous task never completes, so the next one starts after the wait timeout
+        lanes.executeAsync("payment-1", CompletableFuture::new);
+        assertThat(lanes.executeAfterPrevious("payment-1", waitedForPrevious -> waitedForPrevious)).isTrue();
+    }
+
+    @Test
+    public void txidKey_doesNotCollideWithPaymentId() {
+        assertThat(txidKey("123")).isEqualTo("txid:123");
+        assertThat(txidKey("123")).isNotEqualTo("123");
+    }
+}
@@ -0,0 +1,139 @@
+package com.commercetools.pspadapter.payone.util;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.commercetools.pspadapter.payone.config.PropertyProvider.HIDE_CUSTOMER_PERSONAL_DATA;
+import static com.commercetools.pspadapter.payone.util.ClearSecuredValuesSerializer.PLACEHOLDER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.MapEntry.entry;
+
+public class RedactionPlanTest {
+
+    @After
+    public void tearDown() {
+        System.clearProperty(HIDE_CUSTOMER_PERSONAL_DATA);
+        RedactionPlan.resetConfigSnapshot();
+    }
+
+    @Test
+    public void of_computesPlanOncePerClass() {
+        assertThat(RedactionPlan.of(TestRequest.class)).isSameAs(RedactionPlan.of(TestRequest.class));
+    }
+
+    @Test
+    public void toMaskedMap_hidingPersonalData_masksSecuredAndPersonalData() {
+        assertThat(RedactionPlan.of(TestRequest.class).toMaskedMap(createRequest(), true)).containsOnly(
+                entry("key", PLACEHOLDER),
+                entry("lastname", PLACEHOLDER),
+                entry("amount", 42),
+                entry("shipping_city", "Berlin"),
+                entry("items", Arrays.asList("first", "second")));
+    }
+
+    @Test
+    public void toMaskedMap_notHidingPersonalData_masksSecuredDataOnly() {
+        assertThat(RedactionPlan.of(TestRequest.class).toMaskedMap(createRequest(), false)).containsOnly(
+                entry("key", PLACEHOLDER),
+                entry("lastname", "Mustermann"),
+                entry("amount", 42),
+                entry("shipping_city", "Berlin"),
+                entry("items", Arrays.asList("first", "second")));
+    }
+
+    @Test
+    public void toMaskedMap_copiesCollectionsAndSkipsNullValues() {
+        final TestRequest request = createRequest();
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("present", "value");
+        attributes.put("absent", null);
+        request.attributes = attributes;
+
+        final Map<String, Object> maskedMap = RedactionPlan.of(TestRequest.class).toMaskedMap(request, true);
+
+        assertThat(maskedMap).doesNotContainKey("firstname");
+        assertThat(maskedMap.get("items")).isEqualTo(request.items).isNotSameAs(request.items);
+        assertThat((Map<?, ?>) maskedMap.get("attributes")).containsOnly(entry("present", "value"));
+    }
+
+    @Test
+    public void isHideCustomerPersonalData_isReadAgainAfterReset() {
+        System.setProperty(HIDE_CUSTOMER_PERSONAL_DATA, "false");
+        RedactionPlan.resetConfigSnapshot();
+        assertThat(RedactionPlan.isHideCustomerPersonalData()).isFalse();
+
+        System.clearProperty(HIDE_CUSTOMER_PERSONAL_DATA);
+        assertThat(RedactionPlan.isHideCustomerPersonalData()).isFalse();
+
+        RedactionPlan.resetConfigSnapshot();
+        assertThat(RedactionPlan.isHideCustomerPersonalData()).isTrue();
+        assertThat(RedactionPlan.of(TestRequest.class).toMaskedMap(createRequest()))
+                .contains(entry("lastname", PLACEHOLDER));
+    }
+
+    private static TestRequest createRequest() {
+        final TestRequest request = new TestRequest();
+        request.key = "secret";
+        request.lastname = "Mustermann";
+        request.amount = 42;
+        request.shippingCity = "Berlin";
+        request.items = Arrays.asList("first", "second");
+        return request;
+    }
+
+    @SuppressWarnings("unused")
+    private static class TestRequest {
+
+        @ClearSecuredValuesSerializer.Apply(true)
+        private String key;
+
+        @ClearSecuredValuesSerializer.Apply
+        private String lastname;
+
+        @ClearSecuredValuesSerializer.Apply
+        private String firstname;
+
+        private Integer amount;
+
+        @JsonProperty("shipping_city")
+        private String shippingCity;
+
+        private List<String> items;
+
+        private Map<String, String> attributes;
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getLastname() {
+            return lastname;
+        }
+
+        public String getFirstname() {
+            return firstname;
+        }
+
+        public Integer getAmount() {
+            return amount;
+        }
+
+        public String getShippingCity() {
+            return shippingCity;
+        }
+
+        public List<String> getItems() {
+            return items;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.commercetools.pspadapter.payone.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+
+    @Test
+    public void execute_concurrentCallsWithSameKey_joinRunningCall() throws Exception {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(() -> singleFlight.execute("payment-1", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            final Future<String> second = executor.submit(() -> singleFlight.execute("payment-1", () -> {
+                executions.incrementAndGet();
+                return "other";
+            }));
+            // the second call is blocked on the first one, so the key is still in flight
+            assertThat(singleFlight.size()).isEqualTo(1);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isIn("result", "other");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void execute_sequentialCalls_areExecutedEachTime() {
+        final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        final AtomicInteger executions = new AtomicInteger();
+
+        assertThat(singleFlight.execute("payment-1", executions::incrementAndGet)).isEqualTo(1);
+        assertThat(singleFlight.execute("payment-1", executions::incrementAndGet)).isEqualTo(2);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void execute_exception_isRethrownAndKeyReleased() {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        assertThatThrownBy(() -> singleFlight.execute("payment-1", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+        assertThat(singleFlight.size()).isZero();
+        assertThat(singleFlight.execute("payment-1", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    public void executeAsync_concurrentCallsWithSameKey_shareResult() {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        final CompletableFuture<String> running = new CompletableFuture<>();
+        final AtomicInteger executions = new AtomicInteger();
+
+        final CompletionStage<String> first = singleFlight.executeAsync("payment-1", () -> {
+            executions.incrementAndGet();
+            return running;
+        });
+        final CompletionStage<String> second = singleFlight.executeAsync("payment-1", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        final CompletionStage<String> otherKey = singleFlight.executeAsync("payment-2",
+            () -> CompletableFuture.completedFuture("payment-2-result"));
+
+        assertThat(executions).hasValue(1);
+        assertThat(singleFlight.size()).isEqualTo(1);
+        assertThat(otherKey.toCompletableFuture().join()).isEqualTo("payment-2-result");
+
+        running.complete("result");
+
+        assertThat(first.toCompletableFuture().join()).isEqualTo("result");
+        assertThat(second.toCompletableFuture().join()).isEqualTo("result");
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void executeAsync_failedCall_failsAllJoinedStagesAndReleasesKey() {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        final CompletableFuture<String> running = new CompletableFuture<>();
+
+        final CompletionStage<String> first = singleFlight.executeAsync("payment-1", () -> running);
+        final CompletionStage<String> second = singleFlight.executeAsync("payment-1",
+            () -> CompletableFuture.completedFuture("other"));
+
+        running.completeExceptionally(new IllegalStateException("boom"));
+
+        assertThatThrownBy(() -> first.toCompletableFuture().join()).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.toCompletableFuture().join()).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void executeAsync_callThrows_returnsFailedStage() {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        final CompletionStage<String> stage = singleFlight.executeAsync("payment-1", () -> {
+            throw new IllegalArgumentException("boom");
+        });
+
+        assertThatThrownBy(() -> stage.toCompletableFuture().join()).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
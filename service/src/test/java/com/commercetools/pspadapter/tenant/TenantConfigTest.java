@@ -170,6 +170,50 @@ public class TenantConfigTest {
         assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isUpdateOrderPaymentState()).isEqualTo(false);
     }
 
+    @Test
+    public void getsIsGraphQLPaymentFetch() {
+        when(propertyProvider.getProperty(PropertyProvider.CT_GRAPHQL_PAYMENT_FETCH)).thenReturn(Optional.of("true"));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isGraphQLPaymentFetch()).isEqualTo(true);
+
+        when(propertyProvider.getProperty(PropertyProvider.CT_GRAPHQL_PAYMENT_FETCH)).thenReturn(Optional.of(" TRUE "));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isGraphQLPaymentFetch()).isEqualTo(true);
+
+        when(propertyProvider.getProperty(PropertyProvider.CT_GRAPHQL_PAYMENT_FETCH)).thenReturn(Optional.of("false"));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isGraphQLPaymentFetch()).isEqualTo(false);
+
+        when(propertyProvider.getProperty(PropertyProvider.CT_GRAPHQL_PAYMENT_FETCH)).thenReturn(Optional.empty());
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isGraphQLPaymentFetch()).isEqualTo(false);
+    }
+
+    @Test
+    public void getsIsAdaptiveConcurrency() {
+        when(propertyProvider.getProperty(PropertyProvider.CT_ADAPTIVE_CONCURRENCY)).thenReturn(Optional.of("true"));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isAdaptiveConcurrency()).isEqualTo(true);
+
+        when(propertyProvider.getProperty(PropertyProvider.CT_ADAPTIVE_CONCURRENCY)).thenReturn(Optional.of("false"));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isAdaptiveConcurrency()).isEqualTo(false);
+
+        when(propertyProvider.getProperty(PropertyProvider.CT_ADAPTIVE_CONCURRENCY)).thenReturn(Optional.empty());
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isAdaptiveConcurrency()).isEqualTo(false);
+    }
+
+    @Test
+    public void getsIsArchiveInterfaceInteractions() {
+        when(propertyProvider.getProperty(PropertyProvider.ARCHIVE_INTERFACE_INTERACTIONS))
+                .thenReturn(Optional.of("true"));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isArchiveInterfaceInteractions())
+                .isEqualTo(true);
+
+        when(propertyProvider.getProperty(PropertyProvider.ARCHIVE_INTERFACE_INTERACTIONS))
+                .thenReturn(Optional.of("false"));
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isArchiveInterfaceInteractions())
+                .isEqualTo(false);
+
+        when(propertyProvider.getProperty(PropertyProvider.ARCHIVE_INTERFACE_INTERACTIONS)).thenReturn(Optional.empty());
+        assertThat(new TenantConfig(tenantPropertyProvider, payoneConfig).isArchiveInterfaceInteractions())
+                .isEqualTo(false);
+    }
+
     @Test
     public void getsSecureKey() throws Exception {
         when(tenantPropertyProvider.getTenantProperty(SECURE_KEY)).thenReturn(Optional.of("key-key-key"));
@@ -0,0 +1,158 @@
+package com.commercetools.pspadapter.tenant;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TenantHandleTest {
+
+    private static final long IDLE_TIMEOUT_MILLIS = 1000;
+
+    @Mock
+    private TenantFactory tenantFactory;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger createdCount = new AtomicInteger();
+
+    private TenantHandle lazyTenant;
+
+    @Before
+    public void setUp() {
+        final Supplier<TenantFactory> tenantFactorySupplier = () -> {
+            createdCount.incrementAndGet();
+            return tenantFactory;
+        };
+        lazyTenant = new TenantHandle("testTenant", null, tenantFactorySupplier, IDLE_TIMEOUT_MILLIS, clock::get);
+    }
+
+    @Test
+    public void lazyTenant_isActivatedOnFirstCallOnly() {
+        assertThat(lazyTenant.isActive()).isFalse();
+        assertThat(lazyTenant.getPaymentHandlerUrl()).isEqualTo("/testTenant/commercetools/handle/payments/:id");
+
+        assertThat(lazyTenant.call(factory -> factory)).isSameAs(tenantFactory);
+        assertThat(lazyTenant.call(factory -> factory)).isSameAs(tenantFactory);
+
+        assertThat(lazyTenant.isActive()).isTrue();
+        assertThat(createdCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void lazyTenant_isReleasedAfterIdleTimeoutAndActivatedAgain() {
+        lazyTenant.run(factory -> { });
+
+        clock.addAndGet(IDLE_TIMEOUT_MILLIS - 1);
+        assertThat(lazyTenant.releaseIfIdle()).isFalse();
+
+        clock.incrementAndGet();
+        assertThat(lazyTenant.releaseIfIdle()).isTrue();
+        assertThat(lazyTenant.isActive()).isFalse();
+        verify(tenantFactory).close();
+
+        lazyTenant.run(factory -> { });
+        assertThat(createdCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void lazyTenant_isNotReleasedWhileInUse() {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        lazyTenant.callAsync(factory -> result);
+
+        clock.addAndGet(IDLE_TIMEOUT_MILLIS * 2);
+        assertThat(lazyTenant.releaseIfIdle()).isFalse();
+        verify(tenantFactory, never()).close();
+
+        result.complete("done");
+        clock.addAndGet(IDLE_TIMEOUT_MILLIS);
+        assertThat(lazyTenant.releaseIfIdle()).isTrue();
+    }
+
+    @Test
+    public void lazyTenant_concurrentFirstCalls_waitForOneActivationOutsideOfTheLock() throws Exception {
+        final CountDownLatch activationStarted = new CountDownLatch(1);
+        final CountDownLatch activationAllowed = new CountDownLatch(1);
+        lazyTenant = new TenantHandle("testTenant", null, () -> {
+            createdCount.incrementAndGet();
+            activationStarted.countDown();
+            await(activationAllowed);
+            return tenantFactory;
+        }, IDLE_TIMEOUT_MILLIS, clock::get);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<TenantFactory> first = executor.submit(() -> lazyTenant.call(factory -> factory));
+            assertThat(activationStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            final Future<TenantFactory> second = executor.submit(() -> lazyTenant.call(factory -> factory));
+
+            assertThat(lazyTenant.isActive()).isFalse();
+            clock.addAndGet(IDLE_TIMEOUT_MILLIS * 2);
+            assertThat(lazyTenant.releaseIfIdle()).isFalse();
+
+            activationAllowed.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(tenantFactory);
+            assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(tenantFactory);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(createdCount.get()).isEqualTo(1);
+        assertThat(lazyTenant.isActive()).isTrue();
+    }
+
+    @Test
+    public void lazyTenant_failedActivation_isRetriedByNextCall() {
+        final IllegalStateException failure = new IllegalStateException("commercetools is not available");
+        lazyTenant = new TenantHandle("testTenant", null, () -> {
+            if (createdCount.incrementAndGet() == 1) {
+                throw failure;
+            }
+            return tenantFactory;
+        }, IDLE_TIMEOUT_MILLIS, clock::get);
+
+        assertThatThrownBy(() -> lazyTenant.run(factory -> { })).isSameAs(failure);
+        assertThat(lazyTenant.isActive()).isFalse();
+
+        assertThat(lazyTenant.call(factory -> factory)).isSameAs(tenantFactory);
+        assertThat(createdCount.get()).isEqualTo(2);
+
+        clock.addAndGet(IDLE_TIMEOUT_MILLIS);
+        assertThat(lazyTenant.releaseIfIdle()).isTrue();
+    }
+
+    @Test
+    public void permanentTenant_isNeverReleased() {
+        when(tenantFactory.getTenantName()).thenReturn("testTenant");
+        final TenantHandle permanentTenant = TenantHandle.of(tenantFactory);
+
+        assertThat(permanentTenant.isActive()).isTrue();
+        assertThat(permanentTenant.call(factory -> factory)).isSameAs(tenantFactory);
+        assertThat(permanentTenant.releaseIfIdle()).isFalse();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
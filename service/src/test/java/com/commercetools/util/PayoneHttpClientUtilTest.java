@@ -1,21 +1,40 @@
 package com.commercetools.util;
 
+import com.commercetools.pspadapter.payone.domain.payone.PayoneRetryBudget;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.sphere.sdk.http.HttpStatusCode;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.asynchttpclient.exception.ChannelClosedException;
+import org.asynchttpclient.exception.RemotelyClosedException;
+import org.asynchttpclient.exception.TooManyConnectionsException;
+import org.asynchttpclient.exception.TooManyConnectionsPerHostException;
 import org.junit.Test;
 
+import javax.net.ssl.SSLException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.Map;
 
 import static com.commercetools.pspadapter.payone.domain.payone.PayonePostServiceImpl.executeGetRequest;
 import static com.commercetools.pspadapter.payone.domain.payone.PayonePostServiceImpl.executePostRequest;
 import static com.commercetools.pspadapter.payone.domain.payone.PayonePostServiceImpl.executePostRequestToString;
+import static com.commercetools.pspadapter.payone.domain.payone.PayonePostServiceImpl.executePostRequestToStringAsync;
+import static com.commercetools.pspadapter.payone.util.CompletionUtil.executeBlocking;
+import static com.commercetools.util.PayoneHttpClientUtil.RETRY_TIMES;
+import static com.commercetools.util.PayoneHttpClientUtil.contextOf;
+import static com.commercetools.util.PayoneHttpClientUtil.getJitteredRetryDelay;
+import static com.commercetools.util.PayoneHttpClientUtil.getServiceUnavailableRetryDelay;
+import static com.commercetools.util.PayoneHttpClientUtil.isRetryableAsyncFailure;
 import static com.commercetools.util.PayoneHttpClientUtil.executeGetRequestToString;
+import static com.commercetools.util.PayoneHttpClientUtil.httpRequestRetryHandler;
 import static com.commercetools.util.PayoneHttpClientUtil.nameValue;
 import static com.commercetools.util.PayoneHttpClientUtil.responseToString;
+import static com.commercetools.util.PayoneHttpClientUtil.serviceUnavailableRetryStrategy;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static java.util.Optional.ofNullable;
@@ -85,4 +104,76 @@ public class PayoneHttpClientUtilTest {
         final HttpResponse httpResponse = executePostRequest(HTTPS_HTTPBIN_ORG_POST, null);
         assertThat(httpResponse.getStatusLine().getStatusCode()).isEqualTo(HttpStatusCode.OK_200);
     }
+
+    @Test
+    public void executePostRequestToStringAsync_returnsStringContainingRequestArguments() {
+        assertThat(executeBlocking(executePostRequestToStringAsync(HTTPS_HTTPBIN_ORG_POST, asList(
+                nameValue("aaa", "bbb"),
+                nameValue("ccc", 89456677823452345L)))))
+                .contains(HTTPS_HTTPBIN_ORG_POST, "aaa", "bbb", "ccc", "89456677823452345");
+    }
+
+    @Test
+    public void isRetryableAsyncFailure_retriesOnlyNotSentRequests() {
+        assertThat(isRetryableAsyncFailure(new ConnectException("refused"), 1)).isTrue();
+        assertThat(isRetryableAsyncFailure(new ConnectException("refused"), RETRY_TIMES)).isTrue();
+        assertThat(isRetryableAsyncFailure(new ConnectException("refused"), RETRY_TIMES + 1)).isFalse();
+
+        final ConnectException unknownHost = new ConnectException("unknown host");
+        unknownHost.initCause(new UnknownHostException("payone"));
+        assertThat(isRetryableAsyncFailure(unknownHost, 1)).isFalse();
+        assertThat(isRetryableAsyncFailure(new SSLException("handshake"), 1)).isFalse();
+        assertThat(isRetryableAsyncFailure(new java.util.concurrent.TimeoutException("read timeout"), 1)).isFalse();
+    }
+
+    @Test
+    public void isRetryableAsyncFailure_classifiesLikeBlockingRetryHandler() {
+        final java.io.IOException connectTimeout = new java.io.IOException("connect failed");
+        connectTimeout.initCause(new ConnectException("connection timed out: payone"));
+        assertThat(isRetryableAsyncFailure(connectTimeout, 1)).isTrue();
+        assertThat(isRetryableAsyncFailure(ChannelClosedException.INSTANCE, 1)).isTrue();
+        assertThat(isRetryableAsyncFailure(new TooManyConnectionsPerHostException(10), 1)).isTrue();
+        assertThat(isRetryableAsyncFailure(new TooManyConnectionsException(200), 1)).isTrue();
+
+        assertThat(isRetryableAsyncFailure(RemotelyClosedException.INSTANCE, 1)).isFalse();
+        assertThat(isRetryableAsyncFailure(new java.io.IOException("reset by peer"), 1)).isFalse();
+    }
+
+    @Test
+    public void getServiceUnavailableRetryDelay_isDoubledPerExecution() {
+        assertThat(getServiceUnavailableRetryDelay(1)).isEqualTo(200);
+        assertThat(getServiceUnavailableRetryDelay(2)).isEqualTo(400);
+        assertThat(getServiceUnavailableRetryDelay(RETRY_TIMES)).isEqualTo(3200);
+    }
+
+    @Test
+    public void getJitteredRetryDelay_isBetweenHalfAndWholeDelay() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(getJitteredRetryDelay(1)).isBetween(100L, 200L);
+            assertThat(getJitteredRetryDelay(RETRY_TIMES)).isBetween(1600L, 3200L);
+        }
+    }
+
+    @Test
+    public void retryStrategies_takeRetriesFromRetryBudget() {
+        final PayoneRetryBudget retryBudget = PayoneRetryBudget.of();
+        while (retryBudget.tryAcquireRetry()) {
+            // exhaust the budget
+        }
+        final HttpResponse unavailable =
+                new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_SERVICE_UNAVAILABLE, "");
+
+        assertThat(serviceUnavailableRetryStrategy.retryRequest(unavailable, 1, contextOf(null))).isTrue();
+        assertThat(serviceUnavailableRetryStrategy.retryRequest(unavailable, 1, contextOf(retryBudget))).isFalse();
+        assertThat(httpRequestRetryHandler.retryRequest(new ConnectException("refused"), 1, contextOf(retryBudget)))
+                .isFalse();
+
+        retryBudget.onRequest();
+        retryBudget.onRequest();
+        retryBudget.onRequest();
+        retryBudget.onRequest();
+        retryBudget.onRequest();
+        assertThat(serviceUnavailableRetryStrategy.retryRequest(unavailable, 1, contextOf(retryBudget))).isTrue();
+        assertThat(serviceUnavailableRetryStrategy.getRetryInterval()).isBetween(100L, 200L);
+    }
 }
@@ -4,6 +4,8 @@ import com.commercetools.pspadapter.tenant.TenantConfig;
 import io.sphere.sdk.client.BlockingSphereClient;
 import io.sphere.sdk.client.SphereClient;
 import io.sphere.sdk.client.SphereClientConfig;
+import io.sphere.sdk.http.HttpClient;
+import org.asynchttpclient.AsyncHttpClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -38,4 +40,22 @@ public class SphereClientConfigurationUtilTest {
             SphereClientConfigurationUtil.createClient(tenantConfig.getSphereClientConfig());
         assertThat(sphereClient.getConfig().getProjectKey()).isEqualTo("test-key");
     }
+
+    @Test
+    public void createClient_WithSharedHttpClient_closingClientKeepsSharedHttpClientOpen() throws Exception {
+        try (AsyncHttpClient asyncHttpClient = SphereClientConfigurationUtil.createSharedAsyncHttpClient(10)) {
+            final HttpClient sharedHttpClient = SphereClientConfigurationUtil.createSharedHttpClient(asyncHttpClient);
+            final SphereClient sphereClient1 =
+                SphereClientConfigurationUtil.createClient(tenantConfig.getSphereClientConfig(), sharedHttpClient);
+            final SphereClient sphereClient2 =
+                SphereClientConfigurationUtil.createBlockingClient(SphereClientConfig.of("other-key", "id", "secret"),
+                    sharedHttpClient);
+
+            sphereClient1.close();
+
+            assertThat(asyncHttpClient.isClosed()).isFalse();
+            assertThat(sphereClient2.getConfig().getProjectKey()).isEqualTo("other-key");
+            sphereClient2.close();
+        }
+    }
 }
\ No newline at end of file
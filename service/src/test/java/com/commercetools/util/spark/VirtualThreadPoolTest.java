@@ -0,0 +1,46 @@
+package com.commercetools.util.spark;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadPoolTest {
+
+    @Test
+    public void execute_onJava21_runsJobOnVirtualThread() throws Exception {
+        assumeTrue(VirtualThreadPool.isSupported());
+
+        final VirtualThreadPool threadPool = new VirtualThreadPool();
+        threadPool.start();
+        try {
+            final CompletableFuture<Boolean> isVirtual = new CompletableFuture<>();
+            threadPool.execute(() -> {
+                try {
+                    isVirtual.complete((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+                } catch (ReflectiveOperationException e) {
+                    isVirtual.completeExceptionally(e);
+                }
+            });
+
+            assertThat(isVirtual.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(threadPool.isLowOnThreads()).isFalse();
+        } finally {
+            threadPool.stop();
+        }
+    }
+
+    @Test
+    public void start_beforeJava21_throwsException() {
+        assumeFalse(VirtualThreadPool.isSupported());
+
+        assertThatThrownBy(() -> new VirtualThreadPool().start())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Java 21+");
+    }
+}